@@ -0,0 +1,137 @@
+package com.devsu.push.sender.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.devsu.push.sender.future.PushFuture;
+import com.devsu.push.sender.future.PushFutures;
+import com.devsu.push.sender.service.async.AsyncAndroidPushService;
+import com.devsu.push.sender.service.async.AsyncApplePushService;
+import com.devsu.push.sender.service.sync.SyncAndroidPushService;
+import com.devsu.push.sender.service.sync.SyncApplePushService;
+
+/**
+ * Async dispatch throughput against the in-process stub providers: every invocation submits a burst of push
+ * message requests and waits for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncSendBenchmark {
+
+	/**
+	 * The quantity of push message requests submitted per invocation.
+	 */
+	private static final int BURST = 100;
+
+	/**
+	 * The additional fields.
+	 */
+	private static final Map<String, String> FIELDS = Collections.singletonMap("orderId", "12345");
+
+	/**
+	 * The quantity of worker threads.
+	 */
+	@Param({"4", "16"})
+	private int workers;
+
+	/**
+	 * The simulated latency of every provider request, in microseconds.
+	 */
+	@Param({"0", "1000"})
+	private long latencyMicros;
+
+	/**
+	 * The tokens, one per push message request of a burst.
+	 */
+	private String[] tokens;
+
+	/**
+	 * The worker pool.
+	 */
+	private ExecutorService executorService;
+
+	/**
+	 * The Android service.
+	 */
+	private AsyncAndroidPushService androidService;
+
+	/**
+	 * The iOS service.
+	 */
+	private AsyncApplePushService appleService;
+
+	/**
+	 * Builds the services on the stub providers.
+	 */
+	@Setup
+	public void setUp() {
+		tokens = Tokens.generate(BURST);
+		long latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+		executorService = Executors.newFixedThreadPool(workers);
+		androidService = new AsyncAndroidPushService(new SyncAndroidPushService(new StubGcmSender(latencyNanos)), 
+				null, executorService);
+		appleService = new AsyncApplePushService(new SyncApplePushService(new StubApnsService(latencyNanos)), 
+				null, executorService);
+	}
+
+	/**
+	 * Stops the worker pool.
+	 */
+	@TearDown
+	public void tearDown() {
+		executorService.shutdownNow();
+	}
+
+	/**
+	 * Submits a burst of single push messages on Android.
+	 * @return The results.
+	 * @throws Exception Any exception that may arise.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public List<Boolean> androidSingle() throws Exception {
+		List<PushFuture<Boolean>> futures = new ArrayList<PushFuture<Boolean>>(BURST);
+		for (String token : tokens) {
+			futures.add(androidService.submitPush("Title", "Message", FIELDS, token));
+		}
+		return PushFutures.allAsList(futures).get();
+	}
+
+	/**
+	 * Submits a burst of single push messages on iOS.
+	 * @return The results.
+	 * @throws Exception Any exception that may arise.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public List<Boolean> appleSingle() throws Exception {
+		List<PushFuture<Boolean>> futures = new ArrayList<PushFuture<Boolean>>(BURST);
+		for (String token : tokens) {
+			futures.add(appleService.submitPush("Title", "Message", FIELDS, token));
+		}
+		return PushFutures.allAsList(futures).get();
+	}
+}
@@ -0,0 +1,65 @@
+package com.devsu.push.sender.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so allocation rates are reported, and writes the results to
+ * <i>jmh-result-VERSION.json</i>, so runs against different versions of the library can be compared.
+ */
+public final class BenchmarkRunner {
+
+	/**
+	 * Private constructor, this class only has a main method.
+	 */
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 * @param args Regular expressions of the benchmarks to run, or none to run all of them.
+	 * @throws RunnerException If the benchmarks fail.
+	 * @throws IOException If the version can't be read.
+	 */
+	public static void main(String[] args) throws RunnerException, IOException {
+		String version = readVersion();
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("jmh-result-" + version + ".json");
+		if (args.length == 0) {
+			options.include(".*Benchmark");
+		}
+		for (String arg : args) {
+			options.include(arg);
+		}
+		new Runner(options.build()).run();
+	}
+
+	/**
+	 * Reads the version of the library being benchmarked.
+	 * @return The version.
+	 * @throws IOException If the version can't be read.
+	 */
+	private static String readVersion() throws IOException {
+		Properties properties = new Properties();
+		InputStream input = BenchmarkRunner.class.getResourceAsStream("/benchmark.properties");
+		if (input == null) {
+			return "unknown";
+		}
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+		return properties.getProperty("push-sender.version", "unknown");
+	}
+}
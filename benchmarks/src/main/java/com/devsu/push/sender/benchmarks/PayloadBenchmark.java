@@ -0,0 +1,103 @@
+package com.devsu.push.sender.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.devsu.push.sender.payload.AndroidPayload;
+import com.devsu.push.sender.payload.ApplePayload;
+import com.devsu.push.sender.payload.PayloadCache;
+import com.devsu.push.sender.payload.PayloadKey;
+import com.google.android.gcm.server.Message;
+import com.notnoop.apns.APNS;
+
+/**
+ * Building and serializing payloads, the way the services build them for a title, message and additional fields,
+ * and finding them on the payload cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+
+	/**
+	 * The push message title.
+	 */
+	private static final String TITLE = "Order shipped";
+
+	/**
+	 * The push message content.
+	 */
+	private static final String MESSAGE = "Your order #12345 is on its way and should arrive on Thursday.";
+
+	/**
+	 * The additional fields.
+	 */
+	private Map<String, String> additionalFields;
+
+	/**
+	 * A payload cache that holds the payload.
+	 */
+	private PayloadCache<ApplePayload> payloadCache;
+
+	/**
+	 * Builds the fields and fills the cache.
+	 */
+	@Setup
+	public void setUp() {
+		additionalFields = new HashMap<String, String>();
+		additionalFields.put("orderId", "12345");
+		additionalFields.put("deepLink", "app://orders/12345");
+		payloadCache = new PayloadCache<ApplePayload>(100);
+		payloadCache.put(new PayloadKey(TITLE, MESSAGE, additionalFields, false), appleJson());
+	}
+
+	/**
+	 * Builds a GCM message and its description.
+	 * @return The payload.
+	 */
+	@Benchmark
+	public AndroidPayload androidMessage() {
+		Message.Builder msgBuilder = new Message.Builder().addData("message", MESSAGE).collapseKey("bulk")
+				.addData("title", TITLE);
+		for (Map.Entry<String, String> entry : additionalFields.entrySet()) {
+			msgBuilder.addData(entry.getKey(), entry.getValue());
+		}
+		AndroidPayload payload = AndroidPayload.of(msgBuilder);
+		payload.getDescription();
+		return payload;
+	}
+
+	/**
+	 * Builds and serializes an APNS payload.
+	 * @return The payload.
+	 */
+	@Benchmark
+	public ApplePayload appleJson() {
+		return ApplePayload.of(APNS.newPayload().alertBody(MESSAGE).sound("default").alertTitle(TITLE)
+				.customFields(additionalFields));
+	}
+
+	/**
+	 * Finds a payload on the payload cache.
+	 * @return The payload.
+	 */
+	@Benchmark
+	public ApplePayload payloadCacheHit() {
+		return payloadCache.get(new PayloadKey(TITLE, MESSAGE, additionalFields, false));
+	}
+}
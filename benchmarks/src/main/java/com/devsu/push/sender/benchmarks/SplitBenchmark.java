@@ -0,0 +1,80 @@
+package com.devsu.push.sender.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.devsu.push.sender.util.ArrayUtil;
+
+/**
+ * Splitting the tokens of a bulk push message into requests of <i>maxBulkSize</i> tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitBenchmark {
+
+	/**
+	 * The quantity of tokens.
+	 */
+	@Param({"1000", "100000"})
+	private int tokenCount;
+
+	/**
+	 * The max quantity of tokens per request.
+	 */
+	@Param({"1000"})
+	private int maxBulkSize;
+
+	/**
+	 * The tokens.
+	 */
+	private String[] tokens;
+
+	/**
+	 * The tokens, as a list.
+	 */
+	private List<String> tokenList;
+
+	/**
+	 * Generates the tokens.
+	 */
+	@Setup
+	public void setUp() {
+		tokens = Tokens.generate(tokenCount);
+		tokenList = Arrays.asList(tokens);
+	}
+
+	/**
+	 * Splits the token array, copying every part.
+	 * @return The parts.
+	 */
+	@Benchmark
+	public List<String[]> splitArray() {
+		return ArrayUtil.splitArray(tokens, maxBulkSize);
+	}
+
+	/**
+	 * Splits the token list into views.
+	 * @return The parts.
+	 */
+	@Benchmark
+	public List<List<String>> splitList() {
+		return ArrayUtil.splitList(tokenList, maxBulkSize);
+	}
+}
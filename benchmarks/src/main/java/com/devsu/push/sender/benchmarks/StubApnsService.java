@@ -0,0 +1,170 @@
+package com.devsu.push.sender.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.notnoop.apns.ApnsNotification;
+import com.notnoop.apns.ApnsService;
+import com.notnoop.apns.EnhancedApnsNotification;
+import com.notnoop.exceptions.NetworkIOException;
+
+/**
+ * In-process APNS stub: every push message is framed like the real service does, and the frame is dropped instead
+ * of being written to a socket, after an optional simulated latency per write.
+ */
+public class StubApnsService implements ApnsService {
+
+	/**
+	 * The simulated latency of every write, in nanoseconds.
+	 */
+	private final long latencyNanos;
+
+	/**
+	 * The quantity of bytes framed.
+	 */
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	/**
+	 * Single param constructor.
+	 * @param latencyNanos The simulated latency of every write, in nanoseconds, or 0 to write right away.
+	 */
+	public StubApnsService(long latencyNanos) {
+		this.latencyNanos = latencyNanos;
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#push(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public ApnsNotification push(String deviceToken, String payload) throws NetworkIOException {
+		return push(deviceToken, payload, null);
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#push(java.lang.String, java.lang.String, java.util.Date)
+	 */
+	@Override
+	public EnhancedApnsNotification push(String deviceToken, String payload, Date expiry) throws NetworkIOException {
+		EnhancedApnsNotification notification = new EnhancedApnsNotification(EnhancedApnsNotification.INCREMENT_ID(), 
+				EnhancedApnsNotification.MAXIMUM_EXPIRY, deviceToken, payload);
+		push(notification);
+		return notification;
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#push(byte[], byte[])
+	 */
+	@Override
+	public ApnsNotification push(byte[] deviceToken, byte[] payload) throws NetworkIOException {
+		return push(deviceToken, payload, EnhancedApnsNotification.MAXIMUM_EXPIRY);
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#push(byte[], byte[], int)
+	 */
+	@Override
+	public EnhancedApnsNotification push(byte[] deviceToken, byte[] payload, int expiry) throws NetworkIOException {
+		EnhancedApnsNotification notification = new EnhancedApnsNotification(EnhancedApnsNotification.INCREMENT_ID(), 
+				expiry, deviceToken, payload);
+		push(notification);
+		return notification;
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#push(java.util.Collection, java.lang.String)
+	 */
+	@Override
+	public Collection<? extends ApnsNotification> push(Collection<String> deviceTokens, String payload) 
+			throws NetworkIOException {
+		return push(deviceTokens, payload, null);
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#push(java.util.Collection, java.lang.String, java.util.Date)
+	 */
+	@Override
+	public Collection<? extends EnhancedApnsNotification> push(Collection<String> deviceTokens, String payload, 
+			Date expiry) throws NetworkIOException {
+		List<EnhancedApnsNotification> notifications = new ArrayList<EnhancedApnsNotification>(deviceTokens.size());
+		for (String deviceToken : deviceTokens) {
+			notifications.add(push(deviceToken, payload, expiry));
+		}
+		return notifications;
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#push(java.util.Collection, byte[])
+	 */
+	@Override
+	public Collection<? extends ApnsNotification> push(Collection<byte[]> deviceTokens, byte[] payload) 
+			throws NetworkIOException {
+		return push(deviceTokens, payload, EnhancedApnsNotification.MAXIMUM_EXPIRY);
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#push(java.util.Collection, byte[], int)
+	 */
+	@Override
+	public Collection<? extends EnhancedApnsNotification> push(Collection<byte[]> deviceTokens, byte[] payload, 
+			int expiry) throws NetworkIOException {
+		List<EnhancedApnsNotification> notifications = new ArrayList<EnhancedApnsNotification>(deviceTokens.size());
+		for (byte[] deviceToken : deviceTokens) {
+			notifications.add(push(deviceToken, payload, expiry));
+		}
+		return notifications;
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#push(com.notnoop.apns.ApnsNotification)
+	 */
+	@Override
+	public void push(ApnsNotification message) throws NetworkIOException {
+		if (latencyNanos > 0) {
+			LockSupport.parkNanos(latencyNanos);
+		}
+		bytesWritten.addAndGet(message.marshall().length);
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#start()
+	 */
+	@Override
+	public void start() {
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#stop()
+	 */
+	@Override
+	public void stop() {
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#getInactiveDevices()
+	 */
+	@Override
+	public Map<String, Date> getInactiveDevices() throws NetworkIOException {
+		return Collections.emptyMap();
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsService#testConnection()
+	 */
+	@Override
+	public void testConnection() throws NetworkIOException {
+	}
+
+	/**
+	 * Gets the quantity of bytes framed.
+	 * @return The quantity of bytes.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+}
@@ -0,0 +1,165 @@
+package com.devsu.push.sender.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.android.gcm.server.Sender;
+
+/**
+ * In-process GCM stub: the sender serializes every request as usual, and the stub answers it without a network,
+ * accepting every token after an optional simulated latency.
+ */
+public class StubGcmSender extends Sender {
+
+	/**
+	 * The charset of the requests and responses.
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The marker of the tokens of a multicast request.
+	 */
+	private static final String REGISTRATION_IDS = "\"registration_ids\":[";
+
+	/**
+	 * The simulated latency of every request, in nanoseconds.
+	 */
+	private final long latencyNanos;
+
+	/**
+	 * The quantity of requests answered.
+	 */
+	private final AtomicLong requests = new AtomicLong();
+
+	/**
+	 * Single param constructor.
+	 * @param latencyNanos The simulated latency of every request, in nanoseconds, or 0 to answer right away.
+	 */
+	public StubGcmSender(long latencyNanos) {
+		super("benchmark-key");
+		this.latencyNanos = latencyNanos;
+	}
+
+	/*
+	 * @see com.google.android.gcm.server.Sender#getConnection(java.lang.String)
+	 */
+	@Override
+	protected HttpURLConnection getConnection(String url) throws IOException {
+		requests.incrementAndGet();
+		return new StubConnection(new URL(url));
+	}
+
+	/**
+	 * Gets the quantity of requests answered.
+	 * @return The quantity of requests.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Builds the response to a request body.
+	 * @param body The request body: JSON for multicast requests, form parameters for single ones.
+	 * @return The response body.
+	 */
+	private byte[] respond(String body) {
+		if (latencyNanos > 0) {
+			LockSupport.parkNanos(latencyNanos);
+		}
+		int start = body.indexOf(REGISTRATION_IDS);
+		if (start < 0) {
+			return "id=0:benchmark".getBytes(UTF8);
+		}
+		int tokens = 1;
+		for (int i = start + REGISTRATION_IDS.length(); i < body.length() && body.charAt(i) != ']'; i++) {
+			if (body.charAt(i) == ',') {
+				tokens++;
+			}
+		}
+		StringBuilder response = new StringBuilder(64 + tokens * 32)
+				.append("{\"multicast_id\":1,\"success\":").append(tokens)
+				.append(",\"failure\":0,\"canonical_ids\":0,\"results\":[");
+		for (int i = 0; i < tokens; i++) {
+			if (i > 0) {
+				response.append(',');
+			}
+			response.append("{\"message_id\":\"0:").append(i).append("\"}");
+		}
+		return response.append("]}").toString().getBytes(UTF8);
+	}
+
+	/**
+	 * Connection that keeps the request body and answers it when the response is read.
+	 */
+	private class StubConnection extends HttpURLConnection {
+
+		/**
+		 * The request body.
+		 */
+		private final ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+
+		/**
+		 * Single param constructor.
+		 * @param url The request URL.
+		 */
+		private StubConnection(URL url) {
+			super(url);
+		}
+
+		/*
+		 * @see java.net.URLConnection#connect()
+		 */
+		@Override
+		public void connect() {
+			connected = true;
+		}
+
+		/*
+		 * @see java.net.HttpURLConnection#disconnect()
+		 */
+		@Override
+		public void disconnect() {
+			connected = false;
+		}
+
+		/*
+		 * @see java.net.HttpURLConnection#usingProxy()
+		 */
+		@Override
+		public boolean usingProxy() {
+			return false;
+		}
+
+		/*
+		 * @see java.net.URLConnection#getOutputStream()
+		 */
+		@Override
+		public OutputStream getOutputStream() {
+			return requestBody;
+		}
+
+		/*
+		 * @see java.net.HttpURLConnection#getResponseCode()
+		 */
+		@Override
+		public int getResponseCode() {
+			return HTTP_OK;
+		}
+
+		/*
+		 * @see java.net.URLConnection#getInputStream()
+		 */
+		@Override
+		public InputStream getInputStream() {
+			return new ByteArrayInputStream(respond(new String(requestBody.toByteArray(), UTF8)));
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.devsu.push.sender.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.devsu.push.sender.result.BulkSendReport;
+import com.devsu.push.sender.service.sync.SyncAndroidPushService;
+import com.devsu.push.sender.service.sync.SyncApplePushService;
+
+/**
+ * End to end sync sends against the in-process stub providers: token selection, splitting, payload building,
+ * request serialization and result handling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncSendBenchmark {
+
+	/**
+	 * The additional fields.
+	 */
+	private static final Map<String, String> FIELDS = Collections.singletonMap("orderId", "12345");
+
+	/**
+	 * The quantity of tokens of every bulk push message.
+	 */
+	@Param({"1000", "10000"})
+	private int tokenCount;
+
+	/**
+	 * The simulated latency of every provider request, in microseconds.
+	 */
+	@Param({"0"})
+	private long latencyMicros;
+
+	/**
+	 * The multicast requests sent at the same time on Android.
+	 */
+	@Param({"1", "4"})
+	private int bulkConcurrency;
+
+	/**
+	 * The tokens.
+	 */
+	private String[] tokens;
+
+	/**
+	 * The Android service.
+	 */
+	private SyncAndroidPushService androidService;
+
+	/**
+	 * The iOS service.
+	 */
+	private SyncApplePushService appleService;
+
+	/**
+	 * Builds the services on the stub providers.
+	 */
+	@Setup
+	public void setUp() {
+		tokens = Tokens.generate(tokenCount);
+		long latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+		androidService = new SyncAndroidPushService(new StubGcmSender(latencyNanos));
+		androidService.setBulkConcurrency(bulkConcurrency);
+		appleService = new SyncApplePushService(new StubApnsService(latencyNanos));
+	}
+
+	/**
+	 * Stops the services.
+	 */
+	@TearDown
+	public void tearDown() {
+		androidService.setBulkConcurrency(1);
+		appleService.close();
+	}
+
+	/**
+	 * Sends a bulk push message on Android.
+	 * @return The report.
+	 * @throws Exception Any exception that may arise.
+	 */
+	@Benchmark
+	public BulkSendReport androidBulk() throws Exception {
+		return androidService.sendPushInBulkWithReport("Title", "Message", FIELDS, tokens);
+	}
+
+	/**
+	 * Sends a bulk push message on iOS.
+	 * @return The report.
+	 * @throws Exception Any exception that may arise.
+	 */
+	@Benchmark
+	public BulkSendReport appleBulk() throws Exception {
+		return appleService.sendPushInBulkWithReport("Title", "Message", FIELDS, tokens);
+	}
+
+	/**
+	 * Sends a single push message on Android.
+	 * @return <i>true</i> if it was sent.
+	 * @throws Exception Any exception that may arise.
+	 */
+	@Benchmark
+	public boolean androidSingle() throws Exception {
+		return androidService.sendPush("Title", "Message", FIELDS, tokens[0]);
+	}
+
+	/**
+	 * Sends a single push message on iOS.
+	 * @return <i>true</i> if it was sent.
+	 * @throws Exception Any exception that may arise.
+	 */
+	@Benchmark
+	public boolean appleSingle() throws Exception {
+		return appleService.sendPush("Title", "Message", FIELDS, tokens[0]);
+	}
+}
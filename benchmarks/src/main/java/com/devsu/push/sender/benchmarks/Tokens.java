@@ -0,0 +1,43 @@
+package com.devsu.push.sender.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates push tokens for the benchmarks.
+ */
+public final class Tokens {
+
+	/**
+	 * The hex digits.
+	 */
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * The length of an APNS token in hex digits, also used for GCM tokens.
+	 */
+	private static final int TOKEN_LENGTH = 64;
+
+	/**
+	 * Private constructor, this class only has static methods.
+	 */
+	private Tokens() {
+	}
+
+	/**
+	 * Generates random hex tokens, always the same for the same quantity.
+	 * @param count The quantity of tokens.
+	 * @return The tokens.
+	 */
+	public static String[] generate(int count) {
+		Random random = new Random(count);
+		String[] tokens = new String[count];
+		char[] token = new char[TOKEN_LENGTH];
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < TOKEN_LENGTH; j++) {
+				token[j] = HEX[random.nextInt(HEX.length)];
+			}
+			tokens[i] = new String(token);
+		}
+		return tokens;
+	}
+}
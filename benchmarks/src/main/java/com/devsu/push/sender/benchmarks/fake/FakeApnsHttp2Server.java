@@ -0,0 +1,162 @@
+package com.devsu.push.sender.benchmarks.fake;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Stand-in APNS HTTP/2 provider API on the loopback interface, over cleartext HTTP/2 with prior knowledge, following
+ * its {@link FakeProviderConfig}. Requests without a bearer token are rejected like APNS does. Point an
+ * {@link com.devsu.push.sender.transport.Http2ApnsTransport} at {@link #getBaseUrl()}.
+ */
+public class FakeApnsHttp2Server implements Closeable {
+
+	/**
+	 * The path prefix of the push messages.
+	 */
+	private static final String DEVICE_PATH = "/3/device/";
+
+	/**
+	 * The behavior of the server.
+	 */
+	private final FakeProviderConfig config;
+
+	/**
+	 * The HTTP/2 server.
+	 */
+	private final MockWebServer server = new MockWebServer();
+
+	/**
+	 * The quantity of push messages answered.
+	 */
+	private final AtomicLong notifications = new AtomicLong();
+
+	/**
+	 * The quantity of push messages rejected.
+	 */
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * The distinct authentication tokens received.
+	 */
+	private final Set<String> authTokens = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Starts the server on a free port.
+	 * @param config The behavior of the server.
+	 * @throws IOException If the server can't be started.
+	 */
+	public FakeApnsHttp2Server(FakeProviderConfig config) throws IOException {
+		this.config = config;
+		server.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+		server.setDispatcher(new ApnsDispatcher());
+		server.start(InetAddress.getByName("127.0.0.1"), 0);
+	}
+
+	/**
+	 * Gets the URL of the server.
+	 * @return The base URL.
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getPort();
+	}
+
+	/**
+	 * Gets the quantity of push messages answered.
+	 * @return The quantity of push messages.
+	 */
+	public long getNotifications() {
+		return notifications.get();
+	}
+
+	/**
+	 * Gets the quantity of push messages rejected.
+	 * @return The quantity of rejected push messages.
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * Gets the quantity of distinct authentication tokens received, which stays at 1 while the client caches it.
+	 * @return The quantity of authentication tokens.
+	 */
+	public int getAuthTokenCount() {
+		return authTokens.size();
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		server.shutdown();
+	}
+
+	/**
+	 * Builds an error response.
+	 * @param status The status code.
+	 * @param reason The reason reported by APNS.
+	 * @return The response.
+	 */
+	private MockResponse reject(int status, String reason) {
+		rejected.incrementAndGet();
+		String timestamp = status == 410 ? ",\"timestamp\":" + System.currentTimeMillis() : "";
+		return new MockResponse().setResponseCode(status).setHeader("content-type", "application/json")
+				.setBody("{\"reason\":\"" + reason + "\"" + timestamp + "}");
+	}
+
+	/**
+	 * Answers the push messages.
+	 */
+	private class ApnsDispatcher extends Dispatcher {
+
+		/*
+		 * @see okhttp3.mockwebserver.Dispatcher#dispatch(okhttp3.mockwebserver.RecordedRequest)
+		 */
+		@Override
+		public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+			// MockWebServer keeps every request; drop one per request so long load tests don't run out of memory.
+			server.takeRequest(0, TimeUnit.NANOSECONDS);
+			notifications.incrementAndGet();
+			String path = request.getPath();
+			if (!"POST".equals(request.getMethod()) || path == null || !path.startsWith(DEVICE_PATH)) {
+				return reject(405, "MethodNotAllowed");
+			}
+			String authorization = request.getHeader("authorization");
+			if (authorization == null || !authorization.startsWith("bearer ")) {
+				return reject(403, "MissingProviderToken");
+			}
+			if (authorization.split("\\.").length != 3) {
+				return reject(403, "InvalidProviderToken");
+			}
+			authTokens.add(authorization);
+			if (request.getHeader("apns-topic") == null) {
+				return reject(400, "MissingTopic");
+			}
+			config.simulateLatency();
+			if (config.nextThrottle()) {
+				return reject(429, "TooManyRequests");
+			}
+			if (config.isInactive(path.substring(DEVICE_PATH.length()))) {
+				return reject(410, "Unregistered");
+			}
+			if (config.nextError()) {
+				return reject(503, "ServiceUnavailable");
+			}
+			return new MockResponse().setResponseCode(200).setHeader("apns-id", 
+					Long.toHexString(notifications.get()));
+		}
+	}
+}
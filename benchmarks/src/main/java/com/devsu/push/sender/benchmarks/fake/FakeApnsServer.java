@@ -0,0 +1,369 @@
+package com.devsu.push.sender.benchmarks.fake;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stand-in APNS gateway and feedback service on the loopback interface, speaking the binary protocol over TLS and
+ * following its {@link FakeProviderConfig}. Its self-signed certificate is {@link #CERTIFICATE_RESOURCE}, which the
+ * client can also use as its own certificate. java-apns checks the servers against the default trust store, so the
+ * client JVM must trust it too, see {@link #trustCertificate(File)}. Point a service at it with
+ * {@link com.devsu.push.sender.service.sync.SyncApplePushService#setupCustomServer(String, String, String, int, 
+ * String, int)}.
+ */
+public class FakeApnsServer implements Closeable {
+
+	/**
+	 * The classpath resource of the PKCS12 certificate of the server.
+	 */
+	public static final String CERTIFICATE_RESOURCE = "/fake-apns.p12";
+
+	/**
+	 * The password of the certificate.
+	 */
+	public static final String CERTIFICATE_PASSWORD = "fakeapns";
+
+	/**
+	 * The host of the servers.
+	 */
+	public static final String HOST = "127.0.0.1";
+
+	/**
+	 * Status code of a processing error.
+	 */
+	private static final int PROCESSING_ERROR = 1;
+
+	/**
+	 * Status code of an invalid token.
+	 */
+	private static final int INVALID_TOKEN = 8;
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger log = LoggerFactory.getLogger(FakeApnsServer.class);
+
+	/**
+	 * The behavior of the server.
+	 */
+	private final FakeProviderConfig config;
+
+	/**
+	 * The gateway socket.
+	 */
+	private final ServerSocket gateway;
+
+	/**
+	 * The feedback socket.
+	 */
+	private final ServerSocket feedback;
+
+	/**
+	 * The threads that accept and serve the connections.
+	 */
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	/**
+	 * The quantity of connections accepted by the gateway.
+	 */
+	private final AtomicLong connections = new AtomicLong();
+
+	/**
+	 * The quantity of notifications read.
+	 */
+	private final AtomicLong notifications = new AtomicLong();
+
+	/**
+	 * The quantity of notifications rejected.
+	 */
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Whether the server was closed.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Starts the gateway and the feedback service on free ports.
+	 * @param config The behavior of the server.
+	 * @throws IOException If the servers can't be started.
+	 * @throws GeneralSecurityException If the certificate can't be loaded.
+	 */
+	public FakeApnsServer(FakeProviderConfig config) throws IOException, GeneralSecurityException {
+		this.config = config;
+		SSLContext context = newSSLContext();
+		InetAddress address = InetAddress.getByName(HOST);
+		this.gateway = context.getServerSocketFactory().createServerSocket(0, 1024, address);
+		this.feedback = context.getServerSocketFactory().createServerSocket(0, 64, address);
+		executor.execute(new Acceptor(gateway, true));
+		executor.execute(new Acceptor(feedback, false));
+	}
+
+	/**
+	 * Gets the port of the gateway.
+	 * @return The gateway port.
+	 */
+	public int getGatewayPort() {
+		return gateway.getLocalPort();
+	}
+
+	/**
+	 * Gets the port of the feedback service.
+	 * @return The feedback port.
+	 */
+	public int getFeedbackPort() {
+		return feedback.getLocalPort();
+	}
+
+	/**
+	 * Gets the quantity of connections accepted by the gateway.
+	 * @return The quantity of connections.
+	 */
+	public long getConnections() {
+		return connections.get();
+	}
+
+	/**
+	 * Gets the quantity of notifications read.
+	 * @return The quantity of notifications.
+	 */
+	public long getNotifications() {
+		return notifications.get();
+	}
+
+	/**
+	 * Gets the quantity of notifications rejected with an error response.
+	 * @return The quantity of rejected notifications.
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		try {
+			gateway.close();
+			feedback.close();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Makes the default trust store of this JVM trust the certificate of the server, and only it.
+	 * @param certificate A copy of {@link #CERTIFICATE_RESOURCE} on the file system.
+	 */
+	public static void trustCertificate(File certificate) {
+		System.setProperty("javax.net.ssl.trustStore", certificate.getAbsolutePath());
+		System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+		System.setProperty("javax.net.ssl.trustStorePassword", CERTIFICATE_PASSWORD);
+	}
+
+	/**
+	 * Builds the TLS context of the servers from {@link #CERTIFICATE_RESOURCE}.
+	 * @return The TLS context.
+	 * @throws IOException If the certificate can't be read.
+	 * @throws GeneralSecurityException If the certificate can't be loaded.
+	 */
+	private static SSLContext newSSLContext() throws IOException, GeneralSecurityException {
+		KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		InputStream input = FakeApnsServer.class.getResourceAsStream(CERTIFICATE_RESOURCE);
+		if (input == null) {
+			throw new IOException("Resource not found: " + CERTIFICATE_RESOURCE);
+		}
+		try {
+			keyStore.load(input, CERTIFICATE_PASSWORD.toCharArray());
+		} finally {
+			input.close();
+		}
+		KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagerFactory.init(keyStore, CERTIFICATE_PASSWORD.toCharArray());
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(keyManagerFactory.getKeyManagers(), null, null);
+		return context;
+	}
+
+	/**
+	 * Serves a gateway connection until the client closes it, or a notification is rejected or throttled.
+	 * @param socket The client socket.
+	 * @throws IOException If the connection fails.
+	 */
+	private void serveGateway(Socket socket) throws IOException {
+		connections.incrementAndGet();
+		DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+		while (true) {
+			int command;
+			try {
+				command = input.readUnsignedByte();
+			} catch (EOFException e) {
+				return;
+			}
+			int identifier = 0;
+			if (command == 1) {
+				identifier = input.readInt();
+				input.readInt();
+			} else if (command != 0) {
+				log.warn("Unsupported command " + command + ", closing the connection.");
+				return;
+			}
+			byte[] token = new byte[input.readUnsignedShort()];
+			input.readFully(token);
+			input.skipBytes(input.readUnsignedShort());
+			notifications.incrementAndGet();
+			config.simulateLatency();
+			if (config.nextThrottle()) {
+				return;
+			}
+			int status = config.isInactive(toHex(token)) ? INVALID_TOKEN : config.nextError() ? PROCESSING_ERROR : 0;
+			if (status != 0) {
+				rejected.incrementAndGet();
+				if (command == 1) {
+					output.writeByte(8);
+					output.writeByte(status);
+					output.writeInt(identifier);
+					output.flush();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Serves a feedback connection, writing a tuple per inactive token.
+	 * @param socket The client socket.
+	 * @throws IOException If the connection fails.
+	 */
+	private void serveFeedback(Socket socket) throws IOException {
+		DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+		int time = (int) (System.currentTimeMillis() / 1000);
+		for (String token : config.getInactiveTokens()) {
+			byte[] bytes = fromHex(token);
+			output.writeInt(time);
+			output.writeShort(bytes.length);
+			output.write(bytes);
+		}
+		output.flush();
+	}
+
+	/**
+	 * Converts a binary token to its uppercase hex form.
+	 * @param token The binary token.
+	 * @return The hex token.
+	 */
+	private static String toHex(byte[] token) {
+		char[] digits = "0123456789ABCDEF".toCharArray();
+		char[] hex = new char[token.length * 2];
+		for (int i = 0; i < token.length; i++) {
+			hex[i * 2] = digits[(token[i] >> 4) & 0xF];
+			hex[i * 2 + 1] = digits[token[i] & 0xF];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Converts a hex token to its binary form.
+	 * @param token The hex token.
+	 * @return The binary token.
+	 */
+	private static byte[] fromHex(String token) {
+		byte[] bytes = new byte[token.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(token.substring(i * 2, i * 2 + 2), 16);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Accepts the connections of a server, serving each one on its own thread.
+	 */
+	private class Acceptor implements Runnable {
+
+		/**
+		 * The server socket.
+		 */
+		private final ServerSocket server;
+
+		/**
+		 * Whether it is the gateway, or the feedback service.
+		 */
+		private final boolean isGateway;
+
+		/**
+		 * Two params constructor.
+		 * @param server The server socket.
+		 * @param isGateway Whether it is the gateway, or the feedback service.
+		 */
+		Acceptor(ServerSocket server, boolean isGateway) {
+			this.server = server;
+			this.isGateway = isGateway;
+		}
+
+		/*
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			while (!closed) {
+				final Socket socket;
+				try {
+					socket = server.accept();
+				} catch (IOException e) {
+					if (!closed) {
+						log.warn("Error accepting a connection.", e);
+					}
+					return;
+				}
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							((SSLSocket) socket).startHandshake();
+							if (isGateway) {
+								serveGateway(socket);
+							} else {
+								serveFeedback(socket);
+							}
+						} catch (SocketException e) {
+							log.debug("Connection closed by the client.", e);
+						} catch (IOException e) {
+							log.warn("Error serving a connection.", e);
+						} finally {
+							try {
+								socket.close();
+							} catch (IOException e) {
+								log.debug("Error closing a connection.", e);
+							}
+						}
+					}
+				});
+			}
+		}
+	}
+}
@@ -0,0 +1,439 @@
+package com.devsu.push.sender.benchmarks.fake;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Stand-in GCM HTTP endpoint on the loopback interface. It answers single and multicast requests like GCM does,
+ * following its {@link FakeProviderConfig}. Point a service at it with
+ * {@link com.devsu.push.sender.service.sync.SyncAndroidPushService#setGcmEndpoint(String)}.
+ * <p>
+ * It also answers the FCM HTTP v1 API and an OAuth token endpoint, for
+ * {@link com.devsu.push.sender.transport.FcmHttpTransport}.
+ */
+public class FakeGcmServer implements Closeable {
+
+	/**
+	 * The path of the send endpoint.
+	 */
+	private static final String PATH = "/gcm/send";
+
+	/**
+	 * The path of the FCM HTTP v1 API.
+	 */
+	private static final String V1_PATH = "/v1/projects/";
+
+	/**
+	 * The path of the token endpoint.
+	 */
+	private static final String TOKEN_PATH = "/token";
+
+	/**
+	 * The prefix of the access tokens.
+	 */
+	private static final String ACCESS_TOKEN_PREFIX = "fake-access-token-";
+
+	/**
+	 * The charset of the requests and responses.
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	static {
+		// Without TCP_NODELAY the responses wait for delayed ACKs, adding ~40ms to every request.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	/**
+	 * The behavior of the server.
+	 */
+	private final FakeProviderConfig config;
+
+	/**
+	 * The HTTP server.
+	 */
+	private final HttpServer server;
+
+	/**
+	 * The threads that answer the requests.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * The quantity of requests answered.
+	 */
+	private final AtomicLong requests = new AtomicLong();
+
+	/**
+	 * The quantity of tokens answered.
+	 */
+	private final AtomicLong tokens = new AtomicLong();
+
+	/**
+	 * The quantity of access tokens given.
+	 */
+	private final AtomicLong accessTokens = new AtomicLong();
+
+	/**
+	 * Starts the server on a free port.
+	 * @param config The behavior of the server.
+	 * @param threads The quantity of threads that answer the requests.
+	 * @throws IOException If the server can't be started.
+	 */
+	public FakeGcmServer(FakeProviderConfig config, int threads) throws IOException {
+		this.config = config;
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		this.executor = Executors.newFixedThreadPool(threads);
+		server.createContext(PATH, new SendHandler());
+		server.createContext(V1_PATH, new V1SendHandler());
+		server.createContext(TOKEN_PATH, new TokenHandler());
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Gets the URL of the send endpoint.
+	 * @return The endpoint.
+	 */
+	public String getEndpoint() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+	}
+
+	/**
+	 * Gets the base URL of the FCM HTTP v1 API.
+	 * @return The base URL.
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Gets the URL of the token endpoint.
+	 * @return The token URI.
+	 */
+	public String getTokenUri() {
+		return getBaseUrl() + TOKEN_PATH;
+	}
+
+	/**
+	 * Gets the quantity of access tokens given.
+	 * @return The quantity of access tokens.
+	 */
+	public long getAccessTokens() {
+		return accessTokens.get();
+	}
+
+	/**
+	 * Gets the quantity of requests answered.
+	 * @return The quantity of requests.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Gets the quantity of tokens answered.
+	 * @return The quantity of tokens.
+	 */
+	public long getTokens() {
+		return tokens.get();
+	}
+
+	/*
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Builds the result of a token.
+	 * @param token The push token.
+	 * @return The error code, or <i>null</i> if it was accepted.
+	 */
+	private String resultOf(String token) {
+		tokens.incrementAndGet();
+		if (config.isInactive(token)) {
+			return "NotRegistered";
+		}
+		return config.nextError() ? "Unavailable" : null;
+	}
+
+	/**
+	 * Answers a multicast request.
+	 * @param body The JSON request body.
+	 * @return The JSON response body.
+	 * @throws ParseException If the body is not valid JSON.
+	 */
+	@SuppressWarnings("unchecked")
+	private String answerMulticast(String body) throws ParseException {
+		JSONArray registrationIds = (JSONArray) ((JSONObject) new JSONParser().parse(body)).get("registration_ids");
+		JSONArray results = new JSONArray();
+		int success = 0;
+		for (Object registrationId : registrationIds) {
+			JSONObject result = new JSONObject();
+			String error = resultOf((String) registrationId);
+			if (error == null) {
+				result.put("message_id", "0:" + tokens.get());
+				success++;
+			} else {
+				result.put("error", error);
+			}
+			results.add(result);
+		}
+		JSONObject response = new JSONObject();
+		response.put("multicast_id", requests.get());
+		response.put("success", success);
+		response.put("failure", registrationIds.size() - success);
+		response.put("canonical_ids", 0);
+		response.put("results", results);
+		return response.toJSONString();
+	}
+
+	/**
+	 * Answers a single request.
+	 * @param body The form encoded request body.
+	 * @return The plain text response body.
+	 * @throws IOException If the body can't be decoded.
+	 */
+	private String answerSingle(String body) throws IOException {
+		String token = null;
+		for (String parameter : body.split("&")) {
+			if (parameter.startsWith("registration_id=")) {
+				token = URLDecoder.decode(parameter.substring("registration_id=".length()), "UTF-8");
+			}
+		}
+		String error = token == null ? "MissingRegistration" : resultOf(token);
+		return error == null ? "id=0:" + tokens.get() : "Error=" + error;
+	}
+
+	/**
+	 * Answers a FCM HTTP v1 request.
+	 * @param body The JSON request body.
+	 * @return The response.
+	 * @throws ParseException If the body is not valid JSON.
+	 */
+	private V1Response answerV1(String body) throws ParseException {
+		Object message = ((JSONObject) new JSONParser().parse(body)).get("message");
+		Object token = message instanceof JSONObject ? ((JSONObject) message).get("token") : null;
+		if (!(token instanceof String)) {
+			return v1Error(HttpURLConnection.HTTP_BAD_REQUEST, "INVALID_ARGUMENT", "INVALID_ARGUMENT", 
+					"The registration token is missing.");
+		}
+		String error = resultOf((String) token);
+		if (error == null) {
+			return new V1Response(HttpURLConnection.HTTP_OK, "{\"name\":\"projects/fake/messages/0:" + tokens.get() + "\"}");
+		}
+		return "NotRegistered".equals(error) ? v1Error(HttpURLConnection.HTTP_NOT_FOUND, "NOT_FOUND", "UNREGISTERED", 
+				"Requested entity was not found.") : v1Error(HttpURLConnection.HTTP_UNAVAILABLE, "UNAVAILABLE", 
+				"UNAVAILABLE", "The service is currently unavailable.");
+	}
+
+	/**
+	 * Builds a FCM HTTP v1 error.
+	 * @param status The status code.
+	 * @param canonicalStatus The canonical error status.
+	 * @param errorCode The FCM error code.
+	 * @param message The error message.
+	 * @return The response.
+	 */
+	private static V1Response v1Error(int status, String canonicalStatus, String errorCode, String message) {
+		return new V1Response(status, "{\"error\":{\"code\":" + status + ",\"message\":\"" + message + "\",\"status\":\""
+				+ canonicalStatus + "\",\"details\":[{\"@type\":\"type.googleapis.com/google.firebase.fcm.v1.FcmError\","
+				+ "\"errorCode\":\"" + errorCode + "\"}]}}");
+	}
+
+	/**
+	 * Sends a response.
+	 * @param exchange The exchange.
+	 * @param status The status code.
+	 * @param contentType The content type.
+	 * @param response The response body.
+	 * @throws IOException If it can't be sent.
+	 */
+	private static void respond(HttpExchange exchange, int status, String contentType, String response) throws IOException {
+		byte[] bytes = response.getBytes(UTF8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream output = exchange.getResponseBody();
+		output.write(bytes);
+		output.close();
+	}
+
+	/**
+	 * Reads a request body.
+	 * @param input The request body.
+	 * @return The request body, as text.
+	 * @throws IOException If it can't be read.
+	 */
+	private static String read(InputStream input) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			output.write(buffer, 0, read);
+		}
+		return new String(output.toByteArray(), UTF8);
+	}
+
+	/**
+	 * Handler of the send endpoint.
+	 */
+	private class SendHandler implements HttpHandler {
+
+		/*
+		 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+		 */
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				requests.incrementAndGet();
+				String body = read(exchange.getRequestBody());
+				config.simulateLatency();
+				if (config.nextThrottle()) {
+					if (config.getRetryAfterSeconds() > 0) {
+						exchange.getResponseHeaders().set("Retry-After", String.valueOf(config.getRetryAfterSeconds()));
+					}
+					exchange.sendResponseHeaders(429, -1);
+					return;
+				}
+				String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+				boolean json = contentType != null && contentType.startsWith("application/json");
+				String response;
+				try {
+					response = json ? answerMulticast(body) : answerSingle(body);
+				} catch (ParseException e) {
+					exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, -1);
+					return;
+				}
+				respond(exchange, HttpURLConnection.HTTP_OK, json ? "application/json" : "text/plain", response);
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Handler of the FCM HTTP v1 API. Requests without an access token given by the token endpoint are rejected.
+	 */
+	private class V1SendHandler implements HttpHandler {
+
+		/*
+		 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+		 */
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				requests.incrementAndGet();
+				String body = read(exchange.getRequestBody());
+				String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+				if (authorization == null || !authorization.startsWith("Bearer " + ACCESS_TOKEN_PREFIX)) {
+					v1Error(HttpURLConnection.HTTP_UNAUTHORIZED, "UNAUTHENTICATED", "THIRD_PARTY_AUTH_ERROR", 
+							"Request had invalid authentication credentials.").send(exchange);
+					return;
+				}
+				config.simulateLatency();
+				if (config.nextThrottle()) {
+					if (config.getRetryAfterSeconds() > 0) {
+						exchange.getResponseHeaders().set("Retry-After", String.valueOf(config.getRetryAfterSeconds()));
+					}
+					v1Error(429, "RESOURCE_EXHAUSTED", "QUOTA_EXCEEDED", "Quota exceeded.").send(exchange);
+					return;
+				}
+				V1Response response;
+				try {
+					response = answerV1(body);
+				} catch (ParseException e) {
+					exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, -1);
+					return;
+				}
+				response.send(exchange);
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * A FCM HTTP v1 response.
+	 */
+	private static class V1Response {
+
+		/**
+		 * The status code.
+		 */
+		private final int status;
+
+		/**
+		 * The JSON body.
+		 */
+		private final String body;
+
+		/**
+		 * 2 param constructor.
+		 * @param status The status code.
+		 * @param body The JSON body.
+		 */
+		private V1Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+
+		/**
+		 * Sends the response.
+		 * @param exchange The exchange.
+		 * @throws IOException If it can't be sent.
+		 */
+		private void send(HttpExchange exchange) throws IOException {
+			respond(exchange, status, "application/json", body);
+		}
+	}
+
+	/**
+	 * Handler of the token endpoint. Every JWT bearer assertion gets a new access token.
+	 */
+	private class TokenHandler implements HttpHandler {
+
+		/*
+		 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+		 */
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				String body = read(exchange.getRequestBody());
+				if (!body.contains("assertion=") || !body.contains("grant_type=")) {
+					respond(exchange, HttpURLConnection.HTTP_BAD_REQUEST, "application/json", 
+							"{\"error\":\"invalid_request\"}");
+					return;
+				}
+				respond(exchange, HttpURLConnection.HTTP_OK, "application/json", "{\"access_token\":\"" 
+						+ ACCESS_TOKEN_PREFIX + accessTokens.incrementAndGet() + "\",\"expires_in\":3599,"
+						+ "\"token_type\":\"Bearer\"}");
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+}
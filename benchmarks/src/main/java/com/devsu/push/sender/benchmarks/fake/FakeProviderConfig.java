@@ -0,0 +1,163 @@
+package com.devsu.push.sender.benchmarks.fake;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The behavior of a stand-in provider server. Every setting can be changed while the server runs.
+ */
+public class FakeProviderConfig {
+
+	/**
+	 * The simulated latency of every request, in microseconds.
+	 */
+	private volatile long latencyMicros;
+
+	/**
+	 * The fraction of tokens that fail with a transient error.
+	 */
+	private volatile double errorRate;
+
+	/**
+	 * The fraction of requests that are throttled.
+	 */
+	private volatile double throttleRate;
+
+	/**
+	 * The delay sent on throttled GCM requests, in seconds.
+	 */
+	private volatile int retryAfterSeconds;
+
+	/**
+	 * The tokens of the inactive devices, uppercase.
+	 */
+	private final Set<String> inactiveTokens = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Sets the simulated latency of every request: an HTTP request on GCM, a push message on APNS.
+	 * @param latencyMicros The latency in microseconds, or 0 to answer right away.
+	 */
+	public void setLatencyMicros(long latencyMicros) {
+		if (latencyMicros < 0) {
+			throw new IllegalArgumentException("Latency can't be negative.");
+		}
+		this.latencyMicros = latencyMicros;
+	}
+
+	/**
+	 * Sets the fraction of tokens that fail with a transient error: Unavailable on GCM, a processing error on APNS.
+	 * @param errorRate The fraction, between 0 and 1.
+	 */
+	public void setErrorRate(double errorRate) {
+		this.errorRate = checkRate(errorRate);
+	}
+
+	/**
+	 * Sets the fraction of requests that are throttled: a 429 with Retry-After on GCM, a dropped connection on APNS.
+	 * @param throttleRate The fraction, between 0 and 1.
+	 */
+	public void setThrottleRate(double throttleRate) {
+		this.throttleRate = checkRate(throttleRate);
+	}
+
+	/**
+	 * Sets the delay sent on throttled GCM requests.
+	 * @param retryAfterSeconds The delay in seconds, or 0 to send no Retry-After header.
+	 */
+	public void setRetryAfterSeconds(int retryAfterSeconds) {
+		if (retryAfterSeconds < 0) {
+			throw new IllegalArgumentException("Retry-After can't be negative.");
+		}
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * Adds tokens of inactive devices. GCM reports them as NotRegistered, APNS rejects them as invalid tokens and
+	 * lists them on the feedback service.
+	 * @param tokens The push tokens.
+	 */
+	public void addInactiveTokens(Collection<String> tokens) {
+		for (String token : tokens) {
+			inactiveTokens.add(normalize(token));
+		}
+	}
+
+	/**
+	 * Checks if a token belongs to an inactive device.
+	 * @param token The push token.
+	 * @return <i>true</i> if the device is inactive.
+	 */
+	public boolean isInactive(String token) {
+		return !inactiveTokens.isEmpty() && inactiveTokens.contains(normalize(token));
+	}
+
+	/**
+	 * Gets the tokens of the inactive devices.
+	 * @return The tokens, uppercase.
+	 */
+	public Set<String> getInactiveTokens() {
+		return Collections.unmodifiableSet(inactiveTokens);
+	}
+
+	/**
+	 * Decides if a token fails with a transient error.
+	 * @return <i>true</i> if it fails.
+	 */
+	boolean nextError() {
+		double rate = errorRate;
+		return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+	}
+
+	/**
+	 * Decides if a request is throttled.
+	 * @return <i>true</i> if it is throttled.
+	 */
+	boolean nextThrottle() {
+		double rate = throttleRate;
+		return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+	}
+
+	/**
+	 * Waits for the simulated latency.
+	 */
+	void simulateLatency() {
+		long latency = latencyMicros;
+		if (latency > 0) {
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latency));
+		}
+	}
+
+	/**
+	 * Gets the delay sent on throttled GCM requests.
+	 * @return The delay in seconds.
+	 */
+	int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	/**
+	 * Checks that a fraction is between 0 and 1.
+	 * @param rate The fraction.
+	 * @return The fraction.
+	 */
+	private static double checkRate(double rate) {
+		if (rate < 0 || rate > 1) {
+			throw new IllegalArgumentException("Rate must be between 0 and 1.");
+		}
+		return rate;
+	}
+
+	/**
+	 * Normalizes a token like the APNS feedback service: uppercase, without spaces.
+	 * @param token The push token.
+	 * @return The normalized token.
+	 */
+	private static String normalize(String token) {
+		return token.replace(" ", "").toUpperCase();
+	}
+}
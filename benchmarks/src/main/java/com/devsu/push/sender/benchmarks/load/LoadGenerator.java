@@ -0,0 +1,339 @@
+package com.devsu.push.sender.benchmarks.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.devsu.push.sender.benchmarks.Tokens;
+import com.devsu.push.sender.benchmarks.fake.FakeApnsHttp2Server;
+import com.devsu.push.sender.benchmarks.fake.FakeApnsServer;
+import com.devsu.push.sender.benchmarks.fake.FakeGcmServer;
+import com.devsu.push.sender.benchmarks.fake.FakeProviderConfig;
+import com.devsu.push.sender.metrics.HistogramSnapshot;
+import com.devsu.push.sender.metrics.LatencyHistogram;
+import com.devsu.push.sender.metrics.MetricsRegistry;
+import com.devsu.push.sender.metrics.MetricsSnapshot;
+import com.devsu.push.sender.metrics.PushMetrics;
+import com.devsu.push.sender.result.BulkSendReport;
+import com.devsu.push.sender.result.TokenStatus;
+import com.devsu.push.sender.service.sync.SyncAndroidPushService;
+import com.devsu.push.sender.service.sync.SyncApplePushService;
+import com.devsu.push.sender.service.sync.SyncPushService;
+import com.devsu.push.sender.transport.ApnsSigningKey;
+import com.devsu.push.sender.transport.FcmCredentials;
+import com.devsu.push.sender.transport.FcmHttpTransport;
+import com.devsu.push.sender.transport.Http2ApnsTransport;
+
+/**
+ * Sends push messages from several threads to a local stand-in GCM or APNS server for a fixed time, and prints the
+ * throughput, the tail latency of every request and the outcome of every token. Run it with <i>--help</i> to see
+ * its options.
+ */
+public final class LoadGenerator {
+
+	/**
+	 * The usage message.
+	 */
+	private static final String USAGE = "Usage: LoadGenerator [options]\n"
+			+ "  --provider gcm|fcm|apns|apns-http2 The provider to emulate (default gcm)\n"
+			+ "  --concurrency N         The quantity of sending threads (default 8)\n"
+			+ "  --bulk-size N           The tokens per request, 1 for single push messages (default 100)\n"
+			+ "  --duration S            The seconds to measure (default 10)\n"
+			+ "  --warmup S              The seconds to send before measuring (default 2)\n"
+			+ "  --tokens N              The size of the token pool (default 10000)\n"
+			+ "  --inactive N            The tokens of the pool reported as inactive (default 0)\n"
+			+ "  --latency-micros N      The simulated latency of the server (default 0)\n"
+			+ "  --error-rate R          The share of tokens answered with a transient error (default 0)\n"
+			+ "  --throttle-rate R       The share of requests throttled (default 0)\n"
+			+ "  --retry-after S         The Retry-After seconds of throttled GCM requests (default 0)\n"
+			+ "  --retries N             The max retries of GCM requests (default 0)\n"
+			+ "  --connections N         The persistent APNS connections (default 4)\n"
+			+ "  --streams N             The concurrent streams per APNS HTTP/2 connection (default 100)\n"
+			+ "  --max-requests N        The max FCM requests in flight (default 256)";
+
+	/**
+	 * Private constructor, this class only has a main method.
+	 */
+	private LoadGenerator() {
+	}
+
+	/**
+	 * Runs the load test.
+	 * @param args The options, see {@link #USAGE}.
+	 * @throws Exception If the servers can't be started.
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+		if (options == null) {
+			System.out.println(USAGE);
+			return;
+		}
+		String provider = option(options, "provider", "gcm");
+		int concurrency = Integer.parseInt(option(options, "concurrency", "8"));
+		int bulkSize = Integer.parseInt(option(options, "bulk-size", "100"));
+		long durationSeconds = Long.parseLong(option(options, "duration", "10"));
+		long warmupSeconds = Long.parseLong(option(options, "warmup", "2"));
+		String[] tokens = Tokens.generate(Integer.parseInt(option(options, "tokens", "10000")));
+		int inactive = Integer.parseInt(option(options, "inactive", "0"));
+		if (bulkSize < 1 || bulkSize > tokens.length || inactive > tokens.length) {
+			throw new IllegalArgumentException("Bulk size and inactive tokens must fit in the token pool.");
+		}
+
+		FakeProviderConfig config = new FakeProviderConfig();
+		config.setLatencyMicros(Long.parseLong(option(options, "latency-micros", "0")));
+		config.setErrorRate(Double.parseDouble(option(options, "error-rate", "0")));
+		config.setThrottleRate(Double.parseDouble(option(options, "throttle-rate", "0")));
+		config.setRetryAfterSeconds(Integer.parseInt(option(options, "retry-after", "0")));
+		config.addInactiveTokens(Arrays.asList(tokens).subList(0, inactive));
+
+		if ("gcm".equals(provider)) {
+			FakeGcmServer server = new FakeGcmServer(config, concurrency);
+			try {
+				SyncAndroidPushService service = new SyncAndroidPushService("fake-api-key");
+				service.setGcmEndpoint(server.getEndpoint());
+				service.setMaxRetries(Integer.parseInt(option(options, "retries", "0")));
+				run(service, tokens, concurrency, bulkSize, warmupSeconds, durationSeconds);
+				System.out.println("Server: " + server.getRequests() + " requests, " + server.getTokens() + " tokens");
+			} finally {
+				server.close();
+			}
+		} else if ("fcm".equals(provider)) {
+			int maxRequests = Integer.parseInt(option(options, "max-requests", "256"));
+			FakeGcmServer server = new FakeGcmServer(config, maxRequests);
+			try {
+				KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+				keyPairGenerator.initialize(2048);
+				FcmCredentials credentials = new FcmCredentials("fake-project", "loadtest@fake-project.iam.gserviceaccount.com",
+						keyPairGenerator.generateKeyPair().getPrivate(), server.getTokenUri());
+				SyncAndroidPushService service = new SyncAndroidPushService(new FcmHttpTransport(credentials, 
+						server.getBaseUrl(), maxRequests));
+				service.setMaxRetries(Integer.parseInt(option(options, "retries", "0")));
+				run(service, tokens, concurrency, bulkSize, warmupSeconds, durationSeconds);
+				System.out.println("Server: " + server.getRequests() + " requests, " + server.getTokens() + " tokens, " 
+						+ server.getAccessTokens() + " access tokens");
+			} finally {
+				server.close();
+			}
+		} else if ("apns".equals(provider)) {
+			FakeApnsServer server = new FakeApnsServer(config);
+			File certificate = extractCertificate();
+			FakeApnsServer.trustCertificate(certificate);
+			SyncApplePushService service = null;
+			try {
+				int connections = Integer.parseInt(option(options, "connections", "4"));
+				service = new SyncApplePushService(certificate.getPath(), FakeApnsServer.CERTIFICATE_PASSWORD, false, connections);
+				service.setupCustomServer(certificate.getPath(), FakeApnsServer.CERTIFICATE_PASSWORD, 
+						FakeApnsServer.HOST, server.getGatewayPort(), FakeApnsServer.HOST, server.getFeedbackPort());
+				run(service, tokens, concurrency, bulkSize, warmupSeconds, durationSeconds);
+				System.out.println("Server: " + server.getConnections() + " connections, " + server.getNotifications() 
+						+ " notifications, " + server.getRejected() + " rejected");
+				System.out.println("Feedback: " + service.getInactiveDevices().size() + " inactive devices");
+			} finally {
+				if (service != null) {
+					service.close();
+				}
+				server.close();
+				certificate.delete();
+			}
+		} else if ("apns-http2".equals(provider)) {
+			FakeApnsHttp2Server server = new FakeApnsHttp2Server(config);
+			SyncApplePushService service = null;
+			try {
+				KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+				keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+				ApnsSigningKey signingKey = new ApnsSigningKey("FAKEKEY123", "FAKETEAM12", 
+						keyPairGenerator.generateKeyPair().getPrivate());
+				service = new SyncApplePushService(new Http2ApnsTransport(signingKey, "com.devsu.loadtest", 
+						server.getBaseUrl(), Integer.parseInt(option(options, "connections", "4")), 
+						Integer.parseInt(option(options, "streams", "100"))));
+				run(service, tokens, concurrency, bulkSize, warmupSeconds, durationSeconds);
+				System.out.println("Server: " + server.getNotifications() + " notifications, " + server.getRejected() 
+						+ " rejected, " + server.getAuthTokenCount() + " authentication tokens");
+				System.out.println("Inactive devices: " + service.getInactiveDevices().size());
+			} finally {
+				if (service != null) {
+					service.close();
+				}
+				server.close();
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown provider: " + provider);
+		}
+	}
+
+	/**
+	 * Sends push messages from several threads, and prints the results.
+	 * @param service The push service.
+	 * @param tokens The token pool, each request takes the next tokens of it.
+	 * @param concurrency The quantity of sending threads.
+	 * @param bulkSize The tokens per request.
+	 * @param warmupSeconds The seconds to send before measuring.
+	 * @param durationSeconds The seconds to measure.
+	 * @throws InterruptedException If interrupted while waiting for the threads.
+	 */
+	private static void run(final SyncPushService service, final String[] tokens, int concurrency, final int bulkSize, 
+			long warmupSeconds, long durationSeconds) throws InterruptedException {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLongArray statuses = new AtomicLongArray(TokenStatus.values().length);
+		final AtomicLong requests = new AtomicLong();
+		final AtomicLong exceptions = new AtomicLong();
+		final AtomicInteger offset = new AtomicInteger();
+		final long startNanos = System.nanoTime();
+		final long measureNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		final long endNanos = measureNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+		final CountDownLatch done = new CountDownLatch(concurrency);
+		boolean metricsReset = false;
+		for (int i = 0; i < concurrency; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						String[] batch = new String[bulkSize];
+						long now;
+						while ((now = System.nanoTime()) < endNanos) {
+							int from = (offset.getAndAdd(bulkSize) & Integer.MAX_VALUE) % tokens.length;
+							for (int j = 0; j < bulkSize; j++) {
+								batch[j] = tokens[(from + j) % tokens.length];
+							}
+							BulkSendReport report = null;
+							try {
+								report = service.sendPushInBulkWithReport("Load test", "Hello from the load generator", 
+										null, batch);
+							} catch (Exception e) {
+								if (now >= measureNanos) {
+									exceptions.incrementAndGet();
+								}
+							}
+							if (now < measureNanos) {
+								continue;
+							}
+							latency.recordSince(now);
+							requests.incrementAndGet();
+							if (report != null) {
+								for (TokenStatus status : TokenStatus.values()) {
+									statuses.addAndGet(status.ordinal(), report.count(status));
+								}
+							}
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			}, "load-generator-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		while (!done.await(100, TimeUnit.MILLISECONDS)) {
+			if (!metricsReset && System.nanoTime() >= measureNanos) {
+				for (PushMetrics metrics : MetricsRegistry.getShared().asMap().values()) {
+					metrics.reset();
+				}
+				metricsReset = true;
+			}
+		}
+		printResults(latency.snapshot(), statuses, requests.get(), exceptions.get(), bulkSize, durationSeconds);
+	}
+
+	/**
+	 * Prints the results of a run.
+	 * @param latency The latency of the requests.
+	 * @param statuses The quantity of tokens of every status, by ordinal.
+	 * @param requests The quantity of requests.
+	 * @param exceptions The quantity of requests that threw an exception.
+	 * @param bulkSize The tokens per request.
+	 * @param durationSeconds The seconds measured.
+	 */
+	private static void printResults(HistogramSnapshot latency, AtomicLongArray statuses, long requests, long exceptions, 
+			int bulkSize, long durationSeconds) {
+		Map<TokenStatus, Long> counts = new EnumMap<TokenStatus, Long>(TokenStatus.class);
+		for (TokenStatus status : TokenStatus.values()) {
+			if (statuses.get(status.ordinal()) > 0) {
+				counts.put(status, statuses.get(status.ordinal()));
+			}
+		}
+		double seconds = Math.max(durationSeconds, 1);
+		System.out.println(String.format("Throughput: %.1f requests/s, %.1f tokens/s", requests / seconds, 
+				requests * bulkSize / seconds));
+		System.out.println(String.format("Latency (ms): p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f", 
+				toMillis(latency.getP50()), toMillis(latency.getP90()), 
+				toMillis(latency.getP99()), toMillis(latency.getP999()), 
+				toMillis(latency.getMax())));
+		System.out.println("Tokens: " + counts + ", exceptions: " + exceptions);
+		for (MetricsSnapshot snapshot : MetricsRegistry.getShared().snapshot().values()) {
+			System.out.println("Metrics: " + snapshot);
+		}
+	}
+
+	/**
+	 * Converts nanoseconds to milliseconds.
+	 * @param nanos The nanoseconds.
+	 * @return The milliseconds.
+	 */
+	private static double toMillis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * Copies the certificate of the fake APNS server to a temporary file, since java-apns reads it from a path.
+	 * @return The certificate file.
+	 * @throws IOException If it can't be copied.
+	 */
+	private static File extractCertificate() throws IOException {
+		File file = File.createTempFile("fake-apns", ".p12");
+		file.deleteOnExit();
+		InputStream input = FakeApnsServer.class.getResourceAsStream(FakeApnsServer.CERTIFICATE_RESOURCE);
+		OutputStream output = new FileOutputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				output.write(buffer, 0, read);
+			}
+		} finally {
+			output.close();
+			input.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Parses the options, in <i>--name value</i> pairs.
+	 * @param args The arguments.
+	 * @return The options by name, or <i>null</i> if the usage must be printed.
+	 */
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || "--help".equals(args[i]) || i + 1 == args.length) {
+				return null;
+			}
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		return options;
+	}
+
+	/**
+	 * Gets an option.
+	 * @param options The options by name.
+	 * @param name The name of the option.
+	 * @param defaultValue The value when the option is missing.
+	 * @return The value of the option.
+	 */
+	private static String option(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return value == null ? defaultValue : value;
+	}
+}
@@ -0,0 +1,15 @@
+package com.devsu.push.sender.callback;
+
+/**
+ * Callback that follows the progress of a bulk push message read from a token file.
+ */
+public interface BulkProgressListener {
+
+	/**
+	 * Callback that is executed every time a batch of tokens is sent.
+	 * @param sentTokens The quantity of tokens sent so far, counting only the ones before the resume offset.
+	 * @param resumeOffset The file offset from which the bulk push message can be resumed. Every token 
+	 * before this offset has been sent.
+	 */
+	void onProgress(long sentTokens, long resumeOffset);
+}
@@ -23,7 +23,7 @@ public interface PushCallback {
 	 * @param title The push message title.
 	 * @param message The push message content.
 	 * @param additionalFields The additional fields sent on the push message.
-	 * @param tokens The push tokens.
+	 * @param tokens The push tokens, or <i>null</i> if they were read from a token source.
 	 */
 	void onBulkSuccess(boolean result, String title, String message, Map<String, String> additionalFields, String[] tokens);
 
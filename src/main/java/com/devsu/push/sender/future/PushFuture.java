@@ -0,0 +1,146 @@
+package com.devsu.push.sender.future;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handle for a single push message request. It can be waited on, with or without a timeout,
+ * and listeners can be attached to it to chain work once it completes.
+ * @param <T> The result type.
+ */
+public class PushFuture<T> extends FutureTask<T> {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger log = LoggerFactory.getLogger(PushFuture.class);
+
+	/**
+	 * Callable used by futures that are completed explicitly instead of being run.
+	 */
+	private static final Callable<Object> NO_TASK = new Callable<Object>() {
+		@Override
+		public Object call() {
+			throw new IllegalStateException("This future is completed explicitly.");
+		}
+	};
+
+	/**
+	 * The listeners waiting for this future, or <i>null</i> once it's done.
+	 */
+	private List<PushFutureListener<? super T>> listeners = new ArrayList<PushFutureListener<? super T>>(2);
+
+	/**
+	 * Single param constructor.
+	 * @param task The push message request.
+	 */
+	public PushFuture(Callable<T> task) {
+		super(task);
+	}
+
+	/**
+	 * Creates a future that is completed with {@link #complete(Object)} or {@link #fail(Throwable)}.
+	 */
+	@SuppressWarnings("unchecked")
+	PushFuture() {
+		super((Callable<T>) NO_TASK);
+	}
+
+	/**
+	 * Adds a listener. If this future is already done, the listener is executed right away on the caller's thread,
+	 * otherwise it is executed on the thread that completes this future.
+	 * @param listener The listener.
+	 */
+	public void addListener(PushFutureListener<? super T> listener) {
+		synchronized (this) {
+			if (listeners != null) {
+				listeners.add(listener);
+				return;
+			}
+		}
+		notifyListener(listener);
+	}
+
+	/**
+	 * Completes this future with a result.
+	 * @param result The result.
+	 */
+	void complete(T result) {
+		set(result);
+	}
+
+	/**
+	 * Completes this future with an exception.
+	 * @param t The exception.
+	 */
+	void fail(Throwable t) {
+		setException(t);
+	}
+
+	/*
+	 * @see java.util.concurrent.FutureTask#done()
+	 */
+	@Override
+	protected void done() {
+		List<PushFutureListener<? super T>> pending;
+		synchronized (this) {
+			pending = listeners;
+			listeners = null;
+		}
+		for (PushFutureListener<? super T> listener : pending) {
+			try {
+				notifyListener(listener);
+			} catch (RuntimeException e) {
+				// A listener that throws must not keep the other listeners from being notified.
+				log.error("Error occurred while notifying a push future listener: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Notifies a listener about the outcome of this future, which must be done.
+	 * @param listener The listener.
+	 */
+	private void notifyListener(PushFutureListener<? super T> listener) {
+		T result;
+		try {
+			result = getDone();
+		} catch (ExecutionException e) {
+			listener.onFailure(e.getCause());
+			return;
+		} catch (CancellationException e) {
+			listener.onFailure(e);
+			return;
+		}
+		listener.onSuccess(result);
+	}
+
+	/**
+	 * Gets the result of this future, which must be done, without blocking.
+	 * @return The result.
+	 * @throws ExecutionException If the push message request threw an exception.
+	 */
+	private T getDone() throws ExecutionException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
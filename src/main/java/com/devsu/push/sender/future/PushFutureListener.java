@@ -0,0 +1,20 @@
+package com.devsu.push.sender.future;
+
+/**
+ * Listener that is notified when a push future completes.
+ * @param <T> The result type.
+ */
+public interface PushFutureListener<T> {
+
+	/**
+	 * Executed when the push message request completes.
+	 * @param result The result of the push message request.
+	 */
+	void onSuccess(T result);
+
+	/**
+	 * Executed when the push message request throws an exception or is cancelled.
+	 * @param t The exception that occurred.
+	 */
+	void onFailure(Throwable t);
+}
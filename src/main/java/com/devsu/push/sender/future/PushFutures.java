@@ -0,0 +1,74 @@
+package com.devsu.push.sender.future;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Push future utils.
+ */
+public class PushFutures {
+
+	/**
+	 * Creates a future that completes when every given future completes, with their results in the same order.
+	 * It fails as soon as any of the given futures fails. No thread is blocked while waiting.
+	 * @param <T> The result type.
+	 * @param futures The futures to join.
+	 * @return The future holding every result.
+	 */
+	public static <T> PushFuture<List<T>> allAsList(List<? extends PushFuture<? extends T>> futures) {
+		final PushFuture<List<T>> joined = new PushFuture<List<T>>();
+		final int size = futures.size();
+		if (size == 0) {
+			joined.complete(Collections.<T>emptyList());
+			return joined;
+		}
+		@SuppressWarnings("unchecked")
+		final T[] results = (T[]) new Object[size];
+		final AtomicInteger remaining = new AtomicInteger(size);
+		for (int i = 0; i < size; i++) {
+			final int index = i;
+			futures.get(i).addListener(new PushFutureListener<T>() {
+				@Override
+				public void onSuccess(T result) {
+					results[index] = result;
+					if (remaining.decrementAndGet() == 0) {
+						joined.complete(Collections.unmodifiableList(new ArrayList<T>(Arrays.asList(results))));
+					}
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					joined.fail(t);
+				}
+			});
+		}
+		return joined;
+	}
+
+	/**
+	 * Creates a future that is already completed.
+	 * @param <T> The result type.
+	 * @param result The result.
+	 * @return The completed future.
+	 */
+	public static <T> PushFuture<T> completed(T result) {
+		PushFuture<T> future = new PushFuture<T>();
+		future.complete(result);
+		return future;
+	}
+
+	/**
+	 * Creates a future that has already failed.
+	 * @param <T> The result type.
+	 * @param t The exception.
+	 * @return The failed future.
+	 */
+	public static <T> PushFuture<T> failed(Throwable t) {
+		PushFuture<T> future = new PushFuture<T>();
+		future.fail(t);
+		return future;
+	}
+}
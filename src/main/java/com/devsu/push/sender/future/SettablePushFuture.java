@@ -0,0 +1,31 @@
+package com.devsu.push.sender.future;
+
+/**
+ * Push future completed explicitly by whoever sends the push message, instead of being run on a worker pool.
+ * @param <T> The result type.
+ */
+public class SettablePushFuture<T> extends PushFuture<T> {
+
+	/**
+	 * No param constructor.
+	 */
+	public SettablePushFuture() {
+		super();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.future.PushFuture#complete(java.lang.Object)
+	 */
+	@Override
+	public void complete(T result) {
+		super.complete(result);
+	}
+
+	/*
+	 * @see com.devsu.push.sender.future.PushFuture#fail(java.lang.Throwable)
+	 */
+	@Override
+	public void fail(Throwable t) {
+		super.fail(t);
+	}
+}
@@ -0,0 +1,122 @@
+package com.devsu.push.sender.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latencies recorded by a {@link LatencyHistogram} at some point in time.
+ */
+public class HistogramSnapshot {
+
+	/**
+	 * The percentiles kept on every snapshot: p50, p90, p99 and p99.9.
+	 */
+	static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+	/**
+	 * The quantity of latencies.
+	 */
+	private final long count;
+
+	/**
+	 * The mean latency in nanoseconds.
+	 */
+	private final double mean;
+
+	/**
+	 * The max latency in nanoseconds.
+	 */
+	private final long max;
+
+	/**
+	 * The latencies of the percentiles, in nanoseconds.
+	 */
+	private final long[] percentileValues;
+
+	/**
+	 * 4 param constructor.
+	 * @param count The quantity of latencies.
+	 * @param mean The mean latency in nanoseconds.
+	 * @param max The max latency in nanoseconds.
+	 * @param percentileValues The latencies of the percentiles, in nanoseconds.
+	 */
+	HistogramSnapshot(long count, double mean, long max, long[] percentileValues) {
+		this.count = count;
+		this.mean = mean;
+		this.max = max;
+		this.percentileValues = percentileValues;
+	}
+
+	/**
+	 * Gets the quantity of latencies.
+	 * @return The quantity of latencies.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the mean latency.
+	 * @return The mean latency in nanoseconds.
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * Gets the max latency.
+	 * @return The max latency in nanoseconds.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Gets the median latency.
+	 * @return The median latency in nanoseconds.
+	 */
+	public long getP50() {
+		return percentileValues[0];
+	}
+
+	/**
+	 * Gets the 90th percentile latency.
+	 * @return The 90th percentile latency in nanoseconds.
+	 */
+	public long getP90() {
+		return percentileValues[1];
+	}
+
+	/**
+	 * Gets the 99th percentile latency.
+	 * @return The 99th percentile latency in nanoseconds.
+	 */
+	public long getP99() {
+		return percentileValues[2];
+	}
+
+	/**
+	 * Gets the 99.9th percentile latency.
+	 * @return The 99.9th percentile latency in nanoseconds.
+	 */
+	public long getP999() {
+		return percentileValues[3];
+	}
+
+	/**
+	 * Converts a latency in nanoseconds to milliseconds.
+	 * @param nanos The latency in nanoseconds.
+	 * @return The latency in milliseconds.
+	 */
+	static double toMillis(double nanos) {
+		return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "HistogramSnapshot [count=" + count + ", meanMillis=" + toMillis(mean) + ", p50Millis=" 
+				+ toMillis(getP50()) + ", p99Millis=" + toMillis(getP99()) + ", maxMillis=" + toMillis(max) + "]";
+	}
+}
@@ -0,0 +1,148 @@
+package com.devsu.push.sender.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, with 8 buckets per power of 2, so every value is kept with an error under
+ * 12.5%. Recording a value is lock free and doesn't allocate.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The quantity of bits of a value used to choose its bucket within its power of 2.
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/**
+	 * The quantity of buckets per power of 2.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The quantity of buckets, enough for any positive long.
+	 */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	/**
+	 * The quantity of values on every bucket.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * The quantity of values.
+	 */
+	private final StripedCounter count = new StripedCounter();
+
+	/**
+	 * The sum of the values.
+	 */
+	private final StripedCounter total = new StripedCounter();
+
+	/**
+	 * The max value.
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 * @param nanos The latency in nanoseconds. Negative values are recorded as 0.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets.incrementAndGet(bucketIndex(value));
+		count.increment();
+		total.add(value);
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Records the latency elapsed since a start time.
+	 * @param startNanos The start time, from {@link System#nanoTime()}.
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Takes a snapshot of the recorded latencies. Values recorded while the snapshot is taken may be left out.
+	 * @return The snapshot.
+	 */
+	public HistogramSnapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		long snapshotCount = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			snapshotCount += counts[i];
+		}
+		long[] percentileValues = new long[HistogramSnapshot.PERCENTILES.length];
+		int percentile = 0;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS && percentile < percentileValues.length && snapshotCount > 0; i++) {
+			seen += counts[i];
+			while (percentile < percentileValues.length 
+					&& seen >= Math.ceil(snapshotCount * HistogramSnapshot.PERCENTILES[percentile])) {
+				percentileValues[percentile++] = bucketUpperBound(i);
+			}
+		}
+		long maxValue = max.get();
+		for (int i = 0; i < percentileValues.length; i++) {
+			percentileValues[i] = Math.min(percentileValues[i], maxValue);
+		}
+		return new HistogramSnapshot(snapshotCount, snapshotCount == 0 ? 0 : total.sum() / (double) snapshotCount, 
+				maxValue, percentileValues);
+	}
+
+	/**
+	 * Clears the recorded latencies. Values recorded at the same time may be lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		total.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Gets the quantity of recorded latencies.
+	 * @return The quantity of latencies.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Gets the bucket of a value.
+	 * @param value The value, not negative.
+	 * @return The bucket index.
+	 */
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Gets the greatest value of a bucket.
+	 * @param index The bucket index.
+	 * @return The greatest value.
+	 */
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKETS;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long upper = ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+		return upper < 0 ? Long.MAX_VALUE : upper;
+	}
+}
@@ -0,0 +1,27 @@
+package com.devsu.push.sender.metrics;
+
+/**
+ * The stages of a push message request whose latency is recorded.
+ */
+public enum MetricStage {
+
+	/**
+	 * The time an async push message request waits for a worker.
+	 */
+	QUEUE_WAIT,
+
+	/**
+	 * The time spent building a payload.
+	 */
+	PAYLOAD_BUILD,
+
+	/**
+	 * The time of a request to the provider: an HTTP request on GCM, a write on APNS.
+	 */
+	PROVIDER_ROUND_TRIP,
+
+	/**
+	 * The time spent on the push callback.
+	 */
+	CALLBACK;
+}
@@ -0,0 +1,166 @@
+package com.devsu.push.sender.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Push metrics by name. Every service records on the metrics of its provider by default, so the registry has
+ * a view of the whole application. The metrics can also be published on JMX.
+ */
+public class MetricsRegistry {
+
+	/**
+	 * The domain of the JMX object names.
+	 */
+	public static final String JMX_DOMAIN = "com.devsu.push.sender";
+
+	/**
+	 * The registry shared by every service.
+	 */
+	private static final MetricsRegistry SHARED = new MetricsRegistry();
+
+	/**
+	 * Logger.
+	 */
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * The metrics, by name.
+	 */
+	private final ConcurrentMap<String, PushMetrics> metrics = new ConcurrentHashMap<String, PushMetrics>();
+
+	/**
+	 * Flag that enables/disables publishing the metrics on JMX.
+	 */
+	private volatile boolean jmxEnabled;
+
+	/**
+	 * Gets the registry shared by every service.
+	 * @return The shared registry.
+	 */
+	public static MetricsRegistry getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Gets the metrics of a name, creating them if there are none.
+	 * @param name The name, usually the provider name.
+	 * @return The metrics.
+	 */
+	public PushMetrics getMetrics(String name) {
+		PushMetrics current = metrics.get(name);
+		if (current != null) {
+			return current;
+		}
+		PushMetrics newMetrics = new PushMetrics(name);
+		current = metrics.putIfAbsent(name, newMetrics);
+		if (current != null) {
+			return current;
+		}
+		if (jmxEnabled) {
+			registerMBean(newMetrics);
+		}
+		return newMetrics;
+	}
+
+	/**
+	 * Takes a snapshot of every metrics.
+	 * @return The snapshots, by name.
+	 */
+	public Map<String, MetricsSnapshot> snapshot() {
+		Map<String, MetricsSnapshot> snapshots = new LinkedHashMap<String, MetricsSnapshot>();
+		for (PushMetrics current : new TreeMap<String, PushMetrics>(metrics).values()) {
+			snapshots.put(current.getName(), current.snapshot());
+		}
+		return Collections.unmodifiableMap(snapshots);
+	}
+
+	/**
+	 * Gets every metrics, by name.
+	 * @return An unmodifiable snapshot of the metrics.
+	 */
+	public Map<String, PushMetrics> asMap() {
+		return Collections.unmodifiableMap(new TreeMap<String, PushMetrics>(metrics));
+	}
+
+	/**
+	 * Publishes every metrics on the platform MBean server, under <i>com.devsu.push.sender:type=PushMetrics,name=...</i>.
+	 * Metrics created later are published too.
+	 * @param enabled <i>true</i> to publish the metrics, <i>false</i> to unpublish them.
+	 */
+	public synchronized void setJmxEnabled(boolean enabled) {
+		if (enabled == jmxEnabled) {
+			return;
+		}
+		jmxEnabled = enabled;
+		for (PushMetrics current : metrics.values()) {
+			if (enabled) {
+				registerMBean(current);
+			} else {
+				unregisterMBean(current);
+			}
+		}
+	}
+
+	/**
+	 * Indicates if the metrics are published on JMX.
+	 * @return <i>true</i> if the metrics are published.
+	 */
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	/**
+	 * Publishes metrics on the platform MBean server. Errors are logged, since metrics must never break sending.
+	 * @param current The metrics.
+	 */
+	private void registerMBean(PushMetrics current) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = toObjectName(current);
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(current, objectName);
+			}
+		} catch (JMException e) {
+			log.warn("Error occurred while publishing push metrics on JMX: " + current.getName(), e);
+		}
+	}
+
+	/**
+	 * Unpublishes metrics from the platform MBean server.
+	 * @param current The metrics.
+	 */
+	private void unregisterMBean(PushMetrics current) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = toObjectName(current);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException e) {
+			log.warn("Error occurred while unpublishing push metrics from JMX: " + current.getName(), e);
+		}
+	}
+
+	/**
+	 * Builds the JMX object name of metrics.
+	 * @param current The metrics.
+	 * @return The object name.
+	 * @throws JMException If the name is not valid.
+	 */
+	private ObjectName toObjectName(PushMetrics current) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=PushMetrics,name=" + ObjectName.quote(current.getName()));
+	}
+}
@@ -0,0 +1,126 @@
+package com.devsu.push.sender.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The metrics of a push service at some point in time.
+ */
+public class MetricsSnapshot {
+
+	/**
+	 * The name of the metrics.
+	 */
+	private final String name;
+
+	/**
+	 * The quantity of tokens sent.
+	 */
+	private final long sent;
+
+	/**
+	 * The quantity of failed attempts.
+	 */
+	private final long failed;
+
+	/**
+	 * The quantity of tokens suppressed.
+	 */
+	private final long suppressed;
+
+	/**
+	 * The quantity of tokens retried.
+	 */
+	private final long retried;
+
+	/**
+	 * The latencies of every stage.
+	 */
+	private final Map<MetricStage, HistogramSnapshot> latencies;
+
+	/**
+	 * 6 param constructor.
+	 * @param name The name of the metrics.
+	 * @param sent The quantity of tokens sent.
+	 * @param failed The quantity of failed attempts.
+	 * @param suppressed The quantity of tokens suppressed.
+	 * @param retried The quantity of tokens retried.
+	 * @param latencies The latencies of every stage.
+	 */
+	MetricsSnapshot(String name, long sent, long failed, long suppressed, long retried, 
+			EnumMap<MetricStage, HistogramSnapshot> latencies) {
+		this.name = name;
+		this.sent = sent;
+		this.failed = failed;
+		this.suppressed = suppressed;
+		this.retried = retried;
+		this.latencies = Collections.unmodifiableMap(latencies);
+	}
+
+	/**
+	 * Gets the name of the metrics.
+	 * @return The name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the quantity of tokens accepted by the provider.
+	 * @return The quantity of tokens sent.
+	 */
+	public long getSent() {
+		return sent;
+	}
+
+	/**
+	 * Gets the quantity of token attempts rejected by the provider. A retried token may fail more than once.
+	 * @return The quantity of failed attempts.
+	 */
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * Gets the quantity of tokens not sent because they were dead or repeated.
+	 * @return The quantity of tokens suppressed.
+	 */
+	public long getSuppressed() {
+		return suppressed;
+	}
+
+	/**
+	 * Gets the quantity of tokens handed to the retry scheduler.
+	 * @return The quantity of tokens retried.
+	 */
+	public long getRetried() {
+		return retried;
+	}
+
+	/**
+	 * Gets the latencies of a stage.
+	 * @param stage The stage.
+	 * @return The latencies of the stage.
+	 */
+	public HistogramSnapshot getLatency(MetricStage stage) {
+		return latencies.get(stage);
+	}
+
+	/**
+	 * Gets the latencies of every stage.
+	 * @return The latencies, by stage.
+	 */
+	public Map<MetricStage, HistogramSnapshot> getLatencies() {
+		return latencies;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MetricsSnapshot [name=" + name + ", sent=" + sent + ", failed=" + failed + ", suppressed=" + suppressed 
+				+ ", retried=" + retried + ", latencies=" + latencies + "]";
+	}
+}
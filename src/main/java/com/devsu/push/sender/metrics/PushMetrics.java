@@ -0,0 +1,227 @@
+package com.devsu.push.sender.metrics;
+
+import java.util.EnumMap;
+
+/**
+ * The counters and latency histograms of one or more push services. Every method is thread safe and cheap enough
+ * to be called on every push message.
+ */
+public class PushMetrics implements PushMetricsMXBean {
+
+	/**
+	 * The name of the metrics.
+	 */
+	private final String name;
+
+	/**
+	 * The quantity of tokens sent.
+	 */
+	private final StripedCounter sent = new StripedCounter();
+
+	/**
+	 * The quantity of failed attempts.
+	 */
+	private final StripedCounter failed = new StripedCounter();
+
+	/**
+	 * The quantity of tokens suppressed.
+	 */
+	private final StripedCounter suppressed = new StripedCounter();
+
+	/**
+	 * The quantity of tokens retried.
+	 */
+	private final StripedCounter retried = new StripedCounter();
+
+	/**
+	 * The latency histogram of every stage, indexed by ordinal.
+	 */
+	private final LatencyHistogram[] latencies = new LatencyHistogram[MetricStage.values().length];
+
+	/**
+	 * Single param constructor.
+	 * @param name The name of the metrics.
+	 */
+	public PushMetrics(String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("Metrics name is null.");
+		}
+		this.name = name;
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Counts tokens accepted by the provider.
+	 * @param tokens The quantity of tokens.
+	 */
+	public void recordSent(int tokens) {
+		sent.add(tokens);
+	}
+
+	/**
+	 * Counts token attempts rejected by the provider.
+	 * @param tokens The quantity of tokens.
+	 */
+	public void recordFailed(int tokens) {
+		failed.add(tokens);
+	}
+
+	/**
+	 * Counts tokens not sent because they were dead or repeated.
+	 * @param tokens The quantity of tokens.
+	 */
+	public void recordSuppressed(int tokens) {
+		suppressed.add(tokens);
+	}
+
+	/**
+	 * Counts tokens handed to the retry scheduler.
+	 * @param tokens The quantity of tokens.
+	 */
+	public void recordRetried(int tokens) {
+		retried.add(tokens);
+	}
+
+	/**
+	 * Records the latency of a stage, elapsed since a start time.
+	 * @param stage The stage.
+	 * @param startNanos The start time, from {@link System#nanoTime()}.
+	 */
+	public void recordLatency(MetricStage stage, long startNanos) {
+		latencies[stage.ordinal()].recordSince(startNanos);
+	}
+
+	/**
+	 * Gets the latency histogram of a stage.
+	 * @param stage The stage.
+	 * @return The latency histogram.
+	 */
+	public LatencyHistogram getLatency(MetricStage stage) {
+		return latencies[stage.ordinal()];
+	}
+
+	/**
+	 * Takes a snapshot of every counter and histogram.
+	 * @return The snapshot.
+	 */
+	public MetricsSnapshot snapshot() {
+		EnumMap<MetricStage, HistogramSnapshot> snapshots = new EnumMap<MetricStage, HistogramSnapshot>(MetricStage.class);
+		for (MetricStage stage : MetricStage.values()) {
+			snapshots.put(stage, latencies[stage.ordinal()].snapshot());
+		}
+		return new MetricsSnapshot(name, sent.sum(), failed.sum(), suppressed.sum(), retried.sum(), snapshots);
+	}
+
+	/**
+	 * Gets the name of the metrics.
+	 * @return The name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getSentCount()
+	 */
+	@Override
+	public long getSentCount() {
+		return sent.sum();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getFailedCount()
+	 */
+	@Override
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getSuppressedCount()
+	 */
+	@Override
+	public long getSuppressedCount() {
+		return suppressed.sum();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getRetriedCount()
+	 */
+	@Override
+	public long getRetriedCount() {
+		return retried.sum();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getQueueWaitP99Millis()
+	 */
+	@Override
+	public double getQueueWaitP99Millis() {
+		return HistogramSnapshot.toMillis(getLatency(MetricStage.QUEUE_WAIT).snapshot().getP99());
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getPayloadBuildP99Millis()
+	 */
+	@Override
+	public double getPayloadBuildP99Millis() {
+		return HistogramSnapshot.toMillis(getLatency(MetricStage.PAYLOAD_BUILD).snapshot().getP99());
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getProviderRoundTripMeanMillis()
+	 */
+	@Override
+	public double getProviderRoundTripMeanMillis() {
+		return HistogramSnapshot.toMillis(getLatency(MetricStage.PROVIDER_ROUND_TRIP).snapshot().getMean());
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getProviderRoundTripP99Millis()
+	 */
+	@Override
+	public double getProviderRoundTripP99Millis() {
+		return HistogramSnapshot.toMillis(getLatency(MetricStage.PROVIDER_ROUND_TRIP).snapshot().getP99());
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getProviderRoundTripMaxMillis()
+	 */
+	@Override
+	public double getProviderRoundTripMaxMillis() {
+		return HistogramSnapshot.toMillis(getLatency(MetricStage.PROVIDER_ROUND_TRIP).snapshot().getMax());
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#getCallbackP99Millis()
+	 */
+	@Override
+	public double getCallbackP99Millis() {
+		return HistogramSnapshot.toMillis(getLatency(MetricStage.CALLBACK).snapshot().getP99());
+	}
+
+	/*
+	 * @see com.devsu.push.sender.metrics.PushMetricsMXBean#reset()
+	 */
+	@Override
+	public void reset() {
+		sent.reset();
+		failed.reset();
+		suppressed.reset();
+		retried.reset();
+		for (LatencyHistogram latency : latencies) {
+			latency.reset();
+		}
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PushMetrics [name=" + name + ", sent=" + getSentCount() + ", failed=" + getFailedCount() 
+				+ ", suppressed=" + getSuppressedCount() + ", retried=" + getRetriedCount() + "]";
+	}
+}
@@ -0,0 +1,72 @@
+package com.devsu.push.sender.metrics;
+
+/**
+ * JMX view of the metrics of a push service. Latencies are in milliseconds.
+ */
+public interface PushMetricsMXBean {
+
+	/**
+	 * Gets the quantity of tokens accepted by the provider.
+	 * @return The quantity of tokens sent.
+	 */
+	long getSentCount();
+
+	/**
+	 * Gets the quantity of token attempts rejected by the provider.
+	 * @return The quantity of failed attempts.
+	 */
+	long getFailedCount();
+
+	/**
+	 * Gets the quantity of tokens not sent because they were dead or repeated.
+	 * @return The quantity of tokens suppressed.
+	 */
+	long getSuppressedCount();
+
+	/**
+	 * Gets the quantity of tokens handed to the retry scheduler.
+	 * @return The quantity of tokens retried.
+	 */
+	long getRetriedCount();
+
+	/**
+	 * Gets the 99th percentile time async push message requests waited for a worker.
+	 * @return The latency in milliseconds.
+	 */
+	double getQueueWaitP99Millis();
+
+	/**
+	 * Gets the 99th percentile time spent building payloads.
+	 * @return The latency in milliseconds.
+	 */
+	double getPayloadBuildP99Millis();
+
+	/**
+	 * Gets the mean time of the requests to the provider.
+	 * @return The latency in milliseconds.
+	 */
+	double getProviderRoundTripMeanMillis();
+
+	/**
+	 * Gets the 99th percentile time of the requests to the provider.
+	 * @return The latency in milliseconds.
+	 */
+	double getProviderRoundTripP99Millis();
+
+	/**
+	 * Gets the max time of the requests to the provider.
+	 * @return The latency in milliseconds.
+	 */
+	double getProviderRoundTripMaxMillis();
+
+	/**
+	 * Gets the 99th percentile time spent on the push callback.
+	 * @return The latency in milliseconds.
+	 */
+	double getCallbackP99Millis();
+
+	/**
+	 * Clears every counter and histogram.
+	 */
+	void reset();
+}
@@ -0,0 +1,88 @@
+package com.devsu.push.sender.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread over several cells, so threads that increment it at the same time rarely contend on the same
+ * cache line. Reading it sums every cell.
+ */
+public class StripedCounter {
+
+	/**
+	 * The quantity of cells, a power of 2.
+	 */
+	private static final int STRIPES = stripesFor(Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The distance between cells, in longs, so every cell is on its own cache line.
+	 */
+	private static final int PADDING = 16;
+
+	/**
+	 * The cells.
+	 */
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	/**
+	 * Adds 1 to the counter.
+	 */
+	public void increment() {
+		add(1);
+	}
+
+	/**
+	 * Adds a value to the counter.
+	 * @param value The value.
+	 */
+	public void add(long value) {
+		cells.getAndAdd(cellIndex(), value);
+	}
+
+	/**
+	 * Gets the value of the counter.
+	 * @return The sum of every cell.
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	/**
+	 * Sets the counter to 0. Increments made at the same time may be lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < STRIPES; i++) {
+			cells.set(i * PADDING, 0);
+		}
+	}
+
+	/**
+	 * Gets the cell of the current thread.
+	 * @return The index of the cell.
+	 */
+	private static int cellIndex() {
+		long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return ((int) (hash >>> 32) & (STRIPES - 1)) * PADDING;
+	}
+
+	/**
+	 * Gets the quantity of cells for a quantity of processors: the next power of 2, between 1 and 64.
+	 * @param processors The quantity of processors.
+	 * @return The quantity of cells.
+	 */
+	private static int stripesFor(int processors) {
+		int stripes = Integer.highestOneBit(Math.max(1, processors * 2 - 1));
+		return Math.min(64, stripes);
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.valueOf(sum());
+	}
+}
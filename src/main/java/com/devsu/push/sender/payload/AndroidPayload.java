@@ -0,0 +1,93 @@
+package com.devsu.push.sender.payload;
+
+import java.util.Map;
+
+import com.google.android.gcm.server.Message;
+
+/**
+ * Immutable GCM push message, built once and reused for every multicast request and every retry.
+ */
+public final class AndroidPayload {
+
+	/**
+	 * The GCM message.
+	 */
+	private final Message message;
+
+	/**
+	 * The description of the message, used by the callbacks. Created on first use.
+	 */
+	private volatile String description;
+
+	/**
+	 * Single param constructor.
+	 * @param message The GCM message. It must not be changed afterwards.
+	 */
+	private AndroidPayload(Message message) {
+		this.message = message;
+	}
+
+	/**
+	 * Creates a payload from a message builder. The builder content is copied, so the builder can be reused afterwards.
+	 * @param msgBuilder The Message.Builder object.
+	 * @return The payload.
+	 */
+	public static AndroidPayload of(Message.Builder msgBuilder) {
+		if (msgBuilder == null) {
+			throw new IllegalArgumentException("Message builder is null.");
+		}
+		Message source = msgBuilder.build();
+		Message.Builder copy = new Message.Builder().collapseKey(source.getCollapseKey());
+		if (source.isDelayWhileIdle() != null) {
+			copy.delayWhileIdle(source.isDelayWhileIdle());
+		}
+		if (source.getTimeToLive() != null) {
+			copy.timeToLive(source.getTimeToLive());
+		}
+		for (Map.Entry<String, String> entry : source.getData().entrySet()) {
+			copy.addData(entry.getKey(), entry.getValue());
+		}
+		return new AndroidPayload(copy.build());
+	}
+
+	/**
+	 * Creates a payload from a message whose builder is not used anymore.
+	 * @param message The GCM message.
+	 * @return The payload.
+	 */
+	public static AndroidPayload wrap(Message message) {
+		if (message == null) {
+			throw new IllegalArgumentException("Message is null.");
+		}
+		return new AndroidPayload(message);
+	}
+
+	/**
+	 * Gets the GCM message.
+	 * @return The GCM message.
+	 */
+	public Message getMessage() {
+		return message;
+	}
+
+	/**
+	 * Gets the description of the message.
+	 * @return The description of the message.
+	 */
+	public String getDescription() {
+		String result = description;
+		if (result == null) {
+			result = message.toString();
+			description = result;
+		}
+		return result;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getDescription();
+	}
+}
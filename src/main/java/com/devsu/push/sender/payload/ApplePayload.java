@@ -0,0 +1,91 @@
+package com.devsu.push.sender.payload;
+
+import java.nio.charset.Charset;
+
+import com.notnoop.apns.PayloadBuilder;
+
+/**
+ * Immutable APNS push message, serialized once and reused for every token and every retry.
+ */
+public final class ApplePayload {
+
+	/**
+	 * The charset of the APNS payload.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The JSON payload.
+	 */
+	private final String json;
+
+	/**
+	 * The UTF-8 bytes of the JSON payload.
+	 */
+	private final byte[] bytes;
+
+	/**
+	 * Single param constructor.
+	 * @param json The JSON payload.
+	 */
+	private ApplePayload(String json) {
+		this.json = json;
+		this.bytes = json.getBytes(UTF_8);
+	}
+
+	/**
+	 * Creates a payload from a payload builder. The JSON is built right away, so the builder can be reused afterwards.
+	 * @param msgBuilder The PayloadBuilder object.
+	 * @return The payload.
+	 */
+	public static ApplePayload of(PayloadBuilder msgBuilder) {
+		if (msgBuilder == null) {
+			throw new IllegalArgumentException("Payload builder is null.");
+		}
+		return new ApplePayload(msgBuilder.build());
+	}
+
+	/**
+	 * Creates a payload from a JSON payload.
+	 * @param json The JSON payload.
+	 * @return The payload.
+	 */
+	public static ApplePayload of(String json) {
+		if (json == null) {
+			throw new IllegalArgumentException("Payload is null.");
+		}
+		return new ApplePayload(json);
+	}
+
+	/**
+	 * Gets the JSON payload.
+	 * @return The JSON payload.
+	 */
+	public String getJson() {
+		return json;
+	}
+
+	/**
+	 * Gets the UTF-8 bytes of the JSON payload. The array is shared, it must not be modified.
+	 * @return The UTF-8 bytes of the JSON payload.
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the size of the payload in bytes.
+	 * @return The size of the payload in bytes.
+	 */
+	public int getLength() {
+		return bytes.length;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return json;
+	}
+}
@@ -0,0 +1,113 @@
+package com.devsu.push.sender.payload;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of built push messages, so repeated title/message/fields combinations are only built once.
+ * The least recently used payload is evicted when the cache is full.
+ * @param <P> The payload class.
+ */
+public class PayloadCache<P> {
+
+	/**
+	 * The cached payloads, in access order.
+	 */
+	private final LinkedHashMap<PayloadKey, P> payloads;
+
+	/**
+	 * The max quantity of cached payloads.
+	 */
+	private final int maxSize;
+
+	/**
+	 * The quantity of lookups that found a cached payload.
+	 */
+	private long hits;
+
+	/**
+	 * The quantity of lookups that didn't find a cached payload.
+	 */
+	private long misses;
+
+	/**
+	 * Single param constructor.
+	 * @param maxSize The max quantity of cached payloads.
+	 */
+	public PayloadCache(final int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Cache size must be greater than 0.");
+		}
+		this.maxSize = maxSize;
+		this.payloads = new LinkedHashMap<PayloadKey, P>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PayloadKey, P> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Gets a cached payload.
+	 * @param key The payload key.
+	 * @return The cached payload, or <i>null</i> if it isn't cached.
+	 */
+	public synchronized P get(PayloadKey key) {
+		P payload = payloads.get(key);
+		if (payload == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return payload;
+	}
+
+	/**
+	 * Caches a payload.
+	 * @param key The payload key.
+	 * @param payload The payload.
+	 */
+	public synchronized void put(PayloadKey key, P payload) {
+		payloads.put(key, payload);
+	}
+
+	/**
+	 * Removes every cached payload.
+	 */
+	public synchronized void clear() {
+		payloads.clear();
+	}
+
+	/**
+	 * Gets the quantity of cached payloads.
+	 * @return The quantity of cached payloads.
+	 */
+	public synchronized int size() {
+		return payloads.size();
+	}
+
+	/**
+	 * Gets the max quantity of cached payloads.
+	 * @return The max quantity of cached payloads.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Gets the quantity of lookups that found a cached payload.
+	 * @return The quantity of cache hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the quantity of lookups that didn't find a cached payload.
+	 * @return The quantity of cache misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+}
@@ -0,0 +1,81 @@
+package com.devsu.push.sender.payload;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache key of a push message built from a title, a message and its additional fields.
+ */
+public final class PayloadKey {
+
+	/**
+	 * The push message title.
+	 */
+	private final String title;
+
+	/**
+	 * The push message content.
+	 */
+	private final String message;
+
+	/**
+	 * A copy of the additional fields.
+	 */
+	private final Map<String, String> additionalFields;
+
+	/**
+	 * Identifies if its a single push message or a bulk push message.
+	 */
+	private final boolean single;
+
+	/**
+	 * The hash code, computed once.
+	 */
+	private final int hash;
+
+	/**
+	 * 4 param constructor.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message. They are copied.
+	 * @param single Identifies if its a single push message or a bulk push message.
+	 */
+	public PayloadKey(String title, String message, Map<String, String> additionalFields, boolean single) {
+		this.title = title;
+		this.message = message;
+		this.additionalFields = additionalFields == null || additionalFields.isEmpty() 
+				? Collections.<String, String>emptyMap() : new HashMap<String, String>(additionalFields);
+		this.single = single;
+		int result = title == null ? 0 : title.hashCode();
+		result = 31 * result + (message == null ? 0 : message.hashCode());
+		result = 31 * result + this.additionalFields.hashCode();
+		this.hash = 31 * result + (single ? 1 : 0);
+	}
+
+	/*
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/*
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof PayloadKey)) {
+			return false;
+		}
+		PayloadKey other = (PayloadKey) obj;
+		return hash == other.hash && single == other.single
+				&& (title == null ? other.title == null : title.equals(other.title))
+				&& (message == null ? other.message == null : message.equals(other.message))
+				&& additionalFields.equals(other.additionalFields);
+	}
+}
@@ -0,0 +1,747 @@
+package com.devsu.push.sender.queue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.devsu.push.sender.util.NamedThreadFactory;
+
+/**
+ * Append-only queue of push message requests that survives restarts. Entries are written to memory mapped segment
+ * files and flushed to disk by a background thread every flush interval (group commit), so many appends share a
+ * single fsync. Entries are acknowledged once they are sent; the unacknowledged ones are replayed on startup, and a 
+ * segment is deleted when every entry on it has been acknowledged.
+ * <p>
+ * Every record is <i>length, CRC32, sequence, entry</i>. A record that is torn or corrupted by a crash ends its segment.
+ */
+public class DurablePushQueue implements Closeable {
+
+	/**
+	 * Logger.
+	 */
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Bytes of the record header: length, CRC32 and sequence.
+	 */
+	private static final int HEADER_SIZE = 4 + 4 + 8;
+
+	/**
+	 * Extension of the segment files.
+	 */
+	private static final String SEGMENT_EXTENSION = ".log";
+
+	/**
+	 * Extension of the acknowledgement files.
+	 */
+	private static final String ACK_EXTENSION = ".ack";
+
+	/**
+	 * The directory of the segment files.
+	 */
+	private final File directory;
+
+	/**
+	 * The size of every segment file.
+	 */
+	private final int segmentSize;
+
+	/**
+	 * Milliseconds between flushes.
+	 */
+	private final long flushIntervalMillis;
+
+	/**
+	 * The segments, by the sequence of their first entry.
+	 */
+	private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+
+	/**
+	 * The segments rolled over since the last flush.
+	 */
+	private final List<Segment> rolledSegments = new ArrayList<Segment>();
+
+	/**
+	 * The segment being written.
+	 */
+	private Segment currentSegment;
+
+	/**
+	 * The sequence of the next entry.
+	 */
+	private long nextSequence;
+
+	/**
+	 * The last sequence flushed to disk.
+	 */
+	private long flushedSequence;
+
+	/**
+	 * Monitor used to wait for a flush.
+	 */
+	private final Object flushMonitor = new Object();
+
+	/**
+	 * Monitor the flusher waits on until the flush interval ends or an append asks for a flush.
+	 */
+	private final Object flushRequestMonitor = new Object();
+
+	/**
+	 * Indicates if an append is waiting for the next flush. Guarded by <i>flushRequestMonitor</i>.
+	 */
+	private boolean flushRequested;
+
+	/**
+	 * Indicates if appends wait until their entry is flushed to disk.
+	 */
+	private volatile boolean syncOnAppend;
+
+	/**
+	 * Indicates if the queue was closed.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * The thread that flushes the segments to disk.
+	 */
+	private final Thread flusher;
+
+	/**
+	 * Single param constructor.
+	 * @param directory The directory of the segment files. It is created if it doesn't exist.
+	 * @throws IOException If the queue can't be opened.
+	 */
+	public DurablePushQueue(File directory) throws IOException {
+		this(directory, Defaults.SEGMENT_SIZE, Defaults.FLUSH_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * 3 param constructor. Every segment is scanned, so the unacknowledged entries can be replayed.
+	 * @param directory The directory of the segment files. It is created if it doesn't exist.
+	 * @param segmentSize The size of every segment file, which bounds the size of an entry.
+	 * @param flushIntervalMillis Milliseconds between flushes, the most an entry waits to reach the disk.
+	 * @throws IOException If the queue can't be opened.
+	 */
+	public DurablePushQueue(File directory, int segmentSize, long flushIntervalMillis) throws IOException {
+		if (directory == null) {
+			throw new IllegalArgumentException("Queue directory is null.");
+		}
+		if (segmentSize <= HEADER_SIZE) {
+			throw new IllegalArgumentException("Segment size must be greater than " + HEADER_SIZE + ".");
+		}
+		if (flushIntervalMillis < 1) {
+			throw new IllegalArgumentException("Flush interval must be greater than 0.");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Queue directory " + directory + " can't be created.");
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.flushIntervalMillis = flushIntervalMillis;
+		recover();
+		this.flusher = new NamedThreadFactory("push-queue-flush", true).newThread(new Runnable() {
+			@Override
+			public void run() {
+				runFlusher();
+			}
+		});
+		flusher.start();
+	}
+
+	/**
+	 * Opens the existing segments, scanning their records and acknowledgements. Fully acknowledged segments are deleted.
+	 * @throws IOException If a segment can't be opened.
+	 */
+	private void recover() throws IOException {
+		File[] files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(SEGMENT_EXTENSION);
+			}
+		});
+		TreeMap<Long, File> segmentFiles = new TreeMap<Long, File>();
+		for (File file : files == null ? new File[0] : files) {
+			String name = file.getName();
+			try {
+				segmentFiles.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length())), file);
+			} catch (NumberFormatException e) {
+				log.warn("Ignoring unknown file on the queue directory: " + file);
+			}
+		}
+		for (Map.Entry<Long, File> entry : segmentFiles.entrySet()) {
+			Segment segment = new Segment(entry.getKey());
+			segment.scan();
+			segments.put(segment.baseSequence, segment);
+			nextSequence = Math.max(nextSequence, segment.baseSequence + segment.count);
+		}
+		flushedSequence = nextSequence - 1;
+		for (Segment segment : new ArrayList<Segment>(segments.values())) {
+			if (segment.isFullyAcknowledged() || (segment.count == 0 && segment != segments.lastEntry().getValue())) {
+				deleteSegment(segment);
+			}
+		}
+		if (segments.isEmpty()) {
+			currentSegment = new Segment(nextSequence);
+			segments.put(currentSegment.baseSequence, currentSegment);
+		} else {
+			currentSegment = segments.lastEntry().getValue();
+		}
+	}
+
+	/**
+	 * Appends an entry. When sync on append is enabled, it waits until the entry is flushed to disk.
+	 * @param push The push message request.
+	 * @return The sequence of the entry, used to acknowledge it.
+	 * @throws DurableQueueException If the entry can't be written.
+	 */
+	public long append(QueuedPush push) {
+		if (push == null) {
+			throw new IllegalArgumentException("Queued push is null.");
+		}
+		byte[] entry = push.encode();
+		if (HEADER_SIZE + entry.length > segmentSize) {
+			throw new IllegalArgumentException("Queued push of " + entry.length + " bytes is larger than the segment size.");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(entry);
+		long sequence;
+		synchronized (this) {
+			if (closed) {
+				throw new DurableQueueException("Queue is closed.");
+			}
+			if (currentSegment.writePosition + HEADER_SIZE + entry.length > segmentSize) {
+				roll();
+			}
+			sequence = nextSequence++;
+			currentSegment.write(sequence, (int) crc.getValue(), entry);
+		}
+		if (syncOnAppend) {
+			awaitFlush(sequence);
+		}
+		return sequence;
+	}
+
+	/**
+	 * Acknowledges an entry, so it isn't replayed. The acknowledgement is flushed with the next group commit.
+	 * @param sequence The sequence of the entry.
+	 */
+	public synchronized void acknowledge(long sequence) {
+		Map.Entry<Long, Segment> entry = segments.floorEntry(sequence);
+		if (entry != null) {
+			entry.getValue().acknowledge(sequence);
+		}
+	}
+
+	/**
+	 * Replays every entry that hasn't been acknowledged, in order of sequence. Entries appended during the replay
+	 * are not replayed.
+	 * @param handler The handler of the entries.
+	 * @return The quantity of replayed entries.
+	 */
+	public int replay(ReplayHandler handler) {
+		if (handler == null) {
+			throw new IllegalArgumentException("Replay handler is null.");
+		}
+		List<Segment> snapshot;
+		long endSequence;
+		synchronized (this) {
+			snapshot = new ArrayList<Segment>(segments.values());
+			endSequence = nextSequence;
+		}
+		int replayed = 0;
+		for (Segment segment : snapshot) {
+			replayed += segment.replay(handler, endSequence);
+		}
+		return replayed;
+	}
+
+	/**
+	 * Waits until every entry appended so far is flushed to disk.
+	 */
+	public void sync() {
+		long sequence;
+		synchronized (this) {
+			sequence = nextSequence - 1;
+		}
+		awaitFlush(sequence);
+	}
+
+	/**
+	 * Waits until an entry is flushed to disk, joining the next group commit.
+	 * @param sequence The sequence of the entry.
+	 */
+	private void awaitFlush(long sequence) {
+		synchronized (flushMonitor) {
+			if (flushedSequence >= sequence) {
+				return;
+			}
+		}
+		synchronized (flushRequestMonitor) {
+			flushRequested = true;
+			flushRequestMonitor.notify();
+		}
+		synchronized (flushMonitor) {
+			boolean interrupted = false;
+			while (flushedSequence < sequence && !closed) {
+				try {
+					flushMonitor.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Flushes every flush interval, or right away when an append waits for it.
+	 */
+	private void runFlusher() {
+		while (!closed) {
+			synchronized (flushRequestMonitor) {
+				try {
+					if (!flushRequested) {
+						flushRequestMonitor.wait(flushIntervalMillis);
+					}
+				} catch (InterruptedException e) {
+					break;
+				}
+				// The flush below takes every entry appended before this point, so it serves every request so far.
+				flushRequested = false;
+			}
+			try {
+				flush();
+			} catch (Exception e) {
+				log.error("Error occurred while flushing the durable push queue.", e);
+			}
+		}
+	}
+
+	/**
+	 * Flushes the written entries and the acknowledgements to disk, then deletes the fully acknowledged segments.
+	 * @throws IOException If an acknowledgement file can't be written.
+	 */
+	private void flush() throws IOException {
+		long sequence;
+		List<Segment> dirtySegments;
+		List<Segment> ackedSegments = new ArrayList<Segment>();
+		List<long[]> acks = new ArrayList<long[]>();
+		synchronized (this) {
+			sequence = nextSequence - 1;
+			dirtySegments = new ArrayList<Segment>(rolledSegments);
+			rolledSegments.clear();
+			dirtySegments.add(currentSegment);
+			for (Segment segment : segments.values()) {
+				long[] pendingAcks = segment.takePendingAcknowledgements();
+				if (pendingAcks != null) {
+					ackedSegments.add(segment);
+					acks.add(pendingAcks);
+				}
+			}
+		}
+		long previousFlushed;
+		synchronized (flushMonitor) {
+			previousFlushed = flushedSequence;
+		}
+		if (sequence > previousFlushed) {
+			for (Segment segment : dirtySegments) {
+				segment.buffer.force();
+			}
+		}
+		for (int i = 0; i < ackedSegments.size(); i++) {
+			ackedSegments.get(i).writeAcknowledgements(acks.get(i));
+		}
+		synchronized (this) {
+			for (Segment segment : new ArrayList<Segment>(segments.values())) {
+				if (segment != currentSegment && segment.isFullyAcknowledged()) {
+					deleteSegment(segment);
+				}
+			}
+		}
+		synchronized (flushMonitor) {
+			flushedSequence = Math.max(flushedSequence, sequence);
+			flushMonitor.notifyAll();
+		}
+	}
+
+	/**
+	 * Starts a new segment. The previous one is flushed with the next group commit.
+	 */
+	private void roll() {
+		rolledSegments.add(currentSegment);
+		try {
+			currentSegment = new Segment(nextSequence);
+		} catch (IOException e) {
+			throw new DurableQueueException("Error occurred while creating a queue segment.", e);
+		}
+		segments.put(currentSegment.baseSequence, currentSegment);
+	}
+
+	/**
+	 * Deletes a segment and its acknowledgements.
+	 * @param segment The segment.
+	 */
+	private void deleteSegment(Segment segment) {
+		segments.remove(segment.baseSequence);
+		segment.close();
+		if (!segment.segmentFile.delete() || (segment.ackFile.exists() && !segment.ackFile.delete())) {
+			log.warn("Queue segment " + segment.segmentFile + " couldn't be deleted.");
+		}
+	}
+
+	/**
+	 * Gets the quantity of entries that haven't been acknowledged.
+	 * @return The quantity of pending entries.
+	 */
+	public synchronized long getPendingCount() {
+		long pending = 0;
+		for (Segment segment : segments.values()) {
+			pending += segment.count - segment.ackedCount;
+		}
+		return pending;
+	}
+
+	/**
+	 * Indicates if appends wait until their entry is flushed to disk.
+	 * @return <i>true</i> if appends wait for the flush.
+	 */
+	public boolean isSyncOnAppend() {
+		return syncOnAppend;
+	}
+
+	/**
+	 * Sets if appends wait until their entry is flushed to disk. Concurrent appends share the same flush, but a single
+	 * thread can only append one entry per flush. When disabled, an entry can be lost if the machine crashes within
+	 * the flush interval after it was appended; a crash of the JVM alone loses nothing.
+	 * @param syncOnAppend <i>true</i> to wait for the flush.
+	 */
+	public void setSyncOnAppend(boolean syncOnAppend) {
+		this.syncOnAppend = syncOnAppend;
+	}
+
+	/**
+	 * Flushes every entry and acknowledgement, and closes the segment files.
+	 * @throws IOException If the final flush fails.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		flusher.interrupt();
+		try {
+			flusher.join(TimeUnit.SECONDS.toMillis(Defaults.CLOSE_TIMEOUT_SECONDS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			flush();
+		} finally {
+			synchronized (this) {
+				for (Segment segment : segments.values()) {
+					segment.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A segment file and its acknowledgement file.
+	 */
+	private class Segment {
+
+		/**
+		 * The sequence of the first entry.
+		 */
+		private final long baseSequence;
+
+		/**
+		 * The segment file.
+		 */
+		private final File segmentFile;
+
+		/**
+		 * The acknowledgement file, a list of acknowledged sequences.
+		 */
+		private final File ackFile;
+
+		/**
+		 * The segment file channel.
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * The mapped segment file.
+		 */
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * The offset where the next record is written.
+		 */
+		private int writePosition;
+
+		/**
+		 * The quantity of entries.
+		 */
+		private int count;
+
+		/**
+		 * The acknowledged entries, by index on the segment.
+		 */
+		private final BitSet acked = new BitSet();
+
+		/**
+		 * The quantity of acknowledged entries.
+		 */
+		private int ackedCount;
+
+		/**
+		 * The acknowledged sequences that haven't been written to the acknowledgement file.
+		 */
+		private long[] pendingAcks = new long[16];
+
+		/**
+		 * The quantity of pending acknowledgements.
+		 */
+		private int pendingAckCount;
+
+		/**
+		 * The acknowledgement file channel, or <i>null</i> until the first acknowledgement is flushed.
+		 */
+		private FileChannel ackChannel;
+
+		/**
+		 * Single param constructor. Opens or creates the segment file.
+		 * @param baseSequence The sequence of the first entry.
+		 * @throws IOException If the segment file can't be opened.
+		 */
+		private Segment(long baseSequence) throws IOException {
+			this.baseSequence = baseSequence;
+			String name = String.format("%020d", baseSequence);
+			this.segmentFile = new File(directory, name + SEGMENT_EXTENSION);
+			this.ackFile = new File(directory, name + ACK_EXTENSION);
+			RandomAccessFile file = new RandomAccessFile(segmentFile, "rw");
+			this.channel = file.getChannel();
+			int size = (int) Math.max(segmentSize, channel.size());
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+
+		/**
+		 * Writes a record.
+		 * @param sequence The sequence of the entry.
+		 * @param crc The CRC32 of the entry.
+		 * @param entry The serialized entry.
+		 */
+		private void write(long sequence, int crc, byte[] entry) {
+			ByteBuffer target = buffer.duplicate();
+			target.position(writePosition + 4);
+			target.putInt(crc);
+			target.putLong(sequence);
+			target.put(entry);
+			buffer.putInt(writePosition, entry.length);
+			writePosition += HEADER_SIZE + entry.length;
+			count++;
+		}
+
+		/**
+		 * Scans the records and the acknowledgements of an existing segment.
+		 * @throws IOException If the acknowledgement file can't be read.
+		 */
+		private void scan() throws IOException {
+			CRC32 crc = new CRC32();
+			byte[] entry = new byte[0];
+			int position = 0;
+			while (position + HEADER_SIZE <= buffer.capacity()) {
+				int length = buffer.getInt(position);
+				if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+					break;
+				}
+				long sequence = buffer.getLong(position + 8);
+				if (sequence != baseSequence + count) {
+					break;
+				}
+				if (entry.length < length) {
+					entry = new byte[length];
+				}
+				ByteBuffer source = buffer.duplicate();
+				source.position(position + HEADER_SIZE);
+				source.get(entry, 0, length);
+				crc.reset();
+				crc.update(entry, 0, length);
+				if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+					log.warn("Corrupted record at offset " + position + " of " + segmentFile + ", ignoring the rest of it.");
+					break;
+				}
+				position += HEADER_SIZE + length;
+				count++;
+			}
+			writePosition = position;
+			if (!ackFile.exists()) {
+				return;
+			}
+			ByteBuffer acks = ByteBuffer.allocate((int) (ackFile.length() / 8 * 8));
+			RandomAccessFile file = new RandomAccessFile(ackFile, "r");
+			try {
+				while (acks.hasRemaining() && file.getChannel().read(acks) >= 0) {
+					// Keeps reading until the buffer is full.
+				}
+			} finally {
+				file.close();
+			}
+			acks.flip();
+			while (acks.remaining() >= 8) {
+				markAcknowledged(acks.getLong());
+			}
+		}
+
+		/**
+		 * Replays the unacknowledged entries of the segment.
+		 * @param handler The handler of the entries.
+		 * @param endSequence The sequence where the replay stops.
+		 * @return The quantity of replayed entries.
+		 */
+		private int replay(ReplayHandler handler, long endSequence) {
+			int replayed = 0;
+			int position = 0;
+			ByteBuffer source = buffer.duplicate();
+			long lastSequence;
+			synchronized (DurablePushQueue.this) {
+				lastSequence = Math.min(endSequence, baseSequence + count);
+			}
+			for (long sequence = baseSequence; sequence < lastSequence; sequence++) {
+				int length = source.getInt(position);
+				boolean acknowledged;
+				synchronized (DurablePushQueue.this) {
+					acknowledged = acked.get((int) (sequence - baseSequence));
+				}
+				if (!acknowledged) {
+					byte[] entry = new byte[length];
+					source.position(position + HEADER_SIZE);
+					source.get(entry);
+					handler.onEntry(sequence, QueuedPush.decode(ByteBuffer.wrap(entry)));
+					replayed++;
+				}
+				position += HEADER_SIZE + length;
+			}
+			return replayed;
+		}
+
+		/**
+		 * Acknowledges an entry, queueing it for the acknowledgement file.
+		 * @param sequence The sequence of the entry.
+		 */
+		private void acknowledge(long sequence) {
+			if (!markAcknowledged(sequence)) {
+				return;
+			}
+			if (pendingAckCount == pendingAcks.length) {
+				long[] newAcks = new long[pendingAcks.length * 2];
+				System.arraycopy(pendingAcks, 0, newAcks, 0, pendingAckCount);
+				pendingAcks = newAcks;
+			}
+			pendingAcks[pendingAckCount++] = sequence;
+		}
+
+		/**
+		 * Marks an entry as acknowledged.
+		 * @param sequence The sequence of the entry.
+		 * @return <i>true</i> if it wasn't acknowledged yet.
+		 */
+		private boolean markAcknowledged(long sequence) {
+			long index = sequence - baseSequence;
+			if (index < 0 || index >= count || acked.get((int) index)) {
+				return false;
+			}
+			acked.set((int) index);
+			ackedCount++;
+			return true;
+		}
+
+		/**
+		 * Takes the acknowledgements that haven't been written to the acknowledgement file.
+		 * @return The acknowledged sequences, or <i>null</i> if there are none or the segment is about to be deleted.
+		 */
+		private long[] takePendingAcknowledgements() {
+			if (pendingAckCount == 0 || isFullyAcknowledged()) {
+				pendingAckCount = 0;
+				return null;
+			}
+			long[] acks = Arrays.copyOf(pendingAcks, pendingAckCount);
+			pendingAckCount = 0;
+			return acks;
+		}
+
+		/**
+		 * Appends acknowledgements to the acknowledgement file and flushes it. Only called by the flushing thread.
+		 * @param acks The acknowledged sequences.
+		 * @throws IOException If the acknowledgement file can't be written.
+		 */
+		private void writeAcknowledgements(long[] acks) throws IOException {
+			if (ackChannel == null) {
+				ackChannel = new RandomAccessFile(ackFile, "rw").getChannel();
+				ackChannel.position(ackChannel.size());
+			}
+			ByteBuffer bytes = ByteBuffer.allocate(acks.length * 8);
+			for (long ack : acks) {
+				bytes.putLong(ack);
+			}
+			bytes.flip();
+			while (bytes.hasRemaining()) {
+				ackChannel.write(bytes);
+			}
+			ackChannel.force(false);
+		}
+
+		/**
+		 * Indicates if every entry of the segment has been acknowledged.
+		 * @return <i>true</i> if every entry has been acknowledged.
+		 */
+		private boolean isFullyAcknowledged() {
+			return count > 0 && ackedCount == count;
+		}
+
+		/**
+		 * Closes the segment files.
+		 */
+		private void close() {
+			try {
+				channel.close();
+				if (ackChannel != null) {
+					ackChannel.close();
+				}
+			} catch (IOException e) {
+				log.warn("Error occurred while closing queue segment " + segmentFile + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+		private static final long FLUSH_INTERVAL_MILLIS = 10;
+		private static final long CLOSE_TIMEOUT_SECONDS = 5;
+	}
+}
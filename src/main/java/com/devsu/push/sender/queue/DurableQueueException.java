@@ -0,0 +1,29 @@
+package com.devsu.push.sender.queue;
+
+/**
+ * Exception thrown when the durable push queue can't be read or written.
+ */
+public class DurableQueueException extends RuntimeException {
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 2 param constructor.
+	 * @param message The error message.
+	 * @param cause The cause of the error.
+	 */
+	public DurableQueueException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	/**
+	 * Single param constructor.
+	 * @param message The error message.
+	 */
+	public DurableQueueException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,256 @@
+package com.devsu.push.sender.queue;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Push message request stored on a durable push queue.
+ */
+public class QueuedPush {
+
+	/**
+	 * The charset of the stored strings.
+	 */
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * Type code of a single push message.
+	 */
+	private static final byte TYPE_SINGLE = 1;
+
+	/**
+	 * Type code of a bulk push message.
+	 */
+	private static final byte TYPE_BULK = 2;
+
+	/**
+	 * Indicates if it is a bulk push message.
+	 */
+	private final boolean bulk;
+
+	/**
+	 * The push message title.
+	 */
+	private final String title;
+
+	/**
+	 * The push message content.
+	 */
+	private final String message;
+
+	/**
+	 * The additional fields sent on the push message.
+	 */
+	private final Map<String, String> additionalFields;
+
+	/**
+	 * The push tokens.
+	 */
+	private final String[] tokens;
+
+	/**
+	 * 5 param constructor.
+	 * @param bulk Indicates if it is a bulk push message.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 */
+	private QueuedPush(boolean bulk, String title, String message, Map<String, String> additionalFields, String[] tokens) {
+		this.bulk = bulk;
+		this.title = title;
+		this.message = message;
+		this.additionalFields = additionalFields;
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Creates a single push message request.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param token The push token.
+	 * @return The queued push message.
+	 */
+	public static QueuedPush single(String title, String message, Map<String, String> additionalFields, String token) {
+		return new QueuedPush(false, title, message, additionalFields, new String[] { token });
+	}
+
+	/**
+	 * Creates a bulk push message request.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return The queued push message.
+	 */
+	public static QueuedPush bulk(String title, String message, Map<String, String> additionalFields, String... tokens) {
+		return new QueuedPush(true, title, message, additionalFields, tokens == null ? new String[0] : tokens);
+	}
+
+	/**
+	 * Serializes the request.
+	 * @return The serialized request.
+	 */
+	byte[] encode() {
+		byte[][] strings = new byte[3 + 2 * (additionalFields == null ? 0 : additionalFields.size()) + tokens.length][];
+		int count = 0;
+		strings[count++] = toBytes(title);
+		strings[count++] = toBytes(message);
+		if (additionalFields != null) {
+			for (Map.Entry<String, String> entry : additionalFields.entrySet()) {
+				strings[count++] = toBytes(entry.getKey());
+				strings[count++] = toBytes(entry.getValue());
+			}
+		}
+		for (String token : tokens) {
+			strings[count++] = toBytes(token);
+		}
+		int size = 1 + 4 + 4;
+		for (int i = 0; i < count; i++) {
+			size += 4 + (strings[i] == null ? 0 : strings[i].length);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.put(bulk ? TYPE_BULK : TYPE_SINGLE);
+		buffer.putInt(additionalFields == null ? -1 : additionalFields.size());
+		buffer.putInt(tokens.length);
+		for (int i = 0; i < count; i++) {
+			putBytes(buffer, strings[i]);
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Deserializes a request.
+	 * @param buffer The buffer positioned at the serialized request.
+	 * @return The queued push message.
+	 */
+	static QueuedPush decode(ByteBuffer buffer) {
+		try {
+			byte type = buffer.get();
+			if (type != TYPE_SINGLE && type != TYPE_BULK) {
+				throw new DurableQueueException("Unknown queued push type " + type + ".");
+			}
+			int fieldCount = buffer.getInt();
+			int tokenCount = buffer.getInt();
+			String title = getString(buffer);
+			String message = getString(buffer);
+			Map<String, String> additionalFields = null;
+			if (fieldCount >= 0) {
+				additionalFields = new LinkedHashMap<String, String>();
+				for (int i = 0; i < fieldCount; i++) {
+					additionalFields.put(getString(buffer), getString(buffer));
+				}
+			}
+			String[] tokens = new String[tokenCount];
+			for (int i = 0; i < tokenCount; i++) {
+				tokens[i] = getString(buffer);
+			}
+			return new QueuedPush(type == TYPE_BULK, title, message, additionalFields, tokens);
+		} catch (BufferUnderflowException e) {
+			throw new DurableQueueException("Queued push is truncated.", e);
+		}
+	}
+
+	/**
+	 * Encodes a string.
+	 * @param value The string, or <i>null</i>.
+	 * @return The UTF-8 bytes, or <i>null</i>.
+	 */
+	private static byte[] toBytes(String value) {
+		return value == null ? null : value.getBytes(CHARSET);
+	}
+
+	/**
+	 * Writes a length prefixed byte array, -1 for <i>null</i>.
+	 * @param buffer The target buffer.
+	 * @param bytes The bytes, or <i>null</i>.
+	 */
+	private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+		if (bytes == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Reads a length prefixed string.
+	 * @param buffer The source buffer.
+	 * @return The string, or <i>null</i>.
+	 */
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length > buffer.remaining()) {
+			throw new DurableQueueException("Queued push is truncated.");
+		}
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, CHARSET);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	/**
+	 * Indicates if it is a bulk push message.
+	 * @return <i>true</i> if it is a bulk push message.
+	 */
+	public boolean isBulk() {
+		return bulk;
+	}
+
+	/**
+	 * Gets the push message title.
+	 * @return The push message title.
+	 */
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * Gets the push message content.
+	 * @return The push message content.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Gets the additional fields sent on the push message.
+	 * @return The additional fields, or <i>null</i>.
+	 */
+	public Map<String, String> getAdditionalFields() {
+		return additionalFields;
+	}
+
+	/**
+	 * Gets the push token of a single push message.
+	 * @return The push token.
+	 */
+	public String getToken() {
+		return tokens.length == 0 ? null : tokens[0];
+	}
+
+	/**
+	 * Gets the push tokens.
+	 * @return The push tokens.
+	 */
+	public String[] getTokens() {
+		return tokens;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "QueuedPush [bulk=" + bulk + ", title=" + title + ", message=" + message + ", additionalFields="
+				+ additionalFields + ", tokens=" + Arrays.toString(tokens) + "]";
+	}
+}
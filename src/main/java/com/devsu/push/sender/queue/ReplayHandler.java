@@ -0,0 +1,14 @@
+package com.devsu.push.sender.queue;
+
+/**
+ * Handler of the unacknowledged entries of a durable push queue, replayed on startup.
+ */
+public interface ReplayHandler {
+
+	/**
+	 * Called for every unacknowledged entry, in order of sequence.
+	 * @param sequence The sequence of the entry, to acknowledge it once it is sent.
+	 * @param push The queued push message.
+	 */
+	void onEntry(long sequence, QueuedPush push);
+}
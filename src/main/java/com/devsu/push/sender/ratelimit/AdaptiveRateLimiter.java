@@ -0,0 +1,229 @@
+package com.devsu.push.sender.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token bucket rate limiter that adapts its rate to the provider (AIMD): the rate is cut by the decrease factor
+ * every time the provider throttles, and grows by the increase step every second without throttling,
+ * up to the max rate. A Retry-After delay pauses every sender until it elapses.
+ */
+public class AdaptiveRateLimiter implements ThrottleListener {
+
+	/**
+	 * Nanoseconds per second.
+	 */
+	private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Nanoseconds without throttling needed to grow the rate by one step.
+	 */
+	private static final long RECOVERY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * The settings.
+	 */
+	private final RateLimitConfig config;
+
+	/**
+	 * The current quantity of permits per second.
+	 */
+	private double rate;
+
+	/**
+	 * The permits stored while the limiter was idle.
+	 */
+	private double storedPermits;
+
+	/**
+	 * The time when the next permit is free.
+	 */
+	private long nextFreeNanos;
+
+	/**
+	 * The time until which every sender is paused, after a Retry-After.
+	 */
+	private long pausedUntilNanos;
+
+	/**
+	 * The last time the rate was changed.
+	 */
+	private long lastAdjustmentNanos;
+
+	/**
+	 * The last time a throttling signal reduced the rate.
+	 */
+	private long lastThrottleNanos;
+
+	/**
+	 * The quantity of throttling signals that reduced the rate.
+	 */
+	private long throttleCount;
+
+	/**
+	 * The quantity of threads waiting for permits.
+	 */
+	private final AtomicInteger queueDepth = new AtomicInteger();
+
+	/**
+	 * Single param constructor. The limiter starts at the max rate.
+	 * @param config The settings. They are read on every call, so later changes take effect right away.
+	 */
+	public AdaptiveRateLimiter(RateLimitConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("Rate limit config is null.");
+		}
+		this.config = config;
+		long now = System.nanoTime();
+		this.rate = config.getMaxRate();
+		this.storedPermits = config.getBurst();
+		this.nextFreeNanos = now;
+		this.pausedUntilNanos = now;
+		this.lastAdjustmentNanos = now;
+	}
+
+	/**
+	 * Waits until the permits are available.
+	 * @param permits The quantity of permits, usually the quantity of push messages about to be sent.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void acquire(int permits) throws InterruptedException {
+		long waitNanos = reserve(permits);
+		if (waitNanos <= 0) {
+			return;
+		}
+		queueDepth.incrementAndGet();
+		try {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		} finally {
+			queueDepth.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Takes the permits if they are available right away.
+	 * @param permits The quantity of permits.
+	 * @return <i>true</i> if the permits were taken.
+	 */
+	public synchronized boolean tryAcquire(int permits) {
+		long now = System.nanoTime();
+		resync(now);
+		if (Math.max(nextFreeNanos, pausedUntilNanos) > now || storedPermits < permits) {
+			return false;
+		}
+		storedPermits -= permits;
+		return true;
+	}
+
+	/**
+	 * Reserves the permits, moving the next free time past them.
+	 * @param permits The quantity of permits.
+	 * @return The nanoseconds to wait before using the permits.
+	 */
+	private synchronized long reserve(int permits) {
+		if (permits < 0) {
+			throw new IllegalArgumentException("Permits can't be negative.");
+		}
+		long now = System.nanoTime();
+		resync(now);
+		long availableNanos = Math.max(nextFreeNanos, pausedUntilNanos);
+		double storedUsed = availableNanos > now ? 0 : Math.min(permits, storedPermits);
+		double freshPermits = permits - storedUsed;
+		storedPermits -= storedUsed;
+		nextFreeNanos = availableNanos + (long) (freshPermits * NANOS_PER_SECOND / rate);
+		return availableNanos - now;
+	}
+
+	/**
+	 * Stores the permits accumulated since the next free time, and grows the rate if there was no throttling lately.
+	 * @param now The current time.
+	 */
+	private void resync(long now) {
+		double maxRate = config.getMaxRate();
+		if (rate < maxRate && now - lastAdjustmentNanos >= RECOVERY_INTERVAL_NANOS) {
+			long steps = (now - lastAdjustmentNanos) / RECOVERY_INTERVAL_NANOS;
+			rate = Math.min(maxRate, rate + steps * config.getIncreaseStep());
+			lastAdjustmentNanos += steps * RECOVERY_INTERVAL_NANOS;
+		}
+		if (rate > maxRate) {
+			rate = maxRate;
+		}
+		if (now > nextFreeNanos && now > pausedUntilNanos) {
+			long idleSince = Math.max(nextFreeNanos, pausedUntilNanos);
+			storedPermits = Math.min(config.getBurst(), storedPermits + (now - idleSince) * rate / NANOS_PER_SECOND);
+			nextFreeNanos = now;
+		}
+	}
+
+	/**
+	 * Reduces the rate, unless it was already reduced during the throttle cooldown, and drops the stored permits.
+	 * When the provider sent a Retry-After delay, every sender is paused until it elapses.
+	 * @param retryAfterMillis The milliseconds the provider asked to wait, or 0 if it didn't say.
+	 */
+	@Override
+	public synchronized void onThrottled(long retryAfterMillis) {
+		long now = System.nanoTime();
+		resync(now);
+		storedPermits = 0;
+		if (retryAfterMillis > 0) {
+			pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+		}
+		if (throttleCount > 0 && now - lastThrottleNanos < TimeUnit.MILLISECONDS.toNanos(config.getThrottleCooldownMillis())) {
+			return;
+		}
+		rate = Math.max(config.getMinRate(), rate * config.getDecreaseFactor());
+		lastAdjustmentNanos = now;
+		lastThrottleNanos = now;
+		throttleCount++;
+	}
+
+	/**
+	 * Gets the current quantity of permits per second.
+	 * @return The current rate.
+	 */
+	public synchronized double getCurrentRate() {
+		resync(System.nanoTime());
+		return rate;
+	}
+
+	/**
+	 * Gets the quantity of threads waiting for permits.
+	 * @return The queue depth.
+	 */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * Gets the quantity of throttling signals that reduced the rate.
+	 * @return The throttle count.
+	 */
+	public synchronized long getThrottleCount() {
+		return throttleCount;
+	}
+
+	/**
+	 * Indicates if the senders are paused by a Retry-After delay.
+	 * @return <i>true</i> if the senders are paused.
+	 */
+	public synchronized boolean isPaused() {
+		return pausedUntilNanos > System.nanoTime();
+	}
+
+	/**
+	 * Gets the settings.
+	 * @return The settings.
+	 */
+	public RateLimitConfig getConfig() {
+		return config;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AdaptiveRateLimiter [rate=" + getCurrentRate() + ", maxRate=" + config.getMaxRate()
+				+ ", queueDepth=" + getQueueDepth() + ", throttleCount=" + getThrottleCount() + "]";
+	}
+}
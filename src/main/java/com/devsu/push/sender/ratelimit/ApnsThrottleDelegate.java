@@ -0,0 +1,66 @@
+package com.devsu.push.sender.ratelimit;
+
+import com.notnoop.apns.ApnsDelegate;
+import com.notnoop.apns.ApnsNotification;
+import com.notnoop.apns.DeliveryError;
+
+/**
+ * APNS delegate that reports throttling when APNS closes a connection because of a processing error or
+ * an unknown failure. Errors caused by a push message itself, like an invalid token, are not throttling.
+ */
+public class ApnsThrottleDelegate implements ApnsDelegate {
+
+	/**
+	 * The listener notified when APNS throttles.
+	 */
+	private final ThrottleListener throttleListener;
+
+	/**
+	 * Single param constructor.
+	 * @param throttleListener The listener notified when APNS throttles.
+	 */
+	public ApnsThrottleDelegate(ThrottleListener throttleListener) {
+		if (throttleListener == null) {
+			throw new IllegalArgumentException("Throttle listener is null.");
+		}
+		this.throttleListener = throttleListener;
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsDelegate#messageSent(com.notnoop.apns.ApnsNotification, boolean)
+	 */
+	@Override
+	public void messageSent(ApnsNotification message, boolean resent) {
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsDelegate#messageSendFailed(com.notnoop.apns.ApnsNotification, java.lang.Throwable)
+	 */
+	@Override
+	public void messageSendFailed(ApnsNotification message, Throwable e) {
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsDelegate#connectionClosed(com.notnoop.apns.DeliveryError, int)
+	 */
+	@Override
+	public void connectionClosed(DeliveryError error, int messageIdentifier) {
+		if (error == DeliveryError.PROCESSING_ERROR || error == DeliveryError.NONE || error == DeliveryError.UNKNOWN) {
+			throttleListener.onThrottled(0);
+		}
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsDelegate#cacheLengthExceeded(int)
+	 */
+	@Override
+	public void cacheLengthExceeded(int newCacheLength) {
+	}
+
+	/*
+	 * @see com.notnoop.apns.ApnsDelegate#notificationsResent(int)
+	 */
+	@Override
+	public void notificationsResent(int resendCount) {
+	}
+}
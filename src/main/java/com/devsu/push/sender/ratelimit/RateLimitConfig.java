@@ -0,0 +1,175 @@
+package com.devsu.push.sender.ratelimit;
+
+/**
+ * Settings of an adaptive rate limiter.
+ */
+public class RateLimitConfig {
+
+	/**
+	 * The max quantity of push messages per second.
+	 */
+	private double maxRate;
+
+	/**
+	 * The quantity of push messages per second the rate is never reduced below.
+	 */
+	private double minRate;
+
+	/**
+	 * The quantity of push messages that can be sent at once after an idle period.
+	 */
+	private double burst;
+
+	/**
+	 * The factor the rate is multiplied by when the provider throttles.
+	 */
+	private double decreaseFactor;
+
+	/**
+	 * The quantity of push messages per second the rate grows every second without throttling.
+	 */
+	private double increaseStep;
+
+	/**
+	 * Milliseconds during which further throttling signals don't reduce the rate again.
+	 */
+	private long throttleCooldownMillis;
+
+	/**
+	 * Single param constructor. The other settings are derived from the max rate.
+	 * @param maxRate The max quantity of push messages per second.
+	 */
+	public RateLimitConfig(double maxRate) {
+		setMaxRate(maxRate);
+		minRate = Math.max(1, maxRate * Defaults.MIN_RATE_RATIO);
+		burst = maxRate;
+		decreaseFactor = Defaults.DECREASE_FACTOR;
+		increaseStep = Math.max(1, maxRate * Defaults.INCREASE_STEP_RATIO);
+		throttleCooldownMillis = Defaults.THROTTLE_COOLDOWN_MILLIS;
+	}
+
+	/**
+	 * Gets the max quantity of push messages per second.
+	 * @return The max quantity of push messages per second.
+	 */
+	public double getMaxRate() {
+		return maxRate;
+	}
+
+	/**
+	 * Sets the max quantity of push messages per second.
+	 * @param maxRate The max quantity of push messages per second.
+	 */
+	public void setMaxRate(double maxRate) {
+		if (!(maxRate > 0)) {
+			throw new IllegalArgumentException("Max rate must be greater than 0.");
+		}
+		this.maxRate = maxRate;
+	}
+
+	/**
+	 * Gets the quantity of push messages per second the rate is never reduced below.
+	 * @return The min rate.
+	 */
+	public double getMinRate() {
+		return Math.min(minRate, maxRate);
+	}
+
+	/**
+	 * Sets the quantity of push messages per second the rate is never reduced below.
+	 * @param minRate The min rate.
+	 */
+	public void setMinRate(double minRate) {
+		if (!(minRate > 0)) {
+			throw new IllegalArgumentException("Min rate must be greater than 0.");
+		}
+		this.minRate = minRate;
+	}
+
+	/**
+	 * Gets the quantity of push messages that can be sent at once after an idle period.
+	 * @return The burst size.
+	 */
+	public double getBurst() {
+		return burst;
+	}
+
+	/**
+	 * Sets the quantity of push messages that can be sent at once after an idle period.
+	 * @param burst The burst size.
+	 */
+	public void setBurst(double burst) {
+		if (burst < 0) {
+			throw new IllegalArgumentException("Burst can't be negative.");
+		}
+		this.burst = burst;
+	}
+
+	/**
+	 * Gets the factor the rate is multiplied by when the provider throttles.
+	 * @return The decrease factor.
+	 */
+	public double getDecreaseFactor() {
+		return decreaseFactor;
+	}
+
+	/**
+	 * Sets the factor the rate is multiplied by when the provider throttles.
+	 * @param decreaseFactor The decrease factor, greater than 0 and lower than 1.
+	 */
+	public void setDecreaseFactor(double decreaseFactor) {
+		if (!(decreaseFactor > 0 && decreaseFactor < 1)) {
+			throw new IllegalArgumentException("Decrease factor must be between 0 and 1.");
+		}
+		this.decreaseFactor = decreaseFactor;
+	}
+
+	/**
+	 * Gets the quantity of push messages per second the rate grows every second without throttling.
+	 * @return The increase step.
+	 */
+	public double getIncreaseStep() {
+		return increaseStep;
+	}
+
+	/**
+	 * Sets the quantity of push messages per second the rate grows every second without throttling.
+	 * @param increaseStep The increase step.
+	 */
+	public void setIncreaseStep(double increaseStep) {
+		if (!(increaseStep > 0)) {
+			throw new IllegalArgumentException("Increase step must be greater than 0.");
+		}
+		this.increaseStep = increaseStep;
+	}
+
+	/**
+	 * Gets the milliseconds during which further throttling signals don't reduce the rate again.
+	 * @return The throttle cooldown in milliseconds.
+	 */
+	public long getThrottleCooldownMillis() {
+		return throttleCooldownMillis;
+	}
+
+	/**
+	 * Sets the milliseconds during which further throttling signals don't reduce the rate again. Requests in flight
+	 * when the provider starts throttling all fail together, and they should count as a single signal.
+	 * @param throttleCooldownMillis The throttle cooldown in milliseconds.
+	 */
+	public void setThrottleCooldownMillis(long throttleCooldownMillis) {
+		if (throttleCooldownMillis < 0) {
+			throw new IllegalArgumentException("Throttle cooldown can't be negative.");
+		}
+		this.throttleCooldownMillis = throttleCooldownMillis;
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final double MIN_RATE_RATIO = 0.05;
+		private static final double DECREASE_FACTOR = 0.5;
+		private static final double INCREASE_STEP_RATIO = 0.05;
+		private static final long THROTTLE_COOLDOWN_MILLIS = 1000;
+	}
+}
@@ -0,0 +1,92 @@
+package com.devsu.push.sender.ratelimit;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Rate limiters by provider and credential, so every service that sends with the same credential
+ * shares the same limit.
+ */
+public class RateLimiterRegistry {
+
+	/**
+	 * The GCM provider name.
+	 */
+	public static final String PROVIDER_GCM = "gcm";
+
+	/**
+	 * The APNS provider name.
+	 */
+	public static final String PROVIDER_APNS = "apns";
+
+	/**
+	 * The registry shared by every service.
+	 */
+	private static final RateLimiterRegistry SHARED = new RateLimiterRegistry();
+
+	/**
+	 * The rate limiters, by provider and credential.
+	 */
+	private final ConcurrentMap<String, AdaptiveRateLimiter> limiters = new ConcurrentHashMap<String, AdaptiveRateLimiter>();
+
+	/**
+	 * Gets the registry shared by every service.
+	 * @return The shared registry.
+	 */
+	public static RateLimiterRegistry getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Gets the rate limiter of a provider and credential, creating it with the given settings if there is none.
+	 * When it already exists, it keeps the settings it was created with.
+	 * @param provider The provider name.
+	 * @param credential The credential identifier, like a hash of the API key or the certificate path. It shows up
+	 * in the registry keys and in {@link #asMap()}, so it must never be a secret itself.
+	 * @param config The settings used if the limiter is created.
+	 * @return The rate limiter.
+	 */
+	public AdaptiveRateLimiter getLimiter(String provider, String credential, RateLimitConfig config) {
+		String key = toKey(provider, credential);
+		AdaptiveRateLimiter limiter = limiters.get(key);
+		if (limiter != null) {
+			return limiter;
+		}
+		AdaptiveRateLimiter newLimiter = new AdaptiveRateLimiter(config);
+		limiter = limiters.putIfAbsent(key, newLimiter);
+		return limiter == null ? newLimiter : limiter;
+	}
+
+	/**
+	 * Removes the rate limiter of a provider and credential. Services that already use it keep it.
+	 * @param provider The provider name.
+	 * @param credential The credential identifier.
+	 */
+	public void remove(String provider, String credential) {
+		limiters.remove(toKey(provider, credential));
+	}
+
+	/**
+	 * Gets every rate limiter, by provider and credential.
+	 * @return An unmodifiable snapshot of the rate limiters.
+	 */
+	public Map<String, AdaptiveRateLimiter> asMap() {
+		return Collections.unmodifiableMap(new HashMap<String, AdaptiveRateLimiter>(limiters));
+	}
+
+	/**
+	 * Builds the registry key of a provider and credential.
+	 * @param provider The provider name.
+	 * @param credential The credential identifier.
+	 * @return The registry key.
+	 */
+	private String toKey(String provider, String credential) {
+		if (provider == null) {
+			throw new IllegalArgumentException("Provider is null.");
+		}
+		return provider + ":" + credential;
+	}
+}
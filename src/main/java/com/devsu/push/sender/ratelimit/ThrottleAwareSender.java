@@ -0,0 +1,115 @@
+package com.devsu.push.sender.ratelimit;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import com.google.android.gcm.server.Sender;
+
+/**
+ * GCM sender that reports throttling: 429 and 5xx responses, with their Retry-After delay, and connection errors.
+ * Every HTTP request is observed, including the retries made by the sender itself.
+ */
+public class ThrottleAwareSender extends Sender {
+
+	/**
+	 * Status code of a throttled request.
+	 */
+	private static final int TOO_MANY_REQUESTS = 429;
+
+	/**
+	 * The listener notified when GCM throttles.
+	 */
+	private final ThrottleListener throttleListener;
+
+	/**
+	 * The URL requests are sent to instead of the GCM endpoint, or <i>null</i> to send them to GCM.
+	 */
+	private final String endpoint;
+
+	/**
+	 * 2 param constructor.
+	 * @param gcmApiKey The GCM API Key (also known as Sender ID).
+	 * @param throttleListener The listener notified when GCM throttles.
+	 */
+	public ThrottleAwareSender(String gcmApiKey, ThrottleListener throttleListener) {
+		this(gcmApiKey, throttleListener, null);
+	}
+
+	/**
+	 * 3 param constructor.
+	 * @param gcmApiKey The GCM API Key (also known as Sender ID).
+	 * @param throttleListener The listener notified when GCM throttles.
+	 * @param endpoint The URL requests are sent to instead of the GCM endpoint, like a local stand-in server,
+	 * or <i>null</i> to send them to GCM.
+	 */
+	public ThrottleAwareSender(String gcmApiKey, ThrottleListener throttleListener, String endpoint) {
+		super(gcmApiKey);
+		if (throttleListener == null) {
+			throw new IllegalArgumentException("Throttle listener is null.");
+		}
+		this.throttleListener = throttleListener;
+		this.endpoint = endpoint;
+	}
+
+	/*
+	 * @see com.google.android.gcm.server.Sender#getConnection(java.lang.String)
+	 */
+	@Override
+	protected HttpURLConnection getConnection(String url) throws IOException {
+		return super.getConnection(endpoint == null ? url : endpoint);
+	}
+
+	/**
+	 * Gets the URL requests are sent to instead of the GCM endpoint.
+	 * @return The endpoint, or <i>null</i> if requests are sent to GCM.
+	 */
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	/*
+	 * @see com.google.android.gcm.server.Sender#post(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected HttpURLConnection post(String url, String contentType, String body) throws IOException {
+		HttpURLConnection connection;
+		int status;
+		try {
+			connection = super.post(url, contentType, body);
+			status = connection.getResponseCode();
+		} catch (IOException e) {
+			throttleListener.onThrottled(0);
+			throw e;
+		}
+		if (status == TOO_MANY_REQUESTS || status >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+			throttleListener.onThrottled(parseRetryAfter(connection.getHeaderField("Retry-After")));
+		}
+		return connection;
+	}
+
+	/**
+	 * Parses a Retry-After header, either delay seconds or an HTTP date.
+	 * @param retryAfter The header value, or <i>null</i>.
+	 * @return The milliseconds to wait, or 0 if the header is missing or invalid.
+	 */
+	public static long parseRetryAfter(String retryAfter) {
+		if (retryAfter == null || retryAfter.trim().isEmpty()) {
+			return 0;
+		}
+		String value = retryAfter.trim();
+		try {
+			return Math.max(0, Long.parseLong(value) * 1000);
+		} catch (NumberFormatException e) {
+			try {
+				Date date = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US).parse(value);
+				return Math.max(0, date.getTime() - System.currentTimeMillis());
+			} catch (ParseException pe) {
+				return 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package com.devsu.push.sender.ratelimit;
+
+/**
+ * Receives the throttling signals of a push provider.
+ */
+public interface ThrottleListener {
+
+	/**
+	 * Callback that is executed when the provider throttles the requests.
+	 * @param retryAfterMillis The milliseconds the provider asked to wait, or 0 if it didn't say.
+	 */
+	void onThrottled(long retryAfterMillis);
+}
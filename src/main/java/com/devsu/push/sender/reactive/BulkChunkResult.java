@@ -0,0 +1,73 @@
+package com.devsu.push.sender.reactive;
+
+import com.devsu.push.sender.result.BulkSendReport;
+
+/**
+ * The outcome of one chunk of a bulk push message sent through a {@link BulkSendPublisher}.
+ */
+public class BulkChunkResult {
+
+	/**
+	 * The position of the first token of the chunk among every token of the bulk push message.
+	 */
+	private final long offset;
+
+	/**
+	 * The outcome of every token of the chunk.
+	 */
+	private final BulkSendReport report;
+
+	/**
+	 * The exception thrown while sending the chunk, or <i>null</i>.
+	 */
+	private final Throwable error;
+
+	/**
+	 * 3 param constructor.
+	 * @param offset The position of the first token of the chunk among every token of the bulk push message.
+	 * @param report The outcome of every token of the chunk.
+	 * @param error The exception thrown while sending the chunk, or <i>null</i>.
+	 */
+	public BulkChunkResult(long offset, BulkSendReport report, Throwable error) {
+		if (report == null) {
+			throw new IllegalArgumentException("Report is null.");
+		}
+		this.offset = offset;
+		this.report = report;
+		this.error = error;
+	}
+
+	/**
+	 * Gets the position of the first token of the chunk among every token of the bulk push message. Chunks sent
+	 * concurrently can be published out of order.
+	 * @return The offset of the chunk.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the outcome of every token of the chunk. If the chunk failed with an exception, every token is
+	 * {@link com.devsu.push.sender.result.TokenStatus#NOT_SENT}.
+	 * @return The report of the chunk.
+	 */
+	public BulkSendReport getReport() {
+		return report;
+	}
+
+	/**
+	 * Gets the exception thrown while sending the chunk.
+	 * @return The exception, or <i>null</i> if the chunk was sent.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "BulkChunkResult [offset=" + offset + ", report=" + report + ", error=" + error + "]";
+	}
+}
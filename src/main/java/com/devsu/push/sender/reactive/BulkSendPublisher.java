@@ -0,0 +1,456 @@
+package com.devsu.push.sender.reactive;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.devsu.push.sender.result.BulkSendReport;
+import com.devsu.push.sender.service.async.AdmissionController;
+import com.devsu.push.sender.service.sync.SyncPushService;
+
+/**
+ * Reactive Streams publisher of a bulk push message. The tokens are read and sent one chunk at a time, and the
+ * outcome of every chunk is published as a {@link BulkChunkResult} as soon as it is sent. A chunk is only read and
+ * sent when a subscriber requested its result, so a slow subscriber holds back the sending instead of piling up
+ * results; up to <i>maxConcurrentChunks</i> chunks are sent at the same time.
+ * <p>
+ * Every subscription sends the push message again, reading the tokens from a new iterator. A chunk that fails with
+ * an exception is published with the exception and the sending goes on; the subscriber can cancel it. On Java 9 or
+ * later, {@code org.reactivestreams.FlowAdapters} turns the publisher into a {@code java.util.concurrent.Flow.Publisher}.
+ * <p>
+ * With an {@link AdmissionController}, every chunk must fit in its budgets before it is sent. A chunk that doesn't
+ * fit waits for one of the chunks of the same subscription to finish; if none is being sent, it is published
+ * right away with a {@link RejectedExecutionException} and its tokens not sent.
+ */
+public class BulkSendPublisher implements Publisher<BulkChunkResult> {
+
+	/**
+	 * The default quantity of tokens per chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	/**
+	 * Logger.
+	 */
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * The push service that sends the chunks.
+	 */
+	private final SyncPushService pushService;
+
+	/**
+	 * The executor that sends the chunks.
+	 */
+	private final Executor executor;
+
+	/**
+	 * The push message title.
+	 */
+	private final String title;
+
+	/**
+	 * The push message content.
+	 */
+	private final String message;
+
+	/**
+	 * The additional fields sent on the push message.
+	 */
+	private final Map<String, String> additionalFields;
+
+	/**
+	 * The push tokens.
+	 */
+	private final Iterable<String> tokens;
+
+	/**
+	 * The max quantity of tokens per chunk.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * The max quantity of chunks sent at the same time.
+	 */
+	private final int maxConcurrentChunks;
+
+	/**
+	 * The admission controller every chunk must fit in, or <i>null</i>.
+	 */
+	private final AdmissionController admissionController;
+
+	/**
+	 * 8 param constructor. The chunks are not bound by an admission controller.
+	 * @param pushService The push service that sends the chunks.
+	 * @param executor The executor that sends the chunks, like the worker pool of an async push service.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @param chunkSize The max quantity of tokens per chunk.
+	 * @param maxConcurrentChunks The max quantity of chunks sent at the same time.
+	 */
+	public BulkSendPublisher(SyncPushService pushService, Executor executor, String title, String message,
+			Map<String, String> additionalFields, Iterable<String> tokens, int chunkSize, int maxConcurrentChunks) {
+		this(pushService, executor, title, message, additionalFields, tokens, chunkSize, maxConcurrentChunks, null);
+	}
+
+	/**
+	 * 9 param constructor.
+	 * @param pushService The push service that sends the chunks.
+	 * @param executor The executor that sends the chunks, like the worker pool of an async push service.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @param chunkSize The max quantity of tokens per chunk.
+	 * @param maxConcurrentChunks The max quantity of chunks sent at the same time.
+	 * @param admissionController The admission controller every chunk must fit in, or <i>null</i>.
+	 */
+	public BulkSendPublisher(SyncPushService pushService, Executor executor, String title, String message,
+			Map<String, String> additionalFields, Iterable<String> tokens, int chunkSize, int maxConcurrentChunks,
+			AdmissionController admissionController) {
+		if (pushService == null || executor == null || tokens == null) {
+			throw new IllegalArgumentException("Push service, executor and tokens are required.");
+		}
+		if (chunkSize < 1 || maxConcurrentChunks < 1) {
+			throw new IllegalArgumentException("Chunk size and max concurrent chunks must be greater than 0.");
+		}
+		this.pushService = pushService;
+		this.executor = executor;
+		this.title = title;
+		this.message = message;
+		this.additionalFields = additionalFields;
+		this.tokens = tokens;
+		this.chunkSize = chunkSize;
+		this.maxConcurrentChunks = maxConcurrentChunks;
+		this.admissionController = admissionController;
+	}
+
+	/*
+	 * @see org.reactivestreams.Publisher#subscribe(org.reactivestreams.Subscriber)
+	 */
+	@Override
+	public void subscribe(Subscriber<? super BulkChunkResult> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("Subscriber is null.");
+		}
+		BulkSendSubscription subscription = new BulkSendSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * The sending of the push message to one subscriber. Every signal to the subscriber is made from {@link #drain()},
+	 * which only runs on one thread at a time: the thread that calls it while another one is draining leaves the
+	 * work to that one.
+	 */
+	private class BulkSendSubscription implements Subscription {
+
+		/**
+		 * The subscriber.
+		 */
+		private final Subscriber<? super BulkChunkResult> subscriber;
+
+		/**
+		 * The results of the sent chunks, waiting to be published.
+		 */
+		private final Queue<BulkChunkResult> results = new ConcurrentLinkedQueue<BulkChunkResult>();
+
+		/**
+		 * The results requested and not published yet.
+		 */
+		private final AtomicLong requested = new AtomicLong();
+
+		/**
+		 * The quantity of chunks being sent.
+		 */
+		private final AtomicInteger running = new AtomicInteger();
+
+		/**
+		 * The quantity of calls to {@link #drain()} not handled yet.
+		 */
+		private final AtomicInteger drainCalls = new AtomicInteger();
+
+		/**
+		 * The invalid request, or <i>null</i>.
+		 */
+		private volatile IllegalArgumentException invalidRequest;
+
+		/**
+		 * Indicates if the subscription was cancelled.
+		 */
+		private volatile boolean cancelled;
+
+		/**
+		 * The token iterator, or <i>null</i> until the first chunk is read. Only used while draining.
+		 */
+		private Iterator<String> iterator;
+
+		/**
+		 * The chunk read and waiting for room in the admission budgets, or <i>null</i>. Only used while draining.
+		 */
+		private String[] pendingChunk;
+
+		/**
+		 * The position of the next token read. Only used while draining.
+		 */
+		private long offset;
+
+		/**
+		 * The quantity of chunks read and not published yet. Only used while draining.
+		 */
+		private int outstanding;
+
+		/**
+		 * Indicates if every token was read. Only used while draining.
+		 */
+		private boolean exhausted;
+
+		/**
+		 * Indicates if the subscriber got its terminal signal. Only used while draining.
+		 */
+		private boolean terminated;
+
+		/**
+		 * Single param constructor.
+		 * @param subscriber The subscriber.
+		 */
+		private BulkSendSubscription(Subscriber<? super BulkChunkResult> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		/*
+		 * @see org.reactivestreams.Subscription#request(long)
+		 */
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("Requested " + n + " results, the request must be positive.");
+			} else {
+				long current;
+				do {
+					current = requested.get();
+				} while (!requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+			}
+			drain();
+		}
+
+		/*
+		 * @see org.reactivestreams.Subscription#cancel()
+		 */
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+
+		/**
+		 * Publishes the results that were requested, reads and sends the chunks whose results are requested, and
+		 * completes the subscription after the last result.
+		 */
+		private void drain() {
+			if (drainCalls.getAndIncrement() != 0) {
+				return;
+			}
+			int calls = 1;
+			do {
+				if (!terminated) {
+					drainOnce();
+				}
+				calls = drainCalls.addAndGet(-calls);
+			} while (calls != 0);
+		}
+
+		/**
+		 * Runs one pass of {@link #drain()}.
+		 */
+		private void drainOnce() {
+			if (cancelled) {
+				terminated = true;
+				results.clear();
+				return;
+			}
+			if (invalidRequest != null) {
+				fail(invalidRequest);
+				return;
+			}
+			while (requested.get() > 0 && !results.isEmpty() && !cancelled) {
+				BulkChunkResult result = results.poll();
+				outstanding--;
+				requested.decrementAndGet();
+				subscriber.onNext(result);
+			}
+			if (cancelled) {
+				return;
+			}
+			while (!exhausted && outstanding < requested.get() && running.get() < maxConcurrentChunks) {
+				String[] chunk = pendingChunk;
+				pendingChunk = null;
+				if (chunk == null) {
+					try {
+						chunk = nextChunk();
+					} catch (RuntimeException e) {
+						fail(e);
+						return;
+					}
+					if (chunk.length == 0) {
+						exhausted = true;
+						break;
+					}
+				}
+				long chunkOffset = offset - chunk.length;
+				long bytes = AdmissionController.estimateBytes(title, message, additionalFields, chunk);
+				if (admissionController != null && !admissionController.tryAcquire(bytes)) {
+					if (running.get() > 0) {
+						// The chunk is tried again when a running chunk finishes and drains.
+						pendingChunk = chunk;
+						break;
+					}
+					outstanding++;
+					results.add(new BulkChunkResult(chunkOffset, BulkSendReport.notDispatched(chunk),
+							new RejectedExecutionException("Chunk rejected, the service is over its admission budget: "
+									+ admissionController)));
+					// Runs another pass to publish the result.
+					drain();
+					break;
+				}
+				outstanding++;
+				running.incrementAndGet();
+				try {
+					executor.execute(new ChunkSender(chunkOffset, chunk, bytes));
+				} catch (RejectedExecutionException e) {
+					release(bytes);
+					fail(e);
+					return;
+				}
+			}
+			if (exhausted && outstanding == 0) {
+				terminated = true;
+				subscriber.onComplete();
+			}
+		}
+
+		/**
+		 * Releases a chunk from the admission budgets, if there is an admission controller.
+		 * @param bytes The estimated bytes held by the chunk.
+		 */
+		private void release(long bytes) {
+			if (admissionController != null) {
+				admissionController.release(bytes);
+			}
+		}
+
+		/**
+		 * Reads the next chunk of tokens.
+		 * @return The chunk, empty if every token was read.
+		 */
+		private String[] nextChunk() {
+			if (iterator == null) {
+				iterator = tokens.iterator();
+			}
+			List<String> chunk = new ArrayList<String>(Math.min(chunkSize, 1024));
+			while (chunk.size() < chunkSize && iterator.hasNext()) {
+				chunk.add(iterator.next());
+			}
+			offset += chunk.size();
+			return chunk.toArray(new String[chunk.size()]);
+		}
+
+		/**
+		 * Ends the subscription with an error. Chunks being sent are finished, but their results are dropped.
+		 * @param error The error.
+		 */
+		private void fail(Throwable error) {
+			terminated = true;
+			cancelled = true;
+			results.clear();
+			subscriber.onError(error);
+		}
+
+		/**
+		 * Sends a chunk on the executor and queues its result. It is a future, so an executor that drops it cancels it
+		 * instead, and the chunk is published as not sent rather than leaving the subscription waiting for it.
+		 */
+		private class ChunkSender extends FutureTask<BulkChunkResult> {
+
+			/**
+			 * The position of the first token of the chunk.
+			 */
+			private final long chunkOffset;
+
+			/**
+			 * The tokens of the chunk.
+			 */
+			private final String[] chunk;
+
+			/**
+			 * The estimated bytes held by the chunk, released from the admission budgets once it is sent.
+			 */
+			private final long bytes;
+
+			/**
+			 * 3 param constructor.
+			 * @param chunkOffset The position of the first token of the chunk.
+			 * @param chunk The tokens of the chunk.
+			 * @param bytes The estimated bytes held by the chunk.
+			 */
+			private ChunkSender(final long chunkOffset, final String[] chunk, long bytes) {
+				super(new Callable<BulkChunkResult>() {
+					@Override
+					public BulkChunkResult call() throws Exception {
+						return cancelled ? null : new BulkChunkResult(chunkOffset,
+								pushService.sendPushInBulkWithReport(title, message, additionalFields, chunk), null);
+					}
+				});
+				this.chunkOffset = chunkOffset;
+				this.chunk = chunk;
+				this.bytes = bytes;
+			}
+
+			/*
+			 * @see java.util.concurrent.FutureTask#done()
+			 */
+			@Override
+			protected void done() {
+				BulkChunkResult result;
+				try {
+					result = get();
+				} catch (CancellationException e) {
+					log.warn("The chunk at " + chunkOffset + " was dropped by the executor.");
+					result = new BulkChunkResult(chunkOffset, BulkSendReport.notDispatched(chunk),
+							new RejectedExecutionException("Chunk dropped by the executor."));
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					log.error("Error occurred while sending the chunk at " + chunkOffset + ": " + cause.getMessage(), cause);
+					result = new BulkChunkResult(chunkOffset, BulkSendReport.notDispatched(chunk), cause);
+				} catch (InterruptedException e) {
+					// The future is done, so get() doesn't wait.
+					Thread.currentThread().interrupt();
+					result = new BulkChunkResult(chunkOffset, BulkSendReport.notDispatched(chunk), e);
+				}
+				release(bytes);
+				if (result != null) {
+					results.add(result);
+				}
+				running.decrementAndGet();
+				drain();
+			}
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.devsu.push.sender.registry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.devsu.push.sender.util.BloomFilter;
+
+/**
+ * Filter that drops tokens known to be dead before a push message is dispatched.
+ * Lookups first check a Bloom filter, so tokens that were never registered (most of them) are accepted
+ * without touching the registry. Tokens that might be registered are confirmed against the registry,
+ * which holds the exact set, so expired or removed tokens are accepted again.
+ */
+public class DeadTokenFilter implements RegistryListener {
+
+	/**
+	 * The registry that holds the exact set of dead tokens.
+	 */
+	private final InactiveDeviceRegistry registry;
+
+	/**
+	 * The false positive rate of the Bloom filter.
+	 */
+	private final double falsePositiveRate;
+
+	/**
+	 * The quantity of tokens the current Bloom filter is sized for.
+	 */
+	private long capacity;
+
+	/**
+	 * The distinct tokens added to the current Bloom filter.
+	 */
+	private long insertions;
+
+	/**
+	 * The Bloom filter of every registered token.
+	 */
+	private volatile BloomFilter bloomFilter;
+
+	/**
+	 * The quantity of checked tokens.
+	 */
+	private final AtomicLong checkedCount = new AtomicLong();
+
+	/**
+	 * The quantity of dropped tokens.
+	 */
+	private final AtomicLong suppressedCount = new AtomicLong();
+
+	/**
+	 * Single param constructor.
+	 * @param registry The registry that holds the exact set of dead tokens.
+	 */
+	public DeadTokenFilter(InactiveDeviceRegistry registry) {
+		this(registry, Defaults.EXPECTED_TOKENS, Defaults.FALSE_POSITIVE_RATE);
+	}
+
+	/**
+	 * 3 param constructor.
+	 * @param registry The registry that holds the exact set of dead tokens.
+	 * @param expectedTokens The quantity of dead tokens the Bloom filter is initially sized for. It grows when exceeded.
+	 * @param falsePositiveRate The false positive rate of the Bloom filter.
+	 */
+	public DeadTokenFilter(InactiveDeviceRegistry registry, long expectedTokens, double falsePositiveRate) {
+		if (registry == null) {
+			throw new IllegalArgumentException("Registry is null.");
+		}
+		this.registry = registry;
+		this.falsePositiveRate = falsePositiveRate;
+		rebuild(expectedTokens);
+		registry.addListener(this);
+	}
+
+	/**
+	 * Checks if a token is dead, counting it as suppressed when it is.
+	 * @param token The push token.
+	 * @return <i>true</i> if the token is registered as dead.
+	 */
+	public boolean isDead(String token) {
+		checkedCount.incrementAndGet();
+		if (token == null || !bloomFilter.mightContain(token) || !registry.contains(token)) {
+			return false;
+		}
+		suppressedCount.incrementAndGet();
+		return true;
+	}
+
+	/*
+	 * @see com.devsu.push.sender.registry.RegistryListener#onRegistered(java.lang.String)
+	 */
+	@Override
+	public synchronized void onRegistered(String token) {
+		if (bloomFilter.mightContain(token)) {
+			// Already in the filter, like tokens reported again: only new tokens count towards its capacity.
+			return;
+		}
+		bloomFilter.put(token);
+		if (++insertions > capacity) {
+			rebuild(capacity * 2);
+		}
+	}
+
+	/**
+	 * Rebuilds the Bloom filter from the registry. Useful after many tokens have expired or been removed.
+	 */
+	public synchronized void rebuild() {
+		rebuild(Math.max(capacity, registry.size() * 2L));
+	}
+
+	/**
+	 * Rebuilds the Bloom filter from the registry.
+	 * @param newCapacity The quantity of tokens the new Bloom filter is sized for.
+	 */
+	private synchronized void rebuild(long newCapacity) {
+		BloomFilter newBloomFilter = new BloomFilter(newCapacity, falsePositiveRate);
+		long newInsertions = 0;
+		for (String token : registry.asMap().keySet()) {
+			newBloomFilter.put(token);
+			newInsertions++;
+		}
+		capacity = newCapacity;
+		insertions = newInsertions;
+		bloomFilter = newBloomFilter;
+	}
+
+	/**
+	 * Stops listening to the registry.
+	 */
+	public void detach() {
+		registry.removeListener(this);
+	}
+
+	/**
+	 * Gets the quantity of checked tokens.
+	 * @return The quantity of checked tokens.
+	 */
+	public long getCheckedCount() {
+		return checkedCount.get();
+	}
+
+	/**
+	 * Gets the quantity of tokens that were dropped because they are dead.
+	 * @return The quantity of dropped tokens.
+	 */
+	public long getSuppressedCount() {
+		return suppressedCount.get();
+	}
+
+	/**
+	 * Gets the registry that holds the exact set of dead tokens.
+	 * @return The registry.
+	 */
+	public InactiveDeviceRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final long EXPECTED_TOKENS = 100000;
+		private static final double FALSE_POSITIVE_RATE = 0.01;
+	}
+}
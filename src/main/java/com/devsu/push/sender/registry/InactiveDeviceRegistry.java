@@ -0,0 +1,368 @@
+package com.devsu.push.sender.registry;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread safe registry of push tokens that were reported as inactive or invalid by APNS/GCM.
+ * It holds at most <i>maxSize</i> tokens, evicting the oldest ones first, and forgets a token once
+ * its time to live has elapsed. A single registry can be shared by several push services.
+ */
+public class InactiveDeviceRegistry {
+
+	/**
+	 * Reason used for tokens reported by the APNS feedback service.
+	 */
+	public static final String REASON_APNS_FEEDBACK = "ApnsFeedback";
+
+	/**
+	 * The registered tokens.
+	 */
+	private final ConcurrentHashMap<String, Entry> entries;
+
+	/**
+	 * The registered entries, oldest first. Used to evict entries when the registry is full.
+	 */
+	private final ConcurrentLinkedQueue<Entry> insertionOrder;
+
+	/**
+	 * The max quantity of tokens.
+	 */
+	private final int maxSize;
+
+	/**
+	 * Milliseconds a token is kept after being registered.
+	 */
+	private final long timeToLiveMillis;
+
+	/**
+	 * The lock held by the thread purging expired entries on a write. Writers that don't get it skip the purge.
+	 */
+	private final ReentrantLock purgeLock = new ReentrantLock();
+
+	/**
+	 * The position of the purge over the entries, or <i>null</i> to start again from the oldest one.
+	 */
+	private Iterator<Entry> purgeCursor;
+
+	/**
+	 * The listeners notified when a token is registered.
+	 */
+	private final CopyOnWriteArrayList<RegistryListener> listeners = new CopyOnWriteArrayList<RegistryListener>();
+
+	/**
+	 * No param constructor.
+	 */
+	public InactiveDeviceRegistry() {
+		this(Defaults.MAX_SIZE, Defaults.TIME_TO_LIVE_MILLIS);
+	}
+
+	/**
+	 * 2 param constructor.
+	 * @param maxSize The max quantity of tokens.
+	 * @param timeToLiveMillis Milliseconds a token is kept after being registered.
+	 */
+	public InactiveDeviceRegistry(int maxSize, long timeToLiveMillis) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Max size must be greater than 0.");
+		}
+		if (timeToLiveMillis < 1) {
+			throw new IllegalArgumentException("Time to live must be greater than 0.");
+		}
+		this.maxSize = maxSize;
+		this.timeToLiveMillis = timeToLiveMillis;
+		this.entries = new ConcurrentHashMap<String, Entry>(Math.min(maxSize, Defaults.INITIAL_CAPACITY));
+		this.insertionOrder = new ConcurrentLinkedQueue<Entry>();
+	}
+
+	/**
+	 * Registers an inactive token.
+	 * @param token The push token.
+	 * @param reason The reason why the token is inactive, for instance the GCM error code.
+	 */
+	public void register(String token, String reason) {
+		register(token, new Date(), reason);
+	}
+
+	/**
+	 * Registers an inactive token.
+	 * @param token The push token.
+	 * @param inactiveSince The date since the token is inactive.
+	 * @param reason The reason why the token is inactive, for instance the GCM error code.
+	 */
+	public void register(String token, Date inactiveSince, String reason) {
+		if (token == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		Entry entry = new Entry(token, inactiveSince.getTime(), reason, now + timeToLiveMillis);
+		Entry previous = entries.putIfAbsent(token, entry);
+		if (previous != null) {
+			previous.refresh(inactiveSince.getTime(), reason, now + timeToLiveMillis);
+		} else {
+			insertionOrder.offer(entry);
+			evictOverflow();
+		}
+		for (RegistryListener listener : listeners) {
+			listener.onRegistered(token);
+		}
+		purgeSome(now);
+	}
+
+	/**
+	 * Registers every inactive token of a map.
+	 * @param inactiveDevices The inactive tokens, with the date since they are inactive.
+	 * @param reason The reason why the tokens are inactive.
+	 */
+	public void registerAll(Map<String, Date> inactiveDevices, String reason) {
+		for (Map.Entry<String, Date> device : inactiveDevices.entrySet()) {
+			register(device.getKey(), device.getValue(), reason);
+		}
+	}
+
+	/**
+	 * Adds a listener that is notified every time a token is registered.
+	 * @param listener The listener.
+	 */
+	public void addListener(RegistryListener listener) {
+		listeners.addIfAbsent(listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 * @param listener The listener.
+	 */
+	public void removeListener(RegistryListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Checks if a token is registered as inactive.
+	 * @param token The push token.
+	 * @return <i>true</i> if the token is registered and hasn't expired.
+	 */
+	public boolean contains(String token) {
+		return token != null && getLive(token) != null;
+	}
+
+	/**
+	 * Gets the date since a token is inactive.
+	 * @param token The push token.
+	 * @return The date since the token is inactive, or <i>null</i> if it is not registered.
+	 */
+	public Date getInactiveSince(String token) {
+		Entry entry = token == null ? null : getLive(token);
+		return entry == null ? null : new Date(entry.inactiveSince);
+	}
+
+	/**
+	 * Gets the reason why a token is inactive.
+	 * @param token The push token.
+	 * @return The reason why the token is inactive, or <i>null</i> if it is not registered.
+	 */
+	public String getReason(String token) {
+		Entry entry = token == null ? null : getLive(token);
+		return entry == null ? null : entry.reason;
+	}
+
+	/**
+	 * Removes a token, for instance after the device registers again.
+	 * @param token The push token.
+	 * @return <i>true</i> if the token was registered.
+	 */
+	public boolean remove(String token) {
+		return token != null && entries.remove(token) != null;
+	}
+
+	/**
+	 * Gets the quantity of registered tokens, including the expired ones that haven't been purged yet.
+	 * @return The quantity of registered tokens.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Removes every token.
+	 */
+	public void clear() {
+		entries.clear();
+		insertionOrder.clear();
+	}
+
+	/**
+	 * Gets a snapshot of the registered tokens.
+	 * @return An unmodifiable map of the registered tokens, with the date since they are inactive.
+	 */
+	public Map<String, Date> asMap() {
+		long now = System.currentTimeMillis();
+		Map<String, Date> snapshot = new HashMap<String, Date>();
+		for (Entry entry : entries.values()) {
+			if (!entry.isExpired(now)) {
+				snapshot.put(entry.token, new Date(entry.inactiveSince));
+			}
+		}
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	/**
+	 * Removes the expired tokens. Writes already remove a few of them each, so this is only needed to free the 
+	 * expired tokens at once.
+	 */
+	public void purgeExpired() {
+		long now = System.currentTimeMillis();
+		Iterator<Entry> iterator = insertionOrder.iterator();
+		while (iterator.hasNext()) {
+			purge(iterator, now);
+		}
+	}
+
+	/**
+	 * Checks the next few entries for expired tokens, going on from where the last call left off, so the cost of
+	 * the cleanup is spread over the writes.
+	 * @param now The current time, in milliseconds.
+	 */
+	private void purgeSome(long now) {
+		if (!purgeLock.tryLock()) {
+			return;
+		}
+		try {
+			if (purgeCursor == null) {
+				purgeCursor = insertionOrder.iterator();
+			}
+			for (int i = 0; i < Defaults.PURGE_BATCH_SIZE; i++) {
+				if (!purgeCursor.hasNext()) {
+					purgeCursor = null;
+					return;
+				}
+				purge(purgeCursor, now);
+			}
+		} finally {
+			purgeLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the next entry of an iterator over the insertion order if it has expired, and drops it from the
+	 * insertion order if it is no longer registered.
+	 * @param iterator The iterator over the insertion order.
+	 * @param now The current time, in milliseconds.
+	 */
+	private void purge(Iterator<Entry> iterator, long now) {
+		Entry entry = iterator.next();
+		if (entry.isExpired(now)) {
+			entries.remove(entry.token, entry);
+		}
+		if (entries.get(entry.token) != entry) {
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Gets the entry of a token, removing it if it has expired.
+	 * @param token The push token.
+	 * @return The entry, or <i>null</i> if the token is not registered or has expired.
+	 */
+	private Entry getLive(String token) {
+		Entry entry = entries.get(token);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.isExpired(System.currentTimeMillis())) {
+			entries.remove(token, entry);
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Evicts the oldest entries while the registry is over its max size.
+	 */
+	private void evictOverflow() {
+		while (entries.size() > maxSize) {
+			Entry eldest = insertionOrder.poll();
+			if (eldest == null) {
+				return;
+			}
+			entries.remove(eldest.token, eldest);
+		}
+	}
+
+	/**
+	 * A registered token.
+	 */
+	private static class Entry {
+
+		/**
+		 * The push token.
+		 */
+		private final String token;
+
+		/**
+		 * The time since the token is inactive, in milliseconds.
+		 */
+		private volatile long inactiveSince;
+
+		/**
+		 * The reason why the token is inactive.
+		 */
+		private volatile String reason;
+
+		/**
+		 * The time when the entry expires, in milliseconds.
+		 */
+		private volatile long expiresAt;
+
+		/**
+		 * 4 param constructor.
+		 * @param token The push token.
+		 * @param inactiveSince The time since the token is inactive, in milliseconds.
+		 * @param reason The reason why the token is inactive.
+		 * @param expiresAt The time when the entry expires, in milliseconds.
+		 */
+		private Entry(String token, long inactiveSince, String reason, long expiresAt) {
+			this.token = token;
+			this.inactiveSince = inactiveSince;
+			this.reason = reason;
+			this.expiresAt = expiresAt;
+		}
+
+		/**
+		 * Updates the entry after the token is reported again.
+		 * @param inactiveSince The time since the token is inactive, in milliseconds.
+		 * @param reason The reason why the token is inactive.
+		 * @param expiresAt The time when the entry expires, in milliseconds.
+		 */
+		private void refresh(long inactiveSince, String reason, long expiresAt) {
+			this.inactiveSince = inactiveSince;
+			this.reason = reason;
+			this.expiresAt = expiresAt;
+		}
+
+		/**
+		 * Checks if the entry has expired.
+		 * @param now The current time, in milliseconds.
+		 * @return <i>true</i> if the entry has expired.
+		 */
+		private boolean isExpired(long now) {
+			return now >= expiresAt;
+		}
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int MAX_SIZE = 1000000;
+		private static final long TIME_TO_LIVE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+		private static final int INITIAL_CAPACITY = 1024;
+		private static final int PURGE_BATCH_SIZE = 8;
+	}
+}
@@ -0,0 +1,13 @@
+package com.devsu.push.sender.registry;
+
+/**
+ * Listener that is notified when a token is added to an {@link InactiveDeviceRegistry}.
+ */
+public interface RegistryListener {
+
+	/**
+	 * Executed when a token is registered as inactive.
+	 * @param token The push token.
+	 */
+	void onRegistered(String token);
+}
@@ -0,0 +1,170 @@
+package com.devsu.push.sender.registry;
+
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers the tokens that were sent each payload recently, so the same payload isn't sent to the same token twice
+ * within the window. A pair is recorded when it is selected for sending, so concurrent sends don't both deliver it,
+ * and is forgotten again if the provider doesn't accept it. Expired entries are purged a few at a time as new ones
+ * are recorded.
+ */
+public class ResendSuppressionWindow {
+
+	/**
+	 * The charset used to fingerprint payloads.
+	 */
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * FNV-1a 64 bit offset basis.
+	 */
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	/**
+	 * FNV-1a 64 bit prime.
+	 */
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * The window in milliseconds.
+	 */
+	private final long windowMillis;
+
+	/**
+	 * The last time every payload and token pair was sent.
+	 */
+	private final ConcurrentMap<String, Long> lastSent = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * The lock of the purge cursor. Recording threads that don't get it skip the purge.
+	 */
+	private final ReentrantLock purgeLock = new ReentrantLock();
+
+	/**
+	 * The position of the purge over the pairs, or <i>null</i> to start again from the first one.
+	 */
+	private Iterator<Map.Entry<String, Long>> purgeCursor;
+
+	/**
+	 * Single param constructor.
+	 * @param windowMillis The window in milliseconds during which a payload isn't sent again to the same token.
+	 */
+	public ResendSuppressionWindow(long windowMillis) {
+		if (windowMillis < 1) {
+			throw new IllegalArgumentException("Suppression window must be greater than 0.");
+		}
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Computes the fingerprint of a payload, a 64 bit hash of its text.
+	 * @param payload The payload text.
+	 * @return The payload fingerprint.
+	 */
+	public static String fingerprint(String payload) {
+		long hash = FNV_OFFSET;
+		for (byte b : String.valueOf(payload).getBytes(CHARSET)) {
+			hash ^= b & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return Long.toHexString(hash);
+	}
+
+	/**
+	 * Records that a payload is about to be sent to a token, unless it was already sent within the window.
+	 * @param payloadFingerprint The payload fingerprint.
+	 * @param token The push token.
+	 * @return <i>true</i> if it can be sent, <i>false</i> if it was sent within the window.
+	 */
+	public boolean tryRecord(String payloadFingerprint, String token) {
+		long now = System.currentTimeMillis();
+		purgeSome(now);
+		String key = payloadFingerprint + '|' + token;
+		Long newTime = now;
+		while (true) {
+			Long previous = lastSent.putIfAbsent(key, newTime);
+			if (previous == null) {
+				return true;
+			}
+			if (now - previous < windowMillis) {
+				return false;
+			}
+			if (lastSent.replace(key, previous, newTime)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Forgets that a payload was sent to a token, so it can be sent again within the window. Used for the tokens 
+	 * that were recorded but not accepted by the provider.
+	 * @param payloadFingerprint The payload fingerprint.
+	 * @param token The push token.
+	 */
+	public void forget(String payloadFingerprint, String token) {
+		lastSent.remove(payloadFingerprint + '|' + token);
+	}
+
+	/**
+	 * Gets the quantity of payload and token pairs remembered.
+	 * @return The quantity of pairs.
+	 */
+	public int size() {
+		return lastSent.size();
+	}
+
+	/**
+	 * Forgets every payload and token pair.
+	 */
+	public void clear() {
+		lastSent.clear();
+	}
+
+	/**
+	 * Gets the window in milliseconds.
+	 * @return The window in milliseconds.
+	 */
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	/**
+	 * Checks the next few pairs and removes the expired ones. Every record checks a few pairs, so the whole map is 
+	 * checked many times per window without any sending thread scanning all of it.
+	 * @param now The current time.
+	 */
+	private void purgeSome(long now) {
+		if (!purgeLock.tryLock()) {
+			return;
+		}
+		try {
+			if (purgeCursor == null) {
+				purgeCursor = lastSent.entrySet().iterator();
+			}
+			for (int i = 0; i < Defaults.PURGE_BATCH_SIZE; i++) {
+				if (!purgeCursor.hasNext()) {
+					purgeCursor = null;
+					return;
+				}
+				Map.Entry<String, Long> entry = purgeCursor.next();
+				if (now - entry.getValue() >= windowMillis) {
+					lastSent.remove(entry.getKey(), entry.getValue());
+				}
+			}
+		} finally {
+			purgeLock.unlock();
+		}
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int PURGE_BATCH_SIZE = 8;
+	}
+}
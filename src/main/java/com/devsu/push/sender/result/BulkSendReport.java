@@ -0,0 +1,316 @@
+package com.devsu.push.sender.result;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.android.gcm.server.MulticastResult;
+import com.google.android.gcm.server.Result;
+
+/**
+ * Per token outcome of a bulk push message. The data is kept in parallel arrays indexed like the tokens,
+ * so a report costs a few references per token instead of one object per token.
+ * Different threads can record disjoint token ranges at the same time.
+ */
+public class BulkSendReport {
+
+	/**
+	 * Empty token array.
+	 */
+	private static final String[] NO_TOKENS = new String[0];
+
+	/**
+	 * The push tokens. This is the caller's array, it is not copied.
+	 */
+	private final String[] tokens;
+
+	/**
+	 * The status code of each token.
+	 */
+	private final byte[] statuses;
+
+	/**
+	 * The error code of each token, created when the first error is recorded.
+	 */
+	private volatile String[] errorCodes;
+
+	/**
+	 * The message id of each token, created when the first message id is recorded.
+	 */
+	private volatile String[] messageIds;
+
+	/**
+	 * The canonical registration id of each token, created when the first canonical registration id is recorded.
+	 */
+	private volatile String[] canonicalRegistrationIds;
+
+	/**
+	 * Indicates if the push message was dispatched at all.
+	 */
+	private final boolean dispatched;
+
+	/**
+	 * Single param constructor. Every token starts as {@link TokenStatus#NOT_SENT}.
+	 * @param tokens The push tokens.
+	 */
+	public BulkSendReport(String... tokens) {
+		this(true, tokens);
+	}
+
+	/**
+	 * 2 param constructor.
+	 * @param dispatched Indicates if the push message was dispatched at all.
+	 * @param tokens The push tokens.
+	 */
+	private BulkSendReport(boolean dispatched, String... tokens) {
+		this.tokens = tokens == null ? NO_TOKENS : tokens;
+		this.statuses = new byte[this.tokens.length];
+		this.dispatched = dispatched;
+	}
+
+	/**
+	 * Creates the report of a bulk push message that was not dispatched, for instance when the service is disabled
+	 * or the message is invalid.
+	 * @param tokens The push tokens.
+	 * @return The report.
+	 */
+	public static BulkSendReport notDispatched(String... tokens) {
+		return new BulkSendReport(false, tokens);
+	}
+
+	/**
+	 * Records the outcome of a token.
+	 * @param index The token index.
+	 * @param status The token status.
+	 * @param errorCode The error code, or <i>null</i>.
+	 * @param messageId The message id, or <i>null</i>.
+	 * @param canonicalRegistrationId The canonical registration id, or <i>null</i>.
+	 */
+	public void record(int index, TokenStatus status, String errorCode, String messageId, String canonicalRegistrationId) {
+		statuses[index] = status.code();
+		if (errorCode != null) {
+			errorCodes()[index] = errorCode;
+		}
+		if (messageId != null) {
+			messageIds()[index] = messageId;
+		}
+		if (canonicalRegistrationId != null) {
+			canonicalRegistrationIds()[index] = canonicalRegistrationId;
+		}
+	}
+
+	/**
+	 * Records the same status for a range of tokens.
+	 * @param fromIndex The first token index, inclusive.
+	 * @param toIndex The last token index, exclusive.
+	 * @param status The token status.
+	 */
+	public void record(int fromIndex, int toIndex, TokenStatus status) {
+		byte code = status.code();
+		for (int i = fromIndex; i < toIndex; i++) {
+			statuses[i] = code;
+		}
+	}
+
+	/**
+	 * Records the outcome of a GCM multicast request.
+	 * @param offset The index of the first token of the multicast request.
+	 * @param result The result retrieved from GCM. Its results are ordered like the tokens of the request.
+	 */
+	public void recordMulticast(int offset, MulticastResult result) {
+		List<Result> results = result.getResults();
+		if (results == null) {
+			return;
+		}
+		for (int i = 0; i < results.size(); i++) {
+			recordResult(offset + i, results.get(i));
+		}
+	}
+
+	/**
+	 * Records the outcome of a GCM result.
+	 * @param index The token index.
+	 * @param result The result retrieved from GCM.
+	 */
+	public void recordResult(int index, Result result) {
+		String errorCode = result.getErrorCodeName();
+		TokenStatus status = errorCode == null || errorCode.isEmpty() ? TokenStatus.SENT : TokenStatus.FAILED;
+		record(index, status, status == TokenStatus.FAILED ? errorCode : null, result.getMessageId(), 
+				result.getCanonicalRegistrationId());
+	}
+
+	/**
+	 * Gets the quantity of tokens.
+	 * @return The quantity of tokens.
+	 */
+	public int size() {
+		return tokens.length;
+	}
+
+	/**
+	 * Gets a token.
+	 * @param index The token index.
+	 * @return The token.
+	 */
+	public String getToken(int index) {
+		return tokens[index];
+	}
+
+	/**
+	 * Gets the status of a token.
+	 * @param index The token index.
+	 * @return The token status.
+	 */
+	public TokenStatus getStatus(int index) {
+		return TokenStatus.ofCode(statuses[index]);
+	}
+
+	/**
+	 * Gets the error code of a token.
+	 * @param index The token index.
+	 * @return The error code, or <i>null</i> if there's none.
+	 */
+	public String getErrorCode(int index) {
+		String[] values = errorCodes;
+		return values == null ? null : values[index];
+	}
+
+	/**
+	 * Gets the message id of a token.
+	 * @param index The token index.
+	 * @return The message id, or <i>null</i> if there's none.
+	 */
+	public String getMessageId(int index) {
+		String[] values = messageIds;
+		return values == null ? null : values[index];
+	}
+
+	/**
+	 * Gets the canonical registration id of a token. When present, the token should be replaced by it.
+	 * @param index The token index.
+	 * @return The canonical registration id, or <i>null</i> if there's none.
+	 */
+	public String getCanonicalRegistrationId(int index) {
+		String[] values = canonicalRegistrationIds;
+		return values == null ? null : values[index];
+	}
+
+	/**
+	 * Counts the tokens with a status.
+	 * @param status The token status.
+	 * @return The quantity of tokens with that status.
+	 */
+	public int count(TokenStatus status) {
+		byte code = status.code();
+		int count = 0;
+		for (byte statusCode : statuses) {
+			if (statusCode == code) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the tokens with a status.
+	 * @param status The token status.
+	 * @return The tokens with that status.
+	 */
+	public List<String> getTokens(TokenStatus status) {
+		byte code = status.code();
+		List<String> result = new ArrayList<String>();
+		for (int i = 0; i < statuses.length; i++) {
+			if (statuses[i] == code) {
+				result.add(tokens[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Indicates if the push message was dispatched and accepted for every token that wasn't known to be dead.
+	 * @return <i>true</i> if the push message was dispatched and no token failed or was left unsent.
+	 */
+	public boolean isSuccess() {
+		if (!dispatched) {
+			return false;
+		}
+		byte failed = TokenStatus.FAILED.code();
+		byte notSent = TokenStatus.NOT_SENT.code();
+		for (byte statusCode : statuses) {
+			if (statusCode == failed || statusCode == notSent) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Indicates if the push message was dispatched at all.
+	 * @return <i>false</i> if the push message was not dispatched, for instance when the service is disabled.
+	 */
+	public boolean isDispatched() {
+		return dispatched;
+	}
+
+	/**
+	 * Gets the error code array, creating it on first use.
+	 * @return The error code array.
+	 */
+	private String[] errorCodes() {
+		String[] values = errorCodes;
+		if (values == null) {
+			synchronized (this) {
+				if (errorCodes == null) {
+					errorCodes = new String[tokens.length];
+				}
+				values = errorCodes;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Gets the message id array, creating it on first use.
+	 * @return The message id array.
+	 */
+	private String[] messageIds() {
+		String[] values = messageIds;
+		if (values == null) {
+			synchronized (this) {
+				if (messageIds == null) {
+					messageIds = new String[tokens.length];
+				}
+				values = messageIds;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Gets the canonical registration id array, creating it on first use.
+	 * @return The canonical registration id array.
+	 */
+	private String[] canonicalRegistrationIds() {
+		String[] values = canonicalRegistrationIds;
+		if (values == null) {
+			synchronized (this) {
+				if (canonicalRegistrationIds == null) {
+					canonicalRegistrationIds = new String[tokens.length];
+				}
+				values = canonicalRegistrationIds;
+			}
+		}
+		return values;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "BulkSendReport [size=" + size() + ", sent=" + count(TokenStatus.SENT) + ", failed=" 
+				+ count(TokenStatus.FAILED) + ", inactive=" + count(TokenStatus.INACTIVE) + ", suppressed=" + count(TokenStatus.SUPPRESSED) + ", duplicate=" 
+				+ count(TokenStatus.DUPLICATE) + ", notSent=" 
+				+ count(TokenStatus.NOT_SENT) + "]";
+	}
+}
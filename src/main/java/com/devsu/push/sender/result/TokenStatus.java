@@ -0,0 +1,65 @@
+package com.devsu.push.sender.result;
+
+/**
+ * Delivery status of a single token in a bulk push message.
+ */
+public enum TokenStatus {
+
+	/**
+	 * The push message was not sent to this token.
+	 */
+	NOT_SENT,
+
+	/**
+	 * The push message was accepted by APNS/GCM for this token.
+	 */
+	SENT,
+
+	/**
+	 * APNS/GCM rejected the push message for this token.
+	 */
+	FAILED,
+
+	/**
+	 * The push message was sent, but the token has been reported as inactive.
+	 */
+	INACTIVE,
+
+	/**
+	 * The push message was not sent because the token is known to be dead.
+	 */
+	SUPPRESSED,
+
+	/**
+	 * APNS/GCM failed with a transient error, and the token is being retried in the background.
+	 */
+	RETRY_SCHEDULED,
+
+	/**
+	 * The push message was not sent because the token appears earlier on the same push message,
+	 * or because it was sent the same payload within the resend suppression window.
+	 */
+	DUPLICATE;
+
+	/**
+	 * Cached values, to avoid cloning the array on every lookup.
+	 */
+	private static final TokenStatus[] VALUES = values();
+
+	/**
+	 * Gets the status for a code.
+	 * @param code The status code.
+	 * @return The status.
+	 */
+	static TokenStatus ofCode(byte code) {
+		return VALUES[code];
+	}
+
+	/**
+	 * Gets the code that represents this status.
+	 * @return The status code.
+	 */
+	byte code() {
+		return (byte) ordinal();
+	}
+}
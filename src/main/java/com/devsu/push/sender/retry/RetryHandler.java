@@ -0,0 +1,18 @@
+package com.devsu.push.sender.retry;
+
+import java.util.List;
+
+/**
+ * Sends the tokens of a retry. Implemented by the push services.
+ * @param <P> The type of the push message payload.
+ */
+public interface RetryHandler<P> {
+
+	/**
+	 * Sends a push message to the tokens of a retry. Tokens that fail again must be scheduled again on the scheduler.
+	 * @param payload The push message payload.
+	 * @param tokens The push tokens, coalesced from every failed request with the same payload and attempt.
+	 * @param attempt The retry attempt, starting at 1.
+	 */
+	void retry(P payload, List<String> tokens, int attempt);
+}
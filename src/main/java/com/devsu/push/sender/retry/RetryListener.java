@@ -0,0 +1,22 @@
+package com.devsu.push.sender.retry;
+
+/**
+ * Listener notified of the final outcome of the tokens retried in the background.
+ */
+public interface RetryListener {
+
+	/**
+	 * Called when a retried token is sent.
+	 * @param token The push token.
+	 * @param attempt The retry attempt that succeeded, starting at 1.
+	 */
+	void onRetrySucceeded(String token, int attempt);
+
+	/**
+	 * Called when a retried token fails for good, because of a permanent error or because it ran out of attempts.
+	 * @param token The push token.
+	 * @param attempt The last retry attempt, or 0 if the token was never retried.
+	 * @param errorCode The last error code.
+	 */
+	void onRetryFailed(String token, int attempt, String errorCode);
+}
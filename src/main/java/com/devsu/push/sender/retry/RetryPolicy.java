@@ -0,0 +1,173 @@
+package com.devsu.push.sender.retry;
+
+import java.util.Random;
+
+/**
+ * Settings of the retries of failed tokens: exponential backoff with jitter, up to a max quantity of attempts.
+ */
+public class RetryPolicy {
+
+	/**
+	 * The max quantity of retries of a token.
+	 */
+	private int maxAttempts;
+
+	/**
+	 * Milliseconds before the first retry.
+	 */
+	private long initialDelayMillis;
+
+	/**
+	 * Max milliseconds before a retry.
+	 */
+	private long maxDelayMillis;
+
+	/**
+	 * The factor the delay is multiplied by on every retry.
+	 */
+	private double multiplier;
+
+	/**
+	 * The fraction of the delay that is randomized, from 0 (no jitter) to 1 (full jitter).
+	 */
+	private double jitter;
+
+	/**
+	 * No param constructor.
+	 */
+	public RetryPolicy() {
+		maxAttempts = Defaults.MAX_ATTEMPTS;
+		initialDelayMillis = Defaults.INITIAL_DELAY_MILLIS;
+		maxDelayMillis = Defaults.MAX_DELAY_MILLIS;
+		multiplier = Defaults.MULTIPLIER;
+		jitter = Defaults.JITTER;
+	}
+
+	/**
+	 * Computes the delay before a retry.
+	 * @param attempt The retry attempt, starting at 1.
+	 * @param random The source of the jitter.
+	 * @return The milliseconds to wait.
+	 */
+	public long computeDelayMillis(int attempt, Random random) {
+		double delay = initialDelayMillis * Math.pow(multiplier, Math.max(0, attempt - 1));
+		delay = Math.min(delay, maxDelayMillis);
+		delay -= delay * jitter * random.nextDouble();
+		return Math.max(0, (long) delay);
+	}
+
+	/**
+	 * Indicates if a token can be retried again.
+	 * @param attempt The retry attempt, starting at 1.
+	 * @return <i>true</i> if the attempt is within the max attempts.
+	 */
+	public boolean allowsAttempt(int attempt) {
+		return attempt <= maxAttempts;
+	}
+
+	/**
+	 * Gets the max quantity of retries of a token.
+	 * @return The max attempts.
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * Sets the max quantity of retries of a token.
+	 * @param maxAttempts The max attempts.
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		if (maxAttempts < 0) {
+			throw new IllegalArgumentException("Max attempts can't be negative.");
+		}
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Gets the milliseconds before the first retry.
+	 * @return The initial delay.
+	 */
+	public long getInitialDelayMillis() {
+		return initialDelayMillis;
+	}
+
+	/**
+	 * Sets the milliseconds before the first retry.
+	 * @param initialDelayMillis The initial delay.
+	 */
+	public void setInitialDelayMillis(long initialDelayMillis) {
+		if (initialDelayMillis < 0) {
+			throw new IllegalArgumentException("Initial delay can't be negative.");
+		}
+		this.initialDelayMillis = initialDelayMillis;
+	}
+
+	/**
+	 * Gets the max milliseconds before a retry.
+	 * @return The max delay.
+	 */
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	/**
+	 * Sets the max milliseconds before a retry.
+	 * @param maxDelayMillis The max delay.
+	 */
+	public void setMaxDelayMillis(long maxDelayMillis) {
+		if (maxDelayMillis < 0) {
+			throw new IllegalArgumentException("Max delay can't be negative.");
+		}
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	/**
+	 * Gets the factor the delay is multiplied by on every retry.
+	 * @return The multiplier.
+	 */
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	/**
+	 * Sets the factor the delay is multiplied by on every retry.
+	 * @param multiplier The multiplier.
+	 */
+	public void setMultiplier(double multiplier) {
+		if (!(multiplier >= 1)) {
+			throw new IllegalArgumentException("Multiplier must be at least 1.");
+		}
+		this.multiplier = multiplier;
+	}
+
+	/**
+	 * Gets the fraction of the delay that is randomized.
+	 * @return The jitter.
+	 */
+	public double getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * Sets the fraction of the delay that is randomized, so retries of many tokens don't hit the provider at once.
+	 * @param jitter The jitter, from 0 (no jitter) to 1 (full jitter).
+	 */
+	public void setJitter(double jitter) {
+		if (!(jitter >= 0 && jitter <= 1)) {
+			throw new IllegalArgumentException("Jitter must be between 0 and 1.");
+		}
+		this.jitter = jitter;
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int MAX_ATTEMPTS = 3;
+		private static final long INITIAL_DELAY_MILLIS = 1000;
+		private static final long MAX_DELAY_MILLIS = 60000;
+		private static final double MULTIPLIER = 2;
+		private static final double JITTER = 0.5;
+	}
+}
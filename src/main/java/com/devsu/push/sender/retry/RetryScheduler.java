@@ -0,0 +1,435 @@
+package com.devsu.push.sender.retry;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.devsu.push.sender.util.NamedThreadFactory;
+
+/**
+ * Retries failed tokens in the background, without blocking any thread while waiting. Tokens are kept on a timer
+ * with exponential backoff and jitter; tokens with the same payload and attempt that fail while a retry is pending
+ * join it, so they are coalesced into a single request. Due retries are sent on the dispatch executor.
+ */
+public class RetryScheduler implements Closeable {
+
+	/**
+	 * Logger.
+	 */
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * The retry settings.
+	 */
+	private final RetryPolicy policy;
+
+	/**
+	 * The timer that holds the pending retries.
+	 */
+	private final ScheduledExecutorService timer;
+
+	/**
+	 * The executor that sends the due retries.
+	 */
+	private final Executor dispatchExecutor;
+
+	/**
+	 * Indicates if the executors were created by this scheduler, so they must be shut down when it is closed.
+	 */
+	private final boolean ownsExecutors;
+
+	/**
+	 * The pending retries, by handler, payload and attempt.
+	 */
+	private final ConcurrentMap<RetryKey, PendingRetry<?>> pendingRetries = new ConcurrentHashMap<RetryKey, PendingRetry<?>>();
+
+	/**
+	 * The quantity of tokens waiting for a retry.
+	 */
+	private final AtomicInteger pendingTokens = new AtomicInteger();
+
+	/**
+	 * The listener notified of the final outcome of the retried tokens, or <i>null</i>.
+	 */
+	private volatile RetryListener retryListener;
+
+	/**
+	 * Single param constructor. The scheduler creates its own timer and dispatch threads.
+	 * @param policy The retry settings.
+	 */
+	public RetryScheduler(RetryPolicy policy) {
+		this(policy, newTimer(), Executors.newFixedThreadPool(Defaults.DISPATCH_THREADS, 
+				new NamedThreadFactory("push-retry", true)), true);
+	}
+
+	/**
+	 * 3 param constructor.
+	 * @param policy The retry settings.
+	 * @param timer The timer that holds the pending retries. It only waits, it never sends.
+	 * @param dispatchExecutor The executor that sends the due retries.
+	 */
+	public RetryScheduler(RetryPolicy policy, ScheduledExecutorService timer, Executor dispatchExecutor) {
+		this(policy, timer, dispatchExecutor, false);
+	}
+
+	/**
+	 * 4 param constructor.
+	 * @param policy The retry settings.
+	 * @param timer The timer that holds the pending retries.
+	 * @param dispatchExecutor The executor that sends the due retries.
+	 * @param ownsExecutors Indicates if the executors must be shut down when the scheduler is closed.
+	 */
+	private RetryScheduler(RetryPolicy policy, ScheduledExecutorService timer, Executor dispatchExecutor, 
+			boolean ownsExecutors) {
+		if (policy == null) {
+			throw new IllegalArgumentException("Retry policy is null.");
+		}
+		if (timer == null || dispatchExecutor == null) {
+			throw new IllegalArgumentException("Retry executors can't be null.");
+		}
+		this.policy = policy;
+		this.timer = timer;
+		this.dispatchExecutor = dispatchExecutor;
+		this.ownsExecutors = ownsExecutors;
+	}
+
+	/**
+	 * Creates the timer of a scheduler, which drops cancelled retries right away.
+	 * @return The timer.
+	 */
+	private static ScheduledExecutorService newTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("push-retry-timer", true));
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+
+	/**
+	 * Schedules the retry of failed tokens. When a retry with the same handler, payload and attempt is pending,
+	 * the tokens join it. Tokens that ran out of attempts are reported as failed to the retry listener.
+	 * @param handler The handler that sends the retry.
+	 * @param payload The push message payload.
+	 * @param tokens The failed push tokens.
+	 * @param attempt The retry attempt, starting at 1.
+	 * @param errorCode The error code of the failure.
+	 * @return <i>true</i> if the tokens were scheduled, <i>false</i> if they ran out of attempts.
+	 */
+	public <P> boolean schedule(RetryHandler<P> handler, P payload, Collection<String> tokens, int attempt, 
+			String errorCode) {
+		if (handler == null) {
+			throw new IllegalArgumentException("Retry handler is null.");
+		}
+		if (tokens == null || tokens.isEmpty()) {
+			return true;
+		}
+		if (!policy.allowsAttempt(attempt)) {
+			for (String token : tokens) {
+				reportFailed(token, attempt - 1, errorCode);
+			}
+			return false;
+		}
+		RetryKey key = new RetryKey(handler, payload, attempt);
+		while (true) {
+			@SuppressWarnings("unchecked")
+			PendingRetry<P> pendingRetry = (PendingRetry<P>) pendingRetries.get(key);
+			if (pendingRetry == null) {
+				PendingRetry<P> newRetry = new PendingRetry<P>(key, handler, payload, attempt);
+				newRetry.add(tokens, errorCode);
+				if (pendingRetries.putIfAbsent(key, newRetry) == null) {
+					pendingTokens.addAndGet(tokens.size());
+					start(newRetry);
+					return true;
+				}
+			} else if (pendingRetry.add(tokens, errorCode)) {
+				pendingTokens.addAndGet(tokens.size());
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Starts the timer of a new pending retry.
+	 * @param pendingRetry The pending retry.
+	 */
+	private void start(final PendingRetry<?> pendingRetry) {
+		long delayMillis = policy.computeDelayMillis(pendingRetry.attempt, ThreadLocalRandom.current());
+		try {
+			timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					dispatch(pendingRetry);
+				}
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			pendingRetries.remove(pendingRetry.key, pendingRetry);
+			List<String> tokens = pendingRetry.drain();
+			pendingTokens.addAndGet(-tokens.size());
+			log.warn("Retry scheduler is closed, " + tokens.size() + " tokens won't be retried.");
+			reportDropped(pendingRetry, tokens);
+		}
+	}
+
+	/**
+	 * Hands a due retry to the dispatch executor. Tokens that fail after this point start a new pending retry.
+	 * @param pendingRetry The due retry.
+	 */
+	private <P> void dispatch(final PendingRetry<P> pendingRetry) {
+		pendingRetries.remove(pendingRetry.key, pendingRetry);
+		final List<String> tokens = pendingRetry.drain();
+		pendingTokens.addAndGet(-tokens.size());
+		try {
+			dispatchExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						pendingRetry.handler.retry(pendingRetry.payload, tokens, pendingRetry.attempt);
+					} catch (RuntimeException e) {
+						log.error("Error occurred while retrying " + tokens.size() + " tokens.", e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			log.warn("Retry executor rejected the retry of " + tokens.size() + " tokens.");
+			reportDropped(pendingRetry, tokens);
+		}
+	}
+
+	/**
+	 * Reports the tokens of a retry that can't run as failed for good to the retry listener, with the error code
+	 * of their last attempt.
+	 * @param pendingRetry The retry.
+	 * @param tokens The tokens taken from the retry.
+	 */
+	private void reportDropped(PendingRetry<?> pendingRetry, List<String> tokens) {
+		for (int i = 0; i < tokens.size(); i++) {
+			reportFailed(tokens.get(i), pendingRetry.attempt - 1, pendingRetry.getErrorCode(i));
+		}
+	}
+
+	/**
+	 * Reports a retried token as sent to the retry listener.
+	 * @param token The push token.
+	 * @param attempt The retry attempt that succeeded.
+	 */
+	public void reportSucceeded(String token, int attempt) {
+		RetryListener listener = retryListener;
+		if (listener != null) {
+			listener.onRetrySucceeded(token, attempt);
+		}
+	}
+
+	/**
+	 * Reports a retried token as failed for good to the retry listener.
+	 * @param token The push token.
+	 * @param attempt The last retry attempt.
+	 * @param errorCode The last error code.
+	 */
+	public void reportFailed(String token, int attempt, String errorCode) {
+		RetryListener listener = retryListener;
+		if (listener != null) {
+			listener.onRetryFailed(token, attempt, errorCode);
+		}
+	}
+
+	/**
+	 * Gets the quantity of tokens waiting for a retry.
+	 * @return The quantity of pending tokens.
+	 */
+	public int getPendingCount() {
+		return pendingTokens.get();
+	}
+
+	/**
+	 * Gets the retry settings.
+	 * @return The retry policy.
+	 */
+	public RetryPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Sets the listener notified of the final outcome of the retried tokens.
+	 * @param retryListener The retry listener, or <i>null</i>.
+	 */
+	public void setRetryListener(RetryListener retryListener) {
+		this.retryListener = retryListener;
+	}
+
+	/**
+	 * Stops the scheduler. Pending retries are dropped; executors passed to the constructor are not shut down.
+	 */
+	@Override
+	public void close() {
+		if (!ownsExecutors) {
+			return;
+		}
+		timer.shutdownNow();
+		((ExecutorService) dispatchExecutor).shutdown();
+	}
+
+	/**
+	 * Identity of a pending retry.
+	 */
+	private static class RetryKey {
+
+		/**
+		 * The handler that sends the retry.
+		 */
+		private final RetryHandler<?> handler;
+
+		/**
+		 * The push message payload.
+		 */
+		private final Object payload;
+
+		/**
+		 * The retry attempt.
+		 */
+		private final int attempt;
+
+		/**
+		 * 3 param constructor.
+		 * @param handler The handler that sends the retry.
+		 * @param payload The push message payload.
+		 * @param attempt The retry attempt.
+		 */
+		private RetryKey(RetryHandler<?> handler, Object payload, int attempt) {
+			this.handler = handler;
+			this.payload = payload;
+			this.attempt = attempt;
+		}
+
+		/*
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			int result = System.identityHashCode(handler);
+			result = 31 * result + (payload == null ? 0 : payload.hashCode());
+			return 31 * result + attempt;
+		}
+
+		/*
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof RetryKey)) {
+				return false;
+			}
+			RetryKey other = (RetryKey) obj;
+			return handler == other.handler && attempt == other.attempt 
+					&& (payload == null ? other.payload == null : payload.equals(other.payload));
+		}
+	}
+
+	/**
+	 * Tokens waiting for the same retry.
+	 * @param <P> The type of the push message payload.
+	 */
+	private static class PendingRetry<P> {
+
+		/**
+		 * The identity of the retry.
+		 */
+		private final RetryKey key;
+
+		/**
+		 * The handler that sends the retry.
+		 */
+		private final RetryHandler<P> handler;
+
+		/**
+		 * The push message payload.
+		 */
+		private final P payload;
+
+		/**
+		 * The retry attempt.
+		 */
+		private final int attempt;
+
+		/**
+		 * The tokens, or <i>null</i> once the retry is due.
+		 */
+		private List<String> tokens = new ArrayList<String>();
+
+		/**
+		 * The error code of the last attempt of every token, in the order of the tokens.
+		 */
+		private final List<String> errorCodes = new ArrayList<String>();
+
+		/**
+		 * 4 param constructor.
+		 * @param key The identity of the retry.
+		 * @param handler The handler that sends the retry.
+		 * @param payload The push message payload.
+		 * @param attempt The retry attempt.
+		 */
+		private PendingRetry(RetryKey key, RetryHandler<P> handler, P payload, int attempt) {
+			this.key = key;
+			this.handler = handler;
+			this.payload = payload;
+			this.attempt = attempt;
+		}
+
+		/**
+		 * Adds tokens to the retry.
+		 * @param newTokens The push tokens.
+		 * @param errorCode The error code of their last attempt.
+		 * @return <i>false</i> if the retry is already due and can't take more tokens.
+		 */
+		private synchronized boolean add(Collection<String> newTokens, String errorCode) {
+			if (tokens == null) {
+				return false;
+			}
+			tokens.addAll(newTokens);
+			errorCodes.addAll(Collections.nCopies(newTokens.size(), errorCode));
+			return true;
+		}
+
+		/**
+		 * Gets the error code of the last attempt of a token.
+		 * @param index The position of the token among the tokens of the retry.
+		 * @return The error code.
+		 */
+		private synchronized String getErrorCode(int index) {
+			return errorCodes.get(index);
+		}
+
+		/**
+		 * Takes the tokens of a due retry. No tokens can be added after this call.
+		 * @return The tokens.
+		 */
+		private synchronized List<String> drain() {
+			List<String> drained = tokens;
+			tokens = null;
+			return drained;
+		}
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int DISPATCH_THREADS = 2;
+	}
+}
@@ -0,0 +1,262 @@
+package com.devsu.push.sender.service.async;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the push message requests an async push service has accepted and not finished yet, by quantity and by the
+ * estimated memory their content holds. A request is only accepted when it fits in both budgets, so a burst of
+ * requests is turned away as soon as the worker pool falls behind instead of filling the heap.
+ * <p>
+ * A request larger than the whole byte budget is accepted when no other request is in flight, so it can't wait
+ * forever.
+ */
+public class AdmissionController {
+
+	/**
+	 * The max quantity of requests in flight.
+	 */
+	private final int maxInFlight;
+
+	/**
+	 * The max estimated bytes held by the requests in flight.
+	 */
+	private final long maxBytes;
+
+	/**
+	 * The lock that guards the budgets.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * The condition signaled every time a request finishes.
+	 */
+	private final Condition released = lock.newCondition();
+
+	/**
+	 * The quantity of requests in flight.
+	 */
+	private int inFlight;
+
+	/**
+	 * The estimated bytes held by the requests in flight.
+	 */
+	private long inFlightBytes;
+
+	/**
+	 * The quantity of requests turned away.
+	 */
+	private long rejectedCount;
+
+	/**
+	 * No param constructor. Uses the default budgets.
+	 */
+	public AdmissionController() {
+		this(Defaults.MAX_IN_FLIGHT, Defaults.MAX_BYTES);
+	}
+
+	/**
+	 * 2 param constructor.
+	 * @param maxInFlight The max quantity of requests in flight.
+	 * @param maxBytes The max estimated bytes held by the requests in flight.
+	 */
+	public AdmissionController(int maxInFlight, long maxBytes) {
+		if (maxInFlight < 1 || maxBytes < 1) {
+			throw new IllegalArgumentException("Max in flight requests and max bytes must be greater than 0.");
+		}
+		this.maxInFlight = maxInFlight;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Accepts a request if it fits in the budgets right now.
+	 * @param bytes The estimated bytes held by the request.
+	 * @return <i>true</i> if the request was accepted, and must be released once it finishes.
+	 */
+	public boolean tryAcquire(long bytes) {
+		lock.lock();
+		try {
+			if (fits(bytes)) {
+				acquire(bytes);
+				return true;
+			}
+			rejectedCount++;
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Accepts a request, waiting up to the given timeout for it to fit in the budgets.
+	 * @param bytes The estimated bytes held by the request.
+	 * @param timeout The max time to wait.
+	 * @param unit The time unit of the timeout.
+	 * @return <i>true</i> if the request was accepted, and must be released once it finishes.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public boolean tryAcquire(long bytes, long timeout, TimeUnit unit) throws InterruptedException {
+		long remainingNanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (!fits(bytes)) {
+				if (remainingNanos <= 0) {
+					rejectedCount++;
+					return false;
+				}
+				remainingNanos = released.awaitNanos(remainingNanos);
+			}
+			acquire(bytes);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Releases an accepted request once it finishes.
+	 * @param bytes The estimated bytes held by the request, the same given when it was accepted.
+	 */
+	public void release(long bytes) {
+		lock.lock();
+		try {
+			inFlight--;
+			inFlightBytes -= bytes;
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Estimates the bytes held by the content of a push message request until it is sent.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return The estimated bytes.
+	 */
+	public static long estimateBytes(String title, String message, Map<String, String> additionalFields, String... tokens) {
+		long bytes = Defaults.REQUEST_OVERHEAD_BYTES + estimateBytes(title) + estimateBytes(message);
+		if (additionalFields != null) {
+			for (Map.Entry<String, String> field : additionalFields.entrySet()) {
+				bytes += Defaults.ENTRY_OVERHEAD_BYTES + estimateBytes(field.getKey()) + estimateBytes(field.getValue());
+			}
+		}
+		if (tokens != null) {
+			for (String token : tokens) {
+				bytes += Defaults.ENTRY_OVERHEAD_BYTES + estimateBytes(token);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Gets the max quantity of requests in flight.
+	 * @return The max quantity of requests in flight.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Gets the max estimated bytes held by the requests in flight.
+	 * @return The max bytes.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Gets the quantity of requests accepted and not finished yet.
+	 * @return The quantity of requests in flight.
+	 */
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the estimated bytes held by the requests in flight.
+	 * @return The bytes in flight.
+	 */
+	public long getInFlightBytes() {
+		lock.lock();
+		try {
+			return inFlightBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the quantity of requests turned away since this controller was created.
+	 * @return The quantity of rejected requests.
+	 */
+	public long getRejectedCount() {
+		lock.lock();
+		try {
+			return rejectedCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			return "AdmissionController [inFlight=" + inFlight + "/" + maxInFlight + ", inFlightBytes=" + inFlightBytes
+					+ "/" + maxBytes + ", rejectedCount=" + rejectedCount + "]";
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Indicates if a request fits in the budgets. Must be called holding the lock.
+	 * @param bytes The estimated bytes held by the request.
+	 * @return <i>true</i> if the request fits.
+	 */
+	private boolean fits(long bytes) {
+		return inFlight < maxInFlight && (inFlight == 0 || inFlightBytes + bytes <= maxBytes);
+	}
+
+	/**
+	 * Counts an accepted request. Must be called holding the lock.
+	 * @param bytes The estimated bytes held by the request.
+	 */
+	private void acquire(long bytes) {
+		inFlight++;
+		inFlightBytes += bytes;
+	}
+
+	/**
+	 * Estimates the bytes held by a string.
+	 * @param value The string, or <i>null</i>.
+	 * @return The estimated bytes.
+	 */
+	private static long estimateBytes(String value) {
+		return value == null ? 0 : Defaults.STRING_OVERHEAD_BYTES + 2L * value.length();
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int MAX_IN_FLIGHT = 10000;
+		private static final long MAX_BYTES = 64L * 1024 * 1024;
+		private static final long REQUEST_OVERHEAD_BYTES = 256;
+		private static final long STRING_OVERHEAD_BYTES = 40;
+		private static final long ENTRY_OVERHEAD_BYTES = 8;
+	}
+}
@@ -1,10 +1,25 @@
 package com.devsu.push.sender.service.async;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import com.devsu.push.sender.callback.PushCallback;
+import com.devsu.push.sender.future.PushFuture;
+import com.devsu.push.sender.future.PushFutureListener;
+import com.devsu.push.sender.payload.AndroidPayload;
+import com.devsu.push.sender.queue.QueuedPush;
+import com.devsu.push.sender.ratelimit.AdaptiveRateLimiter;
+import com.devsu.push.sender.ratelimit.RateLimitConfig;
+import com.devsu.push.sender.registry.DeadTokenFilter;
+import com.devsu.push.sender.registry.InactiveDeviceRegistry;
+import com.devsu.push.sender.result.BulkSendReport;
+import com.devsu.push.sender.retry.RetryScheduler;
 import com.devsu.push.sender.service.sync.SyncAndroidPushService;
+import com.devsu.push.sender.template.PushTemplate;
+import com.devsu.push.sender.template.TemplateRecipient;
 import com.google.android.gcm.server.Message;
 
 /**
@@ -31,30 +46,130 @@ public class AsyncAndroidPushService extends AsyncPushServiceBase {
 		super(new SyncAndroidPushService(gcmApiKey), pushCallback);
 	}
 	
+	/**
+	 * 3 param constructor.
+	 * @param gcmApiKey The GCM API Key (also known as Sender ID).
+	 * @param pushCallback The push callback.
+	 * @param executorService The worker pool that runs the push message requests.
+	 */
+	public AsyncAndroidPushService(String gcmApiKey, PushCallback pushCallback, ExecutorService executorService) {
+		super(new SyncAndroidPushService(gcmApiKey), pushCallback, executorService);
+	}
+	
+	/**
+	 * 3 param constructor, for sync services that were already configured, like the ones built on stubs.
+	 * @param pushService The sync push service.
+	 * @param pushCallback The push callback.
+	 * @param executorService The worker pool that runs the push message requests.
+	 */
+	public AsyncAndroidPushService(SyncAndroidPushService pushService, PushCallback pushCallback, ExecutorService executorService) {
+		super(pushService, pushCallback, executorService);
+		if (pushService == null) {
+			throw new IllegalArgumentException("Push service is null.");
+		}
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushServiceBase#submitPush(java.lang.String, java.lang.String, java.util.Map, java.lang.String)
+	 */
+	@Override
+	public PushFuture<Boolean> submitPush(final String title, final String message, 
+			final Map<String, String> additionalFields, final String token) {
+		if (!((SyncAndroidPushService) pushService).isCoalescing()) {
+			return super.submitPush(title, message, additionalFields, token);
+		}
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, token);
+		return submitPushCoalesced(title, message, additionalFields, token, admit(bytes), bytes);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushServiceBase#trySendPush(java.lang.String, java.lang.String, java.util.Map, java.lang.String)
+	 */
+	@Override
+	public boolean trySendPush(String title, String message, Map<String, String> additionalFields, String token) {
+		if (!((SyncAndroidPushService) pushService).isCoalescing()) {
+			return super.trySendPush(title, message, additionalFields, token);
+		}
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, token);
+		AdmissionController admission = admissionController;
+		if (admission != null && !admission.tryAcquire(bytes)) {
+			return false;
+		}
+		submitPushCoalesced(title, message, additionalFields, token, admission, bytes);
+		return true;
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushServiceBase#trySendPush(java.lang.String, java.lang.String, java.util.Map, java.lang.String, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean trySendPush(String title, String message, Map<String, String> additionalFields, String token, 
+			long timeout, TimeUnit unit) throws InterruptedException {
+		if (!((SyncAndroidPushService) pushService).isCoalescing()) {
+			return super.trySendPush(title, message, additionalFields, token, timeout, unit);
+		}
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, token);
+		AdmissionController admission = admissionController;
+		if (admission != null && !admission.tryAcquire(bytes, timeout, unit)) {
+			return false;
+		}
+		submitPushCoalesced(title, message, additionalFields, token, admission, bytes);
+		return true;
+	}
+	
+	/**
+	 * Hands an accepted single push message request to the coalescing buffer of the sync service, which sends it 
+	 * along with other requests for the same message.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param token The push token.
+	 * @param admission The admission controller that accepted the request, or <i>null</i>.
+	 * @param bytes The estimated bytes held by the request.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	private PushFuture<Boolean> submitPushCoalesced(final String title, final String message, 
+			final Map<String, String> additionalFields, final String token, final AdmissionController admission, 
+			final long bytes) {
+		final long sequence;
+		PushFuture<Boolean> future;
+		try {
+			sequence = journal(QueuedPush.single(title, message, additionalFields, token));
+			future = ((SyncAndroidPushService) pushService).sendPushCoalesced(title, message, additionalFields, token);
+		} catch (RuntimeException e) {
+			if (admission != null) {
+				admission.release(bytes);
+			}
+			throw e;
+		}
+		future.addListener(new PushFutureListener<Boolean>() {
+			@Override
+			public void onSuccess(Boolean result) {
+				release();
+				acknowledge(sequence);
+				notifySingleSuccess(result, title, message, additionalFields, token);
+			}
+			@Override
+			public void onFailure(Throwable t) {
+				release();
+				notifyError(t);
+			}
+			private void release() {
+				if (admission != null) {
+					admission.release(bytes);
+				}
+			}
+		});
+		return future;
+	}
+	
 	/**
 	 * Sends a single push message.
 	 * @param msgBuilder The Message.Builder object.
 	 * @param token The push token.
 	 */
 	public void sendPush(final Message.Builder msgBuilder, final String token) {
-		ExecutorService executorService = Executors.newSingleThreadExecutor();
-		executorService.execute(new Runnable() {
-		    @Override
-			public void run() {
-		    	try {
-		    		SyncAndroidPushService service = (SyncAndroidPushService) pushService;
-					boolean result = service.sendPush(msgBuilder, token);
-					if (pushCallback != null) {
-						pushCallback.onSingleSuccess(result, BUILDER_OBJECT, msgBuilder.build().toString(), null, token);
-					}
-		    	} catch (Exception e) {
-		    		if (pushCallback != null) {
-		    			pushCallback.onError(e);
-		    		}
-		    	}
-		    }
-		});
-		executorService.shutdown();
+		submitPush(msgBuilder, token);
 	}
 	
 	/**
@@ -63,24 +178,107 @@ public class AsyncAndroidPushService extends AsyncPushServiceBase {
 	 * @param tokens The push tokens.
 	 */
 	public void sendPushInBulk(final Message.Builder msgBuilder, final String... tokens) {
-		ExecutorService executorService = Executors.newSingleThreadExecutor();
-		executorService.execute(new Runnable() {
-		    @Override
-			public void run() {
-		    	try {
-		    		SyncAndroidPushService service = (SyncAndroidPushService) pushService;
-					boolean result = service.sendPushInBulk(msgBuilder, tokens);
-					if (pushCallback != null) {
-						pushCallback.onBulkSuccess(result, BUILDER_OBJECT, msgBuilder.build().toString(), null, tokens);
-					}
-		    	} catch (Exception e) {
-		    		if (pushCallback != null) {
-		    			pushCallback.onError(e);
-		    		}
-		    	}
-		    }
-		});
-		executorService.shutdown();
+		submitPushInBulk(msgBuilder, tokens);
+	}
+	
+	/**
+	 * Sends a single push message. The message is built right away, so the builder can be reused afterwards.
+	 * @param msgBuilder The Message.Builder object.
+	 * @param token The push token.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	public PushFuture<Boolean> submitPush(final Message.Builder msgBuilder, final String token) {
+		return submitPush(AndroidPayload.of(msgBuilder), token);
+	}
+	
+	/**
+	 * Sends a bulk push message. The message is built right away, so the builder can be reused afterwards.
+	 * @param msgBuilder The Message.Builder object.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	public PushFuture<Boolean> submitPushInBulk(final Message.Builder msgBuilder, final String... tokens) {
+		return submitPushInBulk(AndroidPayload.of(msgBuilder), tokens);
+	}
+	
+	/**
+	 * Sends a bulk push message, reporting the outcome of every token. The message is built right away, 
+	 * so the builder can be reused afterwards.
+	 * @param msgBuilder The Message.Builder object.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with the outcome of every token.
+	 */
+	public PushFuture<BulkSendReport> submitPushInBulkWithReport(final Message.Builder msgBuilder, final String... tokens) {
+		return submitPushInBulkWithReport(AndroidPayload.of(msgBuilder), tokens);
+	}
+	
+	/**
+	 * Sends a single push message.
+	 * @param payload The prebuilt push message.
+	 * @param token The push token.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	public PushFuture<Boolean> submitPush(final AndroidPayload payload, final String token) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				try {
+					SyncAndroidPushService service = (SyncAndroidPushService) pushService;
+					boolean result = service.sendPush(payload, token);
+					notifySingleSuccess(result, BUILDER_OBJECT, payload.getDescription(), null, token);
+					return result;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, AdmissionController.estimateBytes(null, null, null, token));
+	}
+	
+	/**
+	 * Sends a bulk push message.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	public PushFuture<Boolean> submitPushInBulk(final AndroidPayload payload, final String... tokens) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				try {
+					SyncAndroidPushService service = (SyncAndroidPushService) pushService;
+					boolean result = service.sendPushInBulk(payload, tokens);
+					notifyBulkSuccess(result, BUILDER_OBJECT, payload.getDescription(), null, tokens);
+					return result;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, AdmissionController.estimateBytes(null, null, null, tokens));
+	}
+	
+	/**
+	 * Sends a bulk push message, reporting the outcome of every token.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with the outcome of every token.
+	 */
+	public PushFuture<BulkSendReport> submitPushInBulkWithReport(final AndroidPayload payload, final String... tokens) {
+		return submit(new Callable<BulkSendReport>() {
+			@Override
+			public BulkSendReport call() throws Exception {
+				try {
+					SyncAndroidPushService service = (SyncAndroidPushService) pushService;
+					BulkSendReport report = service.sendPushInBulkWithReport(payload, tokens);
+					notifyBulkSuccess(report.isSuccess(), BUILDER_OBJECT, payload.getDescription(), null, tokens);
+					return report;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, AdmissionController.estimateBytes(null, null, null, tokens));
 	}
 	
 	/**
@@ -117,6 +315,25 @@ public class AsyncAndroidPushService extends AsyncPushServiceBase {
 		((SyncAndroidPushService)pushService).setMaxBulkSize(maxBulkSize);
 	}
 
+	/**
+	 * Sets the quantity of multicast requests of a single bulk push message that can be sent in parallel.
+	 * Unless a bulk executor is set, it also bounds the multicast requests in flight across every bulk push message 
+	 * sent by this service. Use 1 to send the multicast requests one after another.
+	 * @param bulkConcurrency The quantity of multicast requests that can be sent in parallel.
+	 */
+	public void setBulkConcurrency(int bulkConcurrency) {
+		((SyncAndroidPushService)pushService).setBulkConcurrency(bulkConcurrency);
+	}
+	
+	/**
+	 * Sets the worker pool that sends the multicast requests in parallel. Its size bounds the multicast requests 
+	 * in flight across every bulk push message sent by this service. The pool is not shut down by this service.
+	 * @param bulkExecutor The worker pool that sends the multicast requests.
+	 */
+	public void setBulkExecutor(ExecutorService bulkExecutor) {
+		((SyncAndroidPushService)pushService).setBulkExecutor(bulkExecutor);
+	}
+
 	/**
 	 * Sets the collapse key for identifying single messages.
 	 * @param collapseKeySingle The collapse key for identifying single messages.
@@ -141,6 +358,127 @@ public class AsyncAndroidPushService extends AsyncPushServiceBase {
 		((SyncAndroidPushService)pushService).setGcmApiKey(gcmApiKey);
 	}
 	
+	/**
+	 * Sends a personalized push message to every recipient.
+	 * @param template The push template.
+	 * @param recipients The recipients and the values of their template variables.
+	 */
+	public void sendTemplatedPush(PushTemplate template, List<TemplateRecipient> recipients) {
+		submitTemplatedPush(template, recipients);
+	}
+	
+	/**
+	 * Sends a personalized push message to every recipient, reporting the outcome of every recipient.
+	 * @param template The push template.
+	 * @param recipients The recipients and the values of their template variables.
+	 * @return The future that completes with the outcome of every recipient.
+	 */
+	public PushFuture<BulkSendReport> submitTemplatedPush(final PushTemplate template, final List<TemplateRecipient> recipients) {
+		return submit(new Callable<BulkSendReport>() {
+			@Override
+			public BulkSendReport call() throws Exception {
+				try {
+					SyncAndroidPushService service = (SyncAndroidPushService) pushService;
+					BulkSendReport report = service.sendTemplatedPush(template, recipients);
+					notifyBulkSuccess(report.isSuccess(), template.getTitle(), template.getMessage(), null, null);
+					return report;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Sets the max quantity of built push messages kept for repeated title/message/fields combinations.
+	 * @param payloadCacheSize The max quantity of cached push messages, or 0 to disable the cache.
+	 */
+	public void setPayloadCacheSize(int payloadCacheSize) {
+		((SyncAndroidPushService)pushService).setPayloadCacheSize(payloadCacheSize);
+	}
+	
+	/**
+	 * Gets the registry where inactive tokens are recorded.
+	 * @return The inactive device registry.
+	 */
+	public InactiveDeviceRegistry getInactiveDeviceRegistry() {
+		return ((SyncAndroidPushService)pushService).getInactiveDeviceRegistry();
+	}
+	
+	/**
+	 * Sets the registry where inactive tokens are recorded. It can be shared with other services.
+	 * @param inactiveDeviceRegistry The inactive device registry.
+	 */
+	public void setInactiveDeviceRegistry(InactiveDeviceRegistry inactiveDeviceRegistry) {
+		((SyncAndroidPushService)pushService).setInactiveDeviceRegistry(inactiveDeviceRegistry);
+	}
+	
+	/**
+	 * Enables/disables dropping the tokens registered as inactive before dispatching push messages.
+	 * @param enabled <i>true</i> to drop the tokens registered as inactive.
+	 */
+	public void setDeadTokenFilterEnabled(boolean enabled) {
+		((SyncAndroidPushService)pushService).setDeadTokenFilterEnabled(enabled);
+	}
+	
+	/**
+	 * Gets the filter that drops known dead tokens, which exposes the suppression counts.
+	 * @return The dead token filter, or <i>null</i> if it is disabled.
+	 */
+	public DeadTokenFilter getDeadTokenFilter() {
+		return ((SyncAndroidPushService)pushService).getDeadTokenFilter();
+	}
+	
+	/**
+	 * Limits the rate of push messages, sharing the limiter with every service that uses the same provider credential.
+	 * @param rateLimitConfig The rate limit settings, or <i>null</i> to send without limit.
+	 */
+	public void setRateLimit(RateLimitConfig rateLimitConfig) {
+		((SyncAndroidPushService)pushService).setRateLimit(rateLimitConfig);
+	}
+	
+	/**
+	 * Gets the rate limiter, which exposes the current rate and queue depth.
+	 * @return The rate limiter, or <i>null</i> if there is no limit.
+	 */
+	public AdaptiveRateLimiter getRateLimiter() {
+		return ((SyncAndroidPushService)pushService).getRateLimiter();
+	}
+	
+	/**
+	 * Sets how long single push messages wait to be coalesced into a multicast request with the ones that have the 
+	 * same title, message and additional fields. Coalesced push messages don't hold a worker while they wait.
+	 * @param coalesceLingerMillis The linger window in milliseconds, or 0 to send every single push message on its own.
+	 */
+	public void setCoalesceLingerMillis(long coalesceLingerMillis) {
+		((SyncAndroidPushService)pushService).setCoalesceLingerMillis(coalesceLingerMillis);
+	}
+	
+	/**
+	 * Enables/disables dropping the repeated tokens of a bulk push message before it is split into requests.
+	 * @param enabled <i>true</i> to drop the repeated tokens.
+	 */
+	public void setDuplicateTokenFilterEnabled(boolean enabled) {
+		((SyncAndroidPushService)pushService).setDuplicateTokenFilterEnabled(enabled);
+	}
+	
+	/**
+	 * Keeps a bulk push message from being sent to a token that got the same payload within the window.
+	 * @param windowMillis The window in milliseconds, or 0 to allow resends.
+	 */
+	public void setResendSuppressionWindowMillis(long windowMillis) {
+		((SyncAndroidPushService)pushService).setResendSuppressionWindowMillis(windowMillis);
+	}
+	
+	/**
+	 * Sets the scheduler that retries failed tokens in the background, without holding a worker while they wait.
+	 * @param retryScheduler The retry scheduler, or <i>null</i> to retry inside the worker thread.
+	 */
+	public void setRetryScheduler(RetryScheduler retryScheduler) {
+		((SyncAndroidPushService)pushService).setRetryScheduler(retryScheduler);
+	}
+	
 	/**
 	 * Enables/disables this service.
 	 * @param pushEnabled The parameter that enables/disables this service.
@@ -1,12 +1,24 @@
 package com.devsu.push.sender.service.async;
 
+import java.io.Closeable;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import com.devsu.push.sender.callback.PushCallback;
+import com.devsu.push.sender.future.PushFuture;
+import com.devsu.push.sender.payload.ApplePayload;
+import com.devsu.push.sender.ratelimit.AdaptiveRateLimiter;
+import com.devsu.push.sender.ratelimit.RateLimitConfig;
+import com.devsu.push.sender.registry.DeadTokenFilter;
+import com.devsu.push.sender.registry.InactiveDeviceRegistry;
+import com.devsu.push.sender.result.BulkSendReport;
+import com.devsu.push.sender.retry.RetryScheduler;
 import com.devsu.push.sender.service.sync.SyncApplePushService;
+import com.devsu.push.sender.template.PushTemplate;
+import com.devsu.push.sender.template.TemplateRecipient;
 import com.notnoop.apns.PayloadBuilder;
 import com.notnoop.exceptions.InvalidSSLConfig;
 import com.notnoop.exceptions.RuntimeIOException;
@@ -14,7 +26,7 @@ import com.notnoop.exceptions.RuntimeIOException;
 /**
  * The async push service for iOS (APNS).
  */
-public class AsyncApplePushService extends AsyncPushServiceBase {
+public class AsyncApplePushService extends AsyncPushServiceBase implements Closeable {
 	
 	private static final String BUILDER_OBJECT = PayloadBuilder.class.getSimpleName();
 
@@ -45,56 +57,166 @@ public class AsyncApplePushService extends AsyncPushServiceBase {
 		super(new SyncApplePushService(certificatePath, certificatePassword, useProductionServer), pushCallback);
 	}
 	
+	/**
+	 * 5 param constructor.
+	 * @param certificatePath The path for the p12 certificate.
+	 * @param certificatePassword The password for the p12 certificate.
+	 * @param useProductionServer Indicates if the services uses a Production environment or a Sandbox environment.
+	 * @param pushCallback The push callback.
+	 * @param executorService The worker pool that runs the push message requests.
+	 * @throws RuntimeIOException An IO exception.
+	 * @throws InvalidSSLConfig Certificates are corrupted, wrong or password is wrong.
+	 */
+	public AsyncApplePushService(String certificatePath, String certificatePassword, boolean useProductionServer, 
+			PushCallback pushCallback, ExecutorService executorService) throws RuntimeIOException, InvalidSSLConfig {
+		super(new SyncApplePushService(certificatePath, certificatePassword, useProductionServer), pushCallback, executorService);
+	}
+	
+	/**
+	 * 5 param constructor. When <i>connectionPoolSize</i> is greater than 0, the service keeps that many APNS connections
+	 * open until {@link #close()} is called.
+	 * @param certificatePath The path for the p12 certificate.
+	 * @param certificatePassword The password for the p12 certificate.
+	 * @param useProductionServer Indicates if the services uses a Production environment or a Sandbox environment.
+	 * @param connectionPoolSize The quantity of persistent APNS connections, or 0 to open a connection on every request.
+	 * @param pushCallback The push callback.
+	 * @throws RuntimeIOException An IO exception.
+	 * @throws InvalidSSLConfig Certificates are corrupted, wrong or password is wrong.
+	 */
+	public AsyncApplePushService(String certificatePath, String certificatePassword, boolean useProductionServer, 
+			int connectionPoolSize, PushCallback pushCallback) throws RuntimeIOException, InvalidSSLConfig {
+		super(new SyncApplePushService(certificatePath, certificatePassword, useProductionServer, connectionPoolSize), pushCallback);
+	}
+	
+	/**
+	 * 3 param constructor, for sync services that were already configured, like the ones built on stubs.
+	 * @param pushService The sync push service.
+	 * @param pushCallback The push callback.
+	 * @param executorService The worker pool that runs the push message requests.
+	 */
+	public AsyncApplePushService(SyncApplePushService pushService, PushCallback pushCallback, ExecutorService executorService) {
+		super(pushService, pushCallback, executorService);
+		if (pushService == null) {
+			throw new IllegalArgumentException("Push service is null.");
+		}
+	}
+	
 	/**
 	 * Sends a single push message.
 	 * @param msgBuilder The PayloadBuilder object.
 	 * @param token The push token.
 	 */
 	public void sendPush(final PayloadBuilder msgBuilder, final String token) {
-		ExecutorService executorService = Executors.newSingleThreadExecutor();
-		executorService.execute(new Runnable() {
-		    @Override
-			public void run() {
-		    	try {
-		    		SyncApplePushService service = (SyncApplePushService) pushService;
-					boolean result = service.sendPush(msgBuilder, token);
-					if (pushCallback != null) {
-						pushCallback.onSingleSuccess(result, BUILDER_OBJECT, msgBuilder.toString(), null, token);
-					}
-		    	} catch (Exception e) {
-		    		if (pushCallback != null) {
-		    			pushCallback.onError(e);
-		    		}
-		    	}
-		    }
-		});
-		executorService.shutdown();
+		submitPush(msgBuilder, token);
 	}
 	
 	/**
 	 * Sends a bulk push message.
-	 * @param msgBuilder The Message.Builder object.
-	 * @param tokens The push token.
+	 * @param msgBuilder The PayloadBuilder object.
+	 * @param tokens The push tokens.
 	 */
 	public void sendPushInBulk(final PayloadBuilder msgBuilder, final String... tokens) {
-		ExecutorService executorService = Executors.newSingleThreadExecutor();
-		executorService.execute(new Runnable() {
-		    @Override
-			public void run() {
-		    	try {
-		    		SyncApplePushService service = (SyncApplePushService) pushService;
-					boolean result = service.sendPushInBulk(msgBuilder, tokens);
-					if (pushCallback != null) {
-						pushCallback.onBulkSuccess(result, BUILDER_OBJECT, msgBuilder.build().toString(), null, tokens);
-					}
-		    	} catch (Exception e) {
-		    		if (pushCallback != null) {
-		    			pushCallback.onError(e);
-		    		}
-		    	}
-		    }
-		});
-		executorService.shutdown();
+		submitPushInBulk(msgBuilder, tokens);
+	}
+	
+	/**
+	 * Sends a single push message. The message is built right away, so the builder can be reused afterwards.
+	 * @param msgBuilder The PayloadBuilder object.
+	 * @param token The push token.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	public PushFuture<Boolean> submitPush(final PayloadBuilder msgBuilder, final String token) {
+		return submitPush(ApplePayload.of(msgBuilder), token);
+	}
+	
+	/**
+	 * Sends a bulk push message. The message is built right away, so the builder can be reused afterwards.
+	 * @param msgBuilder The PayloadBuilder object.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	public PushFuture<Boolean> submitPushInBulk(final PayloadBuilder msgBuilder, final String... tokens) {
+		return submitPushInBulk(ApplePayload.of(msgBuilder), tokens);
+	}
+	
+	/**
+	 * Sends a bulk push message, reporting the outcome of every token. The message is built right away, 
+	 * so the builder can be reused afterwards.
+	 * @param msgBuilder The PayloadBuilder object.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with the outcome of every token.
+	 */
+	public PushFuture<BulkSendReport> submitPushInBulkWithReport(final PayloadBuilder msgBuilder, final String... tokens) {
+		return submitPushInBulkWithReport(ApplePayload.of(msgBuilder), tokens);
+	}
+	
+	/**
+	 * Sends a single push message.
+	 * @param payload The prebuilt push message.
+	 * @param token The push token.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	public PushFuture<Boolean> submitPush(final ApplePayload payload, final String token) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				try {
+					SyncApplePushService service = (SyncApplePushService) pushService;
+					boolean result = service.sendPush(payload, token);
+					notifySingleSuccess(result, BUILDER_OBJECT, payload.getJson(), null, token);
+					return result;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, AdmissionController.estimateBytes(null, null, null, token));
+	}
+	
+	/**
+	 * Sends a bulk push message.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	public PushFuture<Boolean> submitPushInBulk(final ApplePayload payload, final String... tokens) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				try {
+					SyncApplePushService service = (SyncApplePushService) pushService;
+					boolean result = service.sendPushInBulk(payload, tokens);
+					notifyBulkSuccess(result, BUILDER_OBJECT, payload.getJson(), null, tokens);
+					return result;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, AdmissionController.estimateBytes(null, null, null, tokens));
+	}
+	
+	/**
+	 * Sends a bulk push message, reporting the outcome of every token.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with the outcome of every token.
+	 */
+	public PushFuture<BulkSendReport> submitPushInBulkWithReport(final ApplePayload payload, final String... tokens) {
+		return submit(new Callable<BulkSendReport>() {
+			@Override
+			public BulkSendReport call() throws Exception {
+				try {
+					SyncApplePushService service = (SyncApplePushService) pushService;
+					BulkSendReport report = service.sendPushInBulkWithReport(payload, tokens);
+					notifyBulkSuccess(report.isSuccess(), BUILDER_OBJECT, payload.getJson(), null, tokens);
+					return report;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, AdmissionController.estimateBytes(null, null, null, tokens));
 	}
 	
 	/**
@@ -119,6 +241,126 @@ public class AsyncApplePushService extends AsyncPushServiceBase {
 		((SyncApplePushService)pushService).setupProductionServer(certificatePath, certificatePassword);
 	}
 	
+	/**
+	 * Sets the quantity of tokens read from a token source and written to APNS at a time.
+	 * @param streamBatchSize The quantity of tokens written at a time.
+	 */
+	public void setStreamBatchSize(int streamBatchSize) {
+		((SyncApplePushService)pushService).setStreamBatchSize(streamBatchSize);
+	}
+	
+	/**
+	 * Sends a personalized push message to every recipient.
+	 * @param template The push template.
+	 * @param recipients The recipients and the values of their template variables.
+	 */
+	public void sendTemplatedPush(PushTemplate template, List<TemplateRecipient> recipients) {
+		submitTemplatedPush(template, recipients);
+	}
+	
+	/**
+	 * Sends a personalized push message to every recipient, reporting the outcome of every recipient.
+	 * @param template The push template.
+	 * @param recipients The recipients and the values of their template variables.
+	 * @return The future that completes with the outcome of every recipient.
+	 */
+	public PushFuture<BulkSendReport> submitTemplatedPush(final PushTemplate template, final List<TemplateRecipient> recipients) {
+		return submit(new Callable<BulkSendReport>() {
+			@Override
+			public BulkSendReport call() throws Exception {
+				try {
+					SyncApplePushService service = (SyncApplePushService) pushService;
+					BulkSendReport report = service.sendTemplatedPush(template, recipients);
+					notifyBulkSuccess(report.isSuccess(), template.getTitle(), template.getMessage(), null, null);
+					return report;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Sets the max quantity of built push messages kept for repeated title/message/fields combinations.
+	 * @param payloadCacheSize The max quantity of cached push messages, or 0 to disable the cache.
+	 */
+	public void setPayloadCacheSize(int payloadCacheSize) {
+		((SyncApplePushService)pushService).setPayloadCacheSize(payloadCacheSize);
+	}
+	
+	/**
+	 * Gets the registry where inactive tokens are recorded.
+	 * @return The inactive device registry.
+	 */
+	public InactiveDeviceRegistry getInactiveDeviceRegistry() {
+		return ((SyncApplePushService)pushService).getInactiveDeviceRegistry();
+	}
+	
+	/**
+	 * Sets the registry where inactive tokens are recorded. It can be shared with other services.
+	 * @param inactiveDeviceRegistry The inactive device registry.
+	 */
+	public void setInactiveDeviceRegistry(InactiveDeviceRegistry inactiveDeviceRegistry) {
+		((SyncApplePushService)pushService).setInactiveDeviceRegistry(inactiveDeviceRegistry);
+	}
+	
+	/**
+	 * Enables/disables dropping the tokens registered as inactive before dispatching push messages.
+	 * @param enabled <i>true</i> to drop the tokens registered as inactive.
+	 */
+	public void setDeadTokenFilterEnabled(boolean enabled) {
+		((SyncApplePushService)pushService).setDeadTokenFilterEnabled(enabled);
+	}
+	
+	/**
+	 * Gets the filter that drops known dead tokens, which exposes the suppression counts.
+	 * @return The dead token filter, or <i>null</i> if it is disabled.
+	 */
+	public DeadTokenFilter getDeadTokenFilter() {
+		return ((SyncApplePushService)pushService).getDeadTokenFilter();
+	}
+	
+	/**
+	 * Limits the rate of push messages, sharing the limiter with every service that uses the same provider credential.
+	 * @param rateLimitConfig The rate limit settings, or <i>null</i> to send without limit.
+	 */
+	public void setRateLimit(RateLimitConfig rateLimitConfig) {
+		((SyncApplePushService)pushService).setRateLimit(rateLimitConfig);
+	}
+	
+	/**
+	 * Gets the rate limiter, which exposes the current rate and queue depth.
+	 * @return The rate limiter, or <i>null</i> if there is no limit.
+	 */
+	public AdaptiveRateLimiter getRateLimiter() {
+		return ((SyncApplePushService)pushService).getRateLimiter();
+	}
+	
+	/**
+	 * Enables/disables dropping the repeated tokens of a bulk push message before it is split into requests.
+	 * @param enabled <i>true</i> to drop the repeated tokens.
+	 */
+	public void setDuplicateTokenFilterEnabled(boolean enabled) {
+		((SyncApplePushService)pushService).setDuplicateTokenFilterEnabled(enabled);
+	}
+	
+	/**
+	 * Keeps a bulk push message from being sent to a token that got the same payload within the window.
+	 * @param windowMillis The window in milliseconds, or 0 to allow resends.
+	 */
+	public void setResendSuppressionWindowMillis(long windowMillis) {
+		((SyncApplePushService)pushService).setResendSuppressionWindowMillis(windowMillis);
+	}
+	
+	/**
+	 * Sets the scheduler that retries failed tokens in the background, without holding a worker while they wait.
+	 * @param retryScheduler The retry scheduler, or <i>null</i> to retry inside the worker thread.
+	 */
+	public void setRetryScheduler(RetryScheduler retryScheduler) {
+		((SyncApplePushService)pushService).setRetryScheduler(retryScheduler);
+	}
+	
 	/**
 	 * Enables/disables this service.
 	 * @param pushEnabled The parameter that enables/disables this service.
@@ -134,4 +376,12 @@ public class AsyncApplePushService extends AsyncPushServiceBase {
 	public Map<String, Date> getInactiveDevices() {
 		return ((SyncApplePushService)pushService).getInactiveDevices();
 	}
+	
+	/**
+	 * Closes the APNS connections.
+	 */
+	@Override
+	public void close() {
+		((SyncApplePushService)pushService).close();
+	}
 }
@@ -1,8 +1,16 @@
 package com.devsu.push.sender.service.async;
 
+import java.io.File;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import org.reactivestreams.Publisher;
+
+import com.devsu.push.sender.callback.BulkProgressListener;
 import com.devsu.push.sender.callback.PushCallback;
+import com.devsu.push.sender.future.PushFuture;
+import com.devsu.push.sender.reactive.BulkChunkResult;
+import com.devsu.push.sender.result.BulkSendReport;
 
 /**
  * Interface for async Push Services.
@@ -57,6 +65,178 @@ public interface AsyncPushService {
 	 */
 	void sendPushInBulk(String title, String message, Map<String, String> additionalFields, String... tokens);
 
+	/**
+	 * Sends a bulk push message to the tokens of a token source, which are read one chunk at a time on the worker pool.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 */
+	void sendPushInBulk(String title, String message, Map<String, String> additionalFields, Iterable<String> tokens);
+
+	/**
+	 * Sends a single push message if the service can take it right now.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param token The push token.
+	 * @return <i>true</i> if the push message request was accepted, <i>false</i> if the service is over its budget.
+	 */
+	boolean trySendPush(String title, String message, Map<String, String> additionalFields, String token);
+
+	/**
+	 * Sends a single push message, waiting up to the given timeout for the service to take it.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param token The push token.
+	 * @param timeout The max time to wait.
+	 * @param unit The time unit of the timeout.
+	 * @return <i>true</i> if the push message request was accepted, <i>false</i> if the service is over its budget.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	boolean trySendPush(String title, String message, Map<String, String> additionalFields, String token, 
+			long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Sends a bulk push message if the service can take it right now.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return <i>true</i> if the push message request was accepted, <i>false</i> if the service is over its budget.
+	 */
+	boolean trySendPushInBulk(String title, String message, Map<String, String> additionalFields, String... tokens);
+
+	/**
+	 * Sends a bulk push message, waiting up to the given timeout for the service to take it.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @param timeout The max time to wait.
+	 * @param unit The time unit of the timeout.
+	 * @return <i>true</i> if the push message request was accepted, <i>false</i> if the service is over its budget.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	boolean trySendPushInBulk(String title, String message, Map<String, String> additionalFields, String[] tokens, 
+			long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Sends a single push message.
+	 * @param message The push message content.
+	 * @param token The push token.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	PushFuture<Boolean> submitPush(String message, String token);
+
+	/**
+	 * Sends a single push message.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param token The push token.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	PushFuture<Boolean> submitPush(String title, String message, String token);
+
+	/**
+	 * Sends a single push message.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param token The push token.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	PushFuture<Boolean> submitPush(String title, String message, Map<String, String> additionalFields, String token);
+
+	/**
+	 * Sends a bulk push message.
+	 * @param message The push message content.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	PushFuture<Boolean> submitPushInBulk(String message, String... tokens);
+
+	/**
+	 * Sends a bulk push message.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	PushFuture<Boolean> submitPushInBulk(String title, String message, String... tokens);
+
+	/**
+	 * Sends a bulk push message.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	PushFuture<Boolean> submitPushInBulk(String title, String message, Map<String, String> additionalFields, String... tokens);
+
+	/**
+	 * Sends a bulk push message to the tokens of a token source, which are read one chunk at a time on the worker pool.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	PushFuture<Boolean> submitPushInBulk(String title, String message, Map<String, String> additionalFields, Iterable<String> tokens);
+
+	/**
+	 * Sends a bulk push message to the tokens of a newline delimited token file, which is memory mapped and read 
+	 * one batch at a time on the worker pool.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokenFile The token file.
+	 * @param startOffset The file offset where sending starts, 0 or the resume offset of a previous call.
+	 * @param progressListener The listener notified every time the resume offset moves, or <i>null</i>.
+	 * @return The future that completes with the file offset from which the bulk push message can be resumed.
+	 */
+	PushFuture<Long> submitPushInBulkFromFile(String title, String message, Map<String, String> additionalFields, 
+			File tokenFile, long startOffset, BulkProgressListener progressListener);
+
+	/**
+	 * Sends a bulk push message, reporting the outcome of every token.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return The future that completes with the outcome of every token.
+	 */
+	PushFuture<BulkSendReport> submitPushInBulkWithReport(String title, String message, Map<String, String> additionalFields, String... tokens);
+
+	/**
+	 * Creates a publisher that sends a bulk push message one chunk at a time on the worker pool, as the subscriber 
+	 * requests the results, and publishes the outcome of every chunk. Every chunk must fit in the admission budgets
+	 * of the service, if it has them; see {@link com.devsu.push.sender.reactive.BulkSendPublisher}.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return The publisher of the chunk results; every subscription sends the push message.
+	 */
+	Publisher<BulkChunkResult> publishPushInBulk(String title, String message, Map<String, String> additionalFields, Iterable<String> tokens);
+
+	/**
+	 * Creates a publisher that sends a bulk push message one chunk at a time on the worker pool, as the subscriber 
+	 * requests the results, and publishes the outcome of every chunk. Every chunk must fit in the admission budgets
+	 * of the service, if it has them; see {@link com.devsu.push.sender.reactive.BulkSendPublisher}.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @param chunkSize The max quantity of tokens per chunk.
+	 * @param maxConcurrentChunks The max quantity of chunks sent at the same time.
+	 * @return The publisher of the chunk results; every subscription sends the push message.
+	 */
+	Publisher<BulkChunkResult> publishPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			Iterable<String> tokens, int chunkSize, int maxConcurrentChunks);
+
 	/**
 	 * Sets the pushCallback.
 	 * @param pushCallback The push callback.
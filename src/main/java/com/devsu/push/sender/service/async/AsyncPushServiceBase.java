@@ -1,11 +1,28 @@
 package com.devsu.push.sender.service.async;
 
+import java.io.File;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import org.reactivestreams.Publisher;
+
+import com.devsu.push.sender.callback.BulkProgressListener;
 import com.devsu.push.sender.callback.PushCallback;
+import com.devsu.push.sender.future.PushFuture;
+import com.devsu.push.sender.future.PushFutureListener;
+import com.devsu.push.sender.metrics.MetricStage;
+import com.devsu.push.sender.metrics.PushMetrics;
+import com.devsu.push.sender.queue.DurablePushQueue;
+import com.devsu.push.sender.queue.QueuedPush;
+import com.devsu.push.sender.queue.ReplayHandler;
+import com.devsu.push.sender.reactive.BulkChunkResult;
+import com.devsu.push.sender.reactive.BulkSendPublisher;
+import com.devsu.push.sender.result.BulkSendReport;
 import com.devsu.push.sender.service.sync.SyncPushService;
+import com.devsu.push.sender.service.sync.SyncPushServiceBase;
 
 /**
  * Abstract base class for every async push service.
@@ -23,13 +40,40 @@ public abstract class AsyncPushServiceBase implements AsyncPushService {
 	protected PushCallback pushCallback;
 	
 	/**
-	 * 2-param constructor.
+	 * The worker pool that runs the push message requests.
+	 */
+	protected ExecutorService executorService;
+	
+	/**
+	 * The queue where push message requests are recorded until they are sent, or <i>null</i> to keep them in memory only.
+	 */
+	protected volatile DurablePushQueue durableQueue;
+	
+	/**
+	 * The budgets of the push message requests in flight, or <i>null</i> to accept every request.
+	 */
+	protected volatile AdmissionController admissionController;
+	
+	/**
+	 * 2-param constructor. Push message requests run on the shared worker pool, or on the shared worker pool of
+	 * the provider when it runs on virtual threads.
 	 * @param pushService The push service.
 	 * @param pushCallback The push callback.
 	 */
 	protected AsyncPushServiceBase(SyncPushService pushService, PushCallback pushCallback){
+		this(pushService, pushCallback, DispatchExecutors.getSharedExecutor(getProviderName(pushService)));
+	}
+	
+	/**
+	 * 3-param constructor.
+	 * @param pushService The push service.
+	 * @param pushCallback The push callback.
+	 * @param executorService The worker pool that runs the push message requests.
+	 */
+	protected AsyncPushServiceBase(SyncPushService pushService, PushCallback pushCallback, ExecutorService executorService){
 		this.pushService = pushService;
 		this.pushCallback = pushCallback;
+		setExecutorService(executorService);
 	}
 	
 	/* 
@@ -54,23 +98,7 @@ public abstract class AsyncPushServiceBase implements AsyncPushService {
 	@Override
 	public void sendPush(final String title, final String message, 
 			final Map<String, String> additionalFields, final String token) {
-		ExecutorService executorService = Executors.newSingleThreadExecutor();
-		executorService.execute(new Runnable() {
-		    @Override
-			public void run() {
-		    	try {
-					boolean result = pushService.sendPush(title, message, additionalFields, token);
-					if (pushCallback != null) {
-						pushCallback.onSingleSuccess(result, title, message, additionalFields, token);
-					}
-		    	} catch (Exception e) {
-		    		if (pushCallback != null) {
-		    			pushCallback.onError(e);
-		    		}
-		    	}
-		    }
-		});
-		executorService.shutdown();
+		submitPush(title, message, additionalFields, token);
 	}
 	
 	/* 
@@ -95,23 +123,581 @@ public abstract class AsyncPushServiceBase implements AsyncPushService {
 	@Override
 	public void sendPushInBulk(final String title, final String message, 
 			final Map<String, String> additionalFields, final String... tokens) {
-		ExecutorService executorService = Executors.newSingleThreadExecutor();
-		executorService.execute(new Runnable() {
-		    @Override
-			public void run() {
-		    	try {
+		submitPushInBulk(title, message, additionalFields, tokens);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#sendPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.lang.Iterable)
+	 */
+	@Override
+	public void sendPushInBulk(String title, String message, 
+			Map<String, String> additionalFields, Iterable<String> tokens) {
+		submitPushInBulk(title, message, additionalFields, tokens);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#submitPush(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public PushFuture<Boolean> submitPush(String message, String token) {
+		return submitPush(null, message, null, token);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#submitPush(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public PushFuture<Boolean> submitPush(String title, String message, String token) {
+		return submitPush(title, message, null, token);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#submitPush(java.lang.String, java.lang.String, java.util.Map, java.lang.String)
+	 */
+	@Override
+	public PushFuture<Boolean> submitPush(String title, String message, Map<String, String> additionalFields, 
+			String token) {
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, token);
+		AdmissionController admission = admit(bytes);
+		return submitPush(title, message, additionalFields, token, 
+				journal(QueuedPush.single(title, message, additionalFields, token), admission, bytes), admission, bytes);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#trySendPush(java.lang.String, java.lang.String, java.util.Map, java.lang.String)
+	 */
+	@Override
+	public boolean trySendPush(String title, String message, Map<String, String> additionalFields, String token) {
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, token);
+		AdmissionController admission = admissionController;
+		if (admission != null && !admission.tryAcquire(bytes)) {
+			return false;
+		}
+		submitPush(title, message, additionalFields, token, 
+				journal(QueuedPush.single(title, message, additionalFields, token), admission, bytes), admission, bytes);
+		return true;
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#trySendPush(java.lang.String, java.lang.String, java.util.Map, java.lang.String, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean trySendPush(String title, String message, Map<String, String> additionalFields, String token, 
+			long timeout, TimeUnit unit) throws InterruptedException {
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, token);
+		AdmissionController admission = admissionController;
+		if (admission != null && !admission.tryAcquire(bytes, timeout, unit)) {
+			return false;
+		}
+		submitPush(title, message, additionalFields, token, 
+				journal(QueuedPush.single(title, message, additionalFields, token), admission, bytes), admission, bytes);
+		return true;
+	}
+	
+	/**
+	 * Runs an accepted single push message request on the worker pool, acknowledging its queue entry once it is sent.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param token The push token.
+	 * @param sequence The sequence of the queue entry, or -1 if it isn't queued.
+	 * @param admission The admission controller that accepted the request, or <i>null</i>.
+	 * @param bytes The estimated bytes held by the request.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	private PushFuture<Boolean> submitPush(final String title, final String message, 
+			final Map<String, String> additionalFields, final String token, final long sequence, 
+			AdmissionController admission, long bytes) {
+		return dispatch(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				try {
+					boolean result = pushService.sendPush(title, message, additionalFields, token);
+					acknowledge(sequence);
+					notifySingleSuccess(result, title, message, additionalFields, token);
+					return result;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, admission, bytes);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#submitPushInBulk(java.lang.String, java.lang.String[])
+	 */
+	@Override
+	public PushFuture<Boolean> submitPushInBulk(String message, String... tokens) {
+		return submitPushInBulk(null, message, null, tokens);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#submitPushInBulk(java.lang.String, java.lang.String, java.lang.String[])
+	 */
+	@Override
+	public PushFuture<Boolean> submitPushInBulk(String title, String message, String... tokens) {
+		return submitPushInBulk(title, message, null, tokens);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#submitPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.lang.String[])
+	 */
+	@Override
+	public PushFuture<Boolean> submitPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			String... tokens) {
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, tokens);
+		AdmissionController admission = admit(bytes);
+		return submitPushInBulk(title, message, additionalFields, tokens, 
+				journal(QueuedPush.bulk(title, message, additionalFields, tokens), admission, bytes), admission, bytes);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#trySendPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.lang.String[])
+	 */
+	@Override
+	public boolean trySendPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			String... tokens) {
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, tokens);
+		AdmissionController admission = admissionController;
+		if (admission != null && !admission.tryAcquire(bytes)) {
+			return false;
+		}
+		submitPushInBulk(title, message, additionalFields, tokens, 
+				journal(QueuedPush.bulk(title, message, additionalFields, tokens), admission, bytes), admission, bytes);
+		return true;
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#trySendPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.lang.String[], long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean trySendPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			String[] tokens, long timeout, TimeUnit unit) throws InterruptedException {
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, tokens);
+		AdmissionController admission = admissionController;
+		if (admission != null && !admission.tryAcquire(bytes, timeout, unit)) {
+			return false;
+		}
+		submitPushInBulk(title, message, additionalFields, tokens, 
+				journal(QueuedPush.bulk(title, message, additionalFields, tokens), admission, bytes), admission, bytes);
+		return true;
+	}
+	
+	/**
+	 * Runs an accepted bulk push message request on the worker pool, acknowledging its queue entry once it is sent.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @param sequence The sequence of the queue entry, or -1 if it isn't queued.
+	 * @param admission The admission controller that accepted the request, or <i>null</i>.
+	 * @param bytes The estimated bytes held by the request.
+	 * @return The future that completes with <i>true</i> if the push message request was sent.
+	 */
+	private PushFuture<Boolean> submitPushInBulk(final String title, final String message, 
+			final Map<String, String> additionalFields, final String[] tokens, final long sequence, 
+			AdmissionController admission, long bytes) {
+		return dispatch(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				try {
+					boolean result = pushService.sendPushInBulk(title, message, additionalFields, tokens);
+					acknowledge(sequence);
+					notifyBulkSuccess(result, title, message, additionalFields, tokens);
+					return result;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, admission, bytes);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#submitPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.lang.Iterable)
+	 */
+	@Override
+	public PushFuture<Boolean> submitPushInBulk(final String title, final String message, 
+			final Map<String, String> additionalFields, final Iterable<String> tokens) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				try {
 					boolean result = pushService.sendPushInBulk(title, message, additionalFields, tokens);
-					if (pushCallback != null) {
-						pushCallback.onBulkSuccess(result, title, message, additionalFields, tokens);
-					}
-		    	} catch (Exception e) {
-		    		if (pushCallback != null) {
-		    			pushCallback.onError(e);
-		    		}
-		    	}
-		    }
+					notifyBulkSuccess(result, title, message, additionalFields, null);
+					return result;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, AdmissionController.estimateBytes(title, message, additionalFields));
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#submitPushInBulkFromFile(java.lang.String, java.lang.String, java.util.Map, java.io.File, long, com.devsu.push.sender.callback.BulkProgressListener)
+	 */
+	@Override
+	public PushFuture<Long> submitPushInBulkFromFile(final String title, final String message, 
+			final Map<String, String> additionalFields, final File tokenFile, final long startOffset, 
+			final BulkProgressListener progressListener) {
+		return submit(new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				try {
+					long resumeOffset = pushService.sendPushInBulkFromFile(title, message, additionalFields, 
+							tokenFile, startOffset, progressListener);
+					notifyBulkSuccess(true, title, message, additionalFields, null);
+					return resumeOffset;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, AdmissionController.estimateBytes(title, message, additionalFields));
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#submitPushInBulkWithReport(java.lang.String, java.lang.String, java.util.Map, java.lang.String[])
+	 */
+	@Override
+	public PushFuture<BulkSendReport> submitPushInBulkWithReport(final String title, final String message, 
+			final Map<String, String> additionalFields, final String... tokens) {
+		long bytes = AdmissionController.estimateBytes(title, message, additionalFields, tokens);
+		AdmissionController admission = admit(bytes);
+		final long sequence = journal(QueuedPush.bulk(title, message, additionalFields, tokens), admission, bytes);
+		return dispatch(new Callable<BulkSendReport>() {
+			@Override
+			public BulkSendReport call() throws Exception {
+				try {
+					BulkSendReport report = pushService.sendPushInBulkWithReport(title, message, additionalFields, tokens);
+					acknowledge(sequence);
+					notifyBulkSuccess(report.isSuccess(), title, message, additionalFields, tokens);
+					return report;
+				} catch (Exception e) {
+					notifyError(e);
+					throw e;
+				}
+			}
+		}, admission, bytes);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#publishPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.lang.Iterable)
+	 */
+	@Override
+	public Publisher<BulkChunkResult> publishPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			Iterable<String> tokens) {
+		return publishPushInBulk(title, message, additionalFields, tokens, BulkSendPublisher.DEFAULT_CHUNK_SIZE, 1);
+	}
+
+	/*
+	 * @see com.devsu.push.sender.service.async.AsyncPushService#publishPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.lang.Iterable, int, int)
+	 */
+	@Override
+	public Publisher<BulkChunkResult> publishPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			Iterable<String> tokens, int chunkSize, int maxConcurrentChunks) {
+		return new BulkSendPublisher(pushService, executorService, title, message, additionalFields, tokens, 
+				chunkSize, maxConcurrentChunks, admissionController);
+	}
+	
+	/**
+	 * Runs a push message request on the worker pool.
+	 * @param <T> The result type.
+	 * @param task The push message request.
+	 * @return The future that completes with the result of the request.
+	 * @throws RejectedExecutionException If the request doesn't fit in the admission budgets.
+	 */
+	protected <T> PushFuture<T> submit(Callable<T> task) {
+		return submit(task, AdmissionController.estimateBytes(null, null, null));
+	}
+	
+	/**
+	 * Runs a push message request on the worker pool.
+	 * @param <T> The result type.
+	 * @param task The push message request.
+	 * @param bytes The estimated bytes held by the request, see {@link AdmissionController#estimateBytes}.
+	 * @return The future that completes with the result of the request.
+	 * @throws RejectedExecutionException If the request doesn't fit in the admission budgets.
+	 */
+	protected <T> PushFuture<T> submit(Callable<T> task, long bytes) {
+		return dispatch(task, admit(bytes), bytes);
+	}
+	
+	/**
+	 * Accepts a push message request if it fits in the admission budgets right now.
+	 * @param bytes The estimated bytes held by the request.
+	 * @return The admission controller that accepted the request, or <i>null</i> if there is none.
+	 * @throws RejectedExecutionException If the request doesn't fit in the admission budgets.
+	 */
+	protected AdmissionController admit(long bytes) {
+		AdmissionController admission = admissionController;
+		if (admission != null && !admission.tryAcquire(bytes)) {
+			throw new RejectedExecutionException("Push message request rejected, the service is over its admission budget: " 
+					+ admission);
+		}
+		return admission;
+	}
+	
+	/**
+	 * Records an accepted push message request on the durable queue, if there is one, releasing the request if it
+	 * can't be recorded.
+	 * @param push The push message request.
+	 * @param admission The admission controller that accepted the request, or <i>null</i>.
+	 * @param bytes The estimated bytes held by the request.
+	 * @return The sequence of the queue entry, or -1 if there is no durable queue.
+	 */
+	private long journal(QueuedPush push, AdmissionController admission, long bytes) {
+		try {
+			return journal(push);
+		} catch (RuntimeException e) {
+			if (admission != null) {
+				admission.release(bytes);
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Runs an accepted push message request on the worker pool. The request is released once its future is done,
+	 * or right away if the worker pool rejects it.
+	 * @param <T> The result type.
+	 * @param task The push message request.
+	 * @param admission The admission controller that accepted the request, or <i>null</i>.
+	 * @param bytes The estimated bytes held by the request.
+	 * @return The future that completes with the result of the request.
+	 */
+	private <T> PushFuture<T> dispatch(final Callable<T> task, final AdmissionController admission, final long bytes) {
+		final PushMetrics metrics = getMetrics();
+		final long queuedNanos = System.nanoTime();
+		PushFuture<T> future = new PushFuture<T>(metrics == null ? task : new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				metrics.recordLatency(MetricStage.QUEUE_WAIT, queuedNanos);
+				return task.call();
+			}
+		});
+		if (admission == null) {
+			executorService.execute(future);
+			return future;
+		}
+		try {
+			executorService.execute(future);
+		} catch (RuntimeException e) {
+			admission.release(bytes);
+			throw e;
+		}
+		future.addListener(new PushFutureListener<T>() {
+			@Override
+			public void onSuccess(T result) {
+				admission.release(bytes);
+			}
+			@Override
+			public void onFailure(Throwable t) {
+				admission.release(bytes);
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Notifies the push callback, if there is one, that a single push message request was sent.
+	 * @param result <i>true</i> if the push message request was sent.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param token The push token.
+	 */
+	protected void notifySingleSuccess(boolean result, String title, String message, Map<String, String> additionalFields, 
+			String token) {
+		PushCallback callback = pushCallback;
+		if (callback == null) {
+			return;
+		}
+		long startNanos = System.nanoTime();
+		try {
+			callback.onSingleSuccess(result, title, message, additionalFields, token);
+		} finally {
+			recordCallbackLatency(startNanos);
+		}
+	}
+	
+	/**
+	 * Notifies the push callback, if there is one, that a bulk push message request was sent.
+	 * @param result <i>true</i> if the push message request was sent.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 */
+	protected void notifyBulkSuccess(boolean result, String title, String message, Map<String, String> additionalFields, 
+			String[] tokens) {
+		PushCallback callback = pushCallback;
+		if (callback == null) {
+			return;
+		}
+		long startNanos = System.nanoTime();
+		try {
+			callback.onBulkSuccess(result, title, message, additionalFields, tokens);
+		} finally {
+			recordCallbackLatency(startNanos);
+		}
+	}
+	
+	/**
+	 * Notifies the push callback, if there is one, that a push message request failed.
+	 * @param t The error.
+	 */
+	protected void notifyError(Throwable t) {
+		PushCallback callback = pushCallback;
+		if (callback == null) {
+			return;
+		}
+		long startNanos = System.nanoTime();
+		try {
+			callback.onError(t);
+		} finally {
+			recordCallbackLatency(startNanos);
+		}
+	}
+	
+	/**
+	 * Records the time spent on the push callback.
+	 * @param startNanos The time the callback was called, from {@link System#nanoTime()}.
+	 */
+	private void recordCallbackLatency(long startNanos) {
+		PushMetrics metrics = getMetrics();
+		if (metrics != null) {
+			metrics.recordLatency(MetricStage.CALLBACK, startNanos);
+		}
+	}
+	
+	/**
+	 * Gets the metrics where the outcomes and latencies of push messages are recorded, which are the ones of the
+	 * sync service.
+	 * @return The metrics, or <i>null</i> if none are recorded.
+	 */
+	public PushMetrics getMetrics() {
+		return pushService instanceof SyncPushServiceBase ? ((SyncPushServiceBase) pushService).getMetrics() : null;
+	}
+	
+	/**
+	 * Sets the metrics where the outcomes and latencies of push messages are recorded.
+	 * @param metrics The metrics, or <i>null</i> to record none.
+	 */
+	public void setMetrics(PushMetrics metrics) {
+		if (!(pushService instanceof SyncPushServiceBase)) {
+			throw new IllegalStateException("Push service doesn't record metrics.");
+		}
+		((SyncPushServiceBase) pushService).setMetrics(metrics);
+	}
+	
+	/**
+	 * Records a push message request on the durable queue, if there is one.
+	 * @param push The push message request.
+	 * @return The sequence of the queue entry, or -1 if there is no durable queue.
+	 */
+	protected long journal(QueuedPush push) {
+		DurablePushQueue queue = durableQueue;
+		return queue == null ? -1 : queue.append(push);
+	}
+	
+	/**
+	 * Acknowledges a queue entry once its push message request has been sent.
+	 * @param sequence The sequence of the queue entry, or -1 if it isn't queued.
+	 */
+	protected void acknowledge(long sequence) {
+		DurablePushQueue queue = durableQueue;
+		if (queue != null && sequence >= 0) {
+			queue.acknowledge(sequence);
+		}
+	}
+	
+	/**
+	 * Sends again every push message request that was queued but not sent before a restart. Call it once, right after
+	 * setting the durable queue on startup.
+	 * @return The quantity of resubmitted push message requests.
+	 */
+	public int replayDurableQueue() {
+		DurablePushQueue queue = durableQueue;
+		if (queue == null) {
+			throw new IllegalStateException("There is no durable queue to replay.");
+		}
+		return queue.replay(new ReplayHandler() {
+			@Override
+			public void onEntry(long sequence, QueuedPush push) {
+				if (push.isBulk()) {
+					long bytes = AdmissionController.estimateBytes(push.getTitle(), push.getMessage(), 
+							push.getAdditionalFields(), push.getTokens());
+					submitPushInBulk(push.getTitle(), push.getMessage(), push.getAdditionalFields(), push.getTokens(), 
+							sequence, awaitAdmission(bytes), bytes);
+				} else {
+					long bytes = AdmissionController.estimateBytes(push.getTitle(), push.getMessage(), 
+							push.getAdditionalFields(), push.getToken());
+					submitPush(push.getTitle(), push.getMessage(), push.getAdditionalFields(), push.getToken(), 
+							sequence, awaitAdmission(bytes), bytes);
+				}
+			}
 		});
-		executorService.shutdown();
+	}
+	
+	/**
+	 * Accepts a replayed push message request, waiting for as long as it takes to fit in the admission budgets.
+	 * @param bytes The estimated bytes held by the request.
+	 * @return The admission controller that accepted the request, or <i>null</i> if there is none.
+	 */
+	private AdmissionController awaitAdmission(long bytes) {
+		AdmissionController admission = admissionController;
+		if (admission == null) {
+			return null;
+		}
+		try {
+			admission.tryAcquire(bytes, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for the admission budget.", e);
+		}
+		return admission;
+	}
+	
+	/**
+	 * Sets the queue where push message requests are recorded until they are sent, so they survive a restart. 
+	 * Requests are recorded when they are submitted and acknowledged once they are sent; requests that fail with an 
+	 * exception stay on the queue until they are replayed. Push messages built externally and token sources are not
+	 * recorded. The queue is not closed by this service.
+	 * @param durableQueue The durable queue, or <i>null</i> to keep the requests in memory only.
+	 */
+	public void setDurableQueue(DurablePushQueue durableQueue) {
+		this.durableQueue = durableQueue;
+	}
+	
+	/**
+	 * Gets the queue where push message requests are recorded until they are sent.
+	 * @return The durable queue, or <i>null</i> if there is none.
+	 */
+	public DurablePushQueue getDurableQueue() {
+		return durableQueue;
+	}
+	
+	/**
+	 * Sets the budgets of the push message requests accepted and not finished yet. Once a budget is full, 
+	 * {@code sendPush}, {@code submitPush} and the rest of the methods that take requests throw a 
+	 * {@link RejectedExecutionException} right away, {@code trySendPush} and {@code trySendPushInBulk} return 
+	 * <i>false</i>, and their variants with a timeout wait for room first. Replayed requests wait for as long as it 
+	 * takes.
+	 * @param admissionController The admission controller, or <i>null</i> to accept every request.
+	 */
+	public void setAdmissionController(AdmissionController admissionController) {
+		this.admissionController = admissionController;
+	}
+	
+	/**
+	 * Gets the budgets of the push message requests accepted and not finished yet.
+	 * @return The admission controller, or <i>null</i> if every request is accepted.
+	 */
+	public AdmissionController getAdmissionController() {
+		return admissionController;
 	}
 	
 	/*
@@ -121,4 +707,25 @@ public abstract class AsyncPushServiceBase implements AsyncPushService {
 	public void setPushCallback(PushCallback pushCallback) {
 		this.pushCallback = pushCallback;
 	}
+	
+	/**
+	 * Gets the name of the provider of a push service, from its metrics.
+	 * @param pushService The push service.
+	 * @return The provider name, or <i>null</i> if the service has no metrics.
+	 */
+	private static String getProviderName(SyncPushService pushService) {
+		PushMetrics metrics = pushService instanceof SyncPushServiceBase ? ((SyncPushServiceBase) pushService).getMetrics() : null;
+		return metrics == null ? null : metrics.getName();
+	}
+	
+	/**
+	 * Sets the worker pool that runs the push message requests. The pool is not shut down by this service.
+	 * @param executorService The worker pool that runs the push message requests.
+	 */
+	public void setExecutorService(ExecutorService executorService) {
+		if (executorService == null) {
+			throw new IllegalArgumentException("Executor service is null.");
+		}
+		this.executorService = executorService;
+	}
 }
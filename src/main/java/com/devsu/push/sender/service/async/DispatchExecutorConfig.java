@@ -0,0 +1,229 @@
+package com.devsu.push.sender.service.async;
+
+/**
+ * Settings for the worker pool used by the async push services.
+ */
+public class DispatchExecutorConfig {
+
+	/**
+	 * The number of worker threads.
+	 */
+	private int poolSize;
+
+	/**
+	 * The max quantity of push messages waiting to be dispatched.
+	 */
+	private int queueCapacity;
+
+	/**
+	 * Seconds an idle worker thread is kept alive.
+	 */
+	private long keepAliveSeconds;
+
+	/**
+	 * The prefix for the worker thread names.
+	 */
+	private String threadNamePrefix;
+
+	/**
+	 * Indicates if the worker threads are daemon threads.
+	 */
+	private boolean daemon;
+
+	/**
+	 * The policy applied when the queue is full.
+	 */
+	private RejectionPolicy rejectionPolicy;
+
+	/**
+	 * Indicates if every push message request runs on its own virtual thread, instead of on a pool.
+	 */
+	private boolean virtualThreads;
+
+	/**
+	 * The max quantity of push message requests running at the same time on virtual threads, per provider.
+	 */
+	private int maxConcurrentSends;
+
+	/**
+	 * No param constructor.
+	 */
+	public DispatchExecutorConfig() {
+		setDefaultValues();
+	}
+
+	/**
+	 * Sets the default values.
+	 */
+	private void setDefaultValues() {
+		poolSize = Defaults.POOL_SIZE;
+		queueCapacity = Defaults.QUEUE_CAPACITY;
+		keepAliveSeconds = Defaults.KEEP_ALIVE_SECONDS;
+		threadNamePrefix = Defaults.THREAD_NAME_PREFIX;
+		daemon = Defaults.DAEMON;
+		rejectionPolicy = Defaults.REJECTION_POLICY;
+		virtualThreads = Defaults.VIRTUAL_THREADS;
+		maxConcurrentSends = Defaults.MAX_CONCURRENT_SENDS;
+	}
+
+	/**
+	 * Gets the number of worker threads.
+	 * @return The number of worker threads.
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * Sets the number of worker threads.
+	 * @param poolSize The number of worker threads.
+	 */
+	public void setPoolSize(int poolSize) {
+		if (poolSize < 1) {
+			throw new IllegalArgumentException("Pool size must be greater than 0.");
+		}
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * Gets the max quantity of push messages waiting to be dispatched.
+	 * @return The max quantity of push messages waiting to be dispatched.
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Sets the max quantity of push messages waiting to be dispatched.
+	 * @param queueCapacity The max quantity of push messages waiting to be dispatched.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be greater than 0.");
+		}
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Gets the seconds an idle worker thread is kept alive.
+	 * @return The seconds an idle worker thread is kept alive.
+	 */
+	public long getKeepAliveSeconds() {
+		return keepAliveSeconds;
+	}
+
+	/**
+	 * Sets the seconds an idle worker thread is kept alive.
+	 * @param keepAliveSeconds The seconds an idle worker thread is kept alive.
+	 */
+	public void setKeepAliveSeconds(long keepAliveSeconds) {
+		if (keepAliveSeconds < 1) {
+			throw new IllegalArgumentException("Keep alive must be greater than 0.");
+		}
+		this.keepAliveSeconds = keepAliveSeconds;
+	}
+
+	/**
+	 * Gets the prefix for the worker thread names.
+	 * @return The prefix for the worker thread names.
+	 */
+	public String getThreadNamePrefix() {
+		return threadNamePrefix;
+	}
+
+	/**
+	 * Sets the prefix for the worker thread names.
+	 * @param threadNamePrefix The prefix for the worker thread names.
+	 */
+	public void setThreadNamePrefix(String threadNamePrefix) {
+		this.threadNamePrefix = threadNamePrefix;
+	}
+
+	/**
+	 * Indicates if the worker threads are daemon threads.
+	 * @return <i>true</i> if the worker threads are daemon threads.
+	 */
+	public boolean isDaemon() {
+		return daemon;
+	}
+
+	/**
+	 * Sets if the worker threads are daemon threads.
+	 * @param daemon <i>true</i> if the worker threads are daemon threads.
+	 */
+	public void setDaemon(boolean daemon) {
+		this.daemon = daemon;
+	}
+
+	/**
+	 * Gets the policy applied when the queue is full.
+	 * @return The policy applied when the queue is full.
+	 */
+	public RejectionPolicy getRejectionPolicy() {
+		return rejectionPolicy;
+	}
+
+	/**
+	 * Sets the policy applied when the queue is full.
+	 * @param rejectionPolicy The policy applied when the queue is full.
+	 */
+	public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+		if (rejectionPolicy == null) {
+			throw new IllegalArgumentException("Rejection policy is null.");
+		}
+		this.rejectionPolicy = rejectionPolicy;
+	}
+
+	/**
+	 * Indicates if every push message request runs on its own virtual thread, instead of on a pool.
+	 * @return <i>true</i> if push message requests run on virtual threads.
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Sets if every push message request runs on its own virtual thread, instead of on a pool of
+	 * <i>poolSize</i> threads. Up to <i>maxConcurrentSends</i> requests run at the same time, up to 
+	 * <i>queueCapacity</i> more wait for their turn, and the rejection policy applies to the rest. Virtual threads
+	 * need Java 21; on older runtimes every request runs on a new platform thread instead, with the same limits.
+	 * @param virtualThreads <i>true</i> to run push message requests on virtual threads.
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Gets the max quantity of push message requests running at the same time on virtual threads, per provider.
+	 * @return The max quantity of concurrent push message requests.
+	 */
+	public int getMaxConcurrentSends() {
+		return maxConcurrentSends;
+	}
+
+	/**
+	 * Sets the max quantity of push message requests running at the same time on virtual threads. The shared
+	 * worker pool applies it to every provider separately, so a slow provider doesn't hold back the others.
+	 * @param maxConcurrentSends The max quantity of concurrent push message requests.
+	 */
+	public void setMaxConcurrentSends(int maxConcurrentSends) {
+		if (maxConcurrentSends < 1) {
+			throw new IllegalArgumentException("Max concurrent sends must be greater than 0.");
+		}
+		this.maxConcurrentSends = maxConcurrentSends;
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		private static final int QUEUE_CAPACITY = 10000;
+		private static final long KEEP_ALIVE_SECONDS = 30;
+		private static final String THREAD_NAME_PREFIX = "push-sender";
+		private static final boolean DAEMON = false;
+		private static final RejectionPolicy REJECTION_POLICY = RejectionPolicy.BLOCK;
+		private static final boolean VIRTUAL_THREADS = false;
+		private static final int MAX_CONCURRENT_SENDS = 1000;
+	}
+}
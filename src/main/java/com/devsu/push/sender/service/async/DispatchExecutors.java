@@ -0,0 +1,179 @@
+package com.devsu.push.sender.service.async;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.devsu.push.sender.util.NamedThreadFactory;
+
+/**
+ * Factory for the worker pools used by the async push services.
+ */
+public class DispatchExecutors {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger log = LoggerFactory.getLogger(DispatchExecutors.class);
+
+	/**
+	 * The worker pool shared by every async push service that has no executor of its own.
+	 */
+	private static ExecutorService sharedExecutor;
+
+	/**
+	 * The settings of the shared worker pool, or <i>null</i> if it was set with {@link #setSharedExecutor(ExecutorService)}.
+	 */
+	private static DispatchExecutorConfig sharedConfig;
+
+	/**
+	 * The shared worker pools of every provider, when the shared worker pool runs on virtual threads.
+	 */
+	private static final Map<String, ExecutorService> sharedProviderExecutors = new HashMap<String, ExecutorService>();
+
+	/**
+	 * Indicates if the lack of virtual threads was already logged.
+	 */
+	private static volatile boolean platformThreadsWarned;
+
+	/**
+	 * Gets the shared worker pool, creating it with the default settings on first use.
+	 * @return The shared worker pool.
+	 */
+	public static synchronized ExecutorService getSharedExecutor() {
+		if (sharedExecutor == null) {
+			sharedConfig = new DispatchExecutorConfig();
+			sharedExecutor = newExecutor(sharedConfig);
+		}
+		return sharedExecutor;
+	}
+
+	/**
+	 * Gets the shared worker pool of a provider. When the shared worker pool runs on virtual threads, every
+	 * provider gets its own, with its own limit of concurrent push message requests; otherwise every provider
+	 * shares the same pool.
+	 * @param provider The provider name, or <i>null</i> to get the shared worker pool.
+	 * @return The shared worker pool of the provider.
+	 */
+	public static synchronized ExecutorService getSharedExecutor(String provider) {
+		ExecutorService executor = getSharedExecutor();
+		if (provider == null || sharedConfig == null || !sharedConfig.isVirtualThreads()) {
+			return executor;
+		}
+		ExecutorService providerExecutor = sharedProviderExecutors.get(provider);
+		if (providerExecutor == null) {
+			providerExecutor = newExecutor(sharedConfig);
+			sharedProviderExecutors.put(provider, providerExecutor);
+		}
+		return providerExecutor;
+	}
+
+	/**
+	 * Replaces the shared worker pool. Services created before this call keep using the pool they were given, so
+	 * the previous pools are left running: the pools created by this class let their idle threads time out, and a
+	 * pool set by the caller is still owned by the caller, who shuts it down once its services are done.
+	 * @param executorService The new shared worker pool.
+	 */
+	public static synchronized void setSharedExecutor(ExecutorService executorService) {
+		replaceSharedExecutor(executorService, null);
+	}
+
+	/**
+	 * Replaces the shared worker pool with a new one built from the given settings. The previous pools are left
+	 * running for the services created before this call, as in {@link #setSharedExecutor(ExecutorService)}.
+	 * @param config The worker pool settings.
+	 */
+	public static synchronized void configureSharedExecutor(DispatchExecutorConfig config) {
+		replaceSharedExecutor(newExecutor(config), config);
+	}
+
+	/**
+	 * Creates a bounded worker pool: a fixed set of threads, or a new virtual thread per push message request if
+	 * the settings ask for virtual threads.
+	 * @param config The worker pool settings.
+	 * @return The worker pool.
+	 */
+	public static ExecutorService newExecutor(DispatchExecutorConfig config) {
+		if (config.isVirtualThreads()) {
+			return new VirtualThreadDispatchExecutor(newVirtualThreadFactory(config), config);
+		}
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(config.getPoolSize(), config.getPoolSize(),
+				config.getKeepAliveSeconds(), TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(config.getQueueCapacity()),
+				new NamedThreadFactory(config.getThreadNamePrefix(), config.isDaemon()),
+				config.getRejectionPolicy().toHandler());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Indicates if the runtime supports virtual threads (Java 21 or later).
+	 * @return <i>true</i> if virtual threads are supported.
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return newVirtualThreadFactory("push-sender-probe") != null;
+	}
+
+	/**
+	 * Replaces the shared worker pool and its settings. The previous pools are not shut down, since the services
+	 * created with them still use them; the per provider pools are forgotten, so new services get new ones.
+	 * @param executorService The new shared worker pool.
+	 * @param config The settings of the new pool, or <i>null</i> if they are unknown.
+	 */
+	private static void replaceSharedExecutor(ExecutorService executorService, DispatchExecutorConfig config) {
+		if (executorService == null) {
+			throw new IllegalArgumentException("Executor service is null.");
+		}
+		sharedProviderExecutors.clear();
+		sharedExecutor = executorService;
+		sharedConfig = config;
+	}
+
+	/**
+	 * Creates the thread factory of a virtual thread pool. Runtimes without virtual threads get platform threads
+	 * instead, with a warning the first time.
+	 * @param config The worker pool settings.
+	 * @return The thread factory.
+	 */
+	private static ThreadFactory newVirtualThreadFactory(DispatchExecutorConfig config) {
+		ThreadFactory threadFactory = newVirtualThreadFactory(config.getThreadNamePrefix());
+		if (threadFactory != null) {
+			return threadFactory;
+		}
+		if (!platformThreadsWarned) {
+			platformThreadsWarned = true;
+			log.warn("Virtual threads are not supported by this Java runtime, push messages will run on platform threads.");
+		}
+		return new NamedThreadFactory(config.getThreadNamePrefix(), config.isDaemon());
+	}
+
+	/**
+	 * Creates a factory of virtual threads named <i>prefix-N</i>. The library is built for Java 7, so the
+	 * Java 21 thread builder is called through reflection.
+	 * @param prefix The prefix used for every thread name.
+	 * @return The thread factory, or <i>null</i> if the runtime doesn't support virtual threads.
+	 */
+	private static ThreadFactory newVirtualThreadFactory(String prefix) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Method name = builderClass.getMethod("name", String.class, long.class);
+			builder = name.invoke(builder, prefix + "-", 1L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		} catch (InvocationTargetException e) {
+			// Java 19 and 20 only have virtual threads as a preview feature, and reject them when it is disabled.
+			return null;
+		}
+	}
+}
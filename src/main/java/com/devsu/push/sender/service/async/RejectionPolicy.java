@@ -0,0 +1,81 @@
+package com.devsu.push.sender.service.async;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Policies applied when the dispatch queue of an async push service is full.
+ */
+public enum RejectionPolicy {
+
+	/**
+	 * The caller blocks until there is room in the dispatch queue.
+	 */
+	BLOCK {
+		@Override
+		public RejectedExecutionHandler toHandler() {
+			return new RejectedExecutionHandler() {
+				@Override
+				public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+					if (executor.isShutdown()) {
+						throw new RejectedExecutionException("Dispatch executor has been shut down.");
+					}
+					try {
+						executor.getQueue().put(runnable);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException("Interrupted while waiting for the dispatch queue.", e);
+					}
+					// The executor may have been shut down while waiting, and then nobody would run the push message.
+					if (executor.isShutdown() && executor.getQueue().remove(runnable)) {
+						throw new RejectedExecutionException("Dispatch executor has been shut down.");
+					}
+				}
+			};
+		}
+	},
+
+	/**
+	 * The push message is discarded and a warning is logged.
+	 */
+	DROP {
+		@Override
+		public RejectedExecutionHandler toHandler() {
+			return new RejectedExecutionHandler() {
+				@Override
+				public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+					log.warn("Dispatch queue is full, push message dropped.");
+					if (runnable instanceof Future) {
+						((Future<?>) runnable).cancel(false);
+					}
+				}
+			};
+		}
+	},
+
+	/**
+	 * The push message is sent on the caller's thread.
+	 */
+	CALLER_RUNS {
+		@Override
+		public RejectedExecutionHandler toHandler() {
+			return new ThreadPoolExecutor.CallerRunsPolicy();
+		}
+	};
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger log = LoggerFactory.getLogger(RejectionPolicy.class);
+
+	/**
+	 * Creates the handler that implements this policy.
+	 * @return The rejected execution handler.
+	 */
+	public abstract RejectedExecutionHandler toHandler();
+}
@@ -0,0 +1,310 @@
+package com.devsu.push.sender.service.async;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Worker pool that runs every push message request on a new thread, virtual when the runtime supports it, instead
+ * of on a fixed set of threads. A semaphore limits the requests running at the same time; the requests over the
+ * limit wait on their own thread, up to the queue capacity, and the rejection policy applies to the rest.
+ */
+class VirtualThreadDispatchExecutor extends AbstractExecutorService {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger log = LoggerFactory.getLogger(VirtualThreadDispatchExecutor.class);
+
+	/**
+	 * The factory of the request threads.
+	 */
+	private final ThreadFactory threadFactory;
+
+	/**
+	 * The permits of the requests running at the same time, granted in arrival order.
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * The max quantity of requests waiting for a permit.
+	 */
+	private final int queueCapacity;
+
+	/**
+	 * The policy applied when the queue is full.
+	 */
+	private final RejectionPolicy rejectionPolicy;
+
+	/**
+	 * The quantity of requests waiting for a permit.
+	 */
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	/**
+	 * The quantity of requests started and not finished, waiting or running.
+	 */
+	private final AtomicInteger active = new AtomicInteger();
+
+	/**
+	 * The threads of the active requests, interrupted by {@link #shutdownNow()}.
+	 */
+	private final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+	/**
+	 * The lock notified when the last active request finishes.
+	 */
+	private final Object terminationLock = new Object();
+
+	/**
+	 * Indicates if the pool was shut down.
+	 */
+	private volatile boolean shutdown;
+
+	/**
+	 * 2 param constructor.
+	 * @param threadFactory The factory of the request threads.
+	 * @param config The worker pool settings; the pool size and keep alive don't apply.
+	 */
+	VirtualThreadDispatchExecutor(ThreadFactory threadFactory, DispatchExecutorConfig config) {
+		this.threadFactory = threadFactory;
+		this.permits = new Semaphore(config.getMaxConcurrentSends(), true);
+		this.queueCapacity = config.getQueueCapacity();
+		this.rejectionPolicy = config.getRejectionPolicy();
+	}
+
+	/*
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(Runnable task) {
+		if (task == null) {
+			throw new NullPointerException("Task is null.");
+		}
+		if (shutdown) {
+			throw new RejectedExecutionException("Dispatch executor has been shut down.");
+		}
+		// Only take a free permit when nobody is waiting, so waiting requests keep their order.
+		if (waiting.get() == 0 && permits.tryAcquire()) {
+			start(task, true);
+		} else if (waiting.incrementAndGet() <= queueCapacity) {
+			start(task, false);
+		} else {
+			waiting.decrementAndGet();
+			reject(task);
+		}
+	}
+
+	/*
+	 * @see java.util.concurrent.ExecutorService#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		shutdown = true;
+		signalIfTerminated();
+	}
+
+	/**
+	 * Shuts the pool down and interrupts every active request. Requests still waiting for their turn are cancelled
+	 * instead of returned, since they already have a thread of their own.
+	 * @return An empty list.
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		shutdown();
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+		return Collections.emptyList();
+	}
+
+	/*
+	 * @see java.util.concurrent.ExecutorService#isShutdown()
+	 */
+	@Override
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	/*
+	 * @see java.util.concurrent.ExecutorService#isTerminated()
+	 */
+	@Override
+	public boolean isTerminated() {
+		return shutdown && active.get() == 0;
+	}
+
+	/*
+	 * @see java.util.concurrent.ExecutorService#awaitTermination(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (terminationLock) {
+			while (!isTerminated()) {
+				long remainingNanos = deadline - System.nanoTime();
+				if (remainingNanos <= 0) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(terminationLock, remainingNanos);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Starts the thread of a request.
+	 * @param task The request.
+	 * @param hasPermit <i>true</i> if the request already has its permit, <i>false</i> if it waits for one.
+	 */
+	private void start(Runnable task, boolean hasPermit) {
+		active.incrementAndGet();
+		try {
+			threadFactory.newThread(new Worker(task, hasPermit)).start();
+		} catch (RuntimeException | Error e) {
+			// Platform threads, used on runtimes without virtual threads, can run out.
+			if (hasPermit) {
+				permits.release();
+			} else {
+				waiting.decrementAndGet();
+			}
+			finish();
+			throw new RejectedExecutionException("The request thread couldn't be started.", e);
+		}
+	}
+
+	/**
+	 * Applies the rejection policy to a request that didn't fit in the queue.
+	 * @param task The request.
+	 */
+	private void reject(Runnable task) {
+		switch (rejectionPolicy) {
+		case BLOCK:
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for the dispatch queue.", e);
+			}
+			if (shutdown) {
+				permits.release();
+				throw new RejectedExecutionException("Dispatch executor has been shut down.");
+			}
+			start(task, true);
+			break;
+		case DROP:
+			log.warn("Dispatch queue is full, push message dropped.");
+			if (task instanceof Future) {
+				((Future<?>) task).cancel(false);
+			}
+			break;
+		default:
+			task.run();
+			break;
+		}
+	}
+
+	/**
+	 * Counts a finished request, and wakes up the threads waiting for termination after the last one.
+	 */
+	private void finish() {
+		if (active.decrementAndGet() == 0) {
+			signalIfTerminated();
+		}
+	}
+
+	/**
+	 * Wakes up the threads waiting for termination, if the pool is terminated.
+	 */
+	private void signalIfTerminated() {
+		if (isTerminated()) {
+			synchronized (terminationLock) {
+				terminationLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Runs a request on its own thread, once it has a permit.
+	 */
+	private class Worker implements Runnable {
+
+		/**
+		 * The request.
+		 */
+		private final Runnable task;
+
+		/**
+		 * <i>true</i> if the request already has its permit.
+		 */
+		private final boolean hasPermit;
+
+		/**
+		 * 2 param constructor.
+		 * @param task The request.
+		 * @param hasPermit <i>true</i> if the request already has its permit.
+		 */
+		private Worker(Runnable task, boolean hasPermit) {
+			this.task = task;
+			this.hasPermit = hasPermit;
+		}
+
+		/*
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			Thread thread = Thread.currentThread();
+			threads.add(thread);
+			try {
+				if (!hasPermit && !awaitPermit()) {
+					return;
+				}
+				try {
+					task.run();
+				} finally {
+					permits.release();
+				}
+			} finally {
+				threads.remove(thread);
+				finish();
+			}
+		}
+
+		/**
+		 * Waits for the permit of the request. The request is cancelled if the pool is shut down meanwhile.
+		 * @return <i>true</i> if the request got its permit.
+		 */
+		private boolean awaitPermit() {
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				cancel();
+				return false;
+			} finally {
+				waiting.decrementAndGet();
+			}
+			return true;
+		}
+
+		/**
+		 * Cancels a request that never ran.
+		 */
+		private void cancel() {
+			if (task instanceof Future) {
+				((Future<?>) task).cancel(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.devsu.push.sender.service.sync;
+
+import com.notnoop.apns.ReconnectPolicy;
+
+/**
+ * APNS reconnect policy that recycles a connection when it has been idle for too long,
+ * or when it has been open for longer than its max age.
+ * APNS silently drops idle connections, so writing on them would lose the push message.
+ */
+public class IdleReconnectPolicy implements ReconnectPolicy {
+
+	/**
+	 * Max milliseconds a connection can stay idle.
+	 */
+	private final long maxIdleMillis;
+
+	/**
+	 * Max milliseconds a connection can stay open.
+	 */
+	private final long maxAgeMillis;
+
+	/**
+	 * Last time the connection was used.
+	 */
+	private long lastUsed;
+
+	/**
+	 * Last time the connection was opened.
+	 */
+	private long lastConnected;
+
+	/**
+	 * 2 param constructor.
+	 * @param maxIdleMillis Max milliseconds a connection can stay idle.
+	 * @param maxAgeMillis Max milliseconds a connection can stay open.
+	 */
+	public IdleReconnectPolicy(long maxIdleMillis, long maxAgeMillis) {
+		this.maxIdleMillis = maxIdleMillis;
+		this.maxAgeMillis = maxAgeMillis;
+		this.lastUsed = System.currentTimeMillis();
+		this.lastConnected = lastUsed;
+	}
+
+	/*
+	 * @see com.notnoop.apns.ReconnectPolicy#shouldReconnect()
+	 */
+	@Override
+	public synchronized boolean shouldReconnect() {
+		long now = System.currentTimeMillis();
+		boolean reconnect = now - lastUsed > maxIdleMillis || now - lastConnected > maxAgeMillis;
+		lastUsed = now;
+		return reconnect;
+	}
+
+	/*
+	 * @see com.notnoop.apns.ReconnectPolicy#reconnected()
+	 */
+	@Override
+	public synchronized void reconnected() {
+		lastConnected = System.currentTimeMillis();
+	}
+
+	/*
+	 * @see com.notnoop.apns.ReconnectPolicy#copy()
+	 */
+	@Override
+	public IdleReconnectPolicy copy() {
+		return new IdleReconnectPolicy(maxIdleMillis, maxAgeMillis);
+	}
+}
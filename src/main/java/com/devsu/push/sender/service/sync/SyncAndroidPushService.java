@@ -1,14 +1,53 @@
 package com.devsu.push.sender.service.sync;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.devsu.push.sender.future.PushFuture;
+import com.devsu.push.sender.future.PushFutures;
+import com.devsu.push.sender.future.SettablePushFuture;
+import com.devsu.push.sender.metrics.MetricStage;
+import com.devsu.push.sender.metrics.MetricsRegistry;
+import com.devsu.push.sender.payload.AndroidPayload;
+import com.devsu.push.sender.payload.PayloadCache;
+import com.devsu.push.sender.payload.PayloadKey;
+import com.devsu.push.sender.ratelimit.RateLimiterRegistry;
+import com.devsu.push.sender.result.BulkSendReport;
+import com.devsu.push.sender.retry.RetryHandler;
+import com.devsu.push.sender.retry.RetryScheduler;
+import com.devsu.push.sender.result.TokenStatus;
+import com.devsu.push.sender.template.PushTemplate;
+import com.devsu.push.sender.template.TemplateRecipient;
+import com.devsu.push.sender.token.ResumeTracker;
+import com.devsu.push.sender.token.TokenSelection;
+import com.devsu.push.sender.transport.AndroidTransport;
+import com.devsu.push.sender.transport.GcmSenderTransport;
+import com.devsu.push.sender.transport.TransportListener;
 import com.devsu.push.sender.util.ArrayUtil;
+import com.devsu.push.sender.util.ChunkIterator;
+import com.devsu.push.sender.util.NamedThreadFactory;
+import com.google.android.gcm.server.Constants;
+import com.google.android.gcm.server.InvalidRequestException;
 import com.google.android.gcm.server.Message;
 import com.google.android.gcm.server.MulticastResult;
 import com.google.android.gcm.server.Result;
@@ -52,9 +91,83 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	private String collapseKeyBulk;
 	
 	/**
-	 * The GCM service.
+	 * The quantity of multicast requests of a single bulk push message that can be sent in parallel.
 	 */
-	private Sender senderService;
+	private int bulkConcurrency;
+	
+	/**
+	 * The worker pool that sends the multicast requests in parallel.
+	 */
+	private ExecutorService bulkExecutor;
+	
+	/**
+	 * Indicates if the bulk executor was created by this service, so it must be shut down when replaced.
+	 */
+	private boolean ownsBulkExecutor;
+	
+	/**
+	 * The cache of built messages, or <i>null</i> if it is disabled.
+	 */
+	private volatile PayloadCache<AndroidPayload> payloadCache;
+	
+	/**
+	 * The GCM API Key, or <i>null</i> if the transport was built elsewhere.
+	 */
+	private String gcmApiKey;
+	
+	/**
+	 * The URL push messages are sent to instead of the GCM endpoint, or <i>null</i> to send them to GCM.
+	 */
+	private String gcmEndpoint;
+	
+	/**
+	 * The transport that sends the requests.
+	 */
+	private volatile AndroidTransport transport;
+	
+	/**
+	 * The listener that reports the throttling and round trips of the transport.
+	 */
+	private final TransportListener transportListener = new TransportListener() {
+		@Override
+		public void onThrottled(long retryAfterMillis) {
+			SyncAndroidPushService.this.onThrottled(retryAfterMillis);
+		}
+		@Override
+		public void onRoundTrip(long startNanos) {
+			recordLatency(MetricStage.PROVIDER_ROUND_TRIP, startNanos);
+		}
+	};
+	
+	/**
+	 * Milliseconds single push messages wait to be coalesced into a multicast request, or 0 to send them right away.
+	 */
+	private volatile long coalesceLingerMillis;
+	
+	/**
+	 * The single push messages waiting to be coalesced, by payload. Guarded by itself.
+	 */
+	private final Map<PayloadKey, CoalescedMulticast> coalescedMulticasts = new HashMap<PayloadKey, CoalescedMulticast>();
+	
+	/**
+	 * The timer that ends the linger window of the coalesced multicast requests, created on first use.
+	 */
+	private ScheduledExecutorService coalesceTimer;
+	
+	/**
+	 * The quantity of coalesced multicast requests that can be sent in parallel.
+	 */
+	private int coalesceConcurrency;
+	
+	/**
+	 * The worker pool that sends the coalesced multicast requests, created on first use.
+	 */
+	private ExecutorService coalesceExecutor;
+	
+	/**
+	 * The handler that sends the multicast retries of this service.
+	 */
+	private final MulticastRetryHandler retryHandler = new MulticastRetryHandler();
 	
 	/**
 	 * Single param constructor.
@@ -62,7 +175,25 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	 */
 	public SyncAndroidPushService(String gcmApiKey){
 		setDefaultValues();
-		senderService = new Sender(gcmApiKey); 
+		setGcmApiKey(gcmApiKey);
+	}
+	
+	/**
+	 * Single param constructor, for GCM senders built elsewhere, like stubs or senders with a custom transport.
+	 * Only throttling reported on the results is seen by the rate limiter, and provider round trips are not timed.
+	 * @param senderService The GCM sender.
+	 */
+	public SyncAndroidPushService(Sender senderService) {
+		this(new GcmSenderTransport(senderService));
+	}
+	
+	/**
+	 * Single param constructor, for other transports, like asynchronous or HTTP/2 clients.
+	 * @param transport The transport that sends the requests.
+	 */
+	public SyncAndroidPushService(AndroidTransport transport) {
+		setDefaultValues();
+		setTransport(transport);
 	}
 	
 	/**
@@ -76,6 +207,9 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 		collapseKeySingle = Defaults.COLLAPSE_KEY_SINGLE;
 		collapseKeyBulk = Defaults.COLLAPSE_KEY_BULK;
 		pushEnabled = Defaults.PUSH_ENABLED;
+		bulkConcurrency = Defaults.BULK_CONCURRENCY;
+		coalesceConcurrency = Defaults.COALESCE_CONCURRENCY;
+		metrics = MetricsRegistry.getShared().getMetrics(getProviderName());
 	}
 	
 	/*
@@ -84,12 +218,87 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	@Override
 	public boolean sendPush(final String title, final String message, final Map<String, String> additionalFields, 
 			final String token) throws IOException {
-		if (!validateSingleData(log, message, token)) {
+		if (coalesceLingerMillis > 0) {
+			return awaitCoalesced(sendPushCoalesced(title, message, additionalFields, token));
+		}
+		if (!validateSingleData(log, message, token) || isSuppressed(log, token)) {
 			return false;
 		}
-		Message.Builder msgBuilder = generateBuilder(title, message, true, additionalFields);
-		Result result = senderService.send(msgBuilder.build(), token, maxRetries);
-		return resultIsOk(result);
+		AndroidPayload payload = preparePayload(title, message, true, additionalFields);
+		acquirePermits(1);
+		Result result = transport.send(payload.getMessage(), token, maxRetries);
+		return resultIsOk(token, result);
+	}
+	
+	/**
+	 * Sends a single push message, coalescing it with the single push messages with the same title, message and 
+	 * additional fields sent during the linger window. They are sent as a single multicast request when the window 
+	 * ends or when <i>maxBulkSize</i> tokens are waiting, and the result of every token is handed to its own future.
+	 * When coalescing is disabled, the push message is sent right away on the caller's thread.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param token The push token.
+	 * @return The future that completes with <i>true</i> if the push message was accepted for the token.
+	 */
+	public PushFuture<Boolean> sendPushCoalesced(String title, String message, Map<String, String> additionalFields, 
+			String token) {
+		long lingerMillis = coalesceLingerMillis;
+		if (lingerMillis <= 0) {
+			try {
+				return PushFutures.completed(sendPush(title, message, additionalFields, token));
+			} catch (IOException e) {
+				return PushFutures.failed(e);
+			}
+		}
+		if (!validateSingleData(log, message, token) || isSuppressed(log, token)) {
+			return PushFutures.completed(false);
+		}
+		PayloadKey key = new PayloadKey(title, message, additionalFields, true);
+		SettablePushFuture<Boolean> future = new SettablePushFuture<Boolean>();
+		CoalescedMulticast fullMulticast = null;
+		synchronized (coalescedMulticasts) {
+			CoalescedMulticast multicast = coalescedMulticasts.get(key);
+			if (multicast == null) {
+				multicast = new CoalescedMulticast(key, preparePayload(title, message, true, additionalFields).getMessage());
+				coalescedMulticasts.put(key, multicast);
+				multicast.lingerTimeout = getCoalesceTimer().schedule(multicast, lingerMillis, TimeUnit.MILLISECONDS);
+			}
+			multicast.add(token, future);
+			if (multicast.tokens.size() >= maxBulkSize) {
+				coalescedMulticasts.remove(key);
+				multicast.lingerTimeout.cancel(false);
+				fullMulticast = multicast;
+			}
+		}
+		if (fullMulticast != null) {
+			fullMulticast.dispatch();
+		}
+		return future;
+	}
+	
+	/**
+	 * Waits for the result of a coalesced push message.
+	 * @param future The future of the push message.
+	 * @return <i>true</i> if the push message was accepted for the token.
+	 * @throws IOException If the multicast request couldn't be sent.
+	 */
+	private boolean awaitCoalesced(PushFuture<Boolean> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a coalesced multicast request.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException("Error occurred while sending coalesced multicast request.", cause);
+		}
 	}
 	
 	/**
@@ -100,11 +309,23 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	 * @throws Exception Any exception that may arise.
 	 */
 	public boolean sendPush(Message.Builder msgBuilder, String token) throws Exception {
-		if (!validateToken(log, token)) {
+		return sendPush(AndroidPayload.wrap(msgBuilder.build()), token);
+	}
+	
+	/**
+	 * Sends a single push message.
+	 * @param payload The prebuilt push message.
+	 * @param token The push token.
+	 * @return <i>true</i> if the push message request was sent. 
+	 * @throws IOException If the push message request couldn't be sent.
+	 */
+	public boolean sendPush(AndroidPayload payload, String token) throws IOException {
+		if (!validateToken(log, token) || isSuppressed(log, token)) {
 			return false;
 		}
-		Result result = senderService.send(msgBuilder.build(), token, maxRetries);
-		return resultIsOk(result);
+		acquirePermits(1);
+		Result result = transport.send(payload.getMessage(), token, maxRetries);
+		return resultIsOk(token, result);
 	}
 	
 	/*
@@ -113,17 +334,7 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	@Override
 	public boolean sendPushInBulk(final String title, final String message, 
 			final Map<String, String> additionalFields, final String... tokens) throws IOException {
-		if (!validateBulkData(log, message)) {
-			return false;
-		}
-		boolean booleanResult = true;
-		List<String[]> tokenLimitedList = ArrayUtil.splitArray(tokens, maxBulkSize);
-		for (String[] tokenArray: tokenLimitedList){
-			Message.Builder msgBuilder = generateBuilder(title, message, false, additionalFields);
-			MulticastResult result = senderService.send(msgBuilder.build(), Arrays.asList(tokenArray), maxRetries);
-			booleanResult = booleanResult ? resultIsOk(result) : false;
-		}
-		return booleanResult;
+		return sendPushInBulkWithReport(title, message, additionalFields, tokens).isSuccess();
 	}
 	
 	/**
@@ -134,13 +345,433 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	 * @throws Exception Any exception that may arise.
 	 */
 	public boolean sendPushInBulk(Message.Builder msgBuilder, String... tokens) throws Exception {
-		boolean booleanResult = true;
-		List<String[]> tokenLimitedList = ArrayUtil.splitArray(tokens, maxBulkSize);
-		for (String[] tokenArray: tokenLimitedList){
-			MulticastResult result = senderService.send(msgBuilder.build(), Arrays.asList(tokenArray), maxRetries);
-			booleanResult = booleanResult ? resultIsOk(result) : false;
+		return sendPushInBulkWithReport(msgBuilder, tokens).isSuccess();
+	}
+	
+	/**
+	 * Sends a bulk push message.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return <i>true</i> if the push message request was sent. 
+	 * @throws IOException If a multicast request couldn't be sent.
+	 */
+	public boolean sendPushInBulk(AndroidPayload payload, String... tokens) throws IOException {
+		return sendPushInBulkWithReport(payload, tokens).isSuccess();
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushService#sendPushInBulkWithReport(java.lang.String, java.lang.String, java.util.Map, java.lang.String[])
+	 */
+	@Override
+	public BulkSendReport sendPushInBulkWithReport(String title, String message, 
+			Map<String, String> additionalFields, String... tokens) throws IOException {
+		if (!validateBulkData(log, message)) {
+			return BulkSendReport.notDispatched(tokens);
+		}
+		return sendMulticast(preparePayload(title, message, false, additionalFields).getMessage(), tokens);
+	}
+	
+	/**
+	 * Sends a bulk push message.
+	 * @param msgBuilder The Message.Builder object.
+	 * @param tokens The push tokens.
+	 * @return The outcome of every token.
+	 * @throws Exception Any exception that may arise.
+	 */
+	public BulkSendReport sendPushInBulkWithReport(Message.Builder msgBuilder, String... tokens) throws Exception {
+		return sendMulticast(msgBuilder.build(), tokens);
+	}
+	
+	/**
+	 * Sends a bulk push message, reporting the outcome of every token. The same message is used for every 
+	 * multicast request and every retry.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return The outcome of every token.
+	 * @throws IOException If a multicast request couldn't be sent.
+	 */
+	public BulkSendReport sendPushInBulkWithReport(AndroidPayload payload, String... tokens) throws IOException {
+		return sendMulticast(payload.getMessage(), tokens);
+	}
+	
+	/**
+	 * Sends a bulk push message to the tokens of a token source.
+	 * @param msgBuilder The Message.Builder object.
+	 * @param tokens The push tokens.
+	 * @return <i>true</i> if the push message request was sent. 
+	 * @throws Exception Any exception that may arise.
+	 */
+	public boolean sendPushInBulk(Message.Builder msgBuilder, Iterator<String> tokens) throws Exception {
+		return sendMulticast(msgBuilder.build(), tokens, null) == 0;
+	}
+	
+	/**
+	 * Sends a bulk push message to the tokens of a token source.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return <i>true</i> if the push message request was sent. 
+	 * @throws IOException If a multicast request couldn't be sent.
+	 */
+	public boolean sendPushInBulk(AndroidPayload payload, Iterator<String> tokens) throws IOException {
+		return sendMulticast(payload.getMessage(), tokens, null) == 0;
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushService#sendPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.util.Iterator)
+	 */
+	@Override
+	public boolean sendPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			Iterator<String> tokens) throws IOException {
+		return sendPushInBulk(title, message, additionalFields, tokens, null);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushServiceBase#sendPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.util.Iterator, com.devsu.push.sender.token.ResumeTracker)
+	 */
+	@Override
+	protected boolean sendPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			Iterator<String> tokens, ResumeTracker resumeTracker) throws IOException {
+		if (!validateBulkData(log, message)) {
+			return false;
 		}
-		return booleanResult;
+		return sendMulticast(preparePayload(title, message, false, additionalFields).getMessage(), tokens, resumeTracker) == 0;
+	}
+	
+	/**
+	 * Sends a personalized push message to every recipient. GCM can't personalize multicast requests, so every recipient
+	 * gets its own request. The recipients are split in batches of <i>maxBulkSize</i> that are sent like multicast 
+	 * requests, in parallel when the bulk concurrency is greater than 1. Every batch renders its messages into a single 
+	 * reused buffer.
+	 * @param template The push template.
+	 * @param recipients The recipients and the values of their template variables.
+	 * @return The outcome of every recipient, indexed like the recipients.
+	 * @throws IOException If a push message request couldn't be sent.
+	 */
+	public BulkSendReport sendTemplatedPush(PushTemplate template, List<TemplateRecipient> recipients) throws IOException {
+		if (template == null) {
+			throw new IllegalArgumentException("Push template is null.");
+		}
+		TemplateRecipient[] recipientArray = recipients == null ? new TemplateRecipient[0] 
+				: recipients.toArray(new TemplateRecipient[recipients.size()]);
+		String[] tokens = new String[recipientArray.length];
+		for (int i = 0; i < recipientArray.length; i++) {
+			tokens[i] = recipientArray[i].getToken();
+		}
+		if (!validateBulkData(log, template.getMessage())) {
+			return BulkSendReport.notDispatched(tokens);
+		}
+		BulkSendReport report = new BulkSendReport(tokens);
+		TokenSelection selection = selectTokens(report, tokens);
+		List<TemplatedBatch> batches = new ArrayList<TemplatedBatch>();
+		for (int from = 0; from < selection.size(); from += maxBulkSize) {
+			batches.add(new TemplatedBatch(template, recipientArray, report, selection, from, 
+					Math.min(selection.size(), from + maxBulkSize)));
+		}
+		dispatch(batches.iterator());
+		return report;
+	}
+	
+	/**
+	 * Sends a message to every token, using one multicast request per <i>maxBulkSize</i> tokens. The requests
+	 * are views over the token array, so the tokens are not copied.
+	 * @param message The message.
+	 * @param tokens The push tokens.
+	 * @return The outcome of every token.
+	 * @throws IOException If a multicast request couldn't be sent.
+	 */
+	private BulkSendReport sendMulticast(Message message, String... tokens) throws IOException {
+		BulkSendReport report = new BulkSendReport(tokens);
+		TokenSelection selection = selectTokens(report, tokens, message);
+		List<List<String>> tokenLimitedList = ArrayUtil.splitList(Arrays.asList(selection.getTokens()), maxBulkSize);
+		List<MulticastChunk> chunks = new ArrayList<MulticastChunk>(tokenLimitedList.size());
+		int offset = 0;
+		for (List<String> tokenList : tokenLimitedList) {
+			chunks.add(new MulticastChunk(message, report, selection, offset, tokenList, null));
+			offset += tokenList.size();
+		}
+		try {
+			dispatch(chunks.iterator());
+		} finally {
+			releaseUnsent(report, selection, message);
+		}
+		return report;
+	}
+	
+	/**
+	 * Sends a message to the tokens of a token source, reading <i>maxBulkSize</i> tokens per multicast request.
+	 * Only the tokens of the requests in flight are kept in memory.
+	 * @param message The message.
+	 * @param tokens The push tokens.
+	 * @param resumeTracker The tracker of the batches read from a token file, or <i>null</i>.
+	 * @return The quantity of tokens that failed.
+	 * @throws IOException If a multicast request couldn't be sent.
+	 */
+	private int sendMulticast(final Message message, Iterator<String> tokens, final ResumeTracker resumeTracker) throws IOException {
+		final ChunkIterator<String> tokenChunks = new ChunkIterator<String>(nullToEmpty(tokens), maxBulkSize);
+		return dispatch(new Iterator<MulticastChunk>() {
+			@Override
+			public boolean hasNext() {
+				return tokenChunks.hasNext();
+			}
+			@Override
+			public MulticastChunk next() {
+				List<String> tokenList = tokenChunks.next();
+				String[] tokenArray = tokenList.toArray(new String[tokenList.size()]);
+				BulkSendReport report = new BulkSendReport(tokenArray);
+				TokenSelection selection = selectTokens(report, tokenArray, message);
+				ResumeTracker.Batch batch = resumeTracker == null ? null : resumeTracker.begin(tokenArray.length);
+				return new MulticastChunk(message, report, selection, 0, Arrays.asList(selection.getTokens()), batch);
+			}
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		});
+	}
+	
+	/**
+	 * Sends the requests of a bulk push message. When the bulk concurrency is greater than 1, up to that many requests
+	 * are in flight at the same time, and the next request is only taken from <i>requests</i> when one of them completes.
+	 * No more requests are sent after one fails; a request taken but not sent is abandoned.
+	 * @param requests The requests.
+	 * @return The quantity of tokens that failed.
+	 * @throws IOException If a request couldn't be sent.
+	 */
+	private int dispatch(Iterator<? extends BulkRequest> requests) throws IOException {
+		if (!requests.hasNext()) {
+			return 0;
+		}
+		int concurrency = bulkConcurrency;
+		BulkRequest request = requests.next();
+		if (concurrency <= 1 || !requests.hasNext()) {
+			int failures = request.send();
+			while (requests.hasNext()) {
+				failures += requests.next().send();
+			}
+			return failures;
+		}
+		final Semaphore window = new Semaphore(concurrency);
+		final AtomicReference<Exception> error = new AtomicReference<Exception>();
+		final AtomicInteger failures = new AtomicInteger();
+		ExecutorService executor = getBulkExecutor();
+		try {
+			while (request != null && error.get() == null) {
+				window.acquire();
+				final BulkRequest pendingRequest = request;
+				Runnable task = new Runnable() {
+					@Override
+					public void run() {
+						try {
+							failures.addAndGet(pendingRequest.send());
+						} catch (Exception e) {
+							error.compareAndSet(null, e);
+						} finally {
+							window.release();
+						}
+					}
+				};
+				request = null;
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					// The pool may have been replaced and shut down while sending, the request is sent right here.
+					task.run();
+				}
+				if (requests.hasNext()) {
+					request = requests.next();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while sending multicast requests.");
+		} finally {
+			if (request != null) {
+				request.abandon();
+			}
+			// The requests in flight write into the reports, so they must finish before this method returns.
+			window.acquireUninterruptibly(concurrency);
+		}
+		Exception exception = error.get();
+		if (exception instanceof IOException) {
+			throw (IOException) exception;
+		}
+		if (exception instanceof RuntimeException) {
+			throw (RuntimeException) exception;
+		}
+		if (exception != null) {
+			throw new IOException("Error occurred while sending multicast request.", exception);
+		}
+		return failures.get();
+	}
+	
+	/**
+	 * Sends a single multicast request and records its outcome. The batch of the request, if any, is completed.
+	 * @param chunk The multicast request.
+	 * @return The quantity of tokens that failed.
+	 * @throws IOException If the multicast request couldn't be sent.
+	 */
+	private int sendChunk(MulticastChunk chunk) throws IOException {
+		int failures = 0;
+		if (!chunk.tokens.isEmpty()) {
+			acquirePermits(chunk.tokens.size());
+			RetryScheduler scheduler = retryScheduler;
+			if (scheduler == null) {
+				MulticastResult result = transport.send(chunk.message, chunk.tokens, maxRetries);
+				recordMulticast(chunk.report, chunk.selection, chunk.offset, result);
+				failures = result.getFailure();
+			} else {
+				failures = sendChunkNoRetry(chunk, scheduler);
+			}
+		}
+		if (chunk.batch != null) {
+			chunk.batch.complete();
+		}
+		return failures;
+	}
+	
+	/**
+	 * Sends a single multicast request once, handing the tokens that failed with a transient error to the retry
+	 * scheduler. When the whole request fails with a transient error, every token is handed to it.
+	 * @param chunk The multicast request.
+	 * @param scheduler The retry scheduler.
+	 * @return The quantity of tokens that failed for good.
+	 * @throws IOException If the multicast request failed with a permanent error.
+	 */
+	private int sendChunkNoRetry(MulticastChunk chunk, RetryScheduler scheduler) throws IOException {
+		MulticastResult result;
+		try {
+			result = transport.sendNoRetry(chunk.message, chunk.tokens);
+		} catch (IOException e) {
+			if (!isRetryable(e) || !scheduleRetry(scheduler, retryHandler, chunk.message, new ArrayList<String>(chunk.tokens), 
+					1, Constants.ERROR_UNAVAILABLE)) {
+				throw e;
+			}
+			log.warn("Multicast request failed, " + chunk.tokens.size() + " tokens scheduled for retry: " + e.getMessage());
+			for (int i = 0; i < chunk.tokens.size(); i++) {
+				chunk.report.record(chunk.selection.originalIndex(chunk.offset + i), TokenStatus.RETRY_SCHEDULED, 
+						Constants.ERROR_UNAVAILABLE, null, null);
+			}
+			return 0;
+		}
+		recordMulticast(chunk.report, chunk.selection, chunk.offset, result);
+		List<Result> results = result.getResults();
+		List<String> retryTokens = new ArrayList<String>();
+		List<Integer> retryIndexes = new ArrayList<Integer>();
+		for (int i = 0; results != null && i < results.size(); i++) {
+			if (isRetryable(results.get(i).getErrorCodeName())) {
+				retryTokens.add(chunk.tokens.get(i));
+				retryIndexes.add(chunk.selection.originalIndex(chunk.offset + i));
+			}
+		}
+		if (retryTokens.isEmpty() || !scheduleRetry(scheduler, retryHandler, chunk.message, retryTokens, 1, 
+				Constants.ERROR_UNAVAILABLE)) {
+			return result.getFailure();
+		}
+		for (int index : retryIndexes) {
+			chunk.report.record(index, TokenStatus.RETRY_SCHEDULED, chunk.report.getErrorCode(index), null, null);
+		}
+		return result.getFailure() - retryTokens.size();
+	}
+	
+	/**
+	 * Indicates if a token error is transient, so the token can be retried.
+	 * @param errorCode The error code retrieved from GCM.
+	 * @return <i>true</i> if the token can be retried.
+	 */
+	private boolean isRetryable(String errorCode) {
+		return Constants.ERROR_UNAVAILABLE.equals(errorCode) || Constants.ERROR_INTERNAL_SERVER_ERROR.equals(errorCode);
+	}
+	
+	/**
+	 * Indicates if a failed request is transient, so its tokens can be retried. Requests rejected by GCM with a
+	 * client error, like an invalid API key, are not.
+	 * @param e The error of the request.
+	 * @return <i>true</i> if the request can be retried.
+	 */
+	private boolean isRetryable(IOException e) {
+		return !(e instanceof InvalidRequestException) 
+				|| ((InvalidRequestException) e).getHttpStatusCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+	}
+	
+	/**
+	 * Gets the worker pool that sends the multicast requests, creating it on first use.
+	 * @return The worker pool that sends the multicast requests.
+	 */
+	private synchronized ExecutorService getBulkExecutor() {
+		if (bulkExecutor == null) {
+			bulkExecutor = Executors.newFixedThreadPool(bulkConcurrency, new NamedThreadFactory("gcm-multicast", true));
+			ownsBulkExecutor = true;
+		}
+		return bulkExecutor;
+	}
+	
+	/**
+	 * Gets the timer that ends the linger window of the coalesced multicast requests, creating it on first use.
+	 * @return The coalesce timer.
+	 */
+	private synchronized ScheduledExecutorService getCoalesceTimer() {
+		if (coalesceTimer == null) {
+			coalesceTimer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("gcm-coalesce", true));
+		}
+		return coalesceTimer;
+	}
+	
+	/**
+	 * Gets the worker pool that sends the coalesced multicast requests, creating it on first use. It is apart from
+	 * the bulk executor, so coalesced requests don't queue behind bulk push messages nor each other.
+	 * @return The coalesce worker pool.
+	 */
+	private synchronized ExecutorService getCoalesceExecutor() {
+		if (coalesceExecutor == null) {
+			coalesceExecutor = Executors.newFixedThreadPool(coalesceConcurrency, 
+					new NamedThreadFactory("gcm-coalesce-send", true));
+		}
+		return coalesceExecutor;
+	}
+	
+	/**
+	 * Gets the message for a title, message and additional fields, from the payload cache when it is enabled.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param isSingle Identifies if its a single push message or a bulk push message.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @return The prebuilt push message.
+	 */
+	private AndroidPayload preparePayload(String title, String message, boolean isSingle, Map<String, String> additionalFields) {
+		long startNanos = System.nanoTime();
+		PayloadCache<AndroidPayload> cache = payloadCache;
+		AndroidPayload payload;
+		if (cache == null) {
+			payload = AndroidPayload.wrap(generateBuilder(title, message, isSingle, additionalFields).build());
+		} else {
+			PayloadKey key = new PayloadKey(title, message, additionalFields, isSingle);
+			payload = cache.get(key);
+			if (payload == null) {
+				payload = AndroidPayload.wrap(generateBuilder(title, message, isSingle, additionalFields).build());
+				cache.put(key, payload);
+			}
+		}
+		recordLatency(MetricStage.PAYLOAD_BUILD, startNanos);
+		return payload;
+	}
+	
+	/**
+	 * Message builder generator for a personalized push message.
+	 * @param template The push template.
+	 * @param values The values of the template variables.
+	 * @param buffer The reusable render buffer.
+	 * @return The message builder.
+	 */
+	private Message.Builder generateBuilder(PushTemplate template, String[] values, StringBuilder buffer) {
+		Message.Builder msgBuilder = new Message.Builder().addData(messageKey, template.renderMessage(values, buffer))
+				.collapseKey(collapseKeySingle);
+		if (template.hasTitle()) {
+			msgBuilder.addData(titleKey, template.renderTitle(values, buffer));
+		}
+		for (int i = 0; i < template.getFieldCount(); i++) {
+			msgBuilder.addData(template.getFieldKey(i), template.renderField(i, values, buffer));
+		}
+		return msgBuilder;
 	}
 	
 	/**
@@ -167,29 +798,46 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	}
 	
 	/**
-	 * Validates if a single push message request is valid.
+	 * Validates if a single push message request is valid. Tokens that GCM reports as unregistered or invalid
+	 * are added to the inactive device registry, and unavailability is reported to the rate limiter.
+	 * @param token The push token.
 	 * @param result The result retrieved from GCM.
 	 * @return <i>true</i> if the result contains no errors.
 	 */
-	private boolean resultIsOk(final Result result){
-		if (result.getErrorCodeName() == null || result.getErrorCodeName().isEmpty()) {
+	private boolean resultIsOk(final String token, final Result result){
+		String errorCode = result.getErrorCodeName();
+		if (errorCode == null || errorCode.isEmpty()) {
+			recordSent(1);
 			return true;
 		}
-		log.error("Error occurred while sending push notification :" + result.getErrorCodeName());
+		recordFailed(1);
+		log.error("Error occurred while sending push notification :" + errorCode);
+		if (Constants.ERROR_NOT_REGISTERED.equals(errorCode) || Constants.ERROR_INVALID_REGISTRATION.equals(errorCode)) {
+			inactiveDeviceRegistry.register(token, errorCode);
+		} else if (Constants.ERROR_UNAVAILABLE.equals(errorCode) || Constants.ERROR_INTERNAL_SERVER_ERROR.equals(errorCode)) {
+			onThrottled(0);
+		}
 		return false;
 	}
 	
 	/**
-	 * Validates if a multicast request is valid.
-	 * @param result The result retrieved from GCM.
-	 * @return <i>true</i> if the result contains no errors.
+	 * Records the outcome of a multicast request, logging every token that failed.
+	 * @param report The report of the bulk push message.
+	 * @param selection The dispatched tokens.
+	 * @param offset The index in the selection of the first token of the multicast request.
+	 * @param result The result retrieved from GCM. Its results are ordered like the tokens of the request.
 	 */
-	private boolean resultIsOk(final MulticastResult result){
-		boolean isOk = result.getResults() == null || result.getResults().isEmpty();
-		if (result.getResults() != null)
-			for (Result myResult : result.getResults())
-				resultIsOk(myResult);
-		return isOk;
+	private void recordMulticast(BulkSendReport report, TokenSelection selection, int offset, MulticastResult result) {
+		List<Result> results = result.getResults();
+		if (results == null) {
+			return;
+		}
+		for (int i = 0; i < results.size(); i++) {
+			int index = selection.originalIndex(offset + i);
+			Result tokenResult = results.get(i);
+			report.recordResult(index, tokenResult);
+			resultIsOk(report.getToken(index), tokenResult);
+		}
 	}
 	
 	/**
@@ -206,6 +854,7 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	 */
 	public void setMessageKey(String messageKey) {
 		this.messageKey = messageKey;
+		clearPayloadCache();
 	}
 
 	/**
@@ -214,6 +863,7 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	 */
 	public void setTitleKey(String titleKey) {
 		this.titleKey = titleKey;
+		clearPayloadCache();
 	}
 
 	/**
@@ -226,12 +876,89 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 		this.maxBulkSize = maxBulkSize > Defaults.MAX_BULK_SIZE ? Defaults.MAX_BULK_SIZE : maxBulkSize;
 	}
 
+	/**
+	 * Sets how long single push messages wait to be coalesced with the ones that have the same title, message and 
+	 * additional fields. They are sent as a single multicast request when the window ends or when <i>maxBulkSize</i>
+	 * tokens are waiting. Coalesced multicast requests are sent on a worker pool of their own, see 
+	 * {@link #setCoalesceConcurrency(int)}.
+	 * @param coalesceLingerMillis The linger window in milliseconds, or 0 to send every single push message right away.
+	 */
+	public void setCoalesceLingerMillis(long coalesceLingerMillis) {
+		if (coalesceLingerMillis < 0) {
+			throw new IllegalArgumentException("Coalesce linger can't be negative.");
+		}
+		this.coalesceLingerMillis = coalesceLingerMillis;
+	}
+	
+	/**
+	 * Sets the quantity of coalesced multicast requests that can be sent in parallel. Every caller of a single 
+	 * push message waits for its coalesced request, so it should be about the quantity of distinct payloads sent 
+	 * at the same time.
+	 * @param coalesceConcurrency The quantity of coalesced multicast requests that can be sent in parallel.
+	 */
+	public synchronized void setCoalesceConcurrency(int coalesceConcurrency) {
+		if (coalesceConcurrency < 1) {
+			throw new IllegalArgumentException("Coalesce concurrency must be greater than 0.");
+		}
+		this.coalesceConcurrency = coalesceConcurrency;
+		if (coalesceExecutor != null) {
+			coalesceExecutor.shutdown();
+			coalesceExecutor = null;
+		}
+	}
+	
+	/**
+	 * Indicates if single push messages are coalesced into multicast requests.
+	 * @return <i>true</i> if the coalesce linger window is greater than 0.
+	 */
+	public boolean isCoalescing() {
+		return coalesceLingerMillis > 0;
+	}
+
+	/**
+	 * Sets the quantity of multicast requests of a single bulk push message that can be sent in parallel.
+	 * Unless a bulk executor is set, it also bounds the multicast requests in flight across every bulk push message 
+	 * sent by this service. Use 1 to send the multicast requests one after another. The previous pool of this 
+	 * service finishes the requests it was given; bulk push messages being sent send their next requests on the 
+	 * calling thread.
+	 * @param bulkConcurrency The quantity of multicast requests that can be sent in parallel.
+	 */
+	public synchronized void setBulkConcurrency(int bulkConcurrency) {
+		if (bulkConcurrency < 1) {
+			throw new IllegalArgumentException("Bulk concurrency must be greater than 0.");
+		}
+		this.bulkConcurrency = bulkConcurrency;
+		if (ownsBulkExecutor) {
+			bulkExecutor.shutdown();
+			bulkExecutor = null;
+			ownsBulkExecutor = false;
+		}
+	}
+	
+	/**
+	 * Sets the worker pool that sends the multicast requests in parallel. Its size bounds the multicast requests 
+	 * in flight across every bulk push message sent by this service. The pool is not shut down by this service.
+	 * The previous pool of this service finishes the requests it was given, as in {@link #setBulkConcurrency(int)}.
+	 * @param bulkExecutor The worker pool that sends the multicast requests.
+	 */
+	public synchronized void setBulkExecutor(ExecutorService bulkExecutor) {
+		if (bulkExecutor == null) {
+			throw new IllegalArgumentException("Bulk executor is null.");
+		}
+		if (ownsBulkExecutor) {
+			this.bulkExecutor.shutdown();
+		}
+		this.bulkExecutor = bulkExecutor;
+		ownsBulkExecutor = false;
+	}
+
 	/**
 	 * Sets the collapse key for identifying single messages.
 	 * @param collapseKeySingle The collapse key for identifying single messages.
 	 */
 	public void setCollapseKeySingle(String collapseKeySingle) {
 		this.collapseKeySingle = collapseKeySingle;
+		clearPayloadCache();
 	}
 
 	/**
@@ -240,6 +967,36 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	 */
 	public void setCollapseKeyBulk(String collapseKeyBulk) {
 		this.collapseKeyBulk = collapseKeyBulk;
+		clearPayloadCache();
+	}
+
+	/**
+	 * Sets the max quantity of built messages kept for repeated title/message/fields combinations.
+	 * @param payloadCacheSize The max quantity of cached messages, or 0 to disable the cache.
+	 */
+	public void setPayloadCacheSize(int payloadCacheSize) {
+		if (payloadCacheSize < 0) {
+			throw new IllegalArgumentException("Payload cache size can't be negative.");
+		}
+		payloadCache = payloadCacheSize == 0 ? null : new PayloadCache<AndroidPayload>(payloadCacheSize);
+	}
+	
+	/**
+	 * Gets the cache of built messages.
+	 * @return The payload cache, or <i>null</i> if it is disabled.
+	 */
+	public PayloadCache<AndroidPayload> getPayloadCache() {
+		return payloadCache;
+	}
+	
+	/**
+	 * Removes every cached message, since they were built with the previous settings.
+	 */
+	private void clearPayloadCache() {
+		PayloadCache<AndroidPayload> cache = payloadCache;
+		if (cache != null) {
+			cache.clear();
+		}
 	}
 
 	/**
@@ -247,9 +1004,414 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 	 * @param gcmApiKey The GCM API Key (also known as Sender ID).
 	 */
 	public void setGcmApiKey(String gcmApiKey) {
-		this.senderService = new Sender(gcmApiKey);
+		this.gcmApiKey = gcmApiKey;
+		installTransport(new GcmSenderTransport(gcmApiKey, gcmEndpoint));
+	}
+	
+	/**
+	 * Sends the push messages to another URL instead of the GCM endpoint, like a local stand-in server for load tests.
+	 * @param gcmEndpoint The URL, or <i>null</i> to send to GCM.
+	 */
+	public void setGcmEndpoint(String gcmEndpoint) {
+		if (gcmApiKey == null) {
+			throw new IllegalStateException("The endpoint of a transport built elsewhere can't be changed.");
+		}
+		this.gcmEndpoint = gcmEndpoint;
+		setGcmApiKey(gcmApiKey);
+	}
+	
+	/**
+	 * Sets the transport that sends the requests, replacing the GCM sender built from the API key.
+	 * @param transport The transport.
+	 */
+	public void setTransport(AndroidTransport transport) {
+		if (transport == null) {
+			throw new IllegalArgumentException("Transport is null.");
+		}
+		this.gcmApiKey = null;
+		installTransport(transport);
+	}
+	
+	/**
+	 * Gets the transport that sends the requests.
+	 * @return The transport.
+	 */
+	public AndroidTransport getTransport() {
+		return transport;
+	}
+	
+	/**
+	 * Starts sending the requests on a transport.
+	 * @param transport The transport.
+	 */
+	private void installTransport(AndroidTransport transport) {
+		transport.setListener(transportListener);
+		this.transport = transport;
+		resolveRateLimiter();
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushServiceBase#getProviderName()
+	 */
+	@Override
+	protected String getProviderName() {
+		return RateLimiterRegistry.PROVIDER_GCM;
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushServiceBase#getCredentialId()
+	 */
+	@Override
+	protected String getCredentialId() {
+		return transport.getCredentialId();
 	}
 
+	/**
+	 * A request of a bulk push message, sent by {@link SyncAndroidPushService#dispatch(Iterator)}.
+	 */
+	private interface BulkRequest {
+		
+		/**
+		 * Sends the request and records its outcome.
+		 * @return The quantity of tokens that failed.
+		 * @throws IOException If the request couldn't be sent.
+		 */
+		int send() throws IOException;
+		
+		/**
+		 * Releases what the request holds when it won't be sent.
+		 */
+		void abandon();
+	}
+	
+	/**
+	 * The tokens of a multicast request and where their outcome is recorded.
+	 */
+	private class MulticastChunk implements BulkRequest {
+		
+		/**
+		 * The message.
+		 */
+		private final Message message;
+		
+		/**
+		 * The report of the bulk push message.
+		 */
+		private final BulkSendReport report;
+		
+		/**
+		 * The dispatched tokens of the bulk push message.
+		 */
+		private final TokenSelection selection;
+		
+		/**
+		 * The index in the selection of the first token of the request.
+		 */
+		private final int offset;
+		
+		/**
+		 * The tokens of the request.
+		 */
+		private final List<String> tokens;
+		
+		/**
+		 * The token file batch of the request, or <i>null</i>.
+		 */
+		private final ResumeTracker.Batch batch;
+		
+		/**
+		 * 6 param constructor.
+		 * @param message The message.
+		 * @param report The report of the bulk push message.
+		 * @param selection The dispatched tokens of the bulk push message.
+		 * @param offset The index in the selection of the first token of the request.
+		 * @param tokens The tokens of the request.
+		 * @param batch The token file batch of the request, or <i>null</i>.
+		 */
+		private MulticastChunk(Message message, BulkSendReport report, TokenSelection selection, int offset, 
+				List<String> tokens, ResumeTracker.Batch batch) {
+			this.message = message;
+			this.report = report;
+			this.selection = selection;
+			this.offset = offset;
+			this.tokens = tokens;
+			this.batch = batch;
+		}
+		
+		/*
+		 * @see com.devsu.push.sender.service.sync.SyncAndroidPushService.BulkRequest#send()
+		 */
+		@Override
+		public int send() throws IOException {
+			try {
+				return sendChunk(this);
+			} finally {
+				abandon();
+			}
+		}
+		
+		/**
+		 * Forgets the tokens of the request that weren't sent or failed from the resend suppression window.
+		 */
+		@Override
+		public void abandon() {
+			releaseUnsent(report, selection, offset, offset + tokens.size(), message);
+		}
+	}
+	
+	/**
+	 * A batch of recipients of a personalized push message.
+	 */
+	private class TemplatedBatch implements BulkRequest {
+		
+		/**
+		 * The push template.
+		 */
+		private final PushTemplate template;
+		
+		/**
+		 * Every recipient of the push message.
+		 */
+		private final TemplateRecipient[] recipients;
+		
+		/**
+		 * The report of the push message.
+		 */
+		private final BulkSendReport report;
+		
+		/**
+		 * The dispatched recipients.
+		 */
+		private final TokenSelection selection;
+		
+		/**
+		 * The index in the selection of the first recipient of the batch.
+		 */
+		private final int from;
+		
+		/**
+		 * The index in the selection right after the last recipient of the batch.
+		 */
+		private final int to;
+		
+		/**
+		 * 6 param constructor.
+		 * @param template The push template.
+		 * @param recipients Every recipient of the push message.
+		 * @param report The report of the push message.
+		 * @param selection The dispatched recipients.
+		 * @param from The index in the selection of the first recipient of the batch.
+		 * @param to The index in the selection right after the last recipient of the batch.
+		 */
+		private TemplatedBatch(PushTemplate template, TemplateRecipient[] recipients, BulkSendReport report,
+				TokenSelection selection, int from, int to) {
+			this.template = template;
+			this.recipients = recipients;
+			this.report = report;
+			this.selection = selection;
+			this.from = from;
+			this.to = to;
+		}
+		
+		/*
+		 * @see com.devsu.push.sender.service.sync.SyncAndroidPushService.BulkRequest#send()
+		 */
+		@Override
+		public int send() throws IOException {
+			StringBuilder buffer = new StringBuilder();
+			int failures = 0;
+			for (int i = from; i < to; i++) {
+				int index = selection.originalIndex(i);
+				TemplateRecipient recipient = recipients[index];
+				if (recipient.getToken() == null) {
+					report.record(index, TokenStatus.FAILED, Constants.ERROR_MISSING_REGISTRATION, null, null);
+					failures++;
+					continue;
+				}
+				long startNanos = System.nanoTime();
+				Message message = generateBuilder(template, recipient.getValues(), buffer).build();
+				recordLatency(MetricStage.PAYLOAD_BUILD, startNanos);
+				acquirePermits(1);
+				Result result = transport.send(message, recipient.getToken(), maxRetries);
+				report.recordResult(index, result);
+				if (!resultIsOk(recipient.getToken(), result)) {
+					failures++;
+				}
+			}
+			return failures;
+		}
+		
+		/**
+		 * Does nothing, personalized push messages aren't recorded on the resend suppression window.
+		 */
+		@Override
+		public void abandon() {
+		}
+	}
+	
+	/**
+	 * Single push messages with the same payload, waiting to be sent as a multicast request.
+	 * It runs on the coalesce timer when the linger window ends.
+	 */
+	private class CoalescedMulticast implements Runnable {
+		
+		/**
+		 * The payload key.
+		 */
+		private final PayloadKey key;
+		
+		/**
+		 * The message.
+		 */
+		private final Message message;
+		
+		/**
+		 * The push tokens.
+		 */
+		private final List<String> tokens = new ArrayList<String>();
+		
+		/**
+		 * The futures of the push messages, indexed like the tokens.
+		 */
+		private final List<SettablePushFuture<Boolean>> futures = new ArrayList<SettablePushFuture<Boolean>>();
+		
+		/**
+		 * The end of the linger window.
+		 */
+		private ScheduledFuture<?> lingerTimeout;
+		
+		/**
+		 * 2 param constructor.
+		 * @param key The payload key.
+		 * @param message The message.
+		 */
+		private CoalescedMulticast(PayloadKey key, Message message) {
+			this.key = key;
+			this.message = message;
+		}
+		
+		/**
+		 * Adds a push message.
+		 * @param token The push token.
+		 * @param future The future of the push message.
+		 */
+		private void add(String token, SettablePushFuture<Boolean> future) {
+			tokens.add(token);
+			futures.add(future);
+		}
+		
+		/*
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			synchronized (coalescedMulticasts) {
+				if (coalescedMulticasts.get(key) != this) {
+					return;
+				}
+				coalescedMulticasts.remove(key);
+			}
+			dispatch();
+		}
+		
+		/**
+		 * Sends the multicast request on the coalesce worker pool.
+		 */
+		private void dispatch() {
+			try {
+				getCoalesceExecutor().execute(new Runnable() {
+					@Override
+					public void run() {
+						send();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				fail(e);
+			}
+		}
+		
+		/**
+		 * Sends the multicast request and completes the future of every push message with the result of its token.
+		 */
+		private void send() {
+			MulticastResult result;
+			try {
+				acquirePermits(tokens.size());
+				result = transport.send(message, tokens, maxRetries);
+			} catch (Exception e) {
+				fail(e);
+				return;
+			}
+			List<Result> results = result.getResults();
+			for (int i = 0; i < tokens.size(); i++) {
+				if (results == null || i >= results.size()) {
+					futures.get(i).complete(false);
+					continue;
+				}
+				futures.get(i).complete(resultIsOk(tokens.get(i), results.get(i)));
+			}
+		}
+		
+		/**
+		 * Fails the future of every push message.
+		 * @param t The error.
+		 */
+		private void fail(Throwable t) {
+			for (SettablePushFuture<Boolean> future : futures) {
+				future.fail(t);
+			}
+		}
+	}
+	
+	/**
+	 * Sends the multicast retries of this service, one request per <i>maxBulkSize</i> tokens.
+	 */
+	private class MulticastRetryHandler implements RetryHandler<Message> {
+		
+		/*
+		 * @see com.devsu.push.sender.retry.RetryHandler#retry(java.lang.Object, java.util.List, int)
+		 */
+		@Override
+		public void retry(Message message, List<String> tokens, int attempt) {
+			RetryScheduler scheduler = retryScheduler;
+			if (scheduler == null) {
+				log.warn("Retry scheduler was removed, " + tokens.size() + " tokens won't be retried.");
+				return;
+			}
+			for (List<String> tokenList : ArrayUtil.splitList(tokens, maxBulkSize)) {
+				MulticastResult result;
+				try {
+					acquirePermits(tokenList.size());
+					result = transport.sendNoRetry(message, tokenList);
+				} catch (IOException e) {
+					if (isRetryable(e)) {
+						scheduleRetry(scheduler, this, message, tokenList, attempt + 1, Constants.ERROR_UNAVAILABLE);
+						continue;
+					}
+					log.error("Error occurred while retrying multicast request.", e);
+					for (String token : tokenList) {
+						scheduler.reportFailed(token, attempt, e.getMessage());
+					}
+					continue;
+				}
+				List<String> retryTokens = new ArrayList<String>();
+				List<Result> results = result.getResults();
+				for (int i = 0; i < results.size(); i++) {
+					String token = tokenList.get(i);
+					Result tokenResult = results.get(i);
+					if (resultIsOk(token, tokenResult)) {
+						scheduler.reportSucceeded(token, attempt);
+					} else if (isRetryable(tokenResult.getErrorCodeName())) {
+						retryTokens.add(token);
+					} else {
+						scheduler.reportFailed(token, attempt, tokenResult.getErrorCodeName());
+					}
+				}
+				scheduleRetry(scheduler, this, message, retryTokens, attempt + 1, Constants.ERROR_UNAVAILABLE);
+			}
+		}
+	}
+	
 	/**
 	 * Class default values.
 	 */
@@ -261,6 +1423,8 @@ public class SyncAndroidPushService extends SyncPushServiceBase {
 		
 		private static final String COLLAPSE_KEY_SINGLE = "single";
 		private static final String COLLAPSE_KEY_BULK = "bulk";
+		private static final int BULK_CONCURRENCY = 1;
+		private static final int COALESCE_CONCURRENCY = 4;
 		
 		private static final boolean PUSH_ENABLED = true;
 	}
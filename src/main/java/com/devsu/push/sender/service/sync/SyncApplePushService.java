@@ -1,37 +1,106 @@
 package com.devsu.push.sender.service.sync;
 
+import java.io.Closeable;
+import java.io.InterruptedIOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.devsu.push.sender.metrics.MetricStage;
+import com.devsu.push.sender.metrics.MetricsRegistry;
+import com.devsu.push.sender.payload.ApplePayload;
+import com.devsu.push.sender.payload.PayloadCache;
+import com.devsu.push.sender.payload.PayloadKey;
+import com.devsu.push.sender.ratelimit.RateLimiterRegistry;
+import com.devsu.push.sender.registry.InactiveDeviceRegistry;
+import com.devsu.push.sender.result.BulkSendReport;
+import com.devsu.push.sender.result.TokenStatus;
+import com.devsu.push.sender.retry.RetryHandler;
+import com.devsu.push.sender.retry.RetryScheduler;
+import com.devsu.push.sender.template.PushTemplate;
+import com.devsu.push.sender.template.TemplateRecipient;
+import com.devsu.push.sender.token.ResumeTracker;
+import com.devsu.push.sender.token.TokenSelection;
+import com.devsu.push.sender.transport.ApnsServiceTransport;
+import com.devsu.push.sender.transport.ApnsRejection;
+import com.devsu.push.sender.transport.AppleTransport;
+import com.devsu.push.sender.transport.AppleTransportListener;
+import com.devsu.push.sender.util.ChunkIterator;
 import com.notnoop.apns.APNS;
 import com.notnoop.apns.ApnsService;
+import com.notnoop.apns.ApnsServiceBuilder;
+import com.notnoop.apns.DeliveryError;
 import com.notnoop.apns.PayloadBuilder;
 import com.notnoop.exceptions.InvalidSSLConfig;
+import com.notnoop.exceptions.NetworkIOException;
 import com.notnoop.exceptions.RuntimeIOException;
 
 
-public class SyncApplePushService extends SyncPushServiceBase {
+public class SyncApplePushService extends SyncPushServiceBase implements Closeable {
 
-	private Map<String, Date> inactiveDevices;
-	
 	/**
 	 * Logger.
 	 */
 	private final Logger log = LoggerFactory.getLogger(getClass()); 
 
 	/**
-	 * The APNS service.
+	 * The transport that writes the push messages.
+	 */
+	private volatile AppleTransport transport;
+	
+	/**
+	 * The quantity of persistent APNS connections of the transports built from a certificate. When it is 0, 
+	 * a connection is opened and closed on every request.
+	 */
+	private int connectionPoolSize;
+	
+	/**
+	 * Indicates if the connections of the transport are kept open between requests.
+	 */
+	private boolean persistent;
+	
+	/**
+	 * The quantity of tokens read from a token source and written to APNS at a time.
+	 */
+	private int streamBatchSize;
+	
+	/**
+	 * The cache of serialized payloads, or <i>null</i> if it is disabled.
+	 */
+	private volatile PayloadCache<ApplePayload> payloadCache;
+	
+	/**
+	 * The listener that reports the throttling, round trips and rejected push messages of the transport.
+	 */
+	private final AppleTransportListener transportListener = new ServiceTransportListener();
+	
+	/**
+	 * The handler that sends the retries of this service.
 	 */
-	private ApnsService apnsService;
+	private final ApnsRetryHandler retryHandler = new ApnsRetryHandler();
+	
+	/**
+	 * The retry attempt of the tokens written by a retry, by normalized token, so a token rejected again keeps counting.
+	 * The least recently retried token is evicted when it is full.
+	 */
+	private final Map<String, Integer> retryAttempts = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+			return size() > Defaults.MAX_TRACKED_RETRIES;
+		}
+	};
 	
 	/**
-	 * 3 param constructor.
+	 * 3 param constructor. A connection is opened and closed on every request.
 	 * @param certificatePath The path of the p12 certificate file.
 	 * @param certificatePassword The password for the p12 certificate.
 	 * @param useProductionServer Indicates if the services uses a Production environment or a Sandbox environment.
@@ -40,6 +109,26 @@ public class SyncApplePushService extends SyncPushServiceBase {
 	 */
 	public SyncApplePushService(String certificatePath, String certificatePassword, boolean useProductionServer) 
 			throws RuntimeIOException, InvalidSSLConfig {
+		this(certificatePath, certificatePassword, useProductionServer, Defaults.CONNECTION_POOL_SIZE);
+	}
+	
+	/**
+	 * 4 param constructor. When <i>connectionPoolSize</i> is greater than 0, the service keeps that many APNS connections
+	 * open, spreads the push messages across them and only closes them when {@link #close()} is called.
+	 * @param certificatePath The path of the p12 certificate file.
+	 * @param certificatePassword The password for the p12 certificate.
+	 * @param useProductionServer Indicates if the services uses a Production environment or a Sandbox environment.
+	 * @param connectionPoolSize The quantity of persistent APNS connections, or 0 to open a connection on every request.
+	 * @throws RuntimeIOException An IO exception.
+	 * @throws InvalidSSLConfig Certificates are corrupted, wrong or password is wrong.
+	 */
+	public SyncApplePushService(String certificatePath, String certificatePassword, boolean useProductionServer, 
+			int connectionPoolSize) throws RuntimeIOException, InvalidSSLConfig {
+		if (connectionPoolSize < 0) {
+			throw new IllegalArgumentException("Connection pool size can't be negative.");
+		}
+		this.connectionPoolSize = connectionPoolSize;
+		this.persistent = connectionPoolSize > 0;
 		setDefaultValues();
 		if (useProductionServer) {
 			setupProductionServer(certificatePath, certificatePassword);
@@ -49,12 +138,38 @@ public class SyncApplePushService extends SyncPushServiceBase {
 		}
 	}
 	
+	/**
+	 * Single param constructor, for APNS services built elsewhere, like stubs or services with a custom delegate.
+	 * The service is started and stopped around every request, and its delegate is kept as it is, so throttling and
+	 * rejected push messages are only handled if the delegate does it.
+	 * @param apnsService The APNS service.
+	 */
+	public SyncApplePushService(ApnsService apnsService) {
+		setDefaultValues();
+		installTransport(new ApnsServiceTransport(apnsService));
+	}
+	
+	/**
+	 * Single param constructor, for other transports, like HTTP/2 clients. The transport is started right away
+	 * and kept open until {@link #close()} is called.
+	 * @param transport The transport that writes the push messages.
+	 */
+	public SyncApplePushService(AppleTransport transport) {
+		if (transport == null) {
+			throw new IllegalArgumentException("Transport is null.");
+		}
+		this.persistent = true;
+		setDefaultValues();
+		installTransport(transport);
+	}
+	
 	/**
 	 * Sets the default values.
 	 */
 	private void setDefaultValues() {
 		pushEnabled = Defaults.PUSH_ENABLED;
-		inactiveDevices = new HashMap<String, Date>();
+		streamBatchSize = Defaults.STREAM_BATCH_SIZE;
+		metrics = MetricsRegistry.getShared().getMetrics(getProviderName());
 	}
 	
 	/*
@@ -62,14 +177,14 @@ public class SyncApplePushService extends SyncPushServiceBase {
 	 */
 	@Override
 	public boolean sendPush(String title, String message, Map<String, String> additionalFields, String token) throws Exception {
-		if (!validateSingleData(log, message, token)) {
+		if (!validateSingleData(log, message, token) || isSuppressed(log, token)) {
 			return false;
 		}
-		apnsService.start();
-		PayloadBuilder msgBuilder = generateBuilder(title, message, additionalFields);
-		apnsService.push(token, msgBuilder.build());
-		apnsService.stop();
-		return true;
+		ApplePayload payload = preparePayload(title, message, additionalFields);
+		openConnection();
+		boolean accepted = push(token, payload.getJson()) == null;
+		closeConnection();
+		return accepted;
 	}
 	
 	/**
@@ -80,13 +195,23 @@ public class SyncApplePushService extends SyncPushServiceBase {
 	 * @throws Exception Any exception that may arise.
 	 */
 	public boolean sendPush(PayloadBuilder msgBuilder, String token) throws Exception {
-		if (!validateToken(log, token)) {
+		return sendPush(ApplePayload.of(msgBuilder), token);
+	}
+	
+	/**
+	 * Sends a single push message.
+	 * @param payload The prebuilt push message.
+	 * @param token The push token.
+	 * @return <i>true</i> if the push message request was sent. 
+	 */
+	public boolean sendPush(ApplePayload payload, String token) {
+		if (!validateToken(log, token) || isSuppressed(log, token)) {
 			return false;
 		}
-		apnsService.start();
-		apnsService.push(token, msgBuilder.build());
-		apnsService.stop();
-		return true;
+		openConnection();
+		boolean accepted = push(token, payload.getJson()) == null;
+		closeConnection();
+		return accepted;
 	}
 	
 	/*
@@ -95,17 +220,7 @@ public class SyncApplePushService extends SyncPushServiceBase {
 	@Override
 	public boolean sendPushInBulk(String title, String message, 
 			Map<String, String> additionalFields, String... tokens) {
-		if (!validateBulkData(log, message)) {
-			return false;
-		}
-		apnsService.start();
-		PayloadBuilder msgBuilder = generateBuilder(title, message, additionalFields);
-		apnsService.push(Arrays.asList(tokens), msgBuilder.build());
-		
-		inactiveDevices.putAll(apnsService.getInactiveDevices());
-
-		apnsService.stop(); 
-		return true;
+		return sendPushInBulkWithReport(title, message, additionalFields, tokens).isSuccess();
 	}
 	
 	/**
@@ -116,13 +231,378 @@ public class SyncApplePushService extends SyncPushServiceBase {
 	 * @throws Exception Any exception that may arise.
 	 */
 	public boolean sendPushInBulk(PayloadBuilder msgBuilder, String... tokens) throws Exception {
-		apnsService.start();
-		apnsService.push(Arrays.asList(tokens), msgBuilder.build());
-		inactiveDevices.putAll(apnsService.getInactiveDevices());
-		apnsService.stop(); 
+		return sendPushInBulkWithReport(msgBuilder, tokens).isSuccess();
+	}
+	
+	/**
+	 * Sends a bulk push message.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return <i>true</i> if the push message request was sent. 
+	 */
+	public boolean sendPushInBulk(ApplePayload payload, String... tokens) {
+		return sendPushInBulkWithReport(payload, tokens).isSuccess();
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushService#sendPushInBulkWithReport(java.lang.String, java.lang.String, java.util.Map, java.lang.String[])
+	 */
+	@Override
+	public BulkSendReport sendPushInBulkWithReport(String title, String message, 
+			Map<String, String> additionalFields, String... tokens) {
+		if (!validateBulkData(log, message)) {
+			return BulkSendReport.notDispatched(tokens);
+		}
+		return pushInBulk(preparePayload(title, message, additionalFields).getJson(), tokens);
+	}
+	
+	/**
+	 * Sends a bulk push message, reporting the outcome of every token.
+	 * @param msgBuilder The PayloadBuilder object.
+	 * @param tokens The push tokens.
+	 * @return The outcome of every token.
+	 * @throws Exception Any exception that may arise.
+	 */
+	public BulkSendReport sendPushInBulkWithReport(PayloadBuilder msgBuilder, String... tokens) throws Exception {
+		return pushInBulk(msgBuilder.build(), tokens);
+	}
+	
+	/**
+	 * Sends a bulk push message, reporting the outcome of every token.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return The outcome of every token.
+	 */
+	public BulkSendReport sendPushInBulkWithReport(ApplePayload payload, String... tokens) {
+		return pushInBulk(payload.getJson(), tokens);
+	}
+	
+	/**
+	 * Sends a payload to every token. Tokens rejected when they are written are reported with the APNS error, as
+	 * failed, inactive or scheduled for a retry; the rest are reported as sent, except the ones registered as 
+	 * inactive. The binary protocol only answers rejected push messages after they are written, so with it every
+	 * written token is reported as sent.
+	 * @param payload The push message payload.
+	 * @param tokens The push tokens.
+	 * @return The outcome of every token.
+	 */
+	private BulkSendReport pushInBulk(String payload, String... tokens) {
+		BulkSendReport report = new BulkSendReport(tokens);
+		TokenSelection selection = selectTokens(report, tokens, payload);
+		openConnection();
+		try {
+			recordPush(report, selection, push(Arrays.asList(selection.getTokens()), payload));
+		} finally {
+			releaseUnsent(report, selection, payload);
+		}
+		inactiveDeviceRegistry.registerAll(transport.getInactiveDevices(), InactiveDeviceRegistry.REASON_APNS_FEEDBACK);
+		closeConnection();
+		markInactive(report, selection);
+		return report;
+	}
+	
+	/**
+	 * Writes a push message once the rate limiter allows it. Network errors are reported to the rate limiter, and
+	 * unregistered and invalid tokens are registered as inactive.
+	 * @param token The push token.
+	 * @param payload The push message payload.
+	 * @return The rejection of the push message, or <i>null</i> if it was accepted.
+	 */
+	private ApnsRejection push(String token, String payload) {
+		acquireApnsPermits(1);
+		ApnsRejection rejection;
+		try {
+			rejection = transport.push(token, payload);
+		} catch (NetworkIOException e) {
+			onThrottled(0);
+			recordFailed(1);
+			throw e;
+		}
+		if (rejection == null) {
+			recordSent(1);
+		} else {
+			registerInactive(rejection);
+		}
+		return rejection;
+	}
+	
+	/**
+	 * Writes a push message to every token once the rate limiter allows it. Network errors are reported to the rate 
+	 * limiter, and unregistered and invalid tokens are registered as inactive.
+	 * @param tokens The push tokens.
+	 * @param payload The push message payload.
+	 * @return The rejected push messages.
+	 */
+	private List<ApnsRejection> push(Collection<String> tokens, String payload) {
+		if (tokens.isEmpty()) {
+			return Collections.emptyList();
+		}
+		acquireApnsPermits(tokens.size());
+		List<ApnsRejection> rejections;
+		try {
+			rejections = transport.push(tokens, payload);
+		} catch (NetworkIOException e) {
+			onThrottled(0);
+			recordFailed(tokens.size());
+			throw e;
+		}
+		recordSent(tokens.size() - rejections.size());
+		for (ApnsRejection rejection : rejections) {
+			registerInactive(rejection);
+		}
+		return rejections;
+	}
+	
+	/**
+	 * Registers the token of a rejected push message as inactive, if APNS reported it unregistered or invalid.
+	 * The rejection itself is counted as failed by the transport listener.
+	 * @param rejection The rejected push message.
+	 */
+	private void registerInactive(ApnsRejection rejection) {
+		if (rejection.getInactiveSince() != null) {
+			inactiveDeviceRegistry.register(toRegistryKey(rejection.getToken()), rejection.getInactiveSince(), 
+					rejection.getErrorCode());
+		}
+	}
+	
+	/**
+	 * Records the outcome of the selected tokens of a report once they are written: sent, unless they were rejected.
+	 * @param report The report.
+	 * @param selection The written tokens.
+	 * @param rejections The rejected push messages, indexed like the selection.
+	 */
+	private void recordPush(BulkSendReport report, TokenSelection selection, List<ApnsRejection> rejections) {
+		for (int i = 0; i < selection.size(); i++) {
+			report.record(selection.originalIndex(i), TokenStatus.SENT, null, null, null);
+		}
+		for (ApnsRejection rejection : rejections) {
+			recordRejection(report, selection.originalIndex(rejection.getIndex()), rejection);
+		}
+	}
+	
+	/**
+	 * Records a rejected push message on a report: inactive if the token is unregistered or invalid, scheduled for a
+	 * retry if the error is transient and there is a retry scheduler, and failed otherwise.
+	 * @param report The report.
+	 * @param index The index of the token on the report.
+	 * @param rejection The rejected push message.
+	 */
+	private void recordRejection(BulkSendReport report, int index, ApnsRejection rejection) {
+		TokenStatus status;
+		if (rejection.getInactiveSince() != null) {
+			status = TokenStatus.INACTIVE;
+		} else if (rejection.isRetryable() && retryScheduler != null) {
+			status = TokenStatus.RETRY_SCHEDULED;
+		} else {
+			status = TokenStatus.FAILED;
+		}
+		report.record(index, status, rejection.getErrorCode(), null, null);
+	}
+	
+	/**
+	 * Waits until the rate limiter allows sending push messages.
+	 * @param permits The quantity of push messages about to be sent.
+	 * @throws NetworkIOException If the thread is interrupted while waiting.
+	 */
+	private void acquireApnsPermits(int permits) {
+		try {
+			acquirePermits(permits);
+		} catch (InterruptedIOException e) {
+			throw new NetworkIOException(e);
+		}
+	}
+	
+	/**
+	 * Marks the dispatched tokens that are registered as inactive.
+	 * @param report The report of the bulk push message.
+	 * @param selection The dispatched tokens.
+	 */
+	private void markInactive(BulkSendReport report, TokenSelection selection) {
+		if (inactiveDeviceRegistry.size() == 0) {
+			return;
+		}
+		for (int i = 0; i < selection.size(); i++) {
+			int index = selection.originalIndex(i);
+			if (inactiveDeviceRegistry.contains(toRegistryKey(report.getToken(index)))) {
+				report.record(index, TokenStatus.INACTIVE, report.getErrorCode(index), null, null);
+			}
+		}
+	}
+	
+	/**
+	 * Sends a personalized push message to every recipient. Every recipient gets its own payload, rendered
+	 * into a single reused buffer, and every payload is written on the same connection.
+	 * @param template The push template.
+	 * @param recipients The recipients and the values of their template variables.
+	 * @return The outcome of every recipient, indexed like the recipients.
+	 */
+	public BulkSendReport sendTemplatedPush(PushTemplate template, List<TemplateRecipient> recipients) {
+		if (template == null) {
+			throw new IllegalArgumentException("Push template is null.");
+		}
+		TemplateRecipient[] recipientArray = recipients == null ? new TemplateRecipient[0] 
+				: recipients.toArray(new TemplateRecipient[recipients.size()]);
+		String[] tokens = new String[recipientArray.length];
+		for (int i = 0; i < recipientArray.length; i++) {
+			tokens[i] = recipientArray[i].getToken();
+		}
+		if (!validateBulkData(log, template.getMessage())) {
+			return BulkSendReport.notDispatched(tokens);
+		}
+		BulkSendReport report = new BulkSendReport(tokens);
+		TokenSelection selection = selectTokens(report, tokens);
+		StringBuilder buffer = new StringBuilder();
+		openConnection();
+		for (int i = 0; i < selection.size(); i++) {
+			int index = selection.originalIndex(i);
+			TemplateRecipient recipient = recipientArray[index];
+			if (recipient.getToken() == null) {
+				report.record(index, TokenStatus.FAILED, null, null, null);
+				continue;
+			}
+			long startNanos = System.nanoTime();
+			String payload = generateBuilder(template, recipient.getValues(), buffer).build();
+			recordLatency(MetricStage.PAYLOAD_BUILD, startNanos);
+			ApnsRejection rejection = push(recipient.getToken(), payload);
+			if (rejection == null) {
+				report.record(index, TokenStatus.SENT, null, null, null);
+			} else {
+				recordRejection(report, index, rejection);
+			}
+		}
+		inactiveDeviceRegistry.registerAll(transport.getInactiveDevices(), InactiveDeviceRegistry.REASON_APNS_FEEDBACK);
+		closeConnection();
+		markInactive(report, selection);
+		return report;
+	}
+	
+	/**
+	 * Sends a bulk push message to the tokens of a token source.
+	 * @param msgBuilder The PayloadBuilder object.
+	 * @param tokens The push tokens.
+	 * @return <i>true</i> if the push message request was sent. 
+	 * @throws Exception Any exception that may arise.
+	 */
+	public boolean sendPushInBulk(PayloadBuilder msgBuilder, Iterator<String> tokens) throws Exception {
+		pushInBulk(msgBuilder.build(), tokens, null);
+		return true;
+	}
+	
+	/**
+	 * Sends a bulk push message to the tokens of a token source.
+	 * @param payload The prebuilt push message.
+	 * @param tokens The push tokens.
+	 * @return <i>true</i> if the push message request was sent. 
+	 */
+	public boolean sendPushInBulk(ApplePayload payload, Iterator<String> tokens) {
+		pushInBulk(payload.getJson(), tokens, null);
+		return true;
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushService#sendPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.util.Iterator)
+	 */
+	@Override
+	public boolean sendPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			Iterator<String> tokens) {
+		return sendPushInBulk(title, message, additionalFields, tokens, null);
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushServiceBase#sendPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.util.Iterator, com.devsu.push.sender.token.ResumeTracker)
+	 */
+	@Override
+	protected boolean sendPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			Iterator<String> tokens, ResumeTracker resumeTracker) {
+		if (!validateBulkData(log, message)) {
+			return false;
+		}
+		pushInBulk(preparePayload(title, message, additionalFields).getJson(), tokens, resumeTracker);
 		return true;
 	}
 	
+	/**
+	 * Sends a payload to the tokens of a token source, writing <i>streamBatchSize</i> tokens at a time.
+	 * Only the current batch is kept in memory.
+	 * @param payload The push message payload.
+	 * @param tokens The push tokens.
+	 * @param resumeTracker The tracker of the batches read from a token file, or <i>null</i>.
+	 */
+	private void pushInBulk(String payload, Iterator<String> tokens, ResumeTracker resumeTracker) {
+		ChunkIterator<String> tokenChunks = new ChunkIterator<String>(nullToEmpty(tokens), streamBatchSize);
+		openConnection();
+		while (tokenChunks.hasNext()) {
+			List<String> tokenList = tokenChunks.next();
+			String[] tokenArray = tokenList.toArray(new String[tokenList.size()]);
+			ResumeTracker.Batch batch = resumeTracker == null ? null : resumeTracker.begin(tokenArray.length);
+			BulkSendReport report = new BulkSendReport(tokenArray);
+			TokenSelection selection = selectTokens(report, tokenArray, payload);
+			try {
+				recordPush(report, selection, push(Arrays.asList(selection.getTokens()), payload));
+			} finally {
+				releaseUnsent(report, selection, payload);
+			}
+			if (batch != null) {
+				batch.complete();
+			}
+		}
+		inactiveDeviceRegistry.registerAll(transport.getInactiveDevices(), InactiveDeviceRegistry.REASON_APNS_FEEDBACK);
+		closeConnection();
+	}
+	
+	/**
+	 * Normalizes a token to the format used by the APNS feedback service: uppercase hex, without spaces or dashes.
+	 * @param token The push token.
+	 * @return The normalized token.
+	 */
+	@Override
+	protected String toRegistryKey(String token) {
+		return token == null ? null : token.replace(" ", "").replace("-", "").toUpperCase();
+	}
+	
+	/**
+	 * Gets the payload for a title, message and additional fields, from the payload cache when it is enabled.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @return The prebuilt push message.
+	 */
+	private ApplePayload preparePayload(String title, String message, Map<String, String> additionalFields) {
+		long startNanos = System.nanoTime();
+		PayloadCache<ApplePayload> cache = payloadCache;
+		ApplePayload payload;
+		if (cache == null) {
+			payload = ApplePayload.of(generateBuilder(title, message, additionalFields));
+		} else {
+			PayloadKey key = new PayloadKey(title, message, additionalFields, false);
+			payload = cache.get(key);
+			if (payload == null) {
+				payload = ApplePayload.of(generateBuilder(title, message, additionalFields));
+				cache.put(key, payload);
+			}
+		}
+		recordLatency(MetricStage.PAYLOAD_BUILD, startNanos);
+		return payload;
+	}
+	
+	/**
+	 * Payload builder generator for a personalized push message.
+	 * @param template The push template.
+	 * @param values The values of the template variables.
+	 * @param buffer The reusable render buffer.
+	 * @return The payload builder.
+	 */
+	private PayloadBuilder generateBuilder(PushTemplate template, String[] values, StringBuilder buffer) {
+		PayloadBuilder msgBuilder = APNS.newPayload().alertBody(template.renderMessage(values, buffer)).sound(Defaults.SOUND);
+		if (template.hasTitle()) {
+			msgBuilder.alertTitle(template.renderTitle(values, buffer));
+		}
+		for (int i = 0; i < template.getFieldCount(); i++) {
+			msgBuilder.customField(template.getFieldKey(i), template.renderField(i, values, buffer));
+		}
+		return msgBuilder;
+	}
+	
 	/**
 	 * Default payload builder generator.
 	 * @param title The push message title.
@@ -150,8 +630,8 @@ public class SyncApplePushService extends SyncPushServiceBase {
 	 * @throws InvalidSSLConfig Certificates are corrupted, wrong or password is wrong.
 	 */
 	public void setupDevelopmentServer(String certificatePath, String certificatePassword) throws RuntimeIOException, InvalidSSLConfig {
-		apnsService = APNS.newService().withCert(certificatePath, certificatePassword).withSandboxDestination().build();
-		apnsService.stop();
+		setupService(APNS.newService().withCert(certificatePath, certificatePassword).withSandboxDestination(), 
+				certificatePath + "#sandbox");
 	}
 	
 	/**
@@ -162,12 +642,263 @@ public class SyncApplePushService extends SyncPushServiceBase {
 	 * @throws InvalidSSLConfig Certificates are corrupted, wrong or password is wrong.
 	 */
 	public void setupProductionServer(String certificatePath, String certificatePassword) throws RuntimeIOException, InvalidSSLConfig {
-		apnsService = APNS.newService().withCert(certificatePath, certificatePassword).withProductionDestination().build();
-		apnsService.stop();
+		setupService(APNS.newService().withCert(certificatePath, certificatePassword).withProductionDestination(), 
+				certificatePath + "#production");
+	}
+	
+	/**
+	 * Sets up another APNS server, like a local stand-in server for load tests.
+	 * @param certificatePath The path of the p12 certificate file.
+	 * @param certificatePassword The password for the p12 certificate.
+	 * @param gatewayHost The host of the gateway.
+	 * @param gatewayPort The port of the gateway.
+	 * @param feedbackHost The host of the feedback service.
+	 * @param feedbackPort The port of the feedback service.
+	 * @throws RuntimeIOException An IO exception.
+	 * @throws InvalidSSLConfig Certificates are corrupted, wrong or password is wrong.
+	 */
+	public void setupCustomServer(String certificatePath, String certificatePassword, String gatewayHost, int gatewayPort, 
+			String feedbackHost, int feedbackPort) throws RuntimeIOException, InvalidSSLConfig {
+		setupService(APNS.newService().withCert(certificatePath, certificatePassword)
+				.withGatewayDestination(gatewayHost, gatewayPort).withFeedbackDestination(feedbackHost, feedbackPort), 
+				certificatePath + "#" + gatewayHost + ":" + gatewayPort);
+	}
+	
+	/**
+	 * Builds the java-apns transport, replacing the previous one. On persistent mode the connections are pooled,
+	 * recycled when idle, and monitored in the background so broken ones are reconnected and their push messages resent.
+	 * Connections closed by APNS errors are reported to the rate limiter, and push messages rejected with a processing
+	 * error are handed to the retry scheduler.
+	 * @param serviceBuilder The APNS service builder, with its certificate and destination already set.
+	 * @param credentialId The certificate path and destination, which identify the shared rate limiter.
+	 */
+	private void setupService(ApnsServiceBuilder serviceBuilder, String credentialId) {
+		installTransport(new ApnsServiceTransport(serviceBuilder, connectionPoolSize, credentialId));
+	}
+	
+	/**
+	 * Starts writing the push messages on a transport, replacing the previous one. On persistent mode the transport
+	 * is started right away and the previous one is stopped.
+	 * @param transport The transport.
+	 */
+	private synchronized void installTransport(AppleTransport transport) {
+		AppleTransport previousTransport = this.transport;
+		transport.setListener(transportListener);
+		if (isPersistent()) {
+			transport.start();
+		} else {
+			transport.stop();
+		}
+		this.transport = transport;
+		if (previousTransport != null && isPersistent()) {
+			previousTransport.stop();
+		}
+		resolveRateLimiter();
+	}
+	
+	/**
+	 * Sets the transport that writes the push messages, replacing the current one.
+	 * @param transport The transport.
+	 */
+	public void setTransport(AppleTransport transport) {
+		if (transport == null) {
+			throw new IllegalArgumentException("Transport is null.");
+		}
+		installTransport(transport);
 	}
 	
+	/**
+	 * Gets the transport that writes the push messages.
+	 * @return The transport.
+	 */
+	public AppleTransport getTransport() {
+		return transport;
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushServiceBase#getProviderName()
+	 */
+	@Override
+	protected String getProviderName() {
+		return RateLimiterRegistry.PROVIDER_APNS;
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushServiceBase#getCredentialId()
+	 */
+	@Override
+	protected String getCredentialId() {
+		return transport.getCredentialId();
+	}
+	
+	/**
+	 * Sets the quantity of tokens read from a token source and written to APNS at a time.
+	 * @param streamBatchSize The quantity of tokens written at a time.
+	 */
+	public void setStreamBatchSize(int streamBatchSize) {
+		if (streamBatchSize < 1) {
+			throw new IllegalArgumentException("Stream batch size must be greater than 0.");
+		}
+		this.streamBatchSize = streamBatchSize;
+	}
+	
+	/**
+	 * Sets the max quantity of serialized payloads kept for repeated title/message/fields combinations.
+	 * @param payloadCacheSize The max quantity of cached payloads, or 0 to disable the cache.
+	 */
+	public void setPayloadCacheSize(int payloadCacheSize) {
+		if (payloadCacheSize < 0) {
+			throw new IllegalArgumentException("Payload cache size can't be negative.");
+		}
+		payloadCache = payloadCacheSize == 0 ? null : new PayloadCache<ApplePayload>(payloadCacheSize);
+	}
+	
+	/**
+	 * Gets the cache of serialized payloads.
+	 * @return The payload cache, or <i>null</i> if it is disabled.
+	 */
+	public PayloadCache<ApplePayload> getPayloadCache() {
+		return payloadCache;
+	}
+	
+	/**
+	 * Indicates if the APNS connections are kept open between requests.
+	 * @return <i>true</i> if the APNS connections are kept open between requests.
+	 */
+	public boolean isPersistent() {
+		return persistent;
+	}
+	
+	/**
+	 * Opens the APNS connection for a request. Does nothing on persistent mode.
+	 */
+	private void openConnection() {
+		if (!isPersistent()) {
+			transport.start();
+		}
+	}
+	
+	/**
+	 * Closes the APNS connection after a request. Does nothing on persistent mode.
+	 */
+	private void closeConnection() {
+		if (!isPersistent()) {
+			transport.stop();
+		}
+	}
+	
+	/**
+	 * Closes the APNS connections. On persistent mode the service can't be used after this call.
+	 */
+	@Override
+	public synchronized void close() {
+		transport.stop();
+	}
+	
+	/**
+	 * Gets a map of inactive devices.
+	 * @return an unmodifiable snapshot of the inactive devices, with the date since they are inactive.
+	 */
 	public Map<String, Date> getInactiveDevices() {
-		return Collections.unmodifiableMap(inactiveDevices);
+		return inactiveDeviceRegistry.asMap();
+	}
+	
+	/**
+	 * Gets the retry attempt of a token, if it was written by a retry. Attempts are kept by the normalized token,
+	 * since the transports report rejected tokens in uppercase hex.
+	 * @param token The push token.
+	 * @return The retry attempt, or 0 if it wasn't written by a retry.
+	 */
+	private int getRetryAttempt(String token) {
+		synchronized (retryAttempts) {
+			Integer attempt = retryAttempts.get(toRegistryKey(token));
+			return attempt == null ? 0 : attempt;
+		}
+	}
+	
+	/**
+	 * Transport listener of this service: reports throttling and round trips, and hands the push messages that APNS
+	 * rejected with a transient error to the retry scheduler.
+	 */
+	private class ServiceTransportListener implements AppleTransportListener {
+		
+		/*
+		 * @see com.devsu.push.sender.ratelimit.ThrottleListener#onThrottled(long)
+		 */
+		@Override
+		public void onThrottled(long retryAfterMillis) {
+			SyncApplePushService.this.onThrottled(retryAfterMillis);
+		}
+		
+		/*
+		 * @see com.devsu.push.sender.transport.TransportListener#onRoundTrip(long)
+		 */
+		@Override
+		public void onRoundTrip(long startNanos) {
+			recordLatency(MetricStage.PROVIDER_ROUND_TRIP, startNanos);
+		}
+		
+		/*
+		 * @see com.devsu.push.sender.transport.AppleTransportListener#onRejected(java.lang.String, java.lang.String, java.lang.String, boolean)
+		 */
+		@Override
+		public void onRejected(String token, String payload, String errorCode, boolean retryable) {
+			recordFailed(1);
+			RetryScheduler scheduler = retryScheduler;
+			if (scheduler == null) {
+				return;
+			}
+			int attempt = getRetryAttempt(token);
+			if (!retryable) {
+				if (attempt > 0) {
+					scheduler.reportFailed(token, attempt, errorCode);
+				}
+				return;
+			}
+			scheduleRetry(scheduler, retryHandler, payload, Arrays.asList(token), attempt + 1, errorCode);
+		}
+	}
+	
+	/**
+	 * Writes the retries of this service. Accepted tokens are reported as succeeded; rejected ones are handed to the
+	 * scheduler again by the transport listener, when they are rejected or, with the binary protocol, later.
+	 */
+	private class ApnsRetryHandler implements RetryHandler<String> {
+		
+		/*
+		 * @see com.devsu.push.sender.retry.RetryHandler#retry(java.lang.Object, java.util.List, int)
+		 */
+		@Override
+		public void retry(String payload, List<String> tokens, int attempt) {
+			RetryScheduler scheduler = retryScheduler;
+			if (scheduler == null) {
+				log.warn("Retry scheduler was removed, " + tokens.size() + " tokens won't be retried.");
+				return;
+			}
+			openConnection();
+			try {
+				for (int i = 0; i < tokens.size(); i++) {
+					String token = tokens.get(i);
+					synchronized (retryAttempts) {
+						retryAttempts.put(toRegistryKey(token), attempt);
+					}
+					ApnsRejection rejection;
+					try {
+						rejection = push(token, payload);
+					} catch (NetworkIOException e) {
+						log.warn("Error occurred while retrying push messages: " + e.getMessage());
+						scheduleRetry(scheduler, this, payload, tokens.subList(i, tokens.size()), attempt + 1, 
+								DeliveryError.PROCESSING_ERROR.name());
+						return;
+					}
+					if (rejection == null) {
+						scheduler.reportSucceeded(token, attempt);
+					}
+				}
+			} finally {
+				closeConnection();
+			}
+		}
 	}
 	
 	/**
@@ -176,5 +907,8 @@ public class SyncApplePushService extends SyncPushServiceBase {
 	private static class Defaults {
 		private static final boolean PUSH_ENABLED = true;
 		private static final String SOUND = "default";
+		private static final int CONNECTION_POOL_SIZE = 0;
+		private static final int STREAM_BATCH_SIZE = 1000;
+		private static final int MAX_TRACKED_RETRIES = 10000;
 	}
 }
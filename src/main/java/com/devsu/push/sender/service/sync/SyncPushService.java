@@ -1,7 +1,12 @@
 package com.devsu.push.sender.service.sync;
 
+import java.io.File;
+import java.util.Iterator;
 import java.util.Map;
 
+import com.devsu.push.sender.callback.BulkProgressListener;
+import com.devsu.push.sender.result.BulkSendReport;
+
 public interface SyncPushService {
 
 	/**
@@ -63,4 +68,54 @@ public interface SyncPushService {
 	 * @throws Exception Any exception that may arise.
 	 */
 	boolean sendPushInBulk(String title, String message, Map<String, String> additionalFields, String... tokens) throws Exception;
+
+	/**
+	 * Sends a bulk push message, reporting the outcome of every token.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return The outcome of every token.
+	 * @throws Exception Any exception that may arise.
+	 */
+	BulkSendReport sendPushInBulkWithReport(String title, String message, Map<String, String> additionalFields, String... tokens) throws Exception;
+
+	/**
+	 * Sends a bulk push message to the tokens of a token source. The tokens are read and sent one chunk at a time,
+	 * so the whole audience is never held in memory.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return <i>true</i> if the push message request was sent. 
+	 * @throws Exception Any exception that may arise.
+	 */
+	boolean sendPushInBulk(String title, String message, Map<String, String> additionalFields, Iterable<String> tokens) throws Exception;
+
+	/**
+	 * Sends a bulk push message to the tokens of a token source. The tokens are read and sent one chunk at a time,
+	 * so the whole audience is never held in memory.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @return <i>true</i> if the push message request was sent. 
+	 * @throws Exception Any exception that may arise.
+	 */
+	boolean sendPushInBulk(String title, String message, Map<String, String> additionalFields, Iterator<String> tokens) throws Exception;
+
+	/**
+	 * Sends a bulk push message to the tokens of a newline delimited token file. The file is memory mapped and
+	 * read one batch at a time, so the heap use doesn't depend on the file size.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokenFile The token file.
+	 * @param startOffset The file offset where sending starts, 0 or the resume offset of a previous call.
+	 * @param progressListener The listener notified every time the resume offset moves, or <i>null</i>.
+	 * @return The file offset from which the bulk push message can be resumed, the file size if every token was sent.
+	 * @throws Exception Any exception that may arise.
+	 */
+	long sendPushInBulkFromFile(String title, String message, Map<String, String> additionalFields, File tokenFile, 
+			long startOffset, BulkProgressListener progressListener) throws Exception;
 }
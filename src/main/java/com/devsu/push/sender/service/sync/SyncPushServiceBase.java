@@ -1,13 +1,90 @@
 package com.devsu.push.sender.service.sync;
 
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
 import org.slf4j.Logger;
 
+import com.devsu.push.sender.callback.BulkProgressListener;
+import com.devsu.push.sender.metrics.MetricStage;
+import com.devsu.push.sender.metrics.PushMetrics;
+import com.devsu.push.sender.ratelimit.AdaptiveRateLimiter;
+import com.devsu.push.sender.ratelimit.RateLimitConfig;
+import com.devsu.push.sender.ratelimit.RateLimiterRegistry;
+import com.devsu.push.sender.registry.DeadTokenFilter;
+import com.devsu.push.sender.registry.ResendSuppressionWindow;
+import com.devsu.push.sender.retry.RetryHandler;
+import com.devsu.push.sender.retry.RetryScheduler;
+import com.devsu.push.sender.registry.InactiveDeviceRegistry;
+import com.devsu.push.sender.result.BulkSendReport;
+import com.devsu.push.sender.result.TokenStatus;
+import com.devsu.push.sender.token.MappedTokenFile;
+import com.devsu.push.sender.token.ResumeTracker;
+import com.devsu.push.sender.token.TokenCursor;
+import com.devsu.push.sender.token.TokenSelection;
+import com.devsu.push.sender.util.TokenHashSet;
+
 public abstract class SyncPushServiceBase implements SyncPushService {
 
 	/**
 	 * Flag that enables/disables the service.
 	 */
 	protected boolean pushEnabled;
+	
+	/**
+	 * The registry where inactive tokens are recorded.
+	 */
+	protected InactiveDeviceRegistry inactiveDeviceRegistry = new InactiveDeviceRegistry();
+	
+	/**
+	 * The filter that drops known dead tokens before dispatching, or <i>null</i> to send to every token.
+	 */
+	protected DeadTokenFilter deadTokenFilter;
+	
+	/**
+	 * The settings of the rate limit, or <i>null</i> if it was set directly or there is none.
+	 */
+	protected RateLimitConfig rateLimitConfig;
+	
+	/**
+	 * The rate limiter of the provider credential, or <i>null</i> to send without limit.
+	 */
+	protected volatile AdaptiveRateLimiter rateLimiter;
+	
+	/**
+	 * The scheduler that retries failed tokens in the background, or <i>null</i> to retry inside the calling thread.
+	 */
+	protected volatile RetryScheduler retryScheduler;
+	
+	/**
+	 * Flag that enables/disables dropping the repeated tokens of a bulk push message.
+	 */
+	protected volatile boolean duplicateTokenFilterEnabled;
+	
+	/**
+	 * The window that keeps a payload from being sent again to the same token, or <i>null</i> to allow resends.
+	 */
+	protected volatile ResendSuppressionWindow resendSuppressionWindow;
+	
+	/**
+	 * The metrics where the outcomes and latencies of push messages are recorded, or <i>null</i> to record none.
+	 */
+	protected volatile PushMetrics metrics;
+	
+	/**
+	 * The set used to find repeated tokens, reused by every bulk push message sent from the same thread.
+	 */
+	private static final ThreadLocal<TokenHashSet> DUPLICATE_FINDER = new ThreadLocal<TokenHashSet>() {
+		@Override
+		protected TokenHashSet initialValue() {
+			return new TokenHashSet(Defaults.DUPLICATE_FINDER_INITIAL_SIZE);
+		}
+	};
 
 	/**
 	 * Validates the Data for a single push message.
@@ -63,6 +140,283 @@ public abstract class SyncPushServiceBase implements SyncPushService {
 		return true;
 	}
 
+	/**
+	 * Checks if a single push message must not be sent because its token is known to be dead.
+	 * @param log The logger
+	 * @param token The push token.
+	 * @return <i>true</i> if the token is known to be dead.
+	 */
+	protected boolean isSuppressed(Logger log, String token) {
+		if (deadTokenFilter == null || !deadTokenFilter.isDead(toRegistryKey(token))) {
+			return false;
+		}
+		log.debug("Push message suppressed, token is inactive: " + token);
+		recordSuppressed(1);
+		return true;
+	}
+	
+	/**
+	 * Selects the tokens of a bulk push message that must be dispatched, marking the known dead ones as suppressed.
+	 * @param report The report of the bulk push message.
+	 * @param tokens The push tokens, indexed like the report.
+	 * @return The selected tokens.
+	 */
+	protected TokenSelection selectTokens(BulkSendReport report, String[] tokens) {
+		return selectTokens(report, tokens, false, null);
+	}
+	
+	/**
+	 * Selects the tokens of a bulk push message that must be dispatched, marking the known dead ones as suppressed.
+	 * When enabled, the repeated tokens and the tokens sent the same payload within the resend suppression window
+	 * are marked as duplicates.
+	 * @param report The report of the bulk push message.
+	 * @param tokens The push tokens, indexed like the report.
+	 * @param payload The payload sent to every token, compared with the payloads sent before by its text.
+	 * @return The selected tokens.
+	 */
+	protected TokenSelection selectTokens(BulkSendReport report, String[] tokens, Object payload) {
+		return selectTokens(report, tokens, duplicateTokenFilterEnabled, payload);
+	}
+	
+	/**
+	 * Selects the tokens of a bulk push message that must be dispatched.
+	 * @param report The report of the bulk push message.
+	 * @param tokens The push tokens, indexed like the report.
+	 * @param dropDuplicates <i>true</i> to mark the repeated tokens as duplicates.
+	 * @param payload The payload sent to every token, or <i>null</i> if it differs per token.
+	 * @return The selected tokens.
+	 */
+	private TokenSelection selectTokens(BulkSendReport report, String[] tokens, boolean dropDuplicates, Object payload) {
+		DeadTokenFilter filter = deadTokenFilter;
+		ResendSuppressionWindow window = payload == null ? null : resendSuppressionWindow;
+		dropDuplicates = dropDuplicates && tokens != null && tokens.length > 1;
+		if (tokens == null || (filter == null && window == null && !dropDuplicates)) {
+			return TokenSelection.all(tokens);
+		}
+		TokenHashSet seenTokens = null;
+		if (dropDuplicates) {
+			seenTokens = DUPLICATE_FINDER.get();
+			seenTokens.clear(tokens.length);
+		}
+		String fingerprint = window == null ? null : ResendSuppressionWindow.fingerprint(String.valueOf(payload));
+		int size = tokens.length;
+		String[] selectedTokens = new String[size];
+		int[] originalIndexes = new int[size];
+		int selected = 0;
+		try {
+			for (int i = 0; i < size; i++) {
+				String key = toRegistryKey(tokens[i]);
+				if (filter != null && filter.isDead(key)) {
+					report.record(i, TokenStatus.SUPPRESSED, null, null, null);
+					continue;
+				}
+				if (key != null && ((seenTokens != null && !seenTokens.add(key)) 
+						|| (window != null && !window.tryRecord(fingerprint, key)))) {
+					report.record(i, TokenStatus.DUPLICATE, null, null, null);
+					continue;
+				}
+				selectedTokens[selected] = tokens[i];
+				originalIndexes[selected] = i;
+				selected++;
+			}
+		} finally {
+			if (seenTokens != null && seenTokens.capacity() > Defaults.DUPLICATE_FINDER_MAX_RETAINED_CAPACITY) {
+				DUPLICATE_FINDER.remove();
+			}
+		}
+		if (selected == size) {
+			return TokenSelection.all(tokens);
+		}
+		recordSuppressed(size - selected);
+		return new TokenSelection(Arrays.copyOf(selectedTokens, selected), Arrays.copyOf(originalIndexes, selected));
+	}
+	
+	/**
+	 * Forgets the selected tokens that weren't sent or failed from the resend suppression window, so the payload can 
+	 * be sent to them again within the window. Call it once the tokens selected with a payload are dispatched, also 
+	 * when dispatching them failed.
+	 * @param report The report of the bulk push message.
+	 * @param selection The selected tokens.
+	 * @param payload The payload the tokens were selected with.
+	 */
+	protected void releaseUnsent(BulkSendReport report, TokenSelection selection, Object payload) {
+		releaseUnsent(report, selection, 0, selection.size(), payload);
+	}
+	
+	/**
+	 * Forgets the selected tokens of a range that weren't sent or failed from the resend suppression window.
+	 * @param report The report of the bulk push message.
+	 * @param selection The selected tokens.
+	 * @param from The first index of the range on the selection, inclusive.
+	 * @param to The last index of the range on the selection, exclusive.
+	 * @param payload The payload the tokens were selected with.
+	 */
+	protected void releaseUnsent(BulkSendReport report, TokenSelection selection, int from, int to, Object payload) {
+		ResendSuppressionWindow window = resendSuppressionWindow;
+		if (window == null || payload == null) {
+			return;
+		}
+		String fingerprint = null;
+		for (int i = from; i < to; i++) {
+			int index = selection.originalIndex(i);
+			TokenStatus status = report.getStatus(index);
+			String key = toRegistryKey(report.getToken(index));
+			if (key != null && (status == TokenStatus.NOT_SENT || status == TokenStatus.FAILED)) {
+				if (fingerprint == null) {
+					fingerprint = ResendSuppressionWindow.fingerprint(String.valueOf(payload));
+				}
+				window.forget(fingerprint, key);
+			}
+		}
+	}
+	
+	/**
+	 * Counts tokens accepted by the provider on the metrics.
+	 * @param tokens The quantity of tokens.
+	 */
+	protected void recordSent(int tokens) {
+		PushMetrics current = metrics;
+		if (current != null) {
+			current.recordSent(tokens);
+		}
+	}
+	
+	/**
+	 * Counts token attempts rejected by the provider on the metrics.
+	 * @param tokens The quantity of tokens.
+	 */
+	protected void recordFailed(int tokens) {
+		PushMetrics current = metrics;
+		if (current != null) {
+			current.recordFailed(tokens);
+		}
+	}
+	
+	/**
+	 * Counts tokens not sent because they were dead or repeated on the metrics.
+	 * @param tokens The quantity of tokens.
+	 */
+	protected void recordSuppressed(int tokens) {
+		PushMetrics current = metrics;
+		if (current != null) {
+			current.recordSuppressed(tokens);
+		}
+	}
+	
+	/**
+	 * Counts tokens handed to the retry scheduler on the metrics.
+	 * @param tokens The quantity of tokens.
+	 */
+	protected void recordRetried(int tokens) {
+		PushMetrics current = metrics;
+		if (current != null) {
+			current.recordRetried(tokens);
+		}
+	}
+	
+	/**
+	 * Hands tokens to the retry scheduler, counting them on the metrics if they are accepted.
+	 * @param scheduler The retry scheduler.
+	 * @param handler The handler that sends the retry.
+	 * @param payload The payload of the retry.
+	 * @param tokens The tokens to retry.
+	 * @param attempt The attempt number of the retry.
+	 * @param errorCode The error code of the last attempt.
+	 * @return <i>true</i> if the retry was scheduled, <i>false</i> if the tokens ran out of attempts.
+	 */
+	protected <P> boolean scheduleRetry(RetryScheduler scheduler, RetryHandler<P> handler, P payload, 
+			Collection<String> tokens, int attempt, String errorCode) {
+		if (!scheduler.schedule(handler, payload, tokens, attempt, errorCode)) {
+			return false;
+		}
+		recordRetried(tokens.size());
+		return true;
+	}
+	
+	/**
+	 * Records the latency of a stage on the metrics.
+	 * @param stage The stage.
+	 * @param startNanos The start time of the stage, from {@link System#nanoTime()}.
+	 */
+	protected void recordLatency(MetricStage stage, long startNanos) {
+		PushMetrics current = metrics;
+		if (current != null) {
+			current.recordLatency(stage, startNanos);
+		}
+	}
+	
+	/**
+	 * Gets a token source that can be iterated safely.
+	 * @param tokens The push tokens, or <i>null</i>.
+	 * @return The push tokens, or an empty iterator if they are <i>null</i>.
+	 */
+	protected Iterator<String> nullToEmpty(Iterator<String> tokens) {
+		return tokens == null ? Collections.<String>emptyIterator() : tokens;
+	}
+	
+	/**
+	 * Waits until the rate limiter allows sending push messages.
+	 * @param permits The quantity of push messages about to be sent.
+	 * @throws InterruptedIOException If the thread is interrupted while waiting.
+	 */
+	protected void acquirePermits(int permits) throws InterruptedIOException {
+		AdaptiveRateLimiter limiter = rateLimiter;
+		if (limiter == null || permits < 1) {
+			return;
+		}
+		try {
+			limiter.acquire(permits);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			InterruptedIOException ex = new InterruptedIOException("Interrupted while waiting for the rate limiter.");
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+	
+	/**
+	 * Reports that the provider throttled a request, so the rate limiter backs off.
+	 * @param retryAfterMillis The milliseconds the provider asked to wait, or 0 if it didn't say.
+	 */
+	protected void onThrottled(long retryAfterMillis) {
+		AdaptiveRateLimiter limiter = rateLimiter;
+		if (limiter != null) {
+			limiter.onThrottled(retryAfterMillis);
+		}
+	}
+	
+	/**
+	 * Resolves the rate limiter of the current credential from the shared registry, when a rate limit is set.
+	 * Called again when the credential changes.
+	 */
+	protected void resolveRateLimiter() {
+		if (rateLimitConfig != null) {
+			rateLimiter = RateLimiterRegistry.getShared().getLimiter(getProviderName(), getCredentialId(), rateLimitConfig);
+		}
+	}
+	
+	/**
+	 * Gets the name of the push provider, used to share rate limiters.
+	 * @return The provider name.
+	 */
+	protected abstract String getProviderName();
+	
+	/**
+	 * Gets the identifier of the credential used to send, used to share rate limiters. It is not secret, like a 
+	 * hash of the API key, since it is part of the rate limiter keys.
+	 * @return The credential identifier.
+	 */
+	protected abstract String getCredentialId();
+	
+	/**
+	 * Converts a token to the key used on the inactive device registry.
+	 * @param token The push token.
+	 * @return The registry key.
+	 */
+	protected String toRegistryKey(String token) {
+		return token;
+	}
+
 	/*
 	 * @see com.devsu.push.sender.service.sync.SyncPushService#sendPush(java.lang.String, java.lang.String)
 	 */
@@ -95,6 +449,200 @@ public abstract class SyncPushServiceBase implements SyncPushService {
 		return sendPushInBulk(title, message, null, tokens);
 	};
 	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushService#sendPushInBulk(java.lang.String, java.lang.String, java.util.Map, java.lang.Iterable)
+	 */
+	@Override
+	public boolean sendPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			Iterable<String> tokens) throws Exception {
+		return sendPushInBulk(title, message, additionalFields, tokens == null ? null : tokens.iterator());
+	}
+	
+	/*
+	 * @see com.devsu.push.sender.service.sync.SyncPushService#sendPushInBulkFromFile(java.lang.String, java.lang.String, java.util.Map, java.io.File, long, com.devsu.push.sender.callback.BulkProgressListener)
+	 */
+	@Override
+	public long sendPushInBulkFromFile(String title, String message, Map<String, String> additionalFields, 
+			File tokenFile, long startOffset, BulkProgressListener progressListener) throws Exception {
+		MappedTokenFile mappedTokenFile = new MappedTokenFile(tokenFile);
+		try {
+			TokenCursor cursor = mappedTokenFile.cursor(startOffset);
+			ResumeTracker resumeTracker = new ResumeTracker(cursor, progressListener);
+			sendPushInBulk(title, message, additionalFields, cursor, resumeTracker);
+			return resumeTracker.getResumeOffset();
+		} finally {
+			mappedTokenFile.close();
+		}
+	}
+	
+	/**
+	 * Sends a bulk push message to the tokens of a token source.
+	 * @param title The push message title.
+	 * @param message The push message content.
+	 * @param additionalFields The additional fields sent on the push message.
+	 * @param tokens The push tokens.
+	 * @param resumeTracker The tracker of the batches read from a token file, or <i>null</i>.
+	 * @return <i>true</i> if the push message request was sent.
+	 * @throws Exception Any exception that may arise.
+	 */
+	protected abstract boolean sendPushInBulk(String title, String message, Map<String, String> additionalFields, 
+			Iterator<String> tokens, ResumeTracker resumeTracker) throws Exception;
+	
+	/**
+	 * Gets the registry where inactive tokens are recorded.
+	 * @return The inactive device registry.
+	 */
+	public InactiveDeviceRegistry getInactiveDeviceRegistry() {
+		return inactiveDeviceRegistry;
+	}
+	
+	/**
+	 * Sets the registry where inactive tokens are recorded. It can be shared with other services.
+	 * If a dead token filter is enabled, it is rebuilt on the new registry.
+	 * @param inactiveDeviceRegistry The inactive device registry.
+	 */
+	public void setInactiveDeviceRegistry(InactiveDeviceRegistry inactiveDeviceRegistry) {
+		if (inactiveDeviceRegistry == null) {
+			throw new IllegalArgumentException("Inactive device registry is null.");
+		}
+		this.inactiveDeviceRegistry = inactiveDeviceRegistry;
+		if (deadTokenFilter != null) {
+			setDeadTokenFilterEnabled(true);
+		}
+	}
+	
+	/**
+	 * Enables/disables dropping the tokens registered as inactive before dispatching push messages.
+	 * @param enabled <i>true</i> to drop the tokens registered as inactive.
+	 */
+	public void setDeadTokenFilterEnabled(boolean enabled) {
+		if (deadTokenFilter != null) {
+			deadTokenFilter.detach();
+		}
+		deadTokenFilter = enabled ? new DeadTokenFilter(inactiveDeviceRegistry) : null;
+	}
+	
+	/**
+	 * Gets the filter that drops known dead tokens, which exposes the suppression counts.
+	 * @return The dead token filter, or <i>null</i> if it is disabled.
+	 */
+	public DeadTokenFilter getDeadTokenFilter() {
+		return deadTokenFilter;
+	}
+	
+	/**
+	 * Limits the rate of push messages, sharing the limiter with every service that uses the same provider credential.
+	 * The rate backs off when the provider throttles and recovers gradually.
+	 * @param rateLimitConfig The rate limit settings, or <i>null</i> to send without limit.
+	 */
+	public void setRateLimit(RateLimitConfig rateLimitConfig) {
+		this.rateLimitConfig = rateLimitConfig;
+		if (rateLimitConfig == null) {
+			rateLimiter = null;
+			return;
+		}
+		resolveRateLimiter();
+	}
+	
+	/**
+	 * Sets the rate limiter directly, without the shared registry.
+	 * @param rateLimiter The rate limiter, or <i>null</i> to send without limit.
+	 */
+	public void setRateLimiter(AdaptiveRateLimiter rateLimiter) {
+		this.rateLimitConfig = null;
+		this.rateLimiter = rateLimiter;
+	}
+	
+	/**
+	 * Gets the rate limiter, which exposes the current rate and queue depth.
+	 * @return The rate limiter, or <i>null</i> if there is no limit.
+	 */
+	public AdaptiveRateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+	
+	/**
+	 * Gets the scheduler that retries failed tokens in the background.
+	 * @return The retry scheduler, or <i>null</i> if retries happen inside the calling thread.
+	 */
+	public RetryScheduler getRetryScheduler() {
+		return retryScheduler;
+	}
+	
+	/**
+	 * Sets the scheduler that retries failed tokens in the background. Only the tokens that failed with a transient
+	 * error are retried, and no thread is blocked while they wait. It can be shared with other services.
+	 * @param retryScheduler The retry scheduler, or <i>null</i> to retry inside the calling thread.
+	 */
+	public void setRetryScheduler(RetryScheduler retryScheduler) {
+		this.retryScheduler = retryScheduler;
+	}
+	
+	/**
+	 * Enables/disables dropping the repeated tokens of a bulk push message before it is split into requests,
+	 * so every device gets the push message once. Tokens read from a token source are checked per batch.
+	 * The dropped tokens are reported as duplicates.
+	 * @param enabled <i>true</i> to drop the repeated tokens.
+	 */
+	public void setDuplicateTokenFilterEnabled(boolean enabled) {
+		this.duplicateTokenFilterEnabled = enabled;
+	}
+	
+	/**
+	 * Indicates if the repeated tokens of a bulk push message are dropped.
+	 * @return <i>true</i> if the repeated tokens are dropped.
+	 */
+	public boolean isDuplicateTokenFilterEnabled() {
+		return duplicateTokenFilterEnabled;
+	}
+	
+	/**
+	 * Keeps a bulk push message from being sent to a token that got the same payload within the window.
+	 * The skipped tokens are reported as duplicates. A token is held in the window from the moment it is selected,
+	 * so concurrent sends of the same payload don't both reach it, and is released again if it ends up not sent or
+	 * failed. Tokens scheduled for a retry or found inactive stay in the window.
+	 * @param windowMillis The window in milliseconds, or 0 to allow resends.
+	 */
+	public void setResendSuppressionWindowMillis(long windowMillis) {
+		if (windowMillis < 0) {
+			throw new IllegalArgumentException("Resend suppression window can't be negative.");
+		}
+		this.resendSuppressionWindow = windowMillis == 0 ? null : new ResendSuppressionWindow(windowMillis);
+	}
+	
+	/**
+	 * Sets the window that keeps a payload from being sent again to the same token. It can be shared with other services.
+	 * @param resendSuppressionWindow The resend suppression window, or <i>null</i> to allow resends.
+	 */
+	public void setResendSuppressionWindow(ResendSuppressionWindow resendSuppressionWindow) {
+		this.resendSuppressionWindow = resendSuppressionWindow;
+	}
+	
+	/**
+	 * Gets the window that keeps a payload from being sent again to the same token.
+	 * @return The resend suppression window, or <i>null</i> if resends are allowed.
+	 */
+	public ResendSuppressionWindow getResendSuppressionWindow() {
+		return resendSuppressionWindow;
+	}
+	
+	/**
+	 * Gets the metrics where the outcomes and latencies of push messages are recorded. By default, every service of
+	 * the same provider records on the same metrics of the shared {@link com.devsu.push.sender.metrics.MetricsRegistry}.
+	 * @return The metrics, or <i>null</i> if none are recorded.
+	 */
+	public PushMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sets the metrics where the outcomes and latencies of push messages are recorded.
+	 * @param metrics The metrics, or <i>null</i> to record none.
+	 */
+	public void setMetrics(PushMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
 	/**
 	 * Enables/disables this service.
 	 * @param pushEnabled The parameter that enables/disables this service.
@@ -102,4 +650,12 @@ public abstract class SyncPushServiceBase implements SyncPushService {
 	public void setPushEnabled(boolean pushEnabled) {
 		this.pushEnabled = pushEnabled;
 	}
+	
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int DUPLICATE_FINDER_INITIAL_SIZE = 1000;
+		private static final int DUPLICATE_FINDER_MAX_RETAINED_CAPACITY = 1 << 16;
+	}
 }
@@ -0,0 +1,133 @@
+package com.devsu.push.sender.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Text with <i>{name}</i> placeholders, parsed once into literal segments and variable indexes.
+ * Use <i>{{</i> and <i>}}</i> for literal braces.
+ */
+public class MessageTemplate {
+
+	/**
+	 * The literal segments. The segment <i>i</i> goes before the variable <i>i</i>, the last one goes at the end.
+	 */
+	private final String[] literals;
+
+	/**
+	 * The index of every variable in the values of a recipient.
+	 */
+	private final int[] variables;
+
+	/**
+	 * The length of the literal segments.
+	 */
+	private final int literalLength;
+
+	/**
+	 * 2 param constructor.
+	 * @param literals The literal segments.
+	 * @param variables The index of every variable in the values of a recipient.
+	 */
+	private MessageTemplate(String[] literals, int[] variables) {
+		this.literals = literals;
+		this.variables = variables;
+		int length = 0;
+		for (String literal : literals) {
+			length += literal.length();
+		}
+		this.literalLength = length;
+	}
+
+	/**
+	 * Parses a template, adding its new variable names to the shared variable index.
+	 * @param source The template text.
+	 * @param variableIndexes The index of every variable name, shared by every template of a push message.
+	 * @return The parsed template.
+	 */
+	static MessageTemplate parse(String source, Map<String, Integer> variableIndexes) {
+		List<String> literals = new ArrayList<String>();
+		List<Integer> variables = new ArrayList<Integer>();
+		StringBuilder literal = new StringBuilder();
+		int length = source.length();
+		int i = 0;
+		while (i < length) {
+			char c = source.charAt(i);
+			if (c == '{' && i + 1 < length && source.charAt(i + 1) == '{') {
+				literal.append('{');
+				i += 2;
+			} else if (c == '}' && i + 1 < length && source.charAt(i + 1) == '}') {
+				literal.append('}');
+				i += 2;
+			} else if (c == '{') {
+				int end = source.indexOf('}', i + 1);
+				if (end < 0) {
+					throw new IllegalArgumentException("Unclosed placeholder at position " + i + " of template: " + source);
+				}
+				String name = source.substring(i + 1, end).trim();
+				if (name.isEmpty()) {
+					throw new IllegalArgumentException("Empty placeholder at position " + i + " of template: " + source);
+				}
+				Integer index = variableIndexes.get(name);
+				if (index == null) {
+					index = variableIndexes.size();
+					variableIndexes.put(name, index);
+				}
+				literals.add(literal.toString());
+				literal.setLength(0);
+				variables.add(index);
+				i = end + 1;
+			} else if (c == '}') {
+				throw new IllegalArgumentException("Unmatched '}' at position " + i + " of template: " + source);
+			} else {
+				literal.append(c);
+				i++;
+			}
+		}
+		literals.add(literal.toString());
+		int[] variableArray = new int[variables.size()];
+		for (int j = 0; j < variableArray.length; j++) {
+			variableArray[j] = variables.get(j);
+		}
+		return new MessageTemplate(literals.toArray(new String[literals.size()]), variableArray);
+	}
+
+	/**
+	 * Renders the template for a recipient. Missing or <i>null</i> values are rendered as empty text.
+	 * @param values The values of the recipient, indexed like the variables of the push template.
+	 * @param buffer The buffer used to render the text. It is cleared first, so it can be reused between recipients.
+	 * @return The rendered text.
+	 */
+	public String render(String[] values, StringBuilder buffer) {
+		if (variables.length == 0) {
+			return literals[0];
+		}
+		buffer.setLength(0);
+		buffer.ensureCapacity(literalLength + variables.length * Defaults.VALUE_LENGTH);
+		for (int i = 0; i < variables.length; i++) {
+			buffer.append(literals[i]);
+			int index = variables[i];
+			if (values != null && index < values.length && values[index] != null) {
+				buffer.append(values[index]);
+			}
+		}
+		buffer.append(literals[variables.length]);
+		return buffer.toString();
+	}
+
+	/**
+	 * Indicates if the template has no variables.
+	 * @return <i>true</i> if the template has no variables.
+	 */
+	public boolean isConstant() {
+		return variables.length == 0;
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int VALUE_LENGTH = 16;
+	}
+}
@@ -0,0 +1,215 @@
+package com.devsu.push.sender.template;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Personalized push message: a title, a message and additional fields with <i>{name}</i> placeholders.
+ * The templates are parsed once and share a single variable index, so the values of a recipient are a plain array.
+ */
+public class PushTemplate {
+
+	/**
+	 * The index of every variable name, in order of appearance.
+	 */
+	private final Map<String, Integer> variableIndexes;
+
+	/**
+	 * The title template text, or <i>null</i> if there is no title.
+	 */
+	private final String titleSource;
+
+	/**
+	 * The message template text.
+	 */
+	private final String messageSource;
+
+	/**
+	 * The title template, or <i>null</i> if there is no title.
+	 */
+	private final MessageTemplate title;
+
+	/**
+	 * The message template.
+	 */
+	private final MessageTemplate message;
+
+	/**
+	 * The additional field keys.
+	 */
+	private final String[] fieldKeys;
+
+	/**
+	 * The additional field value templates, indexed like the keys.
+	 */
+	private final MessageTemplate[] fieldValues;
+
+	/**
+	 * 7 param constructor.
+	 * @param variableIndexes The index of every variable name.
+	 * @param titleSource The title template text, or <i>null</i>.
+	 * @param messageSource The message template text.
+	 * @param title The title template, or <i>null</i>.
+	 * @param message The message template.
+	 * @param fieldKeys The additional field keys.
+	 * @param fieldValues The additional field value templates.
+	 */
+	private PushTemplate(Map<String, Integer> variableIndexes, String titleSource, String messageSource, 
+			MessageTemplate title, MessageTemplate message, String[] fieldKeys, MessageTemplate[] fieldValues) {
+		this.variableIndexes = variableIndexes;
+		this.titleSource = titleSource;
+		this.messageSource = messageSource;
+		this.title = title;
+		this.message = message;
+		this.fieldKeys = fieldKeys;
+		this.fieldValues = fieldValues;
+	}
+
+	/**
+	 * Parses a personalized push message.
+	 * @param title The push message title template, or <i>null</i>.
+	 * @param message The push message content template.
+	 * @return The push template.
+	 */
+	public static PushTemplate compile(String title, String message) {
+		return compile(title, message, null);
+	}
+
+	/**
+	 * Parses a personalized push message.
+	 * @param title The push message title template, or <i>null</i>.
+	 * @param message The push message content template.
+	 * @param additionalFields The additional fields, whose values can be templates too.
+	 * @return The push template.
+	 */
+	public static PushTemplate compile(String title, String message, Map<String, String> additionalFields) {
+		if (message == null) {
+			throw new IllegalArgumentException("Message template is null.");
+		}
+		Map<String, Integer> variableIndexes = new LinkedHashMap<String, Integer>();
+		MessageTemplate titleTemplate = title == null ? null : MessageTemplate.parse(title, variableIndexes);
+		MessageTemplate messageTemplate = MessageTemplate.parse(message, variableIndexes);
+		int fieldCount = additionalFields == null ? 0 : additionalFields.size();
+		String[] fieldKeys = new String[fieldCount];
+		MessageTemplate[] fieldValues = new MessageTemplate[fieldCount];
+		if (additionalFields != null) {
+			int i = 0;
+			for (Map.Entry<String, String> entry : additionalFields.entrySet()) {
+				fieldKeys[i] = entry.getKey();
+				fieldValues[i] = MessageTemplate.parse(entry.getValue() == null ? "" : entry.getValue(), variableIndexes);
+				i++;
+			}
+		}
+		return new PushTemplate(Collections.unmodifiableMap(variableIndexes), title, message, titleTemplate, 
+				messageTemplate, fieldKeys, fieldValues);
+	}
+
+	/**
+	 * Gets the title template text.
+	 * @return The title template text, or <i>null</i> if there is no title.
+	 */
+	public String getTitle() {
+		return titleSource;
+	}
+
+	/**
+	 * Gets the message template text.
+	 * @return The message template text.
+	 */
+	public String getMessage() {
+		return messageSource;
+	}
+
+	/**
+	 * Gets the variable names, in the order used by the values of a recipient.
+	 * @return The variable names.
+	 */
+	public List<String> getVariableNames() {
+		return new ArrayList<String>(variableIndexes.keySet());
+	}
+
+	/**
+	 * Gets the index of a variable in the values of a recipient.
+	 * @param name The variable name.
+	 * @return The variable index, or -1 if the templates don't use it.
+	 */
+	public int indexOf(String name) {
+		Integer index = variableIndexes.get(name);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Creates a recipient from named values.
+	 * @param token The push token.
+	 * @param values The value of every variable, by name. Unknown names are ignored.
+	 * @return The recipient.
+	 */
+	public TemplateRecipient recipient(String token, Map<String, String> values) {
+		String[] valueArray = new String[variableIndexes.size()];
+		if (values != null) {
+			for (Map.Entry<String, Integer> entry : variableIndexes.entrySet()) {
+				valueArray[entry.getValue()] = values.get(entry.getKey());
+			}
+		}
+		return new TemplateRecipient(token, valueArray);
+	}
+
+	/**
+	 * Indicates if the push message has a title.
+	 * @return <i>true</i> if the push message has a title.
+	 */
+	public boolean hasTitle() {
+		return title != null;
+	}
+
+	/**
+	 * Renders the title for a recipient.
+	 * @param values The values of the recipient.
+	 * @param buffer The reusable render buffer.
+	 * @return The rendered title, or <i>null</i> if there is no title.
+	 */
+	public String renderTitle(String[] values, StringBuilder buffer) {
+		return title == null ? null : title.render(values, buffer);
+	}
+
+	/**
+	 * Renders the message for a recipient.
+	 * @param values The values of the recipient.
+	 * @param buffer The reusable render buffer.
+	 * @return The rendered message.
+	 */
+	public String renderMessage(String[] values, StringBuilder buffer) {
+		return message.render(values, buffer);
+	}
+
+	/**
+	 * Gets the quantity of additional fields.
+	 * @return The quantity of additional fields.
+	 */
+	public int getFieldCount() {
+		return fieldKeys.length;
+	}
+
+	/**
+	 * Gets the key of an additional field.
+	 * @param index The field index.
+	 * @return The field key.
+	 */
+	public String getFieldKey(int index) {
+		return fieldKeys[index];
+	}
+
+	/**
+	 * Renders the value of an additional field for a recipient.
+	 * @param index The field index.
+	 * @param values The values of the recipient.
+	 * @param buffer The reusable render buffer.
+	 * @return The rendered field value.
+	 */
+	public String renderField(int index, String[] values, StringBuilder buffer) {
+		return fieldValues[index].render(values, buffer);
+	}
+}
@@ -0,0 +1,43 @@
+package com.devsu.push.sender.template;
+
+/**
+ * The token of a personalized push message and the values of its template variables.
+ */
+public class TemplateRecipient {
+
+	/**
+	 * The push token.
+	 */
+	private final String token;
+
+	/**
+	 * The values of the template variables, indexed like the variables of the push template.
+	 */
+	private final String[] values;
+
+	/**
+	 * 2 param constructor.
+	 * @param token The push token.
+	 * @param values The values of the template variables, indexed like the variables of the push template.
+	 */
+	public TemplateRecipient(String token, String... values) {
+		this.token = token;
+		this.values = values;
+	}
+
+	/**
+	 * Gets the push token.
+	 * @return The push token.
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * Gets the values of the template variables.
+	 * @return The values of the template variables.
+	 */
+	public String[] getValues() {
+		return values;
+	}
+}
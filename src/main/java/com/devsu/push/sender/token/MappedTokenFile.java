@@ -0,0 +1,286 @@
+package com.devsu.push.sender.token;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+
+/**
+ * Newline delimited token file, read through memory mapped windows. Tokens are parsed lazily while iterating,
+ * so only the current window (outside the heap) and the current token are kept in memory.
+ * Blank lines and surrounding whitespace are ignored.
+ */
+public class MappedTokenFile implements Closeable {
+
+	/**
+	 * The charset of the token file. Push tokens are plain ASCII.
+	 */
+	private static final Charset CHARSET = Charset.forName("US-ASCII");
+
+	/**
+	 * The token file.
+	 */
+	private final File file;
+
+	/**
+	 * The file channel.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The size of the file, when it was opened.
+	 */
+	private final long size;
+
+	/**
+	 * The quantity of bytes mapped at a time.
+	 */
+	private final int windowSize;
+
+	/**
+	 * Single param constructor.
+	 * @param file The token file.
+	 * @throws IOException If the file can't be opened.
+	 */
+	public MappedTokenFile(File file) throws IOException {
+		this(file, Defaults.WINDOW_SIZE);
+	}
+
+	/**
+	 * 2 param constructor.
+	 * @param file The token file.
+	 * @param windowSize The quantity of bytes mapped at a time. It must be longer than any line of the file.
+	 * @throws IOException If the file can't be opened.
+	 */
+	public MappedTokenFile(File file, int windowSize) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Token file is null.");
+		}
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("Window size must be greater than 0.");
+		}
+		this.file = file;
+		this.windowSize = windowSize;
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		this.channel = randomAccessFile.getChannel();
+		this.size = channel.size();
+	}
+
+	/**
+	 * Opens a cursor at the beginning of the file.
+	 * @return The token cursor.
+	 */
+	public TokenCursor cursor() {
+		return cursor(0);
+	}
+
+	/**
+	 * Opens a cursor at a file offset, usually a resume offset of a previous bulk push message.
+	 * @param startOffset The file offset. It must be the beginning of a line.
+	 * @return The token cursor.
+	 */
+	public TokenCursor cursor(long startOffset) {
+		if (startOffset < 0 || startOffset > size) {
+			throw new IllegalArgumentException("Start offset must be between 0 and the file size.");
+		}
+		return new MappedTokenCursor(startOffset);
+	}
+
+	/**
+	 * Gets the size of the file, when it was opened.
+	 * @return The size of the file in bytes.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Closes the file. The cursors can't be used after this call.
+	 * @throws IOException If the file can't be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Cursor that parses the tokens of the current mapped window.
+	 */
+	private class MappedTokenCursor implements TokenCursor {
+
+		/**
+		 * The mapped window, or <i>null</i> if nothing is mapped yet.
+		 */
+		private MappedByteBuffer window;
+
+		/**
+		 * The file offset of the first byte of the window.
+		 */
+		private long windowStart;
+
+		/**
+		 * The file offset of the next byte to parse.
+		 */
+		private long parsePosition;
+
+		/**
+		 * The file offset right after the last returned token.
+		 */
+		private long position;
+
+		/**
+		 * The next token, or <i>null</i> if it hasn't been parsed yet.
+		 */
+		private String nextToken;
+
+		/**
+		 * The file offset right after the next token.
+		 */
+		private long nextTokenEnd;
+
+		/**
+		 * Reusable buffer for the bytes of a token.
+		 */
+		private byte[] tokenBytes = new byte[256];
+
+		/**
+		 * Single param constructor.
+		 * @param startOffset The file offset.
+		 */
+		private MappedTokenCursor(long startOffset) {
+			this.parsePosition = startOffset;
+			this.position = startOffset;
+		}
+
+		/*
+		 * @see java.util.Iterator#hasNext()
+		 */
+		@Override
+		public boolean hasNext() {
+			while (nextToken == null && parsePosition < size) {
+				nextToken = parseLine();
+				nextTokenEnd = parsePosition;
+			}
+			return nextToken != null;
+		}
+
+		/*
+		 * @see java.util.Iterator#next()
+		 */
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			String token = nextToken;
+			nextToken = null;
+			position = nextTokenEnd;
+			return token;
+		}
+
+		/*
+		 * @see com.devsu.push.sender.token.TokenCursor#position()
+		 */
+		@Override
+		public long position() {
+			return position;
+		}
+
+		/*
+		 * @see java.util.Iterator#remove()
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Tokens can't be removed from a token file.");
+		}
+
+		/**
+		 * Parses the line that starts at the parse position, remapping the window when the line crosses its end.
+		 * @return The trimmed line, or <i>null</i> if it is blank.
+		 */
+		private String parseLine() {
+			if (window == null || parsePosition >= windowStart + window.limit()) {
+				map(parsePosition);
+			}
+			int start = (int) (parsePosition - windowStart);
+			int end = indexOfNewLine(start);
+			if (end < 0 && windowStart + window.limit() < size) {
+				map(parsePosition);
+				start = 0;
+				end = indexOfNewLine(start);
+				if (end < 0 && window.limit() == windowSize) {
+					throw new TokenFileException("Line at offset " + parsePosition + " of " + file
+							+ " is longer than the window size.");
+				}
+			}
+			int lineEnd = end < 0 ? window.limit() : end;
+			parsePosition = windowStart + (end < 0 ? lineEnd : lineEnd + 1);
+			return decode(start, lineEnd);
+		}
+
+		/**
+		 * Finds the next new line on the window.
+		 * @param from The window index where the search starts.
+		 * @return The window index of the new line, or -1 if there is none.
+		 */
+		private int indexOfNewLine(int from) {
+			int limit = window.limit();
+			for (int i = from; i < limit; i++) {
+				if (window.get(i) == '\n') {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Decodes a line of the window, trimming the surrounding whitespace.
+		 * @param start The window index of the first byte of the line.
+		 * @param end The window index right after the last byte of the line.
+		 * @return The trimmed line, or <i>null</i> if it is blank.
+		 */
+		private String decode(int start, int end) {
+			while (start < end && window.get(start) <= ' ') {
+				start++;
+			}
+			while (end > start && window.get(end - 1) <= ' ') {
+				end--;
+			}
+			int length = end - start;
+			if (length == 0) {
+				return null;
+			}
+			if (tokenBytes.length < length) {
+				tokenBytes = new byte[Math.max(length, tokenBytes.length * 2)];
+			}
+			for (int i = 0; i < length; i++) {
+				tokenBytes[i] = window.get(start + i);
+			}
+			return new String(tokenBytes, 0, length, CHARSET);
+		}
+
+		/**
+		 * Maps the window that starts at a file offset.
+		 * @param offset The file offset.
+		 */
+		private void map(long offset) {
+			try {
+				window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, size - offset));
+				windowStart = offset;
+			} catch (IOException e) {
+				throw new TokenFileException("Error occurred while mapping " + file + " at offset " + offset + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+	}
+}
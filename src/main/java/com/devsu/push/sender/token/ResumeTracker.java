@@ -0,0 +1,136 @@
+package com.devsu.push.sender.token;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.devsu.push.sender.callback.BulkProgressListener;
+
+/**
+ * Tracks the batches of a bulk push message read from a token file. Batches can complete in any order,
+ * the resume offset only moves forward when every batch before it has completed.
+ */
+public class ResumeTracker {
+
+	/**
+	 * The cursor the batches are read from.
+	 */
+	private final TokenCursor cursor;
+
+	/**
+	 * The listener notified when the resume offset moves, or <i>null</i>.
+	 */
+	private final BulkProgressListener listener;
+
+	/**
+	 * The batches that have been read but not completed, or completed after a pending one, in reading order.
+	 */
+	private final Deque<Batch> pendingBatches = new ArrayDeque<Batch>();
+
+	/**
+	 * The file offset from which the bulk push message can be resumed.
+	 */
+	private long resumeOffset;
+
+	/**
+	 * The quantity of tokens before the resume offset.
+	 */
+	private long sentTokens;
+
+	/**
+	 * 2 param constructor.
+	 * @param cursor The cursor the batches are read from.
+	 * @param listener The listener notified when the resume offset moves, or <i>null</i>.
+	 */
+	public ResumeTracker(TokenCursor cursor, BulkProgressListener listener) {
+		if (cursor == null) {
+			throw new IllegalArgumentException("Token cursor is null.");
+		}
+		this.cursor = cursor;
+		this.listener = listener;
+		this.resumeOffset = cursor.position();
+	}
+
+	/**
+	 * Registers a batch that has just been read from the cursor.
+	 * @param tokenCount The quantity of tokens in the batch.
+	 * @return The batch, to be completed when it is sent.
+	 */
+	public synchronized Batch begin(int tokenCount) {
+		Batch batch = new Batch(cursor.position(), tokenCount);
+		pendingBatches.addLast(batch);
+		return batch;
+	}
+
+	/**
+	 * Marks a batch as sent and moves the resume offset past every leading completed batch. The listener is notified
+	 * while holding the lock, so it sees the resume offsets in order.
+	 * @param batch The batch.
+	 */
+	private synchronized void complete(Batch batch) {
+		batch.completed = true;
+		boolean moved = false;
+		while (!pendingBatches.isEmpty() && pendingBatches.peekFirst().completed) {
+			Batch head = pendingBatches.removeFirst();
+			resumeOffset = head.endOffset;
+			sentTokens += head.tokenCount;
+			moved = true;
+		}
+		if (moved && listener != null) {
+			listener.onProgress(sentTokens, resumeOffset);
+		}
+	}
+	
+	/**
+	 * Gets the file offset from which the bulk push message can be resumed.
+	 * @return The resume offset.
+	 */
+	public synchronized long getResumeOffset() {
+		return resumeOffset;
+	}
+
+	/**
+	 * Gets the quantity of tokens before the resume offset.
+	 * @return The quantity of sent tokens.
+	 */
+	public synchronized long getSentTokens() {
+		return sentTokens;
+	}
+
+	/**
+	 * A batch of tokens read from the cursor.
+	 */
+	public class Batch {
+
+		/**
+		 * The file offset right after the last token of the batch.
+		 */
+		private final long endOffset;
+
+		/**
+		 * The quantity of tokens in the batch.
+		 */
+		private final int tokenCount;
+
+		/**
+		 * Indicates if the batch has been sent.
+		 */
+		private boolean completed;
+
+		/**
+		 * 2 param constructor.
+		 * @param endOffset The file offset right after the last token of the batch.
+		 * @param tokenCount The quantity of tokens in the batch.
+		 */
+		private Batch(long endOffset, int tokenCount) {
+			this.endOffset = endOffset;
+			this.tokenCount = tokenCount;
+		}
+
+		/**
+		 * Marks the batch as sent.
+		 */
+		public void complete() {
+			ResumeTracker.this.complete(this);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.devsu.push.sender.token;
+
+import java.util.Iterator;
+
+/**
+ * Iterator over the tokens of a token file that knows its position in the file.
+ */
+public interface TokenCursor extends Iterator<String> {
+
+	/**
+	 * Gets the file offset right after the last token returned by {@link #next()}. A new cursor opened at this offset
+	 * continues with the following token.
+	 * @return The file offset.
+	 */
+	long position();
+}
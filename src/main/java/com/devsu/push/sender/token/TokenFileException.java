@@ -0,0 +1,29 @@
+package com.devsu.push.sender.token;
+
+/**
+ * Exception thrown when a token file can't be read.
+ */
+public class TokenFileException extends RuntimeException {
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 2 param constructor.
+	 * @param message The error message.
+	 * @param cause The cause of the error.
+	 */
+	public TokenFileException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	/**
+	 * Single param constructor.
+	 * @param message The error message.
+	 */
+	public TokenFileException(String message) {
+		super(message);
+	}
+}
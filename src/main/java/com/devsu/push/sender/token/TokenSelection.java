@@ -0,0 +1,70 @@
+package com.devsu.push.sender.token;
+
+/**
+ * The tokens of a bulk push message that are actually dispatched, after dropping the ones that must not be sent.
+ * Keeps track of the index of every selected token in the original token array.
+ */
+public class TokenSelection {
+
+	/**
+	 * The selected tokens.
+	 */
+	private final String[] tokens;
+
+	/**
+	 * The index in the original array of every selected token, or <i>null</i> if every token was selected.
+	 */
+	private final int[] originalIndexes;
+
+	/**
+	 * 2 param constructor.
+	 * @param tokens The selected tokens.
+	 * @param originalIndexes The index in the original array of every selected token, or <i>null</i> if every token was selected.
+	 */
+	public TokenSelection(String[] tokens, int[] originalIndexes) {
+		this.tokens = tokens;
+		this.originalIndexes = originalIndexes;
+	}
+
+	/**
+	 * Creates a selection of every token.
+	 * @param tokens The tokens.
+	 * @return The selection.
+	 */
+	public static TokenSelection all(String[] tokens) {
+		return new TokenSelection(tokens == null ? new String[0] : tokens, null);
+	}
+
+	/**
+	 * Gets the selected tokens.
+	 * @return The selected tokens.
+	 */
+	public String[] getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Gets the quantity of selected tokens.
+	 * @return The quantity of selected tokens.
+	 */
+	public int size() {
+		return tokens.length;
+	}
+
+	/**
+	 * Gets the index in the original array of a selected token.
+	 * @param index The index of the selected token.
+	 * @return The index in the original array.
+	 */
+	public int originalIndex(int index) {
+		return originalIndexes == null ? index : originalIndexes[index];
+	}
+
+	/**
+	 * Indicates if every token was selected.
+	 * @return <i>true</i> if every token was selected.
+	 */
+	public boolean isComplete() {
+		return originalIndexes == null;
+	}
+}
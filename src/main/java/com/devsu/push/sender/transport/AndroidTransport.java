@@ -0,0 +1,57 @@
+package com.devsu.push.sender.transport;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.google.android.gcm.server.Message;
+import com.google.android.gcm.server.MulticastResult;
+import com.google.android.gcm.server.Result;
+
+/**
+ * Sends the requests of an Android push service. The service builds the messages and validates and selects the
+ * tokens; the transport only delivers them and reports the outcome of every token, like the GCM sender does.
+ * Implementations must be thread safe, since bulk push messages send several requests in parallel.
+ */
+public interface AndroidTransport {
+
+	/**
+	 * Sets the listener of the transport. It is called by the push service before the first request.
+	 * @param listener The listener.
+	 */
+	void setListener(TransportListener listener);
+
+	/**
+	 * Sends a message to a single token, retrying transient errors.
+	 * @param message The message.
+	 * @param token The push token.
+	 * @param retries The max quantity of retries.
+	 * @return The result of the token.
+	 * @throws IOException If the request couldn't be sent.
+	 */
+	Result send(Message message, String token, int retries) throws IOException;
+
+	/**
+	 * Sends a message to several tokens, retrying the tokens that failed with transient errors.
+	 * @param message The message.
+	 * @param tokens The push tokens.
+	 * @param retries The max quantity of retries.
+	 * @return The result of every token, ordered like the tokens.
+	 * @throws IOException If the request couldn't be sent.
+	 */
+	MulticastResult send(Message message, List<String> tokens, int retries) throws IOException;
+
+	/**
+	 * Sends a message to several tokens once.
+	 * @param message The message.
+	 * @param tokens The push tokens.
+	 * @return The result of every token, ordered like the tokens.
+	 * @throws IOException If the request couldn't be sent.
+	 */
+	MulticastResult sendNoRetry(Message message, List<String> tokens) throws IOException;
+
+	/**
+	 * Gets the identifier of the credential used to send, used to share rate limiters.
+	 * @return The credential identifier.
+	 */
+	String getCredentialId();
+}
@@ -0,0 +1,100 @@
+package com.devsu.push.sender.transport;
+
+import java.util.Date;
+
+/**
+ * A push message that APNS rejected when it was written, returned by the transports that get a status for every
+ * push message.
+ */
+public class ApnsRejection {
+
+	/**
+	 * The position of the token among the tokens written.
+	 */
+	private final int index;
+
+	/**
+	 * The push token, as it was written.
+	 */
+	private final String token;
+
+	/**
+	 * The error reported by APNS.
+	 */
+	private final String errorCode;
+
+	/**
+	 * Indicates if the error is transient.
+	 */
+	private final boolean retryable;
+
+	/**
+	 * The date since the token is inactive, or <i>null</i> if it is not.
+	 */
+	private final Date inactiveSince;
+
+	/**
+	 * 5 param constructor.
+	 * @param index The position of the token among the tokens written.
+	 * @param token The push token, as it was written.
+	 * @param errorCode The error reported by APNS.
+	 * @param retryable <i>true</i> if the error is transient, so the push message can be retried.
+	 * @param inactiveSince The date since the token is inactive, or <i>null</i> if it is not.
+	 */
+	public ApnsRejection(int index, String token, String errorCode, boolean retryable, Date inactiveSince) {
+		this.index = index;
+		this.token = token;
+		this.errorCode = errorCode;
+		this.retryable = retryable;
+		this.inactiveSince = inactiveSince;
+	}
+
+	/**
+	 * Gets the position of the token among the tokens written, in iteration order.
+	 * @return The index of the token.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Gets the push token, as it was written.
+	 * @return The push token.
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * Gets the error reported by APNS, like <i>BadDeviceToken</i> or <i>Unregistered</i>.
+	 * @return The error code.
+	 */
+	public String getErrorCode() {
+		return errorCode;
+	}
+
+	/**
+	 * Indicates if the error is transient, so the push message can be retried.
+	 * @return <i>true</i> if the error is transient.
+	 */
+	public boolean isRetryable() {
+		return retryable;
+	}
+
+	/**
+	 * Gets the date since the token is inactive, for unregistered and invalid tokens.
+	 * @return The date, or <i>null</i> if the token is not inactive.
+	 */
+	public Date getInactiveSince() {
+		return inactiveSince;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ApnsRejection [index=" + index + ", token=" + token + ", errorCode=" + errorCode + ", retryable="
+				+ retryable + ", inactiveSince=" + inactiveSince + "]";
+	}
+}
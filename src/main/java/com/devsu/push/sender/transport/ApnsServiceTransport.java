@@ -0,0 +1,223 @@
+package com.devsu.push.sender.transport;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.devsu.push.sender.ratelimit.ApnsThrottleDelegate;
+import com.devsu.push.sender.ratelimit.ThrottleListener;
+import com.devsu.push.sender.service.sync.IdleReconnectPolicy;
+import com.devsu.push.sender.util.NamedThreadFactory;
+import com.notnoop.apns.ApnsNotification;
+import com.notnoop.apns.ApnsService;
+import com.notnoop.apns.ApnsServiceBuilder;
+import com.notnoop.apns.DeliveryError;
+import com.notnoop.apns.internal.Utilities;
+import com.notnoop.exceptions.ApnsDeliveryErrorException;
+import com.notnoop.exceptions.NetworkIOException;
+
+/**
+ * Apple transport on the java-apns service: the binary protocol over TLS, either a connection per request or a pool
+ * of persistent connections. It is the default transport of the Apple push service.
+ */
+public class ApnsServiceTransport implements AppleTransport {
+
+	/**
+	 * The APNS service.
+	 */
+	private final ApnsService apnsService;
+
+	/**
+	 * The identifier of the credential used to send.
+	 */
+	private final String credentialId;
+
+	/**
+	 * The listener of the transport, or <i>null</i> until it is set.
+	 */
+	private volatile AppleTransportListener listener;
+
+	/**
+	 * 3 param constructor. When <i>connectionPoolSize</i> is greater than 0, the connections are pooled, recycled 
+	 * when idle, and monitored in the background so broken ones are reconnected and their push messages resent.
+	 * Connections closed by APNS errors are reported to the listener as throttling, and rejected push messages
+	 * as rejections.
+	 * @param serviceBuilder The APNS service builder, with its certificate and destination already set.
+	 * @param connectionPoolSize The quantity of persistent APNS connections, or 0 to open a connection on every request.
+	 * @param credentialId The identifier of the certificate and destination.
+	 */
+	public ApnsServiceTransport(ApnsServiceBuilder serviceBuilder, int connectionPoolSize, String credentialId) {
+		if (connectionPoolSize < 0) {
+			throw new IllegalArgumentException("Connection pool size can't be negative.");
+		}
+		serviceBuilder.withDelegate(new ServiceDelegate());
+		if (connectionPoolSize > 0) {
+			serviceBuilder.asPool(connectionPoolSize)
+					.withReconnectPolicy(new IdleReconnectPolicy(Defaults.MAX_IDLE_MILLIS, Defaults.MAX_CONNECTION_AGE_MILLIS))
+					.withErrorDetectionThreadFactory(new NamedThreadFactory("apns-monitor", true))
+					.withAutoAdjustCacheLength(true);
+		}
+		this.apnsService = serviceBuilder.build();
+		this.credentialId = credentialId;
+	}
+
+	/**
+	 * Single param constructor, for APNS services built elsewhere, like stubs or services with a custom delegate.
+	 * Their delegate is kept as it is, so throttling and rejected push messages are only handled if the delegate
+	 * does it.
+	 * @param apnsService The APNS service.
+	 */
+	public ApnsServiceTransport(ApnsService apnsService) {
+		if (apnsService == null) {
+			throw new IllegalArgumentException("APNS service is null.");
+		}
+		this.apnsService = apnsService;
+		this.credentialId = apnsService.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(apnsService));
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AppleTransport#setListener(com.devsu.push.sender.transport.AppleTransportListener)
+	 */
+	@Override
+	public void setListener(AppleTransportListener listener) {
+		this.listener = listener;
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AppleTransport#start()
+	 */
+	@Override
+	public void start() {
+		apnsService.start();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AppleTransport#stop()
+	 */
+	@Override
+	public void stop() {
+		apnsService.stop();
+	}
+
+	/**
+	 * Writes a push message. The binary protocol only answers rejected push messages, after they are written, so
+	 * rejections are reported to the listener instead.
+	 * @param token The push token.
+	 * @param payload The push message payload.
+	 * @return <i>null</i>.
+	 * @throws NetworkIOException If the push message couldn't be written.
+	 */
+	@Override
+	public ApnsRejection push(String token, String payload) throws NetworkIOException {
+		long startNanos = System.nanoTime();
+		try {
+			apnsService.push(token, payload);
+		} finally {
+			onRoundTrip(startNanos);
+		}
+		return null;
+	}
+
+	/**
+	 * Writes a push message to every token. The binary protocol only answers rejected push messages, after they are 
+	 * written, so rejections are reported to the listener instead.
+	 * @param tokens The push tokens.
+	 * @param payload The push message payload.
+	 * @return An empty list.
+	 * @throws NetworkIOException If the push messages couldn't be written.
+	 */
+	@Override
+	public List<ApnsRejection> push(Collection<String> tokens, String payload) throws NetworkIOException {
+		long startNanos = System.nanoTime();
+		try {
+			apnsService.push(tokens, payload);
+		} finally {
+			onRoundTrip(startNanos);
+		}
+		return Collections.emptyList();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AppleTransport#getInactiveDevices()
+	 */
+	@Override
+	public Map<String, Date> getInactiveDevices() throws NetworkIOException {
+		return apnsService.getInactiveDevices();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AppleTransport#getCredentialId()
+	 */
+	@Override
+	public String getCredentialId() {
+		return credentialId;
+	}
+
+	/**
+	 * Gets the APNS service.
+	 * @return The APNS service.
+	 */
+	public ApnsService getApnsService() {
+		return apnsService;
+	}
+
+	/**
+	 * Reports the round trip of a write to the listener.
+	 * @param startNanos The value of {@link System#nanoTime()} when the write started.
+	 */
+	private void onRoundTrip(long startNanos) {
+		AppleTransportListener currentListener = listener;
+		if (currentListener != null) {
+			currentListener.onRoundTrip(startNanos);
+		}
+	}
+
+	/**
+	 * APNS delegate of this transport: reports throttling and the push messages that APNS rejected to the listener.
+	 * APNS resends the push messages written after the rejected one by itself.
+	 */
+	private class ServiceDelegate extends ApnsThrottleDelegate {
+
+		/**
+		 * No param constructor.
+		 */
+		private ServiceDelegate() {
+			super(new ThrottleListener() {
+				@Override
+				public void onThrottled(long retryAfterMillis) {
+					AppleTransportListener currentListener = listener;
+					if (currentListener != null) {
+						currentListener.onThrottled(retryAfterMillis);
+					}
+				}
+			});
+		}
+
+		/*
+		 * @see com.devsu.push.sender.ratelimit.ApnsThrottleDelegate#messageSendFailed(com.notnoop.apns.ApnsNotification, java.lang.Throwable)
+		 */
+		@Override
+		public void messageSendFailed(ApnsNotification message, Throwable e) {
+			AppleTransportListener currentListener = listener;
+			if (currentListener == null || !(e instanceof ApnsDeliveryErrorException)) {
+				return;
+			}
+			DeliveryError error = ((ApnsDeliveryErrorException) e).getDeliveryError();
+			currentListener.onRejected(Utilities.encodeHex(message.getDeviceToken()), 
+					new String(message.getPayload(), Defaults.PAYLOAD_CHARSET), error.name(), 
+					error == DeliveryError.PROCESSING_ERROR);
+		}
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final long MAX_IDLE_MILLIS = 5 * 60 * 1000L;
+		private static final long MAX_CONNECTION_AGE_MILLIS = 30 * 60 * 1000L;
+		private static final Charset PAYLOAD_CHARSET = Charset.forName("UTF-8");
+	}
+}
@@ -0,0 +1,143 @@
+package com.devsu.push.sender.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+
+/**
+ * The signing key of the APNS token based authentication: an ES256 key from the Apple developer account, with its
+ * key id and team id. It signs the JSON Web Tokens sent on the <i>authorization</i> header.
+ */
+public class ApnsSigningKey {
+
+	/**
+	 * The length in bytes of each half of an ES256 signature.
+	 */
+	private static final int SIGNATURE_HALF_LENGTH = 32;
+
+	/**
+	 * The key id.
+	 */
+	private final String keyId;
+
+	/**
+	 * The team id.
+	 */
+	private final String teamId;
+
+	/**
+	 * The EC private key.
+	 */
+	private final PrivateKey privateKey;
+
+	/**
+	 * The encoded JWT header, the same for every token.
+	 */
+	private final String encodedHeader;
+
+	/**
+	 * 3 param constructor.
+	 * @param keyId The key id.
+	 * @param teamId The team id.
+	 * @param privateKey The EC private key, on the P-256 curve.
+	 */
+	public ApnsSigningKey(String keyId, String teamId, PrivateKey privateKey) {
+		if (keyId == null || teamId == null || privateKey == null) {
+			throw new IllegalArgumentException("Key id, team id and private key are required.");
+		}
+		if (!"EC".equals(privateKey.getAlgorithm())) {
+			throw new IllegalArgumentException("The private key must be an EC key.");
+		}
+		this.keyId = keyId;
+		this.teamId = teamId;
+		this.privateKey = privateKey;
+		this.encodedHeader = SigningKeys.encode("{\"alg\":\"ES256\",\"kid\":\"" + keyId + "\"}");
+	}
+
+	/**
+	 * Loads a signing key from a <i>.p8</i> file, as downloaded from the Apple developer account.
+	 * @param keyId The key id.
+	 * @param teamId The team id.
+	 * @param p8File The PEM encoded PKCS#8 key file.
+	 * @return The signing key.
+	 * @throws IOException If the file can't be read.
+	 * @throws GeneralSecurityException If the file doesn't have a valid EC key.
+	 */
+	public static ApnsSigningKey fromPkcs8File(String keyId, String teamId, File p8File) 
+			throws IOException, GeneralSecurityException {
+		return fromPkcs8(keyId, teamId, SigningKeys.readText(p8File));
+	}
+
+	/**
+	 * Loads a signing key from the contents of a <i>.p8</i> file.
+	 * @param keyId The key id.
+	 * @param teamId The team id.
+	 * @param pem The PEM encoded PKCS#8 key.
+	 * @return The signing key.
+	 * @throws GeneralSecurityException If the text doesn't have a valid EC key.
+	 */
+	public static ApnsSigningKey fromPkcs8(String keyId, String teamId, String pem) throws GeneralSecurityException {
+		return new ApnsSigningKey(keyId, teamId, SigningKeys.decodePkcs8(pem, "EC"));
+	}
+
+	/**
+	 * Signs a new authentication token.
+	 * @param issuedAtSeconds The issue time, in seconds since the epoch.
+	 * @return The signed JSON Web Token.
+	 * @throws GeneralSecurityException If the token can't be signed.
+	 */
+	public String sign(long issuedAtSeconds) throws GeneralSecurityException {
+		String signingInput = encodedHeader + "." + SigningKeys.encode("{\"iss\":\"" + teamId + "\",\"iat\":" + issuedAtSeconds + "}");
+		Signature signature = Signature.getInstance("SHA256withECDSA");
+		signature.initSign(privateKey);
+		signature.update(signingInput.getBytes(SigningKeys.UTF8));
+		return signingInput + "." + SigningKeys.encode(toConcatenated(signature.sign()));
+	}
+
+	/**
+	 * Gets the key id.
+	 * @return The key id.
+	 */
+	public String getKeyId() {
+		return keyId;
+	}
+
+	/**
+	 * Gets the team id.
+	 * @return The team id.
+	 */
+	public String getTeamId() {
+		return teamId;
+	}
+
+	/**
+	 * Converts a DER encoded ECDSA signature to the concatenated <i>R || S</i> form used by JWS.
+	 * @param der The DER encoded signature.
+	 * @return The 64 bytes signature.
+	 * @throws GeneralSecurityException If the signature is not valid DER.
+	 */
+	private static byte[] toConcatenated(byte[] der) throws GeneralSecurityException {
+		if (der.length < 8 || der[0] != 0x30) {
+			throw new GeneralSecurityException("Invalid ECDSA signature.");
+		}
+		int offset = (der[1] & 0x80) != 0 ? 2 + (der[1] & 0x7F) : 2;
+		byte[] concatenated = new byte[SIGNATURE_HALF_LENGTH * 2];
+		for (int half = 0; half < 2; half++) {
+			if (offset + 2 > der.length || der[offset] != 0x02) {
+				throw new GeneralSecurityException("Invalid ECDSA signature.");
+			}
+			int length = der[offset + 1] & 0xFF;
+			int start = offset + 2;
+			if (start + length > der.length) {
+				throw new GeneralSecurityException("Invalid ECDSA signature.");
+			}
+			int skip = Math.max(0, length - SIGNATURE_HALF_LENGTH);
+			int copied = length - skip;
+			System.arraycopy(der, start + skip, concatenated, half * SIGNATURE_HALF_LENGTH + SIGNATURE_HALF_LENGTH - copied, copied);
+			offset = start + length;
+		}
+		return concatenated;
+	}
+}
@@ -0,0 +1,65 @@
+package com.devsu.push.sender.transport;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.notnoop.exceptions.NetworkIOException;
+
+/**
+ * Writes the push messages of an Apple push service. The service builds the payloads and validates and selects the
+ * tokens; the transport only delivers them. Push messages that APNS rejects are reported to the listener.
+ * Implementations must be thread safe.
+ */
+public interface AppleTransport {
+
+	/**
+	 * Sets the listener of the transport. It is called by the push service before the first push message.
+	 * @param listener The listener.
+	 */
+	void setListener(AppleTransportListener listener);
+
+	/**
+	 * Opens the connections of the transport.
+	 */
+	void start();
+
+	/**
+	 * Closes the connections of the transport.
+	 */
+	void stop();
+
+	/**
+	 * Writes a push message.
+	 * @param token The push token.
+	 * @param payload The push message payload.
+	 * @return The rejection of the push message, or <i>null</i> if it was accepted or the transport only learns 
+	 * about rejections later.
+	 * @throws NetworkIOException If the push message couldn't be written.
+	 */
+	ApnsRejection push(String token, String payload) throws NetworkIOException;
+
+	/**
+	 * Writes a push message to every token.
+	 * @param tokens The push tokens.
+	 * @param payload The push message payload.
+	 * @return The rejected push messages, empty if every one was accepted or the transport only learns about 
+	 * rejections later.
+	 * @throws NetworkIOException If the push messages couldn't be written.
+	 */
+	List<ApnsRejection> push(Collection<String> tokens, String payload) throws NetworkIOException;
+
+	/**
+	 * Gets the devices that APNS reported as inactive since the last call.
+	 * @return The inactive devices, by uppercase hex token, with the date since they are inactive.
+	 * @throws NetworkIOException If they couldn't be retrieved.
+	 */
+	Map<String, Date> getInactiveDevices() throws NetworkIOException;
+
+	/**
+	 * Gets the identifier of the credential used to send, used to share rate limiters.
+	 * @return The credential identifier.
+	 */
+	String getCredentialId();
+}
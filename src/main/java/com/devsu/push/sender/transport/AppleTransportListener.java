@@ -0,0 +1,16 @@
+package com.devsu.push.sender.transport;
+
+/**
+ * Receives the signals of an APNS transport, including the push messages APNS rejected after they were written.
+ */
+public interface AppleTransportListener extends TransportListener {
+
+	/**
+	 * Callback that is executed when APNS rejects a push message.
+	 * @param token The push token, in uppercase hex.
+	 * @param payload The push message payload.
+	 * @param errorCode The error reported by APNS.
+	 * @param retryable <i>true</i> if the error is transient, so the push message can be retried.
+	 */
+	void onRejected(String token, String payload, String errorCode, boolean retryable);
+}
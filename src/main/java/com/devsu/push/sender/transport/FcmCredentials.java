@@ -0,0 +1,150 @@
+package com.devsu.push.sender.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+/**
+ * The service account used to send with the FCM HTTP v1 API: its project, its email and its RSA key. It signs the
+ * JSON Web Token assertions exchanged for OAuth access tokens at the token endpoint.
+ */
+public class FcmCredentials {
+
+	/**
+	 * The OAuth scope of the FCM HTTP v1 API.
+	 */
+	public static final String MESSAGING_SCOPE = "https://www.googleapis.com/auth/firebase.messaging";
+
+	/**
+	 * The Google OAuth token endpoint.
+	 */
+	public static final String GOOGLE_TOKEN_URI = "https://oauth2.googleapis.com/token";
+
+	/**
+	 * The encoded JWT header, the same for every assertion.
+	 */
+	private static final String ENCODED_HEADER = SigningKeys.encode("{\"alg\":\"RS256\",\"typ\":\"JWT\"}");
+
+	/**
+	 * The seconds an assertion is valid, the max allowed by Google.
+	 */
+	private static final long ASSERTION_LIFETIME_SECONDS = 3600;
+
+	/**
+	 * The Firebase project id.
+	 */
+	private final String projectId;
+
+	/**
+	 * The email of the service account.
+	 */
+	private final String clientEmail;
+
+	/**
+	 * The RSA private key of the service account.
+	 */
+	private final PrivateKey privateKey;
+
+	/**
+	 * The URL of the token endpoint.
+	 */
+	private final String tokenUri;
+
+	/**
+	 * 4 param constructor.
+	 * @param projectId The Firebase project id.
+	 * @param clientEmail The email of the service account.
+	 * @param privateKey The RSA private key of the service account.
+	 * @param tokenUri The URL of the token endpoint, or of a local stand-in server.
+	 */
+	public FcmCredentials(String projectId, String clientEmail, PrivateKey privateKey, String tokenUri) {
+		if (projectId == null || clientEmail == null || privateKey == null || tokenUri == null) {
+			throw new IllegalArgumentException("Project id, client email, private key and token URI are required.");
+		}
+		if (!"RSA".equals(privateKey.getAlgorithm())) {
+			throw new IllegalArgumentException("The private key must be an RSA key.");
+		}
+		this.projectId = projectId;
+		this.clientEmail = clientEmail;
+		this.privateKey = privateKey;
+		this.tokenUri = tokenUri;
+	}
+
+	/**
+	 * Loads the credentials from a service account key file, as downloaded from the Firebase console.
+	 * @param serviceAccountFile The JSON key file.
+	 * @return The credentials.
+	 * @throws IOException If the file can't be read.
+	 * @throws GeneralSecurityException If the file doesn't have a valid RSA key.
+	 */
+	public static FcmCredentials fromServiceAccountFile(File serviceAccountFile) throws IOException, GeneralSecurityException {
+		return fromServiceAccountJson(SigningKeys.readText(serviceAccountFile));
+	}
+
+	/**
+	 * Loads the credentials from the contents of a service account key file.
+	 * @param json The JSON key.
+	 * @return The credentials.
+	 * @throws GeneralSecurityException If the text doesn't have a valid RSA key.
+	 */
+	public static FcmCredentials fromServiceAccountJson(String json) throws GeneralSecurityException {
+		Object parsed = JSONValue.parse(json);
+		if (!(parsed instanceof JSONObject)) {
+			throw new IllegalArgumentException("The service account key is not a JSON object.");
+		}
+		JSONObject serviceAccount = (JSONObject) parsed;
+		String privateKey = (String) serviceAccount.get("private_key");
+		if (privateKey == null) {
+			throw new IllegalArgumentException("The service account key has no private key.");
+		}
+		String tokenUri = (String) serviceAccount.get("token_uri");
+		return new FcmCredentials((String) serviceAccount.get("project_id"), (String) serviceAccount.get("client_email"),
+				SigningKeys.decodePkcs8(privateKey, "RSA"), tokenUri == null ? GOOGLE_TOKEN_URI : tokenUri);
+	}
+
+	/**
+	 * Signs a new assertion for the token endpoint.
+	 * @param issuedAtSeconds The issue time, in seconds since the epoch.
+	 * @return The signed JSON Web Token.
+	 * @throws GeneralSecurityException If the assertion can't be signed.
+	 */
+	public String signAssertion(long issuedAtSeconds) throws GeneralSecurityException {
+		String claims = "{\"iss\":\"" + JSONValue.escape(clientEmail) + "\",\"scope\":\"" + MESSAGING_SCOPE
+				+ "\",\"aud\":\"" + JSONValue.escape(tokenUri) + "\",\"iat\":" + issuedAtSeconds + ",\"exp\":"
+				+ (issuedAtSeconds + ASSERTION_LIFETIME_SECONDS) + "}";
+		String signingInput = ENCODED_HEADER + "." + SigningKeys.encode(claims);
+		Signature signature = Signature.getInstance("SHA256withRSA");
+		signature.initSign(privateKey);
+		signature.update(signingInput.getBytes(SigningKeys.UTF8));
+		return signingInput + "." + SigningKeys.encode(signature.sign());
+	}
+
+	/**
+	 * Gets the Firebase project id.
+	 * @return The project id.
+	 */
+	public String getProjectId() {
+		return projectId;
+	}
+
+	/**
+	 * Gets the email of the service account.
+	 * @return The client email.
+	 */
+	public String getClientEmail() {
+		return clientEmail;
+	}
+
+	/**
+	 * Gets the URL of the token endpoint.
+	 * @return The token URI.
+	 */
+	public String getTokenUri() {
+		return tokenUri;
+	}
+}
@@ -0,0 +1,762 @@
+package com.devsu.push.sender.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.devsu.push.sender.ratelimit.ThrottleAwareSender;
+import com.devsu.push.sender.util.NamedThreadFactory;
+import com.google.android.gcm.server.Constants;
+import com.google.android.gcm.server.Message;
+import com.google.android.gcm.server.MulticastResult;
+import com.google.android.gcm.server.Result;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.FormBody;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Android transport on the FCM HTTP v1 API. The v1 API takes one token per request, so the requests of a bulk push
+ * message are all written at once over persistent connections (multiplexed on HTTP/2, pooled on HTTP/1.1) and the
+ * calling thread only waits for the last response. The OAuth access token is cached until it is about to expire,
+ * and responses are parsed as a stream, without building a JSON tree.
+ * <p>
+ * Messages are sent as data messages, with the same data, collapse key and time to live that the GCM sender sends,
+ * and the errors of FCM are reported with the GCM error codes, so the push service handles them the same way.
+ */
+public class FcmHttpTransport implements AndroidTransport {
+
+	/**
+	 * The URL of the FCM HTTP v1 API.
+	 */
+	public static final String DEFAULT_URL = "https://fcm.googleapis.com";
+
+	/**
+	 * The media type of the requests.
+	 */
+	private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+	/**
+	 * Status code of a throttled request.
+	 */
+	private static final int TOO_MANY_REQUESTS = 429;
+
+	/**
+	 * Status code of a rejected access token.
+	 */
+	private static final int UNAUTHORIZED = 401;
+
+	/**
+	 * The parsers of the responses, reused by every thread.
+	 */
+	private static final ThreadLocal<JSONParser> PARSER = new ThreadLocal<JSONParser>() {
+		@Override
+		protected JSONParser initialValue() {
+			return new JSONParser();
+		}
+	};
+
+	/**
+	 * Logger.
+	 */
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * The service account.
+	 */
+	private final FcmCredentials credentials;
+
+	/**
+	 * The URL of the send endpoint.
+	 */
+	private final String sendUrl;
+
+	/**
+	 * The client.
+	 */
+	private final OkHttpClient client;
+
+	/**
+	 * The ids given to the sent messages, used as multicast ids.
+	 */
+	private final AtomicLong multicastIds = new AtomicLong();
+
+	/**
+	 * The random generator of the backoff delays.
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * The cached access token, or <i>null</i> until it is fetched.
+	 */
+	private volatile AccessToken accessToken;
+
+	/**
+	 * The listener of the transport, or <i>null</i> until it is set.
+	 */
+	private volatile TransportListener listener;
+
+	/**
+	 * The max milliseconds a request waits for its response.
+	 */
+	private volatile long requestTimeoutMillis;
+
+	/**
+	 * Single param constructor, sending to FCM with up to 256 requests in flight.
+	 * @param credentials The service account.
+	 */
+	public FcmHttpTransport(FcmCredentials credentials) {
+		this(credentials, DEFAULT_URL, Defaults.MAX_CONCURRENT_REQUESTS);
+	}
+
+	/**
+	 * 3 param constructor.
+	 * @param credentials The service account.
+	 * @param baseUrl The URL of the FCM HTTP v1 API, or of a local stand-in server.
+	 * @param maxConcurrentRequests The max quantity of requests in flight.
+	 */
+	public FcmHttpTransport(FcmCredentials credentials, String baseUrl, int maxConcurrentRequests) {
+		if (credentials == null || baseUrl == null) {
+			throw new IllegalArgumentException("Credentials and base URL are required.");
+		}
+		if (maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException("Max concurrent requests must be greater than 0.");
+		}
+		this.credentials = credentials;
+		String url = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+		this.sendUrl = url + "/v1/projects/" + credentials.getProjectId() + "/messages:send";
+		this.requestTimeoutMillis = Defaults.REQUEST_TIMEOUT_MILLIS;
+		Dispatcher dispatcher = new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(), new NamedThreadFactory("fcm-http", true)));
+		dispatcher.setMaxRequests(maxConcurrentRequests);
+		dispatcher.setMaxRequestsPerHost(maxConcurrentRequests);
+		this.client = new OkHttpClient.Builder().dispatcher(dispatcher)
+				.connectionPool(new ConnectionPool(maxConcurrentRequests, Defaults.KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+				.build();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AndroidTransport#setListener(com.devsu.push.sender.transport.TransportListener)
+	 */
+	@Override
+	public void setListener(TransportListener listener) {
+		this.listener = listener;
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AndroidTransport#send(com.google.android.gcm.server.Message, java.lang.String, int)
+	 */
+	@Override
+	public Result send(Message message, String token, int retries) throws IOException {
+		return send(message, Collections.singletonList(token), retries).getResults().get(0);
+	}
+
+	/**
+	 * Sends a message to several tokens, and sends it again to the tokens that failed with transient errors, with
+	 * exponential backoff, like the GCM sender does. A Retry-After delay sent by FCM is waited if it is longer.
+	 * @param message The message.
+	 * @param tokens The push tokens.
+	 * @param retries The max quantity of retries.
+	 * @return The result of every token, ordered like the tokens.
+	 * @throws IOException If no request got a response.
+	 */
+	@Override
+	public MulticastResult send(Message message, List<String> tokens, int retries) throws IOException {
+		Result[] results = new Result[tokens.size()];
+		if (tokens.isEmpty()) {
+			return GcmResults.multicast(Arrays.asList(results), multicastIds.incrementAndGet());
+		}
+		List<Integer> pending = new ArrayList<Integer>(tokens.size());
+		for (int i = 0; i < tokens.size(); i++) {
+			pending.add(i);
+		}
+		boolean answered = false;
+		long backoff = Defaults.BACKOFF_INITIAL_DELAY_MILLIS;
+		for (int attempt = 0; ; attempt++) {
+			List<String> roundTokens = new ArrayList<String>(pending.size());
+			for (Integer index : pending) {
+				roundTokens.add(tokens.get(index));
+			}
+			Round round = sendRound(message, roundTokens);
+			answered |= round.networkFailures < roundTokens.size();
+			List<Integer> retryable = new ArrayList<Integer>();
+			for (int i = 0; i < pending.size(); i++) {
+				results[pending.get(i)] = round.results[i];
+				if (isRetryable(round.results[i].getErrorCodeName())) {
+					retryable.add(pending.get(i));
+				}
+			}
+			if (retryable.isEmpty() || attempt >= retries) {
+				if (!answered) {
+					throw round.lastError;
+				}
+				break;
+			}
+			pending = retryable;
+			sleep(Math.max(round.retryAfterMillis, backoff / 2 + random.nextInt((int) backoff)));
+			backoff = Math.min(backoff * 2, Defaults.MAX_BACKOFF_DELAY_MILLIS);
+		}
+		return GcmResults.multicast(Arrays.asList(results), multicastIds.incrementAndGet());
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AndroidTransport#sendNoRetry(com.google.android.gcm.server.Message, java.util.List)
+	 */
+	@Override
+	public MulticastResult sendNoRetry(Message message, List<String> tokens) throws IOException {
+		return send(message, tokens, 0);
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AndroidTransport#getCredentialId()
+	 */
+	@Override
+	public String getCredentialId() {
+		return credentials.getProjectId() + "/" + credentials.getClientEmail() + "#" + sendUrl;
+	}
+
+	/**
+	 * Sets the max milliseconds a request waits for its response.
+	 * @param requestTimeoutMillis The request timeout in milliseconds.
+	 */
+	public void setRequestTimeoutMillis(long requestTimeoutMillis) {
+		if (requestTimeoutMillis < 1) {
+			throw new IllegalArgumentException("Request timeout must be greater than 0.");
+		}
+		this.requestTimeoutMillis = requestTimeoutMillis;
+	}
+
+	/**
+	 * Sends a message once to every token, writing all the requests before waiting for the responses. A single
+	 * token is sent on the calling thread. Tokens whose request failed with a network error get an
+	 * <i>Unavailable</i> result.
+	 * @param message The message.
+	 * @param tokens The push tokens.
+	 * @return The results of the round.
+	 * @throws IOException If the access token can't be fetched, or the thread is interrupted.
+	 */
+	private Round sendRound(Message message, List<String> tokens) throws IOException {
+		final Round round = new Round(tokens.size());
+		String bodyPrefix = toBodyPrefix(message);
+		String authorization = "Bearer " + getAccessToken().token;
+		if (tokens.size() == 1) {
+			long startNanos = System.nanoTime();
+			try {
+				Response response = newCall(bodyPrefix, tokens.get(0), authorization).execute();
+				onRoundTrip(startNanos);
+				round.results[0] = toResult(response, round);
+			} catch (IOException e) {
+				onRoundTrip(startNanos);
+				round.results[0] = onNetworkError(e, round);
+			}
+			return round;
+		}
+		final CountDownLatch remaining = new CountDownLatch(tokens.size());
+		List<Call> calls = new ArrayList<Call>(tokens.size());
+		for (int i = 0; i < tokens.size(); i++) {
+			final int index = i;
+			final long startNanos = System.nanoTime();
+			Call call = newCall(bodyPrefix, tokens.get(i), authorization);
+			calls.add(call);
+			call.enqueue(new Callback() {
+				@Override
+				public void onFailure(Call call, IOException e) {
+					try {
+						onRoundTrip(startNanos);
+						round.results[index] = onNetworkError(e, round);
+					} finally {
+						remaining.countDown();
+					}
+				}
+				@Override
+				public void onResponse(Call call, Response response) {
+					try {
+						onRoundTrip(startNanos);
+						round.results[index] = toResult(response, round);
+					} finally {
+						remaining.countDown();
+					}
+				}
+			});
+		}
+		try {
+			remaining.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (Call call : calls) {
+				call.cancel();
+			}
+			throw new InterruptedIOException("Interrupted while waiting for FCM responses.");
+		}
+		if (round.networkFailures > 0) {
+			log.warn(round.networkFailures + " FCM requests failed with a network error: " + round.lastError.getMessage());
+		}
+		return round;
+	}
+
+	/**
+	 * Builds the request of a token.
+	 * @param bodyPrefix The JSON body of the message, up to the token.
+	 * @param token The push token.
+	 * @param authorization The <i>authorization</i> header.
+	 * @return The call.
+	 */
+	private Call newCall(String bodyPrefix, String token, String authorization) {
+		Request request = new Request.Builder()
+				.url(sendUrl)
+				.header("Authorization", authorization)
+				.post(RequestBody.create(JSON, bodyPrefix + JSONValue.escape(token) + "\"}}"))
+				.build();
+		Call call = client.newCall(request);
+		call.timeout().timeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+		return call;
+	}
+
+	/**
+	 * Writes the JSON body of a message, up to the token, which is the last field. The data, collapse key and
+	 * time to live are sent like the GCM sender sends them; <i>delay while idle</i> has no FCM equivalent.
+	 * @param message The message.
+	 * @return The body prefix.
+	 */
+	private static String toBodyPrefix(Message message) {
+		StringBuilder body = new StringBuilder(256).append("{\"message\":{");
+		Map<String, String> data = message.getData();
+		if (!data.isEmpty()) {
+			body.append("\"data\":{");
+			boolean first = true;
+			for (Map.Entry<String, String> entry : data.entrySet()) {
+				if (!first) {
+					body.append(',');
+				}
+				first = false;
+				body.append('"').append(JSONValue.escape(entry.getKey())).append("\":\"")
+						.append(entry.getValue() == null ? "" : JSONValue.escape(entry.getValue())).append('"');
+			}
+			body.append("},");
+		}
+		if (message.getCollapseKey() != null || message.getTimeToLive() != null) {
+			body.append("\"android\":{");
+			if (message.getCollapseKey() != null) {
+				body.append("\"collapse_key\":\"").append(JSONValue.escape(message.getCollapseKey())).append('"');
+			}
+			if (message.getTimeToLive() != null) {
+				body.append(message.getCollapseKey() != null ? "," : "").append("\"ttl\":\"")
+						.append(message.getTimeToLive()).append("s\"");
+			}
+			body.append("},");
+		}
+		return body.append("\"token\":\"").toString();
+	}
+
+	/**
+	 * Reads the result of a token from its response. Throttling and server errors are reported to the listener,
+	 * and a rejected access token is dropped so the next request fetches a new one. A response that can't be read
+	 * gets an <i>Unavailable</i> result, like a network error, so the token can still be retried.
+	 * @param response The response.
+	 * @param round The round of the request.
+	 * @return The result.
+	 */
+	private Result toResult(Response response, Round round) {
+		try {
+			int status = response.code();
+			Map<String, Object> fields = parse(response.body());
+			if (response.isSuccessful()) {
+				Object name = fields.get("name");
+				return GcmResults.result(name == null ? "" : name.toString(), null, null);
+			}
+			if (status == UNAUTHORIZED) {
+				invalidateAccessToken(response.request().header("Authorization"));
+			}
+			if (status == TOO_MANY_REQUESTS || status >= 500) {
+				long retryAfterMillis = ThrottleAwareSender.parseRetryAfter(response.header("Retry-After"));
+				TransportListener currentListener = listener;
+				if (currentListener != null) {
+					currentListener.onThrottled(retryAfterMillis);
+				}
+				synchronized (round) {
+					round.retryAfterMillis = Math.max(round.retryAfterMillis, retryAfterMillis);
+				}
+			}
+			return GcmResults.result(null, null, toErrorCode(status, (String) fields.get("errorCode"),
+					(String) fields.get("status"), (String) fields.get("message")));
+		} catch (RuntimeException e) {
+			log.error("Error occurred while reading FCM response with status " + response.code() + ": " + e.getMessage(), e);
+			return GcmResults.result(null, null, Constants.ERROR_UNAVAILABLE);
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Records a request that failed with a network error, and reports it to the listener as throttling.
+	 * @param e The network error.
+	 * @param round The round of the request.
+	 * @return An <i>Unavailable</i> result.
+	 */
+	private Result onNetworkError(IOException e, Round round) {
+		synchronized (round) {
+			round.networkFailures++;
+			round.lastError = e;
+		}
+		TransportListener currentListener = listener;
+		if (currentListener != null) {
+			currentListener.onThrottled(0);
+		}
+		return GcmResults.result(null, null, Constants.ERROR_UNAVAILABLE);
+	}
+
+	/**
+	 * Translates an FCM error to the GCM error code with the same meaning, so the push service handles it like the
+	 * GCM sender's errors. Errors without an equivalent keep their FCM name.
+	 * @param status The HTTP status.
+	 * @param errorCode The FCM error code, or <i>null</i>.
+	 * @param canonicalStatus The canonical error status, or <i>null</i>.
+	 * @param message The error message, or <i>null</i>.
+	 * @return The GCM error code.
+	 */
+	private static String toErrorCode(int status, String errorCode, String canonicalStatus, String message) {
+		String code = errorCode != null ? errorCode : canonicalStatus;
+		if (code == null) {
+			if (status == TOO_MANY_REQUESTS || status == 503) {
+				return Constants.ERROR_UNAVAILABLE;
+			}
+			return status >= 500 ? Constants.ERROR_INTERNAL_SERVER_ERROR : String.valueOf(status);
+		}
+		switch (code) {
+		case "UNREGISTERED":
+		case "NOT_FOUND":
+			return Constants.ERROR_NOT_REGISTERED;
+		case "INVALID_ARGUMENT":
+			// Invalid tokens and invalid messages share the same code, only the message tells them apart.
+			return message != null && message.contains("registration token") ? Constants.ERROR_INVALID_REGISTRATION : code;
+		case "SENDER_ID_MISMATCH":
+			return Constants.ERROR_MISMATCH_SENDER_ID;
+		case "QUOTA_EXCEEDED":
+		case "RESOURCE_EXHAUSTED":
+		case "UNAVAILABLE":
+		case "UNAUTHENTICATED":
+			return Constants.ERROR_UNAVAILABLE;
+		case "INTERNAL":
+			return Constants.ERROR_INTERNAL_SERVER_ERROR;
+		default:
+			return code;
+		}
+	}
+
+	/**
+	 * Indicates if a GCM error code is transient.
+	 * @param errorCode The error code, or <i>null</i>.
+	 * @return <i>true</i> if the token can be sent again.
+	 */
+	private static boolean isRetryable(String errorCode) {
+		return Constants.ERROR_UNAVAILABLE.equals(errorCode) || Constants.ERROR_INTERNAL_SERVER_ERROR.equals(errorCode);
+	}
+
+	/**
+	 * Gets the cached access token, fetching a new one when it is missing or about to expire.
+	 * @return The access token.
+	 * @throws IOException If the access token can't be fetched.
+	 */
+	private AccessToken getAccessToken() throws IOException {
+		AccessToken current = accessToken;
+		if (current != null && System.currentTimeMillis() < current.refreshAtMillis) {
+			return current;
+		}
+		synchronized (this) {
+			current = accessToken;
+			if (current != null && System.currentTimeMillis() < current.refreshAtMillis) {
+				return current;
+			}
+			current = fetchAccessToken();
+			accessToken = current;
+			return current;
+		}
+	}
+
+	/**
+	 * Exchanges a signed assertion for a new access token at the token endpoint.
+	 * @return The access token.
+	 * @throws IOException If the token endpoint doesn't return an access token.
+	 */
+	private AccessToken fetchAccessToken() throws IOException {
+		long now = System.currentTimeMillis();
+		String assertion;
+		try {
+			assertion = credentials.signAssertion(now / 1000);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalArgumentException("The token assertion couldn't be signed.", e);
+		}
+		Request request = new Request.Builder()
+				.url(credentials.getTokenUri())
+				.post(new FormBody.Builder()
+						.add("grant_type", "urn:ietf:params:oauth:grant-type:jwt-bearer")
+						.add("assertion", assertion)
+						.build())
+				.build();
+		Response response = client.newCall(request).execute();
+		try {
+			Map<String, Object> fields = parse(response.body());
+			Object token = fields.get("access_token");
+			if (!response.isSuccessful() || token == null) {
+				throw new IOException("The access token couldn't be fetched: HTTP " + response.code() + " "
+						+ fields.get("error"));
+			}
+			Object expiresIn = fields.get("expires_in");
+			long lifetimeMillis = expiresIn instanceof Number ? ((Number) expiresIn).longValue() * 1000
+					: Defaults.TOKEN_LIFETIME_MILLIS;
+			return new AccessToken(token.toString(), now + lifetimeMillis - Defaults.TOKEN_REFRESH_MARGIN_MILLIS);
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Drops the cached access token if FCM rejected it, so the next request fetches a new one.
+	 * @param authorization The <i>Authorization</i> header of the rejected request.
+	 */
+	private synchronized void invalidateAccessToken(String authorization) {
+		AccessToken current = accessToken;
+		if (current != null && authorization != null && authorization.endsWith(current.token)) {
+			accessToken = null;
+		}
+	}
+
+	/**
+	 * Reads the fields of a JSON response as a stream. Every field name is kept with the first primitive value
+	 * found with that name, at any depth, which covers the few fields FCM and the token endpoint answer.
+	 * @param body The response body.
+	 * @return The primitive values, by field name. Empty if the body is not valid JSON.
+	 */
+	private static Map<String, Object> parse(ResponseBody body) {
+		FieldCollector collector = new FieldCollector();
+		if (body == null) {
+			return collector.fields;
+		}
+		Reader reader = body.charStream();
+		try {
+			PARSER.get().parse(reader, collector);
+		} catch (ParseException e) {
+			// The fields read before the error are kept, error bodies of proxies are not JSON.
+		} catch (IOException e) {
+			// Same as above, a body cut short is only missing the fields that weren't read.
+		}
+		return collector.fields;
+	}
+
+	/**
+	 * Reports the round trip of a request to the listener.
+	 * @param startNanos The value of {@link System#nanoTime()} when the request started.
+	 */
+	private void onRoundTrip(long startNanos) {
+		TransportListener currentListener = listener;
+		if (currentListener != null) {
+			currentListener.onRoundTrip(startNanos);
+		}
+	}
+
+	/**
+	 * Waits before a retry.
+	 * @param millis The milliseconds to wait.
+	 * @throws InterruptedIOException If the thread is interrupted.
+	 */
+	private static void sleep(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry.");
+		}
+	}
+
+	/**
+	 * The results of sending a message once to several tokens.
+	 */
+	private static class Round {
+
+		/**
+		 * The result of every token, ordered like the tokens.
+		 */
+		private final Result[] results;
+
+		/**
+		 * The longest Retry-After delay answered, in milliseconds.
+		 */
+		private long retryAfterMillis;
+
+		/**
+		 * The quantity of requests that failed with a network error.
+		 */
+		private int networkFailures;
+
+		/**
+		 * The last network error, or <i>null</i>.
+		 */
+		private IOException lastError;
+
+		/**
+		 * Single param constructor.
+		 * @param size The quantity of tokens.
+		 */
+		private Round(int size) {
+			this.results = new Result[size];
+		}
+	}
+
+	/**
+	 * A cached access token.
+	 */
+	private static class AccessToken {
+
+		/**
+		 * The access token.
+		 */
+		private final String token;
+
+		/**
+		 * The time from which a new token is fetched, in milliseconds since the epoch.
+		 */
+		private final long refreshAtMillis;
+
+		/**
+		 * 2 param constructor.
+		 * @param token The access token.
+		 * @param refreshAtMillis The time from which a new token is fetched, in milliseconds since the epoch.
+		 */
+		private AccessToken(String token, long refreshAtMillis) {
+			this.token = token;
+			this.refreshAtMillis = refreshAtMillis;
+		}
+	}
+
+	/**
+	 * Parser handler that keeps the primitive values of a JSON document by field name.
+	 */
+	private static class FieldCollector implements ContentHandler {
+
+		/**
+		 * The primitive values, by field name.
+		 */
+		private final Map<String, Object> fields = new HashMap<String, Object>(8);
+
+		/**
+		 * The name of the current field, or <i>null</i> outside of an object entry.
+		 */
+		private String key;
+
+		/*
+		 * @see org.json.simple.parser.ContentHandler#startJSON()
+		 */
+		@Override
+		public void startJSON() {
+		}
+
+		/*
+		 * @see org.json.simple.parser.ContentHandler#endJSON()
+		 */
+		@Override
+		public void endJSON() {
+		}
+
+		/*
+		 * @see org.json.simple.parser.ContentHandler#startObject()
+		 */
+		@Override
+		public boolean startObject() {
+			return true;
+		}
+
+		/*
+		 * @see org.json.simple.parser.ContentHandler#endObject()
+		 */
+		@Override
+		public boolean endObject() {
+			return true;
+		}
+
+		/*
+		 * @see org.json.simple.parser.ContentHandler#startObjectEntry(java.lang.String)
+		 */
+		@Override
+		public boolean startObjectEntry(String key) {
+			this.key = key;
+			return true;
+		}
+
+		/*
+		 * @see org.json.simple.parser.ContentHandler#endObjectEntry()
+		 */
+		@Override
+		public boolean endObjectEntry() {
+			key = null;
+			return true;
+		}
+
+		/*
+		 * @see org.json.simple.parser.ContentHandler#startArray()
+		 */
+		@Override
+		public boolean startArray() {
+			return true;
+		}
+
+		/*
+		 * @see org.json.simple.parser.ContentHandler#endArray()
+		 */
+		@Override
+		public boolean endArray() {
+			return true;
+		}
+
+		/*
+		 * @see org.json.simple.parser.ContentHandler#primitive(java.lang.Object)
+		 */
+		@Override
+		public boolean primitive(Object value) {
+			if (key != null && !fields.containsKey(key)) {
+				fields.put(key, value);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int MAX_CONCURRENT_REQUESTS = 256;
+		private static final long KEEP_ALIVE_MINUTES = 5;
+		private static final long REQUEST_TIMEOUT_MILLIS = 10000;
+		private static final long BACKOFF_INITIAL_DELAY_MILLIS = 1000;
+		private static final long MAX_BACKOFF_DELAY_MILLIS = 1024000;
+		private static final long TOKEN_LIFETIME_MILLIS = 3600 * 1000L;
+		private static final long TOKEN_REFRESH_MARGIN_MILLIS = 5 * 60 * 1000L;
+	}
+}
@@ -0,0 +1,126 @@
+package com.devsu.push.sender.transport;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import com.google.android.gcm.server.MulticastResult;
+import com.google.android.gcm.server.Result;
+
+/**
+ * Builds GCM results for transports that don't use the GCM sender. The builders of the GCM library are package
+ * private, so they are called through reflection, once per result.
+ */
+final class GcmResults {
+
+	/**
+	 * The constructor of the result builder.
+	 */
+	private static final Constructor<?> RESULT_BUILDER;
+
+	/**
+	 * The methods of the result builder.
+	 */
+	private static final Method MESSAGE_ID, CANONICAL_REGISTRATION_ID, ERROR_CODE, BUILD_RESULT;
+
+	/**
+	 * The constructor of the multicast result builder.
+	 */
+	private static final Constructor<?> MULTICAST_BUILDER;
+
+	/**
+	 * The methods of the multicast result builder.
+	 */
+	private static final Method ADD_RESULT, BUILD_MULTICAST;
+
+	static {
+		try {
+			Class<?> resultBuilder = Class.forName(Result.class.getName() + "$Builder");
+			RESULT_BUILDER = accessible(resultBuilder.getDeclaredConstructor());
+			MESSAGE_ID = accessible(resultBuilder.getMethod("messageId", String.class));
+			CANONICAL_REGISTRATION_ID = accessible(resultBuilder.getMethod("canonicalRegistrationId", String.class));
+			ERROR_CODE = accessible(resultBuilder.getMethod("errorCode", String.class));
+			BUILD_RESULT = accessible(resultBuilder.getMethod("build"));
+			Class<?> multicastBuilder = Class.forName(MulticastResult.class.getName() + "$Builder");
+			MULTICAST_BUILDER = accessible(multicastBuilder.getDeclaredConstructor(int.class, int.class, int.class, long.class));
+			ADD_RESULT = accessible(multicastBuilder.getMethod("addResult", Result.class));
+			BUILD_MULTICAST = accessible(multicastBuilder.getMethod("build"));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unsupported GCM library version.", e);
+		}
+	}
+
+	/**
+	 * Private constructor, this class only has static methods.
+	 */
+	private GcmResults() {
+	}
+
+	/**
+	 * Builds the result of a token.
+	 * @param messageId The message id, or <i>null</i> if the token failed.
+	 * @param canonicalRegistrationId The canonical token, or <i>null</i>.
+	 * @param errorCode The GCM error code, or <i>null</i> if the token succeeded.
+	 * @return The result.
+	 */
+	static Result result(String messageId, String canonicalRegistrationId, String errorCode) {
+		try {
+			Object builder = RESULT_BUILDER.newInstance();
+			MESSAGE_ID.invoke(builder, messageId);
+			CANONICAL_REGISTRATION_ID.invoke(builder, canonicalRegistrationId);
+			ERROR_CODE.invoke(builder, errorCode);
+			return (Result) BUILD_RESULT.invoke(builder);
+		} catch (InstantiationException e) {
+			throw new IllegalStateException(e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Builds the result of a message sent to several tokens.
+	 * @param results The result of every token, ordered like the tokens.
+	 * @param multicastId The id of the request.
+	 * @return The multicast result.
+	 */
+	static MulticastResult multicast(List<Result> results, long multicastId) {
+		int success = 0;
+		int canonicalIds = 0;
+		for (Result result : results) {
+			if (result.getMessageId() != null) {
+				success++;
+			}
+			if (result.getCanonicalRegistrationId() != null) {
+				canonicalIds++;
+			}
+		}
+		try {
+			Object builder = MULTICAST_BUILDER.newInstance(success, results.size() - success, canonicalIds, multicastId);
+			for (Result result : results) {
+				ADD_RESULT.invoke(builder, result);
+			}
+			return (MulticastResult) BUILD_MULTICAST.invoke(builder);
+		} catch (InstantiationException e) {
+			throw new IllegalStateException(e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Makes a constructor or method of a package private class callable.
+	 * @param <T> The class of the member.
+	 * @param member The constructor or method.
+	 * @return The member.
+	 */
+	private static <T extends AccessibleObject> T accessible(T member) {
+		member.setAccessible(true);
+		return member;
+	}
+}
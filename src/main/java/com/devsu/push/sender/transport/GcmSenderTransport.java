@@ -0,0 +1,161 @@
+package com.devsu.push.sender.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import com.devsu.push.sender.ratelimit.ThrottleAwareSender;
+import com.devsu.push.sender.ratelimit.ThrottleListener;
+import com.google.android.gcm.server.Message;
+import com.google.android.gcm.server.MulticastResult;
+import com.google.android.gcm.server.Result;
+import com.google.android.gcm.server.Sender;
+
+/**
+ * Android transport on the GCM sender: a blocking HTTP request per message, with the retries and backoff of the 
+ * sender. It is the default transport of the Android push service.
+ */
+public class GcmSenderTransport implements AndroidTransport {
+
+	/**
+	 * The GCM sender.
+	 */
+	private final Sender sender;
+
+	/**
+	 * The identifier of the credential used to send. For an API key it is a hash of the key, so the key itself
+	 * doesn't end up in rate limiter keys, logs or metrics.
+	 */
+	private final String credentialId;
+
+	/**
+	 * The listener of the transport, or <i>null</i> until it is set.
+	 */
+	private volatile TransportListener listener;
+
+	/**
+	 * 2 param constructor. Throttling and the round trip of every HTTP request, including the retries made by 
+	 * the sender itself, are reported to the listener.
+	 * @param gcmApiKey The GCM API Key (also known as Sender ID).
+	 * @param endpoint The URL requests are sent to instead of the GCM endpoint, like a local stand-in server,
+	 * or <i>null</i> to send them to GCM.
+	 */
+	public GcmSenderTransport(String gcmApiKey, String endpoint) {
+		this.credentialId = toCredentialId(gcmApiKey);
+		this.sender = new ThrottleAwareSender(gcmApiKey, new ThrottleListener() {
+			@Override
+			public void onThrottled(long retryAfterMillis) {
+				TransportListener currentListener = listener;
+				if (currentListener != null) {
+					currentListener.onThrottled(retryAfterMillis);
+				}
+			}
+		}, endpoint) {
+			@Override
+			protected HttpURLConnection post(String url, String contentType, String body) throws IOException {
+				long startNanos = System.nanoTime();
+				try {
+					return super.post(url, contentType, body);
+				} finally {
+					TransportListener currentListener = listener;
+					if (currentListener != null) {
+						currentListener.onRoundTrip(startNanos);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Single param constructor, for GCM senders built elsewhere, like stubs or senders with a custom transport.
+	 * Only throttling reported on the results is seen by the push service, and round trips are not reported.
+	 * @param sender The GCM sender.
+	 */
+	public GcmSenderTransport(Sender sender) {
+		if (sender == null) {
+			throw new IllegalArgumentException("GCM sender is null.");
+		}
+		this.sender = sender;
+		this.credentialId = sender.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(sender));
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AndroidTransport#setListener(com.devsu.push.sender.transport.TransportListener)
+	 */
+	@Override
+	public void setListener(TransportListener listener) {
+		this.listener = listener;
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AndroidTransport#send(com.google.android.gcm.server.Message, java.lang.String, int)
+	 */
+	@Override
+	public Result send(Message message, String token, int retries) throws IOException {
+		return sender.send(message, token, retries);
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AndroidTransport#send(com.google.android.gcm.server.Message, java.util.List, int)
+	 */
+	@Override
+	public MulticastResult send(Message message, List<String> tokens, int retries) throws IOException {
+		return sender.send(message, tokens, retries);
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AndroidTransport#sendNoRetry(com.google.android.gcm.server.Message, java.util.List)
+	 */
+	@Override
+	public MulticastResult sendNoRetry(Message message, List<String> tokens) throws IOException {
+		return sender.sendNoRetry(message, tokens);
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AndroidTransport#getCredentialId()
+	 */
+	@Override
+	public String getCredentialId() {
+		return credentialId;
+	}
+
+	/**
+	 * Gets the GCM sender.
+	 * @return The GCM sender.
+	 */
+	public Sender getSender() {
+		return sender;
+	}
+
+	/**
+	 * Builds the credential identifier of a GCM API key from the first bytes of its SHA-256 hash: enough to tell
+	 * keys apart, without revealing them.
+	 * @param gcmApiKey The GCM API Key.
+	 * @return The credential identifier.
+	 */
+	private static String toCredentialId(String gcmApiKey) {
+		byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("SHA-256").digest(String.valueOf(gcmApiKey).getBytes(Defaults.CHARSET));
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256.
+			throw new IllegalStateException("SHA-256 is not supported.", e);
+		}
+		StringBuilder credentialId = new StringBuilder("sha256:");
+		for (int i = 0; i < Defaults.CREDENTIAL_HASH_BYTES; i++) {
+			credentialId.append(Character.forDigit((hash[i] >> 4) & 0xf, 16)).append(Character.forDigit(hash[i] & 0xf, 16));
+		}
+		return credentialId.toString();
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final Charset CHARSET = Charset.forName("UTF-8");
+		private static final int CREDENTIAL_HASH_BYTES = 8;
+	}
+}
@@ -0,0 +1,535 @@
+package com.devsu.push.sender.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.devsu.push.sender.util.NamedThreadFactory;
+import com.notnoop.exceptions.NetworkIOException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Apple transport on the APNS HTTP/2 provider API, with token based authentication. Every push message is a stream,
+ * so many of them are in flight at the same time over a few connections, and APNS answers each one with its own 
+ * status. Rejected push messages are returned by every write and reported to the listener, with the unregistered
+ * and invalid tokens marked as inactive. The signed authentication token is cached and only signed again when it
+ * gets old or APNS reports it expired.
+ * <p>
+ * Plain <i>http</i> URLs, like local stand-in servers, are sent with HTTP/2 prior knowledge. HTTPS needs ALPN,
+ * which is available from Java 8u252.
+ */
+public class Http2ApnsTransport implements AppleTransport {
+
+	/**
+	 * The URL of the APNS production environment.
+	 */
+	public static final String PRODUCTION_URL = "https://api.push.apple.com";
+
+	/**
+	 * The URL of the APNS sandbox environment.
+	 */
+	public static final String DEVELOPMENT_URL = "https://api.sandbox.push.apple.com";
+
+	/**
+	 * The media type of the payloads.
+	 */
+	private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+	/**
+	 * Status code of a throttled request.
+	 */
+	private static final int TOO_MANY_REQUESTS = 429;
+
+	/**
+	 * Status code of an unregistered token.
+	 */
+	private static final int GONE = 410;
+
+	/**
+	 * Status code of a rejected authentication token.
+	 */
+	private static final int FORBIDDEN = 403;
+
+	/**
+	 * The reason of an expired authentication token.
+	 */
+	private static final String EXPIRED_PROVIDER_TOKEN = "ExpiredProviderToken";
+
+	/**
+	 * The reason of a malformed or unknown token.
+	 */
+	private static final String BAD_DEVICE_TOKEN = "BadDeviceToken";
+
+	/**
+	 * Logger.
+	 */
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * The signing key of the authentication tokens.
+	 */
+	private final ApnsSigningKey signingKey;
+
+	/**
+	 * The topic of the push messages, usually the bundle id of the app.
+	 */
+	private final String topic;
+
+	/**
+	 * The URL of the APNS environment.
+	 */
+	private final String baseUrl;
+
+	/**
+	 * The clients, one per connection.
+	 */
+	private final OkHttpClient[] clients;
+
+	/**
+	 * The index of the next client, used to spread the push messages across the connections.
+	 */
+	private final AtomicInteger nextClient = new AtomicInteger();
+
+	/**
+	 * The max quantity of push messages in flight across every connection.
+	 */
+	private final int maxInFlight;
+
+	/**
+	 * The cached authentication token, or <i>null</i> until it is signed.
+	 */
+	private volatile AuthToken authToken;
+
+	/**
+	 * The listener of the transport, or <i>null</i> until it is set.
+	 */
+	private volatile AppleTransportListener listener;
+
+	/**
+	 * The value of the <i>apns-push-type</i> header.
+	 */
+	private volatile String pushType;
+
+	/**
+	 * The max milliseconds a push message waits for its response.
+	 */
+	private volatile long requestTimeoutMillis;
+
+	/**
+	 * 3 param constructor, with 2 connections of up to 100 concurrent streams each.
+	 * @param signingKey The signing key of the authentication tokens.
+	 * @param topic The topic of the push messages, usually the bundle id of the app.
+	 * @param useProductionServer Indicates if the transport uses a Production environment or a Sandbox environment.
+	 */
+	public Http2ApnsTransport(ApnsSigningKey signingKey, String topic, boolean useProductionServer) {
+		this(signingKey, topic, useProductionServer ? PRODUCTION_URL : DEVELOPMENT_URL, Defaults.CONNECTION_COUNT, 
+				Defaults.MAX_CONCURRENT_STREAMS);
+	}
+
+	/**
+	 * 5 param constructor.
+	 * @param signingKey The signing key of the authentication tokens.
+	 * @param topic The topic of the push messages, usually the bundle id of the app.
+	 * @param baseUrl The URL of the APNS environment, or of a local stand-in server.
+	 * @param connectionCount The quantity of connections.
+	 * @param maxConcurrentStreams The max quantity of push messages in flight on every connection.
+	 */
+	public Http2ApnsTransport(ApnsSigningKey signingKey, String topic, String baseUrl, int connectionCount, 
+			int maxConcurrentStreams) {
+		if (signingKey == null || topic == null || baseUrl == null) {
+			throw new IllegalArgumentException("Signing key, topic and base URL are required.");
+		}
+		if (connectionCount < 1 || maxConcurrentStreams < 1) {
+			throw new IllegalArgumentException("Connection count and max concurrent streams must be greater than 0.");
+		}
+		this.signingKey = signingKey;
+		this.topic = topic;
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+		this.pushType = Defaults.PUSH_TYPE;
+		this.requestTimeoutMillis = Defaults.REQUEST_TIMEOUT_MILLIS;
+		this.maxInFlight = connectionCount * maxConcurrentStreams;
+		getAuthToken();
+		Dispatcher dispatcher = new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, 
+				new SynchronousQueue<Runnable>(), new NamedThreadFactory("apns-http2", true)));
+		dispatcher.setMaxRequests(maxInFlight);
+		dispatcher.setMaxRequestsPerHost(maxInFlight);
+		List<Protocol> protocols = this.baseUrl.startsWith("http:") ? Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE) 
+				: Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1);
+		OkHttpClient client = new OkHttpClient.Builder().dispatcher(dispatcher).protocols(protocols).build();
+		this.clients = new OkHttpClient[connectionCount];
+		for (int i = 0; i < connectionCount; i++) {
+			clients[i] = client.newBuilder().connectionPool(new ConnectionPool(1, Defaults.KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+					.build();
+		}
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AppleTransport#setListener(com.devsu.push.sender.transport.AppleTransportListener)
+	 */
+	@Override
+	public void setListener(AppleTransportListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Does nothing, connections are opened on the first push message.
+	 */
+	@Override
+	public void start() {
+	}
+
+	/**
+	 * Closes the idle connections. They are opened again on the next push message.
+	 */
+	@Override
+	public void stop() {
+		for (OkHttpClient client : clients) {
+			client.connectionPool().evictAll();
+		}
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AppleTransport#push(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public ApnsRejection push(String token, String payload) throws NetworkIOException {
+		long startNanos = System.nanoTime();
+		Call call = newCall(token, payload);
+		Response response;
+		try {
+			response = call.execute();
+		} catch (IOException e) {
+			throw new NetworkIOException(e);
+		} finally {
+			onRoundTrip(startNanos);
+		}
+		try {
+			return handleResponse(0, token, payload, response);
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Writes a push message to every token, with up to the max concurrent streams of every connection in flight,
+	 * and waits for every response. A token is only handed to the connections once a stream is free, so the
+	 * pending requests stay bounded however many tokens there are. Push messages that failed with a network error
+	 * are reported as rejected, unless all of them failed.
+	 * @param tokens The push tokens.
+	 * @param payload The push message payload.
+	 * @return The rejected push messages.
+	 * @throws NetworkIOException If every push message failed with a network error.
+	 */
+	@Override
+	public List<ApnsRejection> push(Collection<String> tokens, final String payload) throws NetworkIOException {
+		if (tokens.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final Semaphore streams = new Semaphore(maxInFlight);
+		final Set<Call> calls = Collections.newSetFromMap(new ConcurrentHashMap<Call, Boolean>());
+		final Queue<ApnsRejection> rejections = new ConcurrentLinkedQueue<ApnsRejection>();
+		final Queue<ApnsRejection> networkFailures = new ConcurrentLinkedQueue<ApnsRejection>();
+		final AtomicReference<IOException> lastError = new AtomicReference<IOException>();
+		int index = 0;
+		try {
+			for (final String token : tokens) {
+				streams.acquire();
+				final int tokenIndex = index++;
+				final long startNanos = System.nanoTime();
+				Call call = newCall(token, payload);
+				calls.add(call);
+				call.enqueue(new Callback() {
+					@Override
+					public void onFailure(Call call, IOException e) {
+						onRoundTrip(startNanos);
+						networkFailures.add(new ApnsRejection(tokenIndex, token, Defaults.NETWORK_ERROR, true, null));
+						lastError.set(e);
+						finish(call);
+					}
+					@Override
+					public void onResponse(Call call, Response response) {
+						onRoundTrip(startNanos);
+						try {
+							ApnsRejection rejection = handleResponse(tokenIndex, token, payload, response);
+							if (rejection != null) {
+								rejections.add(rejection);
+							}
+						} finally {
+							response.close();
+							finish(call);
+						}
+					}
+					private void finish(Call call) {
+						calls.remove(call);
+						streams.release();
+					}
+				});
+			}
+			streams.acquire(maxInFlight);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (Call call : calls) {
+				call.cancel();
+			}
+			throw new NetworkIOException(new InterruptedIOException("Interrupted while waiting for APNS responses."));
+		}
+		if (networkFailures.isEmpty()) {
+			return new ArrayList<ApnsRejection>(rejections);
+		}
+		if (networkFailures.size() == index) {
+			throw new NetworkIOException(lastError.get());
+		}
+		log.warn(networkFailures.size() + " push messages failed with a network error: " + lastError.get().getMessage());
+		AppleTransportListener currentListener = listener;
+		if (currentListener != null) {
+			currentListener.onThrottled(0);
+			for (ApnsRejection failure : networkFailures) {
+				currentListener.onRejected(toRegistryKey(failure.getToken()), payload, Defaults.NETWORK_ERROR, true);
+			}
+		}
+		rejections.addAll(networkFailures);
+		return new ArrayList<ApnsRejection>(rejections);
+	}
+
+	/**
+	 * Returns an empty map: unregistered and invalid tokens are returned with the rejections of every write.
+	 * @return An empty map.
+	 */
+	@Override
+	public Map<String, Date> getInactiveDevices() {
+		return Collections.emptyMap();
+	}
+
+	/*
+	 * @see com.devsu.push.sender.transport.AppleTransport#getCredentialId()
+	 */
+	@Override
+	public String getCredentialId() {
+		return signingKey.getTeamId() + "/" + signingKey.getKeyId() + "#" + baseUrl;
+	}
+
+	/**
+	 * Sets the value of the <i>apns-push-type</i> header, like <i>alert</i> or <i>background</i>.
+	 * @param pushType The push type.
+	 */
+	public void setPushType(String pushType) {
+		if (pushType == null || pushType.isEmpty()) {
+			throw new IllegalArgumentException("Push type is required.");
+		}
+		this.pushType = pushType;
+	}
+
+	/**
+	 * Sets the max milliseconds a push message waits for its response, including the time it waits for a stream.
+	 * @param requestTimeoutMillis The request timeout in milliseconds.
+	 */
+	public void setRequestTimeoutMillis(long requestTimeoutMillis) {
+		if (requestTimeoutMillis < 1) {
+			throw new IllegalArgumentException("Request timeout must be greater than 0.");
+		}
+		this.requestTimeoutMillis = requestTimeoutMillis;
+	}
+
+	/**
+	 * Builds the request of a push message, on the next connection.
+	 * @param token The push token.
+	 * @param payload The push message payload.
+	 * @return The call.
+	 */
+	private Call newCall(String token, String payload) {
+		Request request = new Request.Builder()
+				.url(baseUrl + "/3/device/" + token)
+				.header("authorization", "bearer " + getAuthToken().token)
+				.header("apns-topic", topic)
+				.header("apns-push-type", pushType)
+				.post(RequestBody.create(JSON, payload))
+				.build();
+		OkHttpClient client = clients[(nextClient.getAndIncrement() & Integer.MAX_VALUE) % clients.length];
+		Call call = client.newCall(request);
+		call.timeout().timeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+		return call;
+	}
+
+	/**
+	 * Reads the status of a push message. Unregistered and invalid tokens are marked as inactive, and throttling and
+	 * server errors are also reported as throttling.
+	 * @param index The position of the token among the tokens written.
+	 * @param token The push token.
+	 * @param payload The push message payload.
+	 * @param response The response of APNS.
+	 * @return The rejection of the push message, or <i>null</i> if it was accepted.
+	 */
+	private ApnsRejection handleResponse(int index, String token, String payload, Response response) {
+		int status = response.code();
+		if (response.isSuccessful()) {
+			return null;
+		}
+		JSONObject body = parseBody(response.body());
+		String reason = body.get("reason") instanceof String ? (String) body.get("reason") : String.valueOf(status);
+		String registryKey = toRegistryKey(token);
+		boolean retryable = false;
+		Date inactiveSince = null;
+		if (status == GONE) {
+			Object timestamp = body.get("timestamp");
+			inactiveSince = timestamp instanceof Number ? new Date(((Number) timestamp).longValue()) : new Date();
+		} else if (BAD_DEVICE_TOKEN.equals(reason)) {
+			inactiveSince = new Date();
+		} else if (status == FORBIDDEN && EXPIRED_PROVIDER_TOKEN.equals(reason)) {
+			invalidateAuthToken(response.request().header("authorization"));
+			retryable = true;
+		} else if (status == TOO_MANY_REQUESTS || status >= 500) {
+			retryable = true;
+		}
+		AppleTransportListener currentListener = listener;
+		if (currentListener != null) {
+			if (status == TOO_MANY_REQUESTS || status >= 500) {
+				currentListener.onThrottled(0);
+			}
+			currentListener.onRejected(registryKey, payload, reason, retryable);
+		}
+		return new ApnsRejection(index, token, reason, retryable, inactiveSince);
+	}
+
+	/**
+	 * Normalizes a token to uppercase hex, without spaces or dashes, like the push service does.
+	 * @param token The push token.
+	 * @return The normalized token.
+	 */
+	private static String toRegistryKey(String token) {
+		return token.replace(" ", "").replace("-", "").toUpperCase();
+	}
+
+	/**
+	 * Parses the JSON body of an error response.
+	 * @param body The response body.
+	 * @return The parsed body, empty if it is not a JSON object.
+	 */
+	private JSONObject parseBody(ResponseBody body) {
+		try {
+			Object parsed = body == null ? null : JSONValue.parse(body.string());
+			return parsed instanceof JSONObject ? (JSONObject) parsed : new JSONObject();
+		} catch (IOException e) {
+			return new JSONObject();
+		}
+	}
+
+	/**
+	 * Gets the cached authentication token, signing a new one when it is missing or older than 50 minutes. APNS
+	 * rejects tokens older than an hour, and tokens signed more often than every 20 minutes.
+	 * @return The authentication token.
+	 */
+	private AuthToken getAuthToken() {
+		AuthToken current = authToken;
+		long now = System.currentTimeMillis();
+		if (current != null && now - current.issuedAtMillis < Defaults.TOKEN_REFRESH_MILLIS) {
+			return current;
+		}
+		synchronized (this) {
+			current = authToken;
+			if (current != null && now - current.issuedAtMillis < Defaults.TOKEN_REFRESH_MILLIS) {
+				return current;
+			}
+			try {
+				current = new AuthToken(signingKey.sign(now / 1000), now);
+			} catch (GeneralSecurityException e) {
+				throw new IllegalArgumentException("The authentication token couldn't be signed.", e);
+			}
+			authToken = current;
+			return current;
+		}
+	}
+
+	/**
+	 * Drops the cached authentication token if APNS reported it expired, so the next push message signs a new one.
+	 * @param authorization The <i>authorization</i> header of the rejected request.
+	 */
+	private synchronized void invalidateAuthToken(String authorization) {
+		AuthToken current = authToken;
+		if (current != null && authorization != null && authorization.endsWith(current.token)) {
+			authToken = null;
+		}
+	}
+
+	/**
+	 * Reports the round trip of a push message to the listener.
+	 * @param startNanos The value of {@link System#nanoTime()} when the push message started.
+	 */
+	private void onRoundTrip(long startNanos) {
+		AppleTransportListener currentListener = listener;
+		if (currentListener != null) {
+			currentListener.onRoundTrip(startNanos);
+		}
+	}
+
+	/**
+	 * A signed authentication token and its issue time.
+	 */
+	private static class AuthToken {
+
+		/**
+		 * The signed token.
+		 */
+		private final String token;
+
+		/**
+		 * The issue time, in milliseconds since the epoch.
+		 */
+		private final long issuedAtMillis;
+
+		/**
+		 * 2 param constructor.
+		 * @param token The signed token.
+		 * @param issuedAtMillis The issue time, in milliseconds since the epoch.
+		 */
+		private AuthToken(String token, long issuedAtMillis) {
+			this.token = token;
+			this.issuedAtMillis = issuedAtMillis;
+		}
+	}
+
+	/**
+	 * Class default values.
+	 */
+	private static class Defaults {
+		private static final int CONNECTION_COUNT = 2;
+		private static final int MAX_CONCURRENT_STREAMS = 100;
+		private static final long KEEP_ALIVE_MINUTES = 5;
+		private static final String PUSH_TYPE = "alert";
+		private static final long REQUEST_TIMEOUT_MILLIS = 10000;
+		private static final long TOKEN_REFRESH_MILLIS = 50 * 60 * 1000L;
+		private static final String NETWORK_ERROR = "NetworkError";
+	}
+}
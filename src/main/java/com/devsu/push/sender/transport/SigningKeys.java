@@ -0,0 +1,86 @@
+package com.devsu.push.sender.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+
+import okio.ByteString;
+
+/**
+ * Key and JSON Web Token helpers shared by the signing keys of the transports.
+ */
+final class SigningKeys {
+
+	/**
+	 * The charset of the key files and the token parts.
+	 */
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Private constructor, this class only has static methods.
+	 */
+	private SigningKeys() {
+	}
+
+	/**
+	 * Reads a text file.
+	 * @param file The file.
+	 * @return The contents of the file.
+	 * @throws IOException If the file can't be read.
+	 */
+	static String readText(File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				output.write(buffer, 0, read);
+			}
+			return new String(output.toByteArray(), UTF8);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Decodes a PEM encoded PKCS#8 private key.
+	 * @param pem The PEM encoded key.
+	 * @param algorithm The key algorithm, like <i>EC</i> or <i>RSA</i>.
+	 * @return The private key.
+	 * @throws GeneralSecurityException If the text doesn't have a valid key of the algorithm.
+	 */
+	static PrivateKey decodePkcs8(String pem, String algorithm) throws GeneralSecurityException {
+		String base64 = pem.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", "");
+		ByteString der = ByteString.decodeBase64(base64);
+		if (der == null) {
+			throw new GeneralSecurityException("The key is not valid PEM.");
+		}
+		return KeyFactory.getInstance(algorithm).generatePrivate(new PKCS8EncodedKeySpec(der.toByteArray()));
+	}
+
+	/**
+	 * Encodes a token part as unpadded base64url.
+	 * @param json The token part.
+	 * @return The encoded token part.
+	 */
+	static String encode(String json) {
+		return encode(json.getBytes(UTF8));
+	}
+
+	/**
+	 * Encodes bytes as unpadded base64url.
+	 * @param bytes The bytes.
+	 * @return The encoded bytes.
+	 */
+	static String encode(byte[] bytes) {
+		return ByteString.of(bytes).base64Url().replace("=", "");
+	}
+}
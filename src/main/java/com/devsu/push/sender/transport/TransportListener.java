@@ -0,0 +1,15 @@
+package com.devsu.push.sender.transport;
+
+import com.devsu.push.sender.ratelimit.ThrottleListener;
+
+/**
+ * Receives the signals of a transport that the push service turns into rate limiting and metrics.
+ */
+public interface TransportListener extends ThrottleListener {
+
+	/**
+	 * Callback that is executed when a request to the provider completes, successfully or not.
+	 * @param startNanos The value of {@link System#nanoTime()} when the request started.
+	 */
+	void onRoundTrip(long startNanos);
+}
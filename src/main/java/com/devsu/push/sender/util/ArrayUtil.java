@@ -32,4 +32,27 @@ public class ArrayUtil {
 		}
 		return result;
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Splits a list in a list of consecutive sublists of size <i>maxSubListSize</i>. The sublists are views
+	 * of the original list, so no element is copied. Use it with {@link Arrays#asList(Object...)} to split an array
+	 * without copying it.
+	 * @param <T> The class of the elements in the list.
+	 * @param elementList The list to be split. It must not be structurally modified while the sublists are used.
+	 * @param maxSubListSize The max size of the sublists.
+	 * @return The list containing the sublists.
+	 */
+	public static <T> List<List<T>> splitList(List<T> elementList, int maxSubListSize) {
+		if (maxSubListSize < 1) {
+			throw new IllegalArgumentException("Sublist size must be greater than 0.");
+		}
+		List<List<T>> result = new ArrayList<List<T>>();
+		if (elementList == null || elementList.isEmpty())
+			return result;
+		int size = elementList.size();
+		for (int indexFrom = 0; indexFrom < size; indexFrom += maxSubListSize) {
+			result.add(elementList.subList(indexFrom, Math.min(size, indexFrom + maxSubListSize)));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,112 @@
+package com.devsu.push.sender.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter for strings. It answers "definitely not present" or "maybe present" 
+ * using a few bits per element, whatever the length of the strings.
+ */
+public class BloomFilter {
+
+	/**
+	 * The bit set.
+	 */
+	private final AtomicLongArray bits;
+
+	/**
+	 * The quantity of bits.
+	 */
+	private final long bitCount;
+
+	/**
+	 * The quantity of hash functions.
+	 */
+	private final int hashCount;
+
+	/**
+	 * 2 param constructor.
+	 * @param expectedInsertions The quantity of elements the filter is sized for.
+	 * @param falsePositiveRate The false positive rate when the filter holds <i>expectedInsertions</i> elements.
+	 */
+	public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+		if (expectedInsertions < 1) {
+			throw new IllegalArgumentException("Expected insertions must be greater than 0.");
+		}
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+		}
+		long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		int words = (int) Math.min(Integer.MAX_VALUE, (optimalBits + 63) / 64);
+		this.bits = new AtomicLongArray(words);
+		this.bitCount = words * 64L;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+	}
+
+	/**
+	 * Adds an element.
+	 * @param value The element.
+	 */
+	public void put(String value) {
+		long hash = hash(value);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = bitIndex(hash1 + i * hash2);
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			long current;
+			do {
+				current = bits.get(word);
+				if ((current & mask) != 0) {
+					break;
+				}
+			} while (!bits.compareAndSet(word, current, current | mask));
+		}
+	}
+
+	/**
+	 * Checks if an element might have been added.
+	 * @param value The element.
+	 * @return <i>false</i> if the element was definitely not added, <i>true</i> if it might have been added.
+	 */
+	public boolean mightContain(String value) {
+		long hash = hash(value);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long bit = bitIndex(hash1 + i * hash2);
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Maps a combined hash to a bit index.
+	 * @param combinedHash The combined hash.
+	 * @return The bit index.
+	 */
+	private long bitIndex(int combinedHash) {
+		return (combinedHash & 0x7fffffffL) % bitCount;
+	}
+
+	/**
+	 * 64 bit hash of a string (FNV-1a, followed by a MurmurHash3 finalizer to spread the bits).
+	 * @param value The string.
+	 * @return The hash.
+	 */
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,71 @@
+package com.devsu.push.sender.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator that groups the elements of another iterator in chunks of up to <i>chunkSize</i> elements.
+ * The source is consumed one chunk at a time, so only the current chunk is kept in memory.
+ * @param <T> The class of the elements.
+ */
+public class ChunkIterator<T> implements Iterator<List<T>> {
+
+	/**
+	 * The source of the elements.
+	 */
+	private final Iterator<? extends T> source;
+
+	/**
+	 * The max quantity of elements in a chunk.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * 2 param constructor.
+	 * @param source The source of the elements.
+	 * @param chunkSize The max quantity of elements in a chunk.
+	 */
+	public ChunkIterator(Iterator<? extends T> source, int chunkSize) {
+		if (source == null) {
+			throw new IllegalArgumentException("Source iterator is null.");
+		}
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be greater than 0.");
+		}
+		this.source = source;
+		this.chunkSize = chunkSize;
+	}
+
+	/*
+	 * @see java.util.Iterator#hasNext()
+	 */
+	@Override
+	public boolean hasNext() {
+		return source.hasNext();
+	}
+
+	/*
+	 * @see java.util.Iterator#next()
+	 */
+	@Override
+	public List<T> next() {
+		if (!source.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		List<T> chunk = new ArrayList<T>(chunkSize);
+		while (chunk.size() < chunkSize && source.hasNext()) {
+			chunk.add(source.next());
+		}
+		return chunk;
+	}
+
+	/*
+	 * @see java.util.Iterator#remove()
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Chunks can't be removed.");
+	}
+}
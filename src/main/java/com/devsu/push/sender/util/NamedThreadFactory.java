@@ -0,0 +1,45 @@
+package com.devsu.push.sender.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory that gives every thread a recognizable name (<i>prefix-N</i>).
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+	/**
+	 * The prefix used for every thread name.
+	 */
+	private final String prefix;
+
+	/**
+	 * Indicates if the created threads are daemon threads.
+	 */
+	private final boolean daemon;
+
+	/**
+	 * The sequence used to number the created threads.
+	 */
+	private final AtomicInteger sequence = new AtomicInteger(1);
+
+	/**
+	 * 2 param constructor.
+	 * @param prefix The prefix used for every thread name.
+	 * @param daemon Indicates if the created threads are daemon threads.
+	 */
+	public NamedThreadFactory(String prefix, boolean daemon) {
+		this.prefix = prefix;
+		this.daemon = daemon;
+	}
+
+	/*
+	 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+	 */
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, prefix + "-" + sequence.getAndIncrement());
+		thread.setDaemon(daemon);
+		return thread;
+	}
+}
@@ -0,0 +1,154 @@
+package com.devsu.push.sender.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash set of tokens, with linear probing over a single array. It is sized from the quantity of
+ * tokens and can be cleared and reused, so deduplicating a push message doesn't allocate an entry per token.
+ */
+public class TokenHashSet {
+
+	/**
+	 * The max load factor, as a fraction of the table size.
+	 */
+	private static final double MAX_LOAD = 0.5;
+
+	/**
+	 * The table of tokens, whose length is a power of 2.
+	 */
+	private String[] table;
+
+	/**
+	 * The quantity of tokens on the set.
+	 */
+	private int size;
+
+	/**
+	 * Single param constructor.
+	 * @param expectedSize The quantity of tokens expected on the set.
+	 */
+	public TokenHashSet(int expectedSize) {
+		table = new String[tableSizeFor(expectedSize)];
+	}
+
+	/**
+	 * Empties the set, resizing it when it is too small for the expected quantity of tokens.
+	 * @param expectedSize The quantity of tokens expected on the set.
+	 */
+	public void clear(int expectedSize) {
+		int tableSize = tableSizeFor(expectedSize);
+		if (tableSize > table.length) {
+			table = new String[tableSize];
+		} else if (size > 0) {
+			Arrays.fill(table, null);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Adds a token.
+	 * @param token The token.
+	 * @return <i>true</i> if the token wasn't on the set.
+	 */
+	public boolean add(String token) {
+		if (token == null) {
+			throw new IllegalArgumentException("Token is null.");
+		}
+		if (size + 1 > table.length * MAX_LOAD) {
+			resize(table.length * 2);
+		}
+		int mask = table.length - 1;
+		int index = spread(token.hashCode()) & mask;
+		while (true) {
+			String current = table[index];
+			if (current == null) {
+				table[index] = token;
+				size++;
+				return true;
+			}
+			if (current.equals(token)) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * Checks if a token is on the set.
+	 * @param token The token.
+	 * @return <i>true</i> if the token is on the set.
+	 */
+	public boolean contains(String token) {
+		if (token == null) {
+			return false;
+		}
+		int mask = table.length - 1;
+		int index = spread(token.hashCode()) & mask;
+		while (true) {
+			String current = table[index];
+			if (current == null) {
+				return false;
+			}
+			if (current.equals(token)) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * Gets the quantity of tokens on the set.
+	 * @return The quantity of tokens.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the length of the table, which bounds the memory held by the set.
+	 * @return The table length.
+	 */
+	public int capacity() {
+		return table.length;
+	}
+
+	/**
+	 * Moves every token to a bigger table.
+	 * @param tableSize The new table length, a power of 2.
+	 */
+	private void resize(int tableSize) {
+		String[] oldTable = table;
+		table = new String[tableSize];
+		int mask = tableSize - 1;
+		for (String token : oldTable) {
+			if (token == null) {
+				continue;
+			}
+			int index = spread(token.hashCode()) & mask;
+			while (table[index] != null) {
+				index = (index + 1) & mask;
+			}
+			table[index] = token;
+		}
+	}
+
+	/**
+	 * Gets the table length for a quantity of tokens: the power of 2 that keeps the load under the max load.
+	 * @param expectedSize The quantity of tokens.
+	 * @return The table length.
+	 */
+	private static int tableSizeFor(int expectedSize) {
+		long needed = (long) (Math.max(expectedSize, 1) / MAX_LOAD) + 1;
+		return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+	}
+
+	/**
+	 * Spreads the bits of a hash code, so tokens that only differ on their last characters don't cluster.
+	 * @param hash The hash code.
+	 * @return The spread hash code.
+	 */
+	private static int spread(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}